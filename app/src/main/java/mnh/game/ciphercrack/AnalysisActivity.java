@@ -21,6 +21,7 @@ import mnh.game.ciphercrack.staticanalysis.FrequencyEntry;
 import mnh.game.ciphercrack.staticanalysis.GeneralAnalysisFragment;
 import mnh.game.ciphercrack.staticanalysis.LetterFrequencyFragment;
 import mnh.game.ciphercrack.staticanalysis.SuggestCipherFragment;
+import mnh.game.ciphercrack.staticanalysis.TextAnalysis;
 import mnh.game.ciphercrack.staticanalysis.TrigramFrequencyFragment;
 import mnh.game.ciphercrack.util.Settings;
 import mnh.game.ciphercrack.staticanalysis.StaticAnalysis;
@@ -38,6 +39,7 @@ public class AnalysisActivity extends AppCompatActivity implements AnalysisProvi
     private double[] iocCycles;
     private boolean isAllNumeric;
     private String[] textLines;
+    private TextAnalysis textAnalysis;
 
     // the frequency objects are referred to when re-ordering columns
     private LetterFrequencyFragment letterFrequency;
@@ -57,20 +59,21 @@ public class AnalysisActivity extends AppCompatActivity implements AnalysisProvi
 
         // get what we will need from the parcel sent
         String text = getIntent().getStringExtra("TEXT");
-        String alphabet = Settings.instance().getString(this, getString(R.string.pref_alphabet_plain));
-        String paddingChars = Settings.instance().getString(this, getString(R.string.pref_padding_chars));
-        Language language = Language.instanceOf(Settings.instance().getString(this, getString(R.string.pref_language)));
+        String alphabet = Settings.instance().getString(Settings.PREF_ALPHABET_PLAIN);
+        String paddingChars = Settings.instance().getString(Settings.PREF_PADDING_CHARS);
+        Language language = Language.instanceOf(Settings.instance().getString(Settings.PREF_LANGUAGE));
 
-        // gather initial analysis
+        // gather initial analysis, counting the text once and deriving the rest from the counts
+        textAnalysis = new TextAnalysis(text, alphabet, paddingChars);
         isAllNumeric = StaticAnalysis.isAllNumeric(text);
-        countAlphabetic = StaticAnalysis.countAlphabetic(text, alphabet);
-        countNonPadding = StaticAnalysis.countNonPadding(text, paddingChars);
-        freqAllInclPadding = StaticAnalysis.collectFrequency(text, true, false, alphabet, "");
-        freqAllNonPadding = StaticAnalysis.collectFrequency(text, true, false, alphabet, paddingChars);
-        freqAlphaAsIs = StaticAnalysis.collectFrequency(text, false, false, alphabet, paddingChars);
-        freqAlphaUpper = StaticAnalysis.collectFrequency(text, false, true, alphabet, paddingChars);
-        ioc = StaticAnalysis.calculateIOC(freqAlphaUpper, countAlphabetic, alphabet);
-        iocCycles = StaticAnalysis.getCyclicIOC(text, this, alphabet, paddingChars);
+        countAlphabetic = textAnalysis.getCountAlphabetic();
+        countNonPadding = textAnalysis.getCountNonPadding();
+        freqAllInclPadding = textAnalysis.getFrequency(true, false, false);
+        freqAllNonPadding = textAnalysis.getFrequency(true, false, true);
+        freqAlphaAsIs = textAnalysis.getFrequency(false, false, true);
+        freqAlphaUpper = textAnalysis.getFrequency(false, true, true);
+        ioc = textAnalysis.getIOC();
+        iocCycles = textAnalysis.getCyclicIOC();
         textLines = text.split("\n");
 
         // set up the TAB view
@@ -85,19 +88,19 @@ public class AnalysisActivity extends AppCompatActivity implements AnalysisProvi
         adapter.addFragment(suggestCipher, getString(R.string.suggest));
         GeneralAnalysisFragment generalAnalysis = new GeneralAnalysisFragment(this, text, alphabet);
         adapter.addFragment(generalAnalysis, getString(R.string.general));
-        letterFrequency = new LetterFrequencyFragment(this, text);
+        letterFrequency = new LetterFrequencyFragment(textAnalysis, language);
         adapter.addFragment(letterFrequency, getString(R.string.letters));
-        bigramFrequency = new BigramFrequencyFragment(this, text, false, R.layout.fragment_bigram_frequency, R.id.freq_bigram_layout);
+        bigramFrequency = new BigramFrequencyFragment(textAnalysis, language, false, R.layout.fragment_bigram_frequency, R.id.freq_bigram_layout);
         adapter.addFragment(bigramFrequency, getString(R.string.bigrams));
         // if text length is multiple of 2, also gather aligned bigrams
         if (countAlphabetic % 2 == 0) {
-            alignedBigramFrequency = new BigramFrequencyFragment(this, text, true, R.layout.fragment_aligned_bigram_frequency, R.id.freq_aligned_bigram_layout);
+            alignedBigramFrequency = new BigramFrequencyFragment(textAnalysis, language, true, R.layout.fragment_aligned_bigram_frequency, R.id.freq_aligned_bigram_layout);
             adapter.addFragment(alignedBigramFrequency, getString(R.string.aligned_bigrams));
         }
-        trigramFrequency = new TrigramFrequencyFragment(this, text, false, R.layout.fragment_trigram_frequency, R.id.freq_trigram_layout);
+        trigramFrequency = new TrigramFrequencyFragment(textAnalysis, language, false, R.layout.fragment_trigram_frequency, R.id.freq_trigram_layout);
         adapter.addFragment(trigramFrequency, getString(R.string.trigrams));
         if (countAlphabetic % 3 == 0) {
-            alignedTrigramFrequency = new TrigramFrequencyFragment(this, text, true, R.layout.fragment_aligned_trigram_frequency, R.id.freq_aligned_trigram_layout);
+            alignedTrigramFrequency = new TrigramFrequencyFragment(textAnalysis, language, true, R.layout.fragment_aligned_trigram_frequency, R.id.freq_aligned_trigram_layout);
             adapter.addFragment(alignedTrigramFrequency, getString(R.string.aligned_trigrams));
         }
 
@@ -137,6 +140,8 @@ public class AnalysisActivity extends AppCompatActivity implements AnalysisProvi
     public String[] getTextLines() { return textLines; }
     @Override
     public boolean isAllNumeric() { return isAllNumeric; }
+    @Override
+    public TextAnalysis getTextAnalysis() { return textAnalysis; }
 
     /**
      * User clicks bigram column heading: sort the frequency columns in this view
@@ -0,0 +1,17 @@
+package mnh.game.ciphercrack;
+
+import android.util.Log;
+
+import mnh.game.ciphercrack.util.CrackLog;
+
+/**
+ * Writes the crack engines' messages to the Android log, the Android side of CrackLog
+ */
+public class AndroidLog implements CrackLog.Sink {
+
+    @Override
+    public void info(String tag, String message) { Log.i(tag, message); }
+
+    @Override
+    public void warn(String tag, String message) { Log.w(tag, message); }
+}
@@ -0,0 +1,25 @@
+package mnh.game.ciphercrack;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+
+import mnh.game.ciphercrack.util.Settings;
+
+/**
+ * Reads the user's settings from the Android preferences, the Android side of Settings
+ */
+public class AndroidSettings implements Settings.Source {
+
+    private final Context context;
+
+    AndroidSettings(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    @Override
+    public String getString(String prefName, String defaultString) {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        return prefs.getString(prefName, defaultString);
+    }
+}
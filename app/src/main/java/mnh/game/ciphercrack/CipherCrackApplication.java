@@ -0,0 +1,20 @@
+package mnh.game.ciphercrack;
+
+import android.app.Application;
+
+import mnh.game.ciphercrack.util.CrackLog;
+import mnh.game.ciphercrack.util.Settings;
+
+/**
+ * Plugs the Android settings and log into the crack engines before any screen is shown, the
+ * engines themselves use only plain Java so they can also run away from the app
+ */
+public class CipherCrackApplication extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        Settings.instance().setSource(new AndroidSettings(this));
+        CrackLog.setSink(new AndroidLog());
+    }
+}
@@ -27,11 +27,11 @@ import org.jetbrains.annotations.NotNull;
 
 import mnh.game.ciphercrack.cipher.Cipher;
 import mnh.game.ciphercrack.services.CrackResults;
+import mnh.game.ciphercrack.services.ProgressSampler;
 import mnh.game.ciphercrack.util.CrackResult;
 import mnh.game.ciphercrack.util.CrackState;
 import mnh.game.ciphercrack.util.Directives;
 
-import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -52,6 +52,20 @@ public class ComputeResultListActivity extends AppCompatActivity {
     private boolean mTwoPane;
     private SimpleItemRecyclerViewAdapter mAdapter;
 
+    // refresh the list when the progress of running cracks has been sampled
+    private final ProgressSampler.Listener progressListener = new ProgressSampler.Listener() {
+        @Override
+        public void progressSampled() {
+            runOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    if (mAdapter != null)
+                        mAdapter.notifyDataSetChanged();
+                }
+            });
+        }
+    };
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -83,6 +97,18 @@ public class ComputeResultListActivity extends AppCompatActivity {
         });
     }
 
+    @Override
+    protected void onResume() {
+        super.onResume();
+        ProgressSampler.addListener(progressListener);
+    }
+
+    @Override
+    protected void onPause() {
+        ProgressSampler.removeListener(progressListener);
+        super.onPause();
+    }
+
     // set the List View to be the current set of results from the Home Activity
     private void updateView() {
         RecyclerView recyclerView = findViewById(R.id.compute_result_list);
@@ -121,12 +147,7 @@ public class ComputeResultListActivity extends AppCompatActivity {
         switch (item.getItemId()) {
             // user wants to remove all completed items
             case R.id.action_result_list_clear_all:
-                Iterator<CrackResult> iterator = CrackResults.crackResults.listIterator();
-                while (iterator.hasNext()) {
-                    CrackResult crackResult = iterator.next();
-                    if (crackResult.getCrackState() == CrackState.COMPLETE)
-                        iterator.remove();
-                }
+                CrackResults.removeCompleted();
                 mAdapter.notifyDataSetChanged();
                 return true;
         }
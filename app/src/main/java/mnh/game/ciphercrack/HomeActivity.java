@@ -2,7 +2,6 @@ package mnh.game.ciphercrack;
 
 import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
@@ -31,21 +30,16 @@ import com.google.android.material.bottomnavigation.BottomNavigationView;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Stack;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
 
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 
-import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 import mnh.game.ciphercrack.cipher.Cipher;
 import mnh.game.ciphercrack.language.Language;
 import mnh.game.ciphercrack.services.CrackResults;
-import mnh.game.ciphercrack.services.CrackService;
+import mnh.game.ciphercrack.services.CrackScheduler;
 import mnh.game.ciphercrack.transform.Clear;
 import mnh.game.ciphercrack.transform.LowerCase;
 import mnh.game.ciphercrack.transform.RemoveNonAlphabetic;
@@ -61,6 +55,7 @@ import mnh.game.ciphercrack.transform.UpperCase;
 import mnh.game.ciphercrack.util.BottomNavigationListener;
 import mnh.game.ciphercrack.util.CrackMethod;
 import mnh.game.ciphercrack.util.CrackResult;
+import mnh.game.ciphercrack.util.CrackState;
 import mnh.game.ciphercrack.util.Directives;
 import mnh.game.ciphercrack.util.Settings;
 
@@ -93,11 +88,7 @@ public class HomeActivity extends AppCompatActivity implements AdapterView.OnIte
     // keep track of history of edits, in case user wants to Undo
     private static final Stack<String> priorEdits = new Stack<>();
 
-    // queue and executor for processing background Crack requests
-    private final BlockingQueue<Runnable> executorQueue = new ArrayBlockingQueue<>(5, true);
-    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 3, 10, TimeUnit.SECONDS, executorQueue);
-
-    // used to receive messages from simple background Runnable
+    // used to receive messages from background cracks
     private Handler crackResultHandler;
 
     // local cipher
@@ -146,7 +137,7 @@ public class HomeActivity extends AppCompatActivity implements AdapterView.OnIte
             CrackResults.setResults(r);
         }
 
-        // this allows background Runnable tasks (not services) to send messages to the main UI thread
+        // this allows background cracks to send messages to the main UI thread
         crackResultHandler = new Handler(Looper.getMainLooper()) {
             @Override
             public void handleMessage(Message msg) {
@@ -156,21 +147,15 @@ public class HomeActivity extends AppCompatActivity implements AdapterView.OnIte
         };
     }
 
-    // used if we allow background Runnable, not services
     @Override
     protected void onStart() {
         super.onStart();
-        LocalBroadcastManager.getInstance(getApplicationContext())
-                .registerReceiver(CrackResults.mReceiver, new IntentFilter(CrackService.CRACK_SERVICE_MESSAGE));
         Log.i(TAG, "onStart");
     }
 
-    // used if we allow background Runnable, not services
     @Override
     protected void onStop() {
         super.onStop();
-        LocalBroadcastManager.getInstance(getApplicationContext())
-                .unregisterReceiver(CrackResults.mReceiver);
         Log.i(TAG, "onStop");
     }
 
@@ -261,8 +246,10 @@ public class HomeActivity extends AppCompatActivity implements AdapterView.OnIte
             layoutExtra.removeAllViews();
             cipher = Cipher.instanceOf(cipherName, this);
             if (cipher != null) {
-                String alphabet = Settings.instance().getString(this, R.string.pref_alphabet_plain);
+                String alphabet = Settings.instance().getString(Settings.PREF_ALPHABET_PLAIN);
                 cipher.addExtraControls(this, layoutExtra, alphabet);
+            } else {
+                Toast.makeText(this, "Unknown cipher: "+cipherName, Toast.LENGTH_LONG).show();
             }
             LinearLayout layout = findViewById(R.id.home_main_layout);
             layout.invalidate(); // redraw
@@ -1369,13 +1356,13 @@ public class HomeActivity extends AppCompatActivity implements AdapterView.OnIte
     private Directives getDefaultDirectives() {
         Directives dirs = new Directives();
         Settings settings = Settings.instance();
-        String alphabet = settings.getString(this, R.string.pref_alphabet_plain);
+        String alphabet = settings.getString(Settings.PREF_ALPHABET_PLAIN);
         dirs.setAlphabet(alphabet);
-        String languageName = settings.getString(this, R.string.pref_language);
+        String languageName = settings.getString(Settings.PREF_LANGUAGE);
         dirs.setLanguage(Language.instanceOf(languageName));
-        String cribs = settings.getString(this, R.string.pref_cribs);
+        String cribs = settings.getString(Settings.PREF_CRIBS);
         dirs.setCribs(cribs);
-        String paddingChars = settings.getString(this, R.string.pref_padding_chars);
+        String paddingChars = settings.getString(Settings.PREF_PADDING_CHARS);
         dirs.setPaddingChars(paddingChars);
         return dirs;
     }
@@ -1505,7 +1492,7 @@ public class HomeActivity extends AppCompatActivity implements AdapterView.OnIte
             View popupLayout = inflater.inflate(R.layout.popup_crack, viewGroup);
 
             // add cribs
-            String cribs = Settings.instance().getString(this, R.string.pref_cribs);
+            String cribs = Settings.instance().getString(Settings.PREF_CRIBS);
             EditText cribsText = popupLayout.findViewById(R.id.popup_crack_cribs);
             cribsText.setText(cribs);
 
@@ -1515,9 +1502,9 @@ public class HomeActivity extends AppCompatActivity implements AdapterView.OnIte
 
             // add extra controls if needed
             PopupWindow popup = new PopupWindow(this);
-            String alphabet = Settings.instance().getString(this, R.string.pref_alphabet_plain);
-            String paddingChars = Settings.instance().getString(this, R.string.pref_padding_chars);
-            Language language = Language.instanceOf(Settings.instance().getString(this, R.string.pref_language));
+            String alphabet = Settings.instance().getString(Settings.PREF_ALPHABET_PLAIN);
+            String paddingChars = Settings.instance().getString(Settings.PREF_PADDING_CHARS);
+            Language language = Language.instanceOf(Settings.instance().getString(Settings.PREF_LANGUAGE));
             LinearLayout extraLayout = popupLayout.findViewById(R.id.popup_crack_extra_layout);
             boolean controlsNeeded = cipher.addCrackControls(this, extraLayout, getInputText(), language, alphabet, paddingChars);
             if (controlsNeeded) {
@@ -1532,7 +1519,7 @@ public class HomeActivity extends AppCompatActivity implements AdapterView.OnIte
                     @Override
                     public void onClick(View v) {
                         popup.dismiss();
-                        actuallyDoCrackUsingService(extraLayout);
+                        actuallyDoCrack(extraLayout);
                     }
                 });
                 cancelButton.setOnClickListener(new View.OnClickListener() {
@@ -1543,12 +1530,12 @@ public class HomeActivity extends AppCompatActivity implements AdapterView.OnIte
                 });
                 popup.showAtLocation(popupLayout, Gravity.CENTER_HORIZONTAL|Gravity.TOP, 0, 100);
             } else {
-                actuallyDoCrackUsingService(null);
+                actuallyDoCrack(null);
             }
         }
     }
 
-    public void actuallyDoCrackUsingRunnable(LinearLayout extraLayout) {
+    private void actuallyDoCrack(LinearLayout extraLayout) {
         // depending on the cipher type we set up required properties from the screen
         // this also sets default ones from Settings: alphabet, language, cribs
         Directives cipherDirectives = setCrackDirectives(extraLayout);
@@ -1559,46 +1546,24 @@ public class HomeActivity extends AppCompatActivity implements AdapterView.OnIte
             Toast.makeText(this, reason, Toast.LENGTH_LONG).show();
         } else {
 
-            // do the cracking now and see send result to the Results view
+            // queue the crack, it runs in the background and tells us when it is done
             String inputText = getInputText();
-            Runnable runCrack = new Runnable() {
+            CrackScheduler.submit(cipher, inputText, cipherDirectives, new CrackScheduler.Listener() {
                 @Override
-                public void run() {
-                    long start = System.currentTimeMillis();
-                    CrackResult result = cipher.crack(inputText, cipherDirectives, 0);
-                    long duration = System.currentTimeMillis() - start;
-                    result.setMilliseconds(duration);
-                    CrackResults.crackResults.add(result);
+                public void crackFinished(CrackResult result) {
+                    String outcome = (result.getCrackState() == CrackState.CANCELLED) ? ": cancelled"
+                            : (result.isSuccess() ? ": successful" : ": failed");
                     Message msg = new Message();
                     Bundle bundle = new Bundle();
-                    bundle.putString(BACKGROUND_CRACK_RESULT, "Crack "+cipher.getCipherName()+(result.isSuccess()?": successful":": failed"));
+                    bundle.putString(BACKGROUND_CRACK_RESULT, "Crack "+result.getCipher().getCipherName()+outcome);
                     msg.setData(bundle);
                     crackResultHandler.sendMessage(msg);
                 }
-            };
-            executor.execute(runCrack);
+            });
             Toast.makeText(this,"Cracking "+cipher.getCipherName()+" in the background", Toast.LENGTH_SHORT).show();
         }
     }
 
-    private void actuallyDoCrackUsingService(LinearLayout extraLayout) {
-        // depending on the cipher type we set up required properties from the screen
-        // this also sets default ones from Settings: alphabet, language, cribs
-        Directives cipherDirectives = setCrackDirectives(extraLayout);
-
-        // check the parameters are acceptable for cracking
-        String reason = cipher.canParametersBeSet(cipherDirectives);
-        if (reason != null) {
-            Toast.makeText(this, reason, Toast.LENGTH_LONG).show();
-        } else {
-
-            // do the cracking now and see send result to the Results view
-            String inputText = getInputText();
-            CrackService.startActionCrack(this, cipher, inputText, cipherDirectives);
-            Toast.makeText(this,"Cracking "+cipher.getCipherName()+" via a service", Toast.LENGTH_SHORT).show();
-        }
-    }
-
     // child activity has finished and perhaps sent result back
     @Override
     protected void onActivityResult(int requestCode, int resultCode, Intent data) {
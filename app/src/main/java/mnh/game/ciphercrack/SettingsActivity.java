@@ -56,6 +56,8 @@ public class SettingsActivity extends PreferenceActivity {
             onSharedPreferenceChanged(sp, getString(R.string.pref_limit_grams));
             onSharedPreferenceChanged(sp, getString(R.string.pref_limit_perm_brute_force_cols));
             onSharedPreferenceChanged(sp, getString(R.string.pref_limit_railfence_rails));
+            onSharedPreferenceChanged(sp, getString(R.string.pref_limit_amsco_cols));
+            onSharedPreferenceChanged(sp, getString(R.string.pref_limit_crack_threads));
         }
 
         public void onPause() {
@@ -117,6 +119,15 @@ public class SettingsActivity extends PreferenceActivity {
                 p.setSummary("Max columns in brute force permutation crack: "+ sp.getString(key, Settings.DEFAULT_LIMIT_PERM_COLS));
             if (key.equals(getString(R.string.pref_limit_railfence_rails)))
                 p.setSummary("Max rails in railfence crack: "+ sp.getString(key, Settings.DEFAULT_LIMIT_RAILFENCE_RAILS));
+            if (key.equals(getString(R.string.pref_limit_amsco_cols)))
+                p.setSummary("Max columns in brute force Amsco crack: "+ sp.getString(key, Settings.DEFAULT_LIMIT_AMSCO_COLS));
+            if (key.equals(getString(R.string.pref_limit_crack_threads))) {
+                String threads = sp.getString(key, Settings.DEFAULT_LIMIT_CRACK_THREADS);
+                if (Settings.DEFAULT_LIMIT_CRACK_THREADS.equals(threads))
+                    p.setSummary("Dictionary cracks use all processors");
+                else
+                    p.setSummary("Threads in dictionary crack: " + threads);
+            }
         }
     }
 }
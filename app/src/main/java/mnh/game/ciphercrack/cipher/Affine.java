@@ -15,6 +15,7 @@ import java.util.Set;
 import androidx.appcompat.app.AppCompatActivity;
 import mnh.game.ciphercrack.R;
 import mnh.game.ciphercrack.language.Language;
+import mnh.game.ciphercrack.services.CrackHandle;
 import mnh.game.ciphercrack.services.CrackResults;
 import mnh.game.ciphercrack.util.CrackMethod;
 import mnh.game.ciphercrack.util.CrackResult;
@@ -256,6 +257,48 @@ public class Affine extends Cipher {
         return result.toString();
     }
 
+    /**
+     * Affine needs just one decode table, the inverse of (a.x + b)
+     * @param dirs the directives holding A_VALUE and B_VALUE
+     * @return the number of tables needed to decode ordinals, always 1
+     */
+    @Override
+    public int getDecodeTableCount(Directives dirs) {
+        return 1;
+    }
+
+    /**
+     * Fill in the table used to decode ordinals, as buildCharMapForDecode but without the map,
+     * letters that are not the encoding of any letter decode to themselves
+     * @param dirs the directives holding A_VALUE, B_VALUE and ALPHABET
+     * @param tables the tables to fill, only the first is used
+     */
+    @Override
+    public void fillDecodeTables(Directives dirs, int[][] tables) {
+        int a = dirs.getValueA();
+        int b = dirs.getValueB();
+        int alphabetLength = dirs.getAlphabet().length();
+        int[] table = tables[0];
+        for (int ordinal = 0; ordinal < alphabetLength; ordinal++) {
+            table[ordinal] = ordinal;
+        }
+        for (int pos = 0; pos < alphabetLength; pos++) {
+            table[(a*pos + b) % alphabetLength] = pos;
+        }
+    }
+
+    /**
+     * Brute force tries every pair of a and b values
+     * @param cipherText the text to be cracked
+     * @param dirs the directives of the crack, including ALPHABET
+     * @return the number of keys to try
+     */
+    @Override
+    public long estimateCrackWork(String cipherText, Directives dirs) {
+        long alphabetLength = super.estimateCrackWork(cipherText, dirs);
+        return (dirs.getCrackMethod() == CrackMethod.BRUTE_FORCE) ? alphabetLength * alphabetLength : alphabetLength;
+    }
+
     /**
      * Crack an Affine cipher by checking all a and b values under 30 and looking for cribs
      * @param cipherText the text to try to crack
@@ -269,6 +312,13 @@ public class Affine extends Cipher {
         CrackMethod crackMethod = dirs.getCrackMethod();
         String reverseCipherText = new StringBuilder(cipherText).reverse().toString();
 
+        // decode as ordinals, only making a string of the text for those with the cribs
+        byte[][] cribOrdinals = Cipher.getCribOrdinals(cribSet, alphabet);
+        byte[] cipherOrdinals = Cipher.toOrdinals(cipherText, alphabet);
+        byte[] reverseOrdinals = Cipher.toOrdinals(reverseCipherText, alphabet);
+        byte[] plainOrdinals = new byte[cipherOrdinals.length];
+        int[][] tables = new int[1][alphabet.length()];
+
         StringBuilder successResult = new StringBuilder()
                 .append("Success: Brute Force: tried each possible value of a and b from 0 to ")
                 .append(dirs.getAlphabet().length() - 1)
@@ -278,22 +328,25 @@ public class Affine extends Cipher {
         String foundPlainText = "";
         int foundA = -1, foundB = -1;
         //Log.i("CRACK", "Trying to crack text "+cipherText.substring(0,20)+", cribs="+cribString);
+        CrackHandle handle = CrackResults.handleFor(crackId);
+        handle.startStage("Affine brute force", "values of a", alphabet.length());
         for (int aValue=0; aValue < alphabet.length(); aValue++) {
+            handle.addDone(1);
             // only check if 'a' and length of alphabet are co-primes, else could have 2 plain -> 1 cipher letter
             if (areCoPrimes(aValue, alphabet.length())) {
-                // publish progress as a percentage
-                if (CrackResults.isCancelled(crackId))
+                if (handle.isCancelled())
                     return new CrackResult(dirs.getCrackMethod(), this, cipherText, "Crack cancelled", CrackState.CANCELLED);
-                CrackResults.updateProgressDirectly(crackId, aValue+" of "+alphabet.length()+": "+100*aValue/alphabet.length()+"% complete");
                 dirs.setValueA(aValue);
 
                 // check each value of b up to length of alphabet, doing decode and looking for cribs
                 for (int bValue=0; bValue < alphabet.length(); bValue++) {
                     dirs.setValueB(bValue);
+                    fillDecodeTables(dirs, tables);
 
                     // try in normal direction first
-                    String plainText = decode(cipherText, dirs);
-                    if (Cipher.containsAllCribs(plainText, cribSet)) {
+                    Cipher.decodeOrdinals(cipherOrdinals, cipherOrdinals.length, tables, 1, plainOrdinals);
+                    if (Cipher.containsAllCribs(plainOrdinals, cipherOrdinals.length, cribOrdinals)) {
+                        String plainText = decode(cipherText, dirs);
                         successResult.append("Found them all with a=").append(aValue)
                                 .append(" and b=").append(bValue).append(".\n");
                         if (dirs.stopAtFirst()) {
@@ -310,8 +363,9 @@ public class Affine extends Cipher {
                     }
                     // text may have been reversed during encoding, try reverse decode
                     if (dirs.considerReverse()) {
-                        plainText = decode(reverseCipherText, dirs);
-                        if (Cipher.containsAllCribs(plainText, cribSet)) {
+                        Cipher.decodeOrdinals(reverseOrdinals, reverseOrdinals.length, tables, 1, plainOrdinals);
+                        if (Cipher.containsAllCribs(plainOrdinals, reverseOrdinals.length, cribOrdinals)) {
+                            String plainText = decode(reverseCipherText, dirs);
                             successResult.append("Found them all in REVERSE text with a=").append(aValue)
                                     .append(" and b=").append(bValue).append(".\n");
                             if (dirs.stopAtFirst()) {
@@ -17,7 +17,10 @@ import mnh.game.ciphercrack.R;
 import mnh.game.ciphercrack.language.Language;
 import mnh.game.ciphercrack.util.CrackMethod;
 import mnh.game.ciphercrack.util.CrackResult;
+import mnh.game.ciphercrack.util.CrackState;
 import mnh.game.ciphercrack.util.Directives;
+import mnh.game.ciphercrack.util.Settings;
+import mnh.game.ciphercrack.util.TranspositionPlan;
 
 /**
  * Class that contains methods to assist with Asmco Cipher operations
@@ -236,63 +239,105 @@ public class Amsco extends Cipher {
      */
     @Override
     public String decode(String cipherText, Directives dirs) {
-        int[] perm = dirs.getPermutation();
-        int[] cpc = dirs.getCharsPerCell();
         String cipherTextNoPad = cipherText.replaceAll("\\W","");
+        return TranspositionPlan.amsco(dirs.getPermutation(), dirs.getCharsPerCell(), cipherTextNoPad.length())
+                .apply(cipherTextNoPad);
+    }
 
-        // first work out how long each column would be...
-        int rowNo = 0;
-        List<int[]> table = new LinkedList<>();
-        for (int pos=0; pos < cipherTextNoPad.length(); rowNo++) {
-            int[] row = new int[perm.length];
-            for (int col=0; col < perm.length; col++) {
-                int charsToAddPos = ((rowNo % cpc.length) + col) % cpc.length;
-                int charsToAdd = cpc[charsToAddPos];
-                while (pos+charsToAdd > cipherTextNoPad.length()) {
-                    charsToAdd--;
-                }
-                row[col] = charsToAdd;
-                pos += charsToAdd;
-            }
-            table.add(row);
-        }
-
-        // now put the cipher text in each column in turn...
-        String[][] grid = new String[table.size()][perm.length];
-        int pos = 0;
-        for (int permCol : perm) {
-            for (int row=0; row < table.size(); row++) {
-                int charsAtThisPos = table.get(row)[permCol];
-                if (charsAtThisPos > 0) {
-                    grid[row][permCol] = cipherTextNoPad.substring(pos, pos + charsAtThisPos);
-                    pos += charsAtThisPos;
-                } else {
-                    grid[row][permCol] = "";
-                }
-            }
-        }
-
-        // now just read through the grid row by row and col by col...
-        StringBuilder result = new StringBuilder(cipherText.length());
-        for (String[] row : grid) {
-            for (String cell : row) {
-                result.append(cell);
-            }
-        }
+    /**
+     * Work out the most columns to try in a brute force crack, from settings
+     * @return the user-specified maximum number of columns
+     */
+    private int getMaxCrackColumns() {
+        return Integer.valueOf(Settings.instance().getString(Settings.PREF_LIMIT_AMSCO_COLS, Settings.DEFAULT_LIMIT_AMSCO_COLS));
+    }
 
-        return result.toString();
+    /**
+     * Describe a column order and cell pattern found by the brute force search
+     * @param match the order and pattern whose decode contained the cribs
+     * @return a line for the explain text
+     */
+    private static String describeFound(AmscoSearch.Found match) {
+        String plainText = match.getPlainText();
+        return "Found with "
+                + (match.isReverse() ? "REVERSE " : "")
+                + match.getPermutation().length
+                + " columns: "
+                + numbersToString(match.getPermutation())
+                + ", chars per cell: "
+                + numbersToString(match.getCharsPerCell())
+                + ", text starts: "
+                + plainText.substring(0, Math.min(CRACK_PLAIN_LENGTH, plainText.length()))
+                + "\n";
     }
 
     /**
-     * Crack an Amsco cipher by brute force - trying several column permutations and chars-per-cell
+     * Crack an Amsco cipher by brute force, trying every column order up to a number of columns
+     * with 1,2 and 2,1 chars per cell, forward and reverse text, see AmscoSearch
      * @param cipherText the text to try to crack
      * @param dirs the directives with alphabet and cribs
      * @return the result of the crack attempt
      */
     public CrackResult crackBruteForce(String cipherText, Directives dirs, int crackId) {
-        // TODO : Amsco crack with different permutations, different chars-per-cell (1,2 & 2,1)
-        // and forward/reverse
-        return new CrackResult(dirs.getCrackMethod(), this, cipherText, "Amsco Brute Force crack has not yet been implemented");
+        String cribString = dirs.getCribs();
+        Set<String> cribSet = Cipher.getCribSet(cribString);
+        CrackMethod crackMethod = dirs.getCrackMethod();
+        String cipherTextNoPad = cipherText.replaceAll("\\W","");
+        int maxCrackColumns = Math.min(getMaxCrackColumns(), cipherTextNoPad.length());
+        AmscoSearch search = new AmscoSearch(cipherTextNoPad, cribSet, crackId, dirs.stopAtFirst(),
+                dirs.considerReverse());
+
+        // loop through the possible number of columns, the search for each is done in parallel
+        StringBuilder explain = new StringBuilder();
+        AmscoSearch.Found first = null;
+        for (int columns = 2; columns <= maxCrackColumns; columns++) {
+            List<AmscoSearch.Found> matches = search.search(columns);
+            if (matches == null)
+                return new CrackResult(crackMethod, this, cipherText, "Crack cancelled", CrackState.CANCELLED);
+            for (AmscoSearch.Found match : matches) {
+                explain.append(describeFound(match));
+                if (first == null)
+                    first = match;
+            }
+            if (first != null && dirs.stopAtFirst())
+                break;
+        }
+        String searched = "tried decode all column orders from 2 to "
+                + maxCrackColumns
+                + " columns with 1,2 and 2,1 chars per cell ("
+                + search.getDecodes()
+                + " decodes), looking for cribs ["
+                + cribString
+                + "] in the decoded text";
+        if (first != null) { // the one with fewest columns is used
+            permutation = first.getPermutation();
+            charsPerCell = first.getCharsPerCell();
+            dirs.setPermutation(permutation);
+            dirs.setCharsPerCell(charsPerCell);
+            String result = "Success: Brute Force: " + searched + ".\n" + explain.toString();
+            return new CrackResult(crackMethod, this, dirs, cipherText, first.getPlainText(), result);
+        }
+        dirs.setPermutation(null);
+        dirs.setCharsPerCell(null);
+        permutation = null;
+        charsPerCell = null;
+        String explainFail = "Fail: Brute force approach: " + searched + " but did not find them.\n";
+        return new CrackResult(crackMethod, this, cipherText, explainFail);
+    }
+
+    /**
+     * Brute force tries every order of the columns with both cell patterns
+     * @param cipherText the text to be cracked
+     * @param dirs the directives of the crack
+     * @return the guessed number of keys to try
+     */
+    @Override
+    public long estimateCrackWork(String cipherText, Directives dirs) {
+        int maxColumns = Math.min(getMaxCrackColumns(), cipherText.length());
+        long work = 2;
+        for (int columns = 2; columns <= maxColumns; columns++)
+            work = multiplyWork(work, columns);
+        return work;
     }
 
     /**
@@ -0,0 +1,273 @@
+package mnh.game.ciphercrack.cipher;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import mnh.game.ciphercrack.services.CrackHandle;
+import mnh.game.ciphercrack.services.CrackResults;
+import mnh.game.ciphercrack.util.CrackPool;
+import mnh.game.ciphercrack.util.TranspositionPlan;
+
+/**
+ * Brute force search for the column order and cell pattern of an Amsco cipher.
+ * For a number of columns, a pattern of letters per cell and a length of text, how many letters
+ * each cell of the grid holds is fixed, so is how long each column is and where each plain text
+ * letter sits within its column. Only where each column starts in the cipher text depends on the
+ * order the columns were read in, so each order is decoded by working out the column starts as
+ * the order is built, then one pass over the text, before checking for all the cribs.
+ * The search for each cell pattern, direction of text and first column read is split across the
+ * shared crack pool
+ */
+class AmscoSearch {
+
+    // the patterns of letters per cell tried, in the order they are tried
+    static final int[][] PATTERNS = { {1, 2}, {2, 1} };
+
+    // how many full column orders are decoded between checks for cancellation
+    private static final int CANCEL_CHECK_INTERVAL = 4096;
+
+    /**
+     * A column order and cell pattern whose decode contained all the cribs
+     */
+    static class Found {
+        private final int[] permutation;
+        private final int pattern;
+        private final boolean reverse;
+        private final String plainText;
+
+        Found(int[] permutation, int pattern, boolean reverse, String plainText) {
+            this.permutation = permutation;
+            this.pattern = pattern;
+            this.reverse = reverse;
+            this.plainText = plainText;
+        }
+
+        int[] getPermutation() { return permutation; }
+        int[] getCharsPerCell() { return PATTERNS[pattern].clone(); }
+        boolean isReverse() { return reverse; }
+        String getPlainText() { return plainText; }
+    }
+
+    // the order a serial search would have found them: direction, pattern, then column order
+    private static final Comparator<Found> SERIAL_ORDER = new Comparator<Found>() {
+        @Override
+        public int compare(Found a, Found b) {
+            if (a.reverse != b.reverse)
+                return a.reverse ? 1 : -1;
+            if (a.pattern != b.pattern)
+                return Integer.compare(a.pattern, b.pattern);
+            for (int i = 0; i < a.permutation.length; i++) {
+                if (a.permutation[i] != b.permutation[i])
+                    return Integer.compare(a.permutation[i], b.permutation[i]);
+            }
+            return 0;
+        }
+    };
+
+    /**
+     * Where each plain text letter sits for a number of columns and a cell pattern: its column
+     * and how far down the column it is, and how many letters each column holds
+     */
+    static class Layout {
+        final int[] columnOf;
+        final int[] withinColumn;
+        final int[] columnLength;
+
+        Layout(int columns, int[] charsPerCell, int length) {
+            columnOf = new int[length];
+            withinColumn = new int[length];
+            columnLength = new int[columns];
+            // the cells are those the decode plan uses, see TranspositionPlan.amsco
+            int[][] cellLength = TranspositionPlan.amscoCellLengths(columns, charsPerCell, length);
+            int pos = 0;
+            for (int[] row : cellLength) {
+                for (int col = 0; col < columns; col++) {
+                    for (int c = 0; c < row[col]; c++) {
+                        columnOf[pos] = col;
+                        withinColumn[pos] = columnLength[col]++;
+                        pos++;
+                    }
+                }
+            }
+        }
+    }
+
+    private final String cipherText;
+    private final String reverseCipherText;
+    private final Set<String> cribSet;
+    private final CrackHandle handle;
+    private final boolean stopAtFirst;
+    private final boolean considerReverse;
+
+    private final AtomicLong firstMatchOrder = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+    private final AtomicLong decodes = new AtomicLong(0);
+    private final List<Found> found = new ArrayList<>();
+
+    /**
+     * Prepare to search for the column order and cell pattern of a cipher text
+     * @param cipherText the text to be cracked, without spaces or punctuation
+     * @param cribSet the cribs that must all be in the plain text
+     * @param crackId the id of the crack, for progress and cancellation
+     * @param stopAtFirst whether the search for a number of columns stops at the first match
+     * @param considerReverse whether to also look at the reversed cipher text
+     */
+    AmscoSearch(String cipherText, Set<String> cribSet, int crackId, boolean stopAtFirst,
+                boolean considerReverse) {
+        this.cipherText = cipherText;
+        this.reverseCipherText = new StringBuilder(cipherText).reverse().toString();
+        this.cribSet = cribSet;
+        this.handle = CrackResults.handleFor(crackId);
+        this.stopAtFirst = stopAtFirst;
+        this.considerReverse = considerReverse;
+    }
+
+    /**
+     * @return the number of full column orders decoded so far
+     */
+    long getDecodes() { return decodes.get(); }
+
+    /**
+     * Try every order of a number of columns with each cell pattern, forward and (if asked)
+     * reverse text
+     * @param columns the number of columns
+     * @return the orders whose decode contains all the cribs, in the order a serial search
+     * would find them, or null if the crack was cancelled
+     */
+    List<Found> search(final int columns) {
+        found.clear();
+        firstMatchOrder.set(Long.MAX_VALUE);
+
+        // one task per direction, pattern and first column read, the search fans out from there
+        final List<Branch> tasks = new ArrayList<>();
+        for (int direction = 0; direction < (considerReverse ? 2 : 1); direction++) {
+            char[] text = (direction == 0 ? cipherText : reverseCipherText).toCharArray();
+            for (int pattern = 0; pattern < PATTERNS.length; pattern++) {
+                Layout layout = new Layout(columns, PATTERNS[pattern], text.length);
+                for (int first = 0; first < columns; first++)
+                    tasks.add(new Branch(tasks.size(), text, direction == 1, pattern, layout, columns, first));
+            }
+        }
+        int taskCount = tasks.size();
+        handle.startStage(columns + " column Amsco search", "branches", taskCount);
+        CrackPool.get().invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+        if (cancelled.get())
+            return null;
+
+        List<Found> results = new ArrayList<>(found);
+        Collections.sort(results, SERIAL_ORDER);
+        if (stopAtFirst && results.size() > 1)
+            results = results.subList(0, 1);
+        return results;
+    }
+
+    // note a task has finished, the sampler reports progress from the count
+    private void taskDone() {
+        handle.addDone(1);
+    }
+
+    // keep the order of the earliest branch to match, so later branches can be skipped when
+    // stopping at first
+    private void noteFirstMatch(long order) {
+        long current = firstMatchOrder.get();
+        while (order < current && !firstMatchOrder.compareAndSet(current, order)) {
+            current = firstMatchOrder.get();
+        }
+    }
+
+    // the search of all column orders with a given text, cell pattern and first column read,
+    // the branches are made in the order a serial search would try them, and each tries its
+    // column orders in that order too
+    private class Branch extends RecursiveAction {
+        private final long order;
+        private final char[] text;
+        private final boolean reverse;
+        private final int pattern;
+        private final Layout layout;
+        private final int columns;
+        private final int first;
+        private final int[] permutation;
+        private final boolean[] used;
+        private final int[] columnStart;
+        private final char[] plain;
+        private long visited = 0;
+        private boolean matched = false;
+
+        Branch(long order, char[] text, boolean reverse, int pattern, Layout layout, int columns, int first) {
+            this.order = order;
+            this.text = text;
+            this.reverse = reverse;
+            this.pattern = pattern;
+            this.layout = layout;
+            this.columns = columns;
+            this.first = first;
+            this.permutation = new int[columns];
+            this.used = new boolean[columns];
+            this.columnStart = new int[columns];
+            this.plain = new char[text.length];
+        }
+
+        @Override
+        protected void compute() {
+            permutation[0] = first;
+            used[first] = true;
+            columnStart[first] = 0;
+            place(1, layout.columnLength[first]);
+            decodes.addAndGet(visited);
+            taskDone();
+        }
+
+        // choose the column read at position placed, the columns before it start the text and
+        // the next column starts at offset
+        private void place(int placed, int offset) {
+            if (matched || cancelled.get() || (stopAtFirst && order > firstMatchOrder.get()))
+                return; // a match in this or an earlier branch means the rest are not needed
+            if (placed == columns) {
+                if (++visited % CANCEL_CHECK_INTERVAL == 0 && handle.isCancelled()) {
+                    cancelled.set(true);
+                    return;
+                }
+                checkFullOrder();
+                return;
+            }
+            for (int column = 0; column < columns; column++) {
+                if (used[column])
+                    continue;
+                permutation[placed] = column;
+                columnStart[column] = offset;
+                used[column] = true;
+                place(placed + 1, offset + layout.columnLength[column]);
+                used[column] = false;
+            }
+        }
+
+        // decode with a full order and look for all the cribs
+        private void checkFullOrder() {
+            int[] columnOf = layout.columnOf, withinColumn = layout.withinColumn;
+            for (int pos = 0; pos < plain.length; pos++)
+                plain[pos] = text[columnStart[columnOf[pos]] + withinColumn[pos]];
+            if (Cipher.containsAllCribs(CharBuffer.wrap(plain), cribSet)) {
+                synchronized (found) {
+                    found.add(new Found(permutation.clone(), pattern, reverse, String.valueOf(plain)));
+                    handle.addMatches(1);
+                }
+                if (stopAtFirst) {
+                    matched = true;
+                    noteFirstMatch(order);
+                }
+            }
+        }
+    }
+}
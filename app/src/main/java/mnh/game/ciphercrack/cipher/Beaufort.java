@@ -119,4 +119,25 @@ public class Beaufort extends Vigenere {
     public String decode(String cipherText, Directives dirs) {
         return encode(cipherText, dirs);
     }
+
+    /**
+     * Fill in the tables used to decode ordinals, as a reciprocal cipher each table takes the
+     * cipher ordinal away from the ordinal of the keyword letter at that position
+     * @param dirs the directives holding the KEYWORD and ALPHABET
+     * @param tables the tables to fill, one per keyword letter
+     */
+    @Override
+    public void fillDecodeTables(Directives dirs, int[][] tables) {
+        String alphabet = dirs.getAlphabet();
+        String keyword = dirs.getKeyword();
+        int alphabetLength = alphabet.length();
+        for (int keyPos = 0; keyPos < keyword.length(); keyPos++) {
+            int keyRow = alphabet.indexOf(Character.toUpperCase(keyword.charAt(keyPos)));
+            int[] table = tables[keyPos];
+            for (int ordinal = 0; ordinal < alphabetLength; ordinal++) {
+                int plain = (keyRow - ordinal) % alphabetLength;
+                table[ordinal] = (plain < 0) ? plain + alphabetLength : plain;
+            }
+        }
+    }
 }
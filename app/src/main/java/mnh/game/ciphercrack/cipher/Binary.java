@@ -5,15 +5,22 @@ import android.os.Parcel;
 import android.widget.EditText;
 import android.widget.LinearLayout;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
 import java.util.Arrays;
+import java.util.Set;
 
 import androidx.appcompat.app.AppCompatActivity;
 import mnh.game.ciphercrack.R;
 import mnh.game.ciphercrack.language.Language;
+import mnh.game.ciphercrack.services.CrackResults;
 import mnh.game.ciphercrack.util.CrackMethod;
 import mnh.game.ciphercrack.util.CrackResult;
+import mnh.game.ciphercrack.util.CrackState;
 import mnh.game.ciphercrack.util.Directives;
 import mnh.game.ciphercrack.util.Settings;
+import mnh.game.ciphercrack.util.SymbolTokenizer;
 
 public class Binary extends Cipher {
 
@@ -24,6 +31,11 @@ public class Binary extends Cipher {
 
     private static final int MAX_BINARY_DIGITS = 2;
 
+    // the most frequent symbols tried as digits during a crack, and the largest number size
+    private static final int CRACK_CANDIDATES = 3;
+    private static final int MAX_CRACK_NUMBER_SIZE = 8;
+    private static final int MAX_CRACK_SYMBOLS = 100;
+
     private String digits = "";
     private int numberSize = 5;
     private String separator = "";
@@ -152,7 +164,7 @@ public class Binary extends Cipher {
         this.separator = separator;
         dirs.setSeparator(separator);
 
-        String languageName = Settings.instance().getString(layout.getContext(), R.string.pref_language);
+        String languageName = Settings.instance().getString(Settings.PREF_LANGUAGE);
         Language language = Language.instanceOf(languageName);
         dirs.setLanguage(language);
     }
@@ -221,57 +233,222 @@ public class Binary extends Cipher {
      */
     @Override
     public String decode(String cipherText, Directives dirs) {
-        String alphabet = dirs.getAlphabet();
-        String digits = dirs.getDigits().toUpperCase();
-        cipherText = cipherText.toUpperCase().replace(" ","");
-        String separator = dirs.getSeparator();
-        int numberSize = dirs.getNumberSize();
-        StringBuilder result = new StringBuilder(cipherText.length());
-        while(cipherText.length() > 0) {
-            String seq;
-            if (separator.length() > 0) {
-                int index = cipherText.indexOf(separator);
-                if (index >= 0) {
-                    seq = cipherText.substring(0, index);
-                    cipherText = cipherText.substring(seq.length()+1);
-                } else {
-                    seq = cipherText;
-                    cipherText = "";
-                }
-            } else {
-                if (cipherText.length() >= numberSize) {
-                    seq = cipherText.substring(0, numberSize);
-                    cipherText = cipherText.substring(numberSize);
-                } else {
-                    seq = cipherText;
-                    cipherText = "";
-                }
-            }
-            // replace the text digits (could be A/B) with 0/1
-            for(int digitPos=0; digitPos < digits.length(); digitPos++) {
-                seq = seq.replace(digits.charAt(digitPos), (char)('0'+digitPos));
-            }
-            try {
-                int ordinal = Integer.parseInt(seq, 2); // convert binary to decimal
-                if (ordinal < alphabet.length())
-                    result.append(alphabet.charAt(ordinal));
-                else
-                    result.append("z"); // binary digits decoded to something beyond the alphabet
-            } catch (NumberFormatException ex) {
-                result.append("x");     // string does not represent a binary number
-            }
+        StringBuilder result = new StringBuilder(cipherText.length() / Math.max(1, dirs.getNumberSize()));
+        try {
+            decode(cipherText, result, dirs);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex); // a StringBuilder does not throw
         }
         return result.toString();
     }
 
     /**
-     * Not able to crack this yet
+     * Decode a text using Binary cipher as it is read, without holding the whole text
+     * @param cipherText the text to be decoded, read to the end but not closed
+     * @param plainText where the decoded text is written
+     * @param dirs a group of directives that define how the cipher will work,
+     *             especially DIGITS and SEPARATOR
+     */
+    public void decode(Reader cipherText, Appendable plainText, Directives dirs) throws IOException {
+        tokenizer(dirs).tokenize(cipherText, new Decoder(dirs.getAlphabet(), dirs.getDigits().length(), plainText));
+    }
+
+    private void decode(CharSequence cipherText, Appendable plainText, Directives dirs) throws IOException {
+        tokenizer(dirs).tokenize(cipherText, new Decoder(dirs.getAlphabet(), dirs.getDigits().length(), plainText));
+    }
+
+    // numbers are the digits up to a separator, or of fixed size if there is no separator
+    private static SymbolTokenizer tokenizer(Directives dirs) {
+        String separator = dirs.getSeparator();
+        int width = (separator == null || separator.length() == 0) ? dirs.getNumberSize() : 0;
+        return new SymbolTokenizer(new String[] { dirs.getDigits() }, separator, width, SymbolTokenizer.WHITESPACE, SymbolTokenizer.Others.IN_TOKEN);
+    }
+
+    /**
+     * Turn each number into its letter: 'z' if beyond the alphabet, 'x' if not a number
+     */
+    private static class Decoder implements SymbolTokenizer.Listener {
+        private final String alphabet;
+        private final int radix;
+        private final Appendable result;
+
+        Decoder(String alphabet, int radix, Appendable result) {
+            this.alphabet = alphabet;
+            this.radix = radix;
+            this.result = result;
+        }
+
+        @Override
+        public void token(byte[] ordinals, char[] chars, int length) throws IOException {
+            result.append(letterFor(ordinals, length, alphabet, radix));
+        }
+
+        @Override
+        public void emptyToken() throws IOException {
+            result.append('x');
+        }
+
+        @Override
+        public void other(char c) { }
+    }
+
+    // the letter for the digit ordinals of a number
+    private static char letterFor(byte[] ordinals, int length, String alphabet, int radix) {
+        long ordinal = 0;
+        for (int pos = 0; pos < length; pos++) {
+            if (ordinals[pos] < 0)
+                return 'x';     // string does not represent a binary number
+            ordinal = ordinal * radix + ordinals[pos];
+            if (ordinal > Integer.MAX_VALUE)
+                return 'x';     // too many digits to be a number
+        }
+        return (ordinal < alphabet.length()) ? alphabet.charAt((int)ordinal) : 'z'; // beyond the alphabet
+    }
+
+    /**
+     * Crack a Binary cipher with unknown digits, separator and number size. The text is turned
+     * once into ordinals of the distinct symbols in it, then the most frequent symbols are tried
+     * in pairs as 0 and 1, with the most frequent other symbol (which may be a space) as
+     * separator, and with no separator and each number size, decoding from the ordinals and
+     * looking for the cribs
      * @param cipherText the text to be cracked
      * @param dirs the controls and parameters for this crack request
      * @return the result of the crack attempt
      */
     public CrackResult crack(String cipherText, Directives dirs, int crackId) {
-        // TODO: Binary Crack: suggest looking for most common letter => 0, next most common => 1, then decode in 5's, look for cribs, or words
-        return new CrackResult(dirs.getCrackMethod(), this, cipherText, "Fail: Not yet able to crack "+getCipherName()+" cipher.\n");
+        String cribString = dirs.getCribs();
+        Set<String> cribSet = Cipher.getCribSet(cribString);
+        String alphabet = dirs.getAlphabet();
+        CrackMethod crackMethod = dirs.getCrackMethod();
+
+        // the symbols in order of first appearance and how often each occurs, line breaks and
+        // tabs are dropped, but a space may be the separator
+        StringBuilder symbols = new StringBuilder();
+        int[] counts = new int[MAX_CRACK_SYMBOLS];
+        byte[] text = new byte[cipherText.length()];
+        int textLength = 0;
+        for (int pos = 0; pos < cipherText.length(); pos++) {
+            char c = Character.toUpperCase(cipherText.charAt(pos));
+            if (c != ' ' && Character.isWhitespace(c))
+                continue;
+            int symbol = symbols.indexOf(String.valueOf(c));
+            if (symbol < 0) {
+                if (symbols.length() == MAX_CRACK_SYMBOLS)
+                    return new CrackResult(crackMethod, this, cipherText, "Fail: Symbol scan: more than "
+                            + MAX_CRACK_SYMBOLS + " different symbols in the text, too many for binary.\n");
+                symbol = symbols.length();
+                symbols.append(c);
+            }
+            counts[symbol]++;
+            text[textLength++] = (byte)symbol;
+        }
+        int space = symbols.indexOf(" ");
+        int[] candidates = mostFrequent(counts, symbols.length(), CRACK_CANDIDATES, space);
+        String searched = "Symbol scan: tried the "
+                + candidates.length
+                + " most frequent symbols in pairs as digits 0 and 1, with the most frequent other symbol as separator and with no separator and number sizes 1 to "
+                + MAX_CRACK_NUMBER_SIZE
+                + ", looking for the cribs ["
+                + cribString
+                + "] in the decoded text";
+        if (candidates.length < 2)
+            return new CrackResult(crackMethod, this, cipherText, "Fail: " + searched + " but there are too few symbols.\n");
+
+        char[] plain = new char[textLength];
+        byte[] digitBuffer = new byte[textLength];
+        for (int zero : candidates) {
+            for (int one : candidates) {
+                if (zero == one)
+                    continue;
+                if (CrackResults.isCancelled(crackId))
+                    return new CrackResult(crackMethod, this, cipherText, "Crack cancelled", CrackState.CANCELLED);
+                int separatorSymbol = -1;
+                for (int other = 0; other < symbols.length(); other++) {
+                    if (other != zero && other != one && (separatorSymbol < 0 || counts[other] > counts[separatorSymbol]))
+                        separatorSymbol = other;
+                }
+                // number size 0 stands for using the separator, spaces are skipped otherwise
+                for (int size = (separatorSymbol < 0) ? 1 : 0; size <= MAX_CRACK_NUMBER_SIZE; size++) {
+                    int sizeSeparator = (size == 0) ? separatorSymbol : -1;
+                    int length = decodeSymbols(text, textLength, zero, one, sizeSeparator,
+                            (space == sizeSeparator) ? -1 : space, size, alphabet, digitBuffer, plain);
+                    if (Cipher.containsAllCribs(CharBuffer.wrap(plain, 0, length), cribSet)) {
+                        digits = "" + symbols.charAt(zero) + symbols.charAt(one);
+                        separator = (size == 0) ? String.valueOf(symbols.charAt(separatorSymbol)) : "";
+                        numberSize = size;
+                        dirs.setDigits(digits);
+                        dirs.setSeparator(separator);
+                        dirs.setNumberSize(numberSize);
+                        String explain = "Success: "
+                                + searched
+                                + " and found them with digits ["
+                                + digits
+                                + "]"
+                                + (size == 0 ? " and separator '" + separator + "'" : " and number size " + size)
+                                + ".\n";
+                        return new CrackResult(crackMethod, this, dirs, cipherText, String.valueOf(plain, 0, length), explain);
+                    }
+                }
+            }
+        }
+        digits = "";
+        numberSize = -1;
+        separator = "";
+        return new CrackResult(crackMethod, this, cipherText, "Fail: " + searched + " but did not find them.\n");
+    }
+
+    // the symbols with the highest counts, most frequent first, apart from one left out (or -1)
+    private static int[] mostFrequent(int[] counts, int symbolCount, int wanted, int leftOut) {
+        int[] most = new int[Math.min(wanted, symbolCount - (leftOut < 0 ? 0 : 1))];
+        boolean[] taken = new boolean[symbolCount];
+        if (leftOut >= 0)
+            taken[leftOut] = true;
+        for (int i = 0; i < most.length; i++) {
+            int best = -1;
+            for (int symbol = 0; symbol < symbolCount; symbol++) {
+                if (!taken[symbol] && (best < 0 || counts[symbol] > counts[best]))
+                    best = symbol;
+            }
+            taken[best] = true;
+            most[i] = best;
+        }
+        return most;
+    }
+
+    /**
+     * Decode text already turned into symbol ordinals, in the same way as decode
+     * @param text the symbol ordinals, without whitespace
+     * @param textLength how many of the ordinals are the text
+     * @param zero the symbol for digit 0
+     * @param one the symbol for digit 1
+     * @param separator the symbol that separates numbers, or -1 for fixed size numbers
+     * @param skipped a symbol that is ignored, or -1
+     * @param size the size of the numbers when there is no separator
+     * @param alphabet the letters the numbers stand for
+     * @param digits where the digits of a number are put while it is read
+     * @param plain where the decoded letters are put
+     * @return the number of decoded letters
+     */
+    private static int decodeSymbols(byte[] text, int textLength, int zero, int one, int separator,
+                                     int skipped, int size, String alphabet, byte[] digits, char[] plain) {
+        int count = 0, length = 0;
+        for (int pos = 0; pos < textLength; pos++) {
+            int symbol = text[pos];
+            if (symbol == skipped)
+                continue;
+            if (symbol == separator) {
+                plain[count++] = (length == 0) ? 'x' : letterFor(digits, length, alphabet, 2);
+                length = 0;
+                continue;
+            }
+            digits[length++] = (byte)(symbol == zero ? 0 : (symbol == one ? 1 : -1));
+            if (length == size) {
+                plain[count++] = letterFor(digits, length, alphabet, 2);
+                length = 0;
+            }
+        }
+        if (length > 0)
+            plain[count++] = letterFor(digits, length, alphabet, 2);
+        return count;
     }
 }
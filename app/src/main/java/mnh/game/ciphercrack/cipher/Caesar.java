@@ -11,6 +11,7 @@ import java.util.Set;
 import androidx.appcompat.app.AppCompatActivity;
 import mnh.game.ciphercrack.R;
 import mnh.game.ciphercrack.language.Language;
+import mnh.game.ciphercrack.services.CrackHandle;
 import mnh.game.ciphercrack.services.CrackResults;
 import mnh.game.ciphercrack.util.CrackMethod;
 import mnh.game.ciphercrack.util.CrackResult;
@@ -200,6 +201,32 @@ public class Caesar extends Cipher {
         return result.toString();
     }
 
+    /**
+     * Caesar needs just one decode table, shifting each letter back
+     * @param dirs the directives holding the SHIFT
+     * @return the number of tables needed to decode ordinals, always 1
+     */
+    @Override
+    public int getDecodeTableCount(Directives dirs) {
+        return 1;
+    }
+
+    /**
+     * Fill in the table used to decode ordinals, each cipher ordinal is shifted back by SHIFT
+     * @param dirs the directives holding the SHIFT and ALPHABET
+     * @param tables the tables to fill, only the first is used
+     */
+    @Override
+    public void fillDecodeTables(Directives dirs, int[][] tables) {
+        int shift = dirs.getShift();
+        int alphabetLength = dirs.getAlphabet().length();
+        int[] table = tables[0];
+        for (int ordinal = 0; ordinal < alphabetLength; ordinal++) {
+            int plain = (ordinal - shift) % alphabetLength;
+            table[ordinal] = (plain < 0) ? plain + alphabetLength : plain;
+        }
+    }
+
     /**
      * Crack a Caesar cipher by checking all shifts and looking for cribs
      * @param cipherText the text to try to crack
@@ -213,6 +240,13 @@ public class Caesar extends Cipher {
         CrackMethod crackMethod = dirs.getCrackMethod();
         String reverseCipherText = new StringBuilder(cipherText).reverse().toString();
 
+        // decode as ordinals, only making a string of the text for those with the cribs
+        byte[][] cribOrdinals = Cipher.getCribOrdinals(cribSet, alphabet);
+        byte[] cipherOrdinals = Cipher.toOrdinals(cipherText, alphabet);
+        byte[] reverseOrdinals = Cipher.toOrdinals(reverseCipherText, alphabet);
+        byte[] plainOrdinals = new byte[cipherOrdinals.length];
+        int[][] tables = new int[1][alphabet.length()];
+
         StringBuilder resultSuccess = new StringBuilder()
                 .append("Success Brute Force: tried each possible Caesar shift from 0 to ")
                 .append((alphabet.length()-1))
@@ -221,13 +255,17 @@ public class Caesar extends Cipher {
                 .append("] in the decoded text.\n");
         String foundPlainText = "";
         int foundShift = -1;
+        CrackHandle handle = CrackResults.handleFor(crackId);
+        handle.startStage("Caesar brute force", "shifts", alphabet.length());
         for (int shift=0; shift < alphabet.length(); shift++) {
-            if (CrackResults.isCancelled(crackId))
+            if (handle.isCancelled())
                 return new CrackResult(dirs.getCrackMethod(), this, cipherText, "Crack cancelled", CrackState.CANCELLED);
-            CrackResults.updateProgressDirectly(crackId, shift+" shifts of "+alphabet.length()+": "+100*shift/alphabet.length()+"% complete");
+            handle.addDone(1);
             dirs.setShift(shift);
-            String plainText = decode(cipherText, dirs);
-            if (Cipher.containsAllCribs(plainText, cribSet)) {
+            fillDecodeTables(dirs, tables);
+            Cipher.decodeOrdinals(cipherOrdinals, cipherOrdinals.length, tables, 1, plainOrdinals);
+            if (Cipher.containsAllCribs(plainOrdinals, cipherOrdinals.length, cribOrdinals)) {
+                String plainText = decode(cipherText, dirs);
                 this.shift = shift;
                 String explain = "Found all cribs with shift "
                         + shift
@@ -246,8 +284,9 @@ public class Caesar extends Cipher {
 
             // look in decoded reverse text for cribs
             if (dirs.considerReverse()) {
-                plainText = decode(reverseCipherText, dirs);
-                if (Cipher.containsAllCribs(plainText, cribSet)) {
+                Cipher.decodeOrdinals(reverseOrdinals, reverseOrdinals.length, tables, 1, plainOrdinals);
+                if (Cipher.containsAllCribs(plainOrdinals, reverseOrdinals.length, cribOrdinals)) {
+                    String plainText = decode(reverseCipherText, dirs);
                     this.shift = shift;
                     String explain = "Found all cribs in REVERSE text with shift "
                             + shift
@@ -11,7 +11,6 @@ import android.widget.EditText;
 import android.widget.LinearLayout;
 import android.widget.RadioGroup;
 import android.widget.TextView;
-import android.widget.Toast;
 
 import org.jetbrains.annotations.NotNull;
 
@@ -29,9 +28,12 @@ import androidx.appcompat.app.AppCompatActivity;
 import mnh.game.ciphercrack.R;
 import mnh.game.ciphercrack.language.Dictionary;
 import mnh.game.ciphercrack.language.Language;
+import mnh.game.ciphercrack.util.CrackLog;
 import mnh.game.ciphercrack.util.CrackMethod;
 import mnh.game.ciphercrack.util.CrackResult;
+import mnh.game.ciphercrack.util.DictionaryCrackEngine;
 import mnh.game.ciphercrack.util.Directives;
+import mnh.game.ciphercrack.util.KeySwapScorer;
 import mnh.game.ciphercrack.util.KeywordExtend;
 import mnh.game.ciphercrack.util.Settings;
 
@@ -103,6 +105,9 @@ abstract public class Cipher implements Parcelable {
     // how much text of possible solutions to show when cracking
     public static final int CRACK_PLAIN_LENGTH = 60;
 
+    // work guessed for cracks that climb or anneal, they run for a set number of steps
+    static final long SEARCH_CRACK_WORK = 10_000_000L;
+
     // build a cipher from a parcel
     public static Cipher instanceOf(Parcel parcel, Context context) {
         String name = parcel.readString();
@@ -171,7 +176,7 @@ abstract public class Cipher implements Parcelable {
                 // TODO cipher = new Bifid(context);
                 break;
             default:
-                Toast.makeText(context, "Unknown cipher: "+name, Toast.LENGTH_LONG).show();
+                CrackLog.w("Cipher", "Unknown cipher: "+name);
                 break;
         }
         return cipher;
@@ -351,6 +356,48 @@ abstract public class Cipher implements Parcelable {
         return cipherName;
     }
 
+    /**
+     * Guess how much work a crack will be, roughly the number of keys it tries, so the
+     * CrackScheduler can run small cracks before large ones. By default from the crack method,
+     * ciphers whose key space depends on their settings should override this
+     * @param cipherText the text to be cracked
+     * @param dirs the directives of the crack, including CRACK_METHOD and ALPHABET
+     * @return the guessed number of keys to try, at least 1
+     */
+    public long estimateCrackWork(String cipherText, Directives dirs) {
+        String alphabet = dirs.getAlphabet();
+        long alphabetLength = (alphabet == null) ? 26 : alphabet.length();
+        CrackMethod method = dirs.getCrackMethod();
+        if (method == null)
+            return alphabetLength;
+        switch (method) {
+            case BRUTE_FORCE:
+                return alphabetLength;
+            case DICTIONARY:
+                Language language = dirs.getLanguage();
+                Dictionary dict = (language == null) ? null : language.getDictionary();
+                return (dict == null) ? SEARCH_CRACK_WORK : Math.max(1, dict.size());
+            case IOC:
+            case IOC_FIND_LENGTH:
+            case CRIB_DRAG:
+                return Math.max(1, alphabetLength * cipherText.length());
+            default:
+                return SEARCH_CRACK_WORK;
+        }
+    }
+
+    /**
+     * Multiply two amounts of work, giving Long.MAX_VALUE rather than overflowing
+     * @param a the first amount, not negative
+     * @param b the second amount, not negative
+     * @return the product, or Long.MAX_VALUE if too large
+     */
+    static long multiplyWork(long a, long b) {
+        if (a != 0 && b > Long.MAX_VALUE / a)
+            return Long.MAX_VALUE;
+        return a * b;
+    }
+
     /**
      * Each method that can do hill climb should override this
      * @param text the text whose fitness is to be checked
@@ -361,15 +408,181 @@ abstract public class Cipher implements Parcelable {
         throw new UnsupportedOperationException("getFitness not defined for "+this.getClass().getCanonicalName());
     }
 
+    /**
+     * Fitness of text held as alphabet ordinals, by default converts to a string and uses the
+     * string fitness, ciphers that climb using ordinals should override this
+     * @param plainOrdinals the decoded text as ordinals within the alphabet
+     * @param length how many of the ordinals are used
+     * @param dirs any directives the fitness check requires, including ALPHABET
+     * @return a value representing the fitness of the text, bigger is better
+     */
+    public double getFitness(byte[] plainOrdinals, int length, Directives dirs) {
+        return getFitness(ordinalsToString(plainOrdinals, length, dirs.getAlphabet()), dirs);
+    }
+
+    /**
+     * Ciphers whose climb swaps letters of the key can measure each swap by re-scoring only
+     * the parts of the text it changes. Those ciphers override this.
+     * @param text the text to be decoded
+     * @param dirs the directives for the climb, including ALPHABET and LANGUAGE
+     * @return a new scorer for one climbing thread, or null if swaps need a full decode
+     */
+    public KeySwapScorer getKeySwapScorer(String text, Directives dirs) {
+        return null;
+    }
+
+    /**
+     * Substitution ciphers can decode alphabet ordinals directly, via one table per position in
+     * the key that maps each cipher ordinal to a plain ordinal. Those ciphers override this.
+     * @param dirs the directives holding the key
+     * @return the number of tables needed to decode with this key, e.g. 1 for a monoalphabetic
+     * cipher, the keyword length for Vigenere, or 0 if this cipher cannot decode ordinals
+     */
+    public int getDecodeTableCount(Directives dirs) {
+        return 0;
+    }
+
+    /**
+     * Fill in the tables used to decode alphabet ordinals with the key in the directives
+     * @param dirs the directives holding the key and ALPHABET
+     * @param tables caller-owned tables, at least getDecodeTableCount(dirs) of them, each the
+     *               length of the alphabet, table[cipherOrdinal] is set to the plain ordinal
+     */
+    public void fillDecodeTables(Directives dirs, int[][] tables) {
+        throw new UnsupportedOperationException("fillDecodeTables not defined for "+this.getClass().getCanonicalName());
+    }
+
+    /**
+     * Make sure the caller has decode tables big enough for a key, reusing them where possible
+     * @param tables the existing tables, or null if none yet
+     * @param count how many tables are needed
+     * @param alphabetLength the number of letters in the alphabet
+     * @return the existing tables if big enough, else a new larger set
+     */
+    public static int[][] ensureDecodeTables(int[][] tables, int count, int alphabetLength) {
+        if (tables != null && tables.length >= count && (count == 0 || tables[0].length >= alphabetLength))
+            return tables;
+        return new int[Math.max(count, 1)][alphabetLength];
+    }
+
+    /**
+     * Convert text to ordinals within the alphabet, once, before decoding many times. Letters not
+     * in the alphabet (ignoring case) are dropped, as they are left unchanged by the decode
+     * @param text the text to convert
+     * @param alphabet the letters allowed
+     * @return the ordinals of all the alphabet letters in the text, in order
+     */
+    public static byte[] toOrdinals(String text, String alphabet) {
+        byte[] ordinals = new byte[text.length()];
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            int ordinal = alphabet.indexOf(Character.toUpperCase(text.charAt(i)));
+            if (ordinal >= 0)
+                ordinals[length++] = (byte)ordinal;
+        }
+        return (length == ordinals.length) ? ordinals : Arrays.copyOf(ordinals, length);
+    }
+
+    /**
+     * Convert alphabet ordinals back to text, in upper case
+     * @param ordinals the ordinals to convert
+     * @param length how many of the ordinals to use
+     * @param alphabet the letters the ordinals refer to
+     * @return the upper case string
+     */
+    public static String ordinalsToString(byte[] ordinals, int length, String alphabet) {
+        char[] letters = new char[length];
+        for (int i = 0; i < length; i++) {
+            letters[i] = alphabet.charAt(ordinals[i]);
+        }
+        return String.valueOf(letters);
+    }
+
+    /**
+     * Decode ordinals with tables from fillDecodeTables, into a caller-owned buffer, no allocation
+     * @param cipherOrdinals the cipher text as alphabet ordinals
+     * @param length how many ordinals to decode
+     * @param tables the decode tables, used in turn for each letter
+     * @param tableCount how many of the tables the key uses
+     * @param plainOrdinals where the decoded ordinals are put, at least length long
+     */
+    public static void decodeOrdinals(byte[] cipherOrdinals, int length, int[][] tables, int tableCount,
+                                      byte[] plainOrdinals) {
+        if (tableCount == 1) {
+            int[] table = tables[0];
+            for (int i = 0; i < length; i++) {
+                plainOrdinals[i] = (byte)table[cipherOrdinals[i]];
+            }
+        } else {
+            for (int i = 0, t = 0; i < length; i++) {
+                plainOrdinals[i] = (byte)tables[t][cipherOrdinals[i]];
+                if (++t == tableCount)
+                    t = 0;
+            }
+        }
+    }
+
+    /**
+     * Convert the cribs to alphabet ordinals, to be looked for in decoded ordinals
+     * @param cribs the set of upper-case cribs, e.g. [ "THE", "AND", "HAVE" ]
+     * @param alphabet the letters allowed
+     * @return the ordinals of each crib, null for any crib with letters not in the alphabet,
+     * since that can never be found in ordinal text
+     */
+    public static byte[][] getCribOrdinals(Set<String> cribs, String alphabet) {
+        byte[][] cribOrdinals = new byte[cribs.size()][];
+        int c = 0;
+        for (String crib : cribs) {
+            byte[] ordinals = toOrdinals(crib, alphabet);
+            cribOrdinals[c++] = (ordinals.length == crib.length()) ? ordinals : null;
+        }
+        return cribOrdinals;
+    }
+
+    /**
+     * Indicate whether the ordinal text contains all the crib ordinals
+     * @param text the decoded text as alphabet ordinals
+     * @param length how many of the ordinals are used
+     * @param cribs the crib ordinals from getCribOrdinals
+     * @return true if ALL the cribs are in the text, false otherwise
+     */
+    public static boolean containsAllCribs(byte[] text, int length, byte[][] cribs) {
+        for (byte[] crib : cribs) {
+            if (crib == null || !containsCrib(text, length, crib))
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean containsCrib(byte[] text, int length, byte[] crib) {
+        int last = length - crib.length;
+        if (crib.length == 0)
+            return true;
+        byte first = crib[0];
+        for (int start = 0; start <= last; start++) {
+            if (text[start] == first) {
+                int i = 1;
+                while (i < crib.length && text[start + i] == crib[i])
+                    i++;
+                if (i == crib.length)
+                    return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Indicate whether the text (ignoring case) contains all the provided cribs
-     * @param text the plain text to be checked
+     * @param text the plain text to be checked, e.g. a String or a CharBuffer over a decode array
      * @param cribs the set of upper-case cribs, e.g. [ "THE", "AND", "HAVE" ]
      * @return true if ALL the cribs are in the text, false otherwise
      */
-    public static boolean containsAllCribs(String text, Set<String> cribs) {
+    public static boolean containsAllCribs(CharSequence text, Set<String> cribs) {
+        // cribs from getCribSet are found in one pass, with whitespace skipped during the pass
+        if (cribs instanceof CribSet)
+            return ((CribSet)cribs).isAllFoundIn(text);
         // may use 5-char blocks so we have to remove the whitespace (cr/tab/space)
-        String textUpper = text.toUpperCase().replaceAll("\\s", "");
+        String textUpper = text.toString().toUpperCase().replaceAll("\\s", "");
         return normalisedTextHasCribs(textUpper, cribs);
     }
 
@@ -389,7 +602,7 @@ abstract public class Cipher implements Parcelable {
      */
     public static Set<String> getCribSet(String cribs) {
         List<String> listOfCribs = Arrays.asList(cribs.toUpperCase().replaceAll(" ", "").split(","));
-        return new HashSet<>(listOfCribs);
+        return new CribSet(listOfCribs);
     }
 
     /**
@@ -524,7 +737,7 @@ abstract public class Cipher implements Parcelable {
         EditText keywordView = rootView.findViewById(R.id.extra_keyword);
         EditText replaceView = rootView.findViewById(R.id.extra_replace);
         KeywordExtend keywordExtend = getKeywordExtend(rootView);
-        String alphabet = Settings.instance().getString(rootView.getContext(),R.string.pref_alphabet_plain);
+        String alphabet = Settings.instance().getString(Settings.PREF_ALPHABET_PLAIN);
         String fullKeyword;
         if (replaceView == null) {
             fullKeyword = applyKeywordExtend(keywordExtend, keywordView.getText().toString(), alphabet);
@@ -548,22 +761,34 @@ abstract public class Cipher implements Parcelable {
      * @return the number of letters of dictionary words found in the text, larger is more fit
      */
     static double getWordCountFitness(String text, Directives dirs) {
-        int lettersFound = 0;
-        text = text.toUpperCase().replaceAll("\\s","");
+        // all dictionary words are found in one pass, each word counted for every time it
+        // appears (not overlapping itself), whitespace in the text is skipped
         Dictionary dict = dirs.getLanguage().getDictionary();
-        for (String word : dict) {
-            if (word.length() > 1) {
-                int pos = 0;
-                do {
-                    pos = text.indexOf(word, pos);
-                    if (pos >= 0) {
-                        pos += word.length();  // skip past this word to look further
-                        lettersFound += word.length(); // fitter because we found the word
-                    }
-                } while (pos >= 0);
-            }
+        return (double)dict.getWordAutomaton().countWordLetters(text);
+    }
+
+    /**
+     * Make an engine to share a dictionary crack across threads, trying the words of the
+     * language's dictionary in turn, set to stop at first and consider reverse as directed
+     * @param dirs the directives of the crack
+     * @param crackId the id of the crack, for progress and cancellation
+     * @param factory makes the object each thread uses to turn words into keys and try them
+     * @param <K> the type of key the cipher uses
+     * @return the engine, ready to run
+     */
+    <K> DictionaryCrackEngine<K> newDictionaryCrackEngine(Directives dirs, int crackId,
+                                                          DictionaryCrackEngine.KeyTrierFactory<K> factory) {
+        Dictionary dict = dirs.getLanguage().getDictionary();
+        DictionaryCrackEngine<K> engine = new DictionaryCrackEngine<>(getCipherName(), crackId, dict, factory);
+        engine.setStopAtFirst(dirs.stopAtFirst());
+        engine.setConsiderReverse(dirs.considerReverse());
+        String threads = Settings.instance().getString(Settings.PREF_LIMIT_CRACK_THREADS, Settings.DEFAULT_LIMIT_CRACK_THREADS);
+        try {
+            engine.setThreads(Integer.parseInt(threads.trim()));
+        } catch (NumberFormatException ex) {
+            engine.setThreads(0); // use them all
         }
-        return (double)lettersFound;
+        return engine;
     }
 
     /**
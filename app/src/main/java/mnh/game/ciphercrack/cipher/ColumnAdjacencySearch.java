@@ -0,0 +1,355 @@
+package mnh.game.ciphercrack.cipher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import mnh.game.ciphercrack.language.Language;
+import mnh.game.ciphercrack.services.CrackHandle;
+import mnh.game.ciphercrack.services.CrackResults;
+import mnh.game.ciphercrack.util.CrackPool;
+
+/**
+ * Order the columns of a columnar transposition with too many columns to try every order.
+ * Every pair of columns is scored once by the bigrams they make down the rows when placed side
+ * by side, and the order is the path through all the columns with the best total score. Paths
+ * are built greedily from each first column, taking the best scoring column to follow the last,
+ * then improved by moving runs of columns elsewhere in the path while that raises the score.
+ * Any rotation of the right order scores almost as well, so the path is finally started at the
+ * column whose letters best follow those of the last column one row up. The score of a change
+ * comes straight from the pair scores, so the text is only decoded once for each number of
+ * columns and way of reading it, to check for the cribs.
+ * Each number of columns and way of reading the text is a task in the shared crack pool
+ */
+class ColumnAdjacencySearch {
+
+    // the range of column counts looked at, where the text fits them
+    static final int MIN_COLUMNS = 2;
+    static final int MAX_COLUMNS = 30;
+
+    /**
+     * The best column order for a number of columns and way of reading the text
+     */
+    static class Ordered {
+        private final PermutationSearch.Found found;
+        private final double score;
+        private final boolean hasCribs;
+
+        Ordered(PermutationSearch.Found found, double score, boolean hasCribs) {
+            this.found = found;
+            this.score = score;
+            this.hasCribs = hasCribs;
+        }
+
+        PermutationSearch.Found getFound() { return found; }
+        double getScore() { return score; }
+        boolean hasCribs() { return hasCribs; }
+    }
+
+    // highest average pair score first, then fewest columns
+    private static final Comparator<Ordered> BEST_FIRST = new Comparator<Ordered>() {
+        @Override
+        public int compare(Ordered a, Ordered b) {
+            int compare = Double.compare(b.score, a.score);
+            if (compare != 0)
+                return compare;
+            return Integer.compare(a.found.getPermutation().length, b.found.getPermutation().length);
+        }
+    };
+
+    private final String cipherText;
+    private final String reverseCipherText;
+    private final Set<String> cribSet;
+    private final float[] bigramLogProbabilities;
+    private final String languageAlphabet;
+    private final float unknownScore;
+    private final CrackHandle handle;
+    private final boolean considerReverse;
+
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+    private final AtomicInteger tasksDone = new AtomicInteger(0);
+    private final List<Ordered> ordered = new ArrayList<>();
+    private int taskCount = 0;
+
+    /**
+     * Prepare to order the columns of a cipher text
+     * @param cipherText the text to be cracked
+     * @param cribSet the cribs that must all be in the plain text
+     * @param language the language of the plain text, whose bigrams score the pairs of columns
+     * @param crackId the id of the crack, for progress and cancellation
+     * @param considerReverse whether to also look at the reversed cipher text
+     */
+    ColumnAdjacencySearch(String cipherText, Set<String> cribSet, Language language, int crackId,
+                          boolean considerReverse) {
+        this.cipherText = cipherText;
+        this.reverseCipherText = new StringBuilder(cipherText).reverse().toString();
+        this.cribSet = cribSet;
+        this.handle = CrackResults.handleFor(crackId);
+        this.considerReverse = considerReverse;
+        this.bigramLogProbabilities = language.getNGramLogProbabilities(2);
+        this.languageAlphabet = language.getAlphabet();
+        this.unknownScore = (float)PermutationSearch.averageLogProbability(bigramLogProbabilities);
+    }
+
+    /**
+     * Whether a number of columns can be ordered for this text
+     * @param columns the number of columns
+     * @return true if the columns fill whole rows, with enough rows to score pairs of columns
+     */
+    boolean canOrder(int columns) {
+        return cipherText.length() % columns == 0
+                && cipherText.length() / columns >= PermutationSearch.MIN_LETTERS_TO_SCORE;
+    }
+
+    /**
+     * Find the best order for every number of columns that fits the text, forward and (if
+     * asked) reverse text, read across and down
+     * @return the best order for each, best scoring first, or null if the crack was cancelled
+     */
+    List<Ordered> search() {
+        ordered.clear();
+        tasksDone.set(0);
+        final List<OrderColumns> tasks = new ArrayList<>();
+        for (int columns = MIN_COLUMNS; columns <= MAX_COLUMNS; columns++) {
+            if (!canOrder(columns))
+                continue;
+            for (int layout = 0; layout < PermutationSearch.LAYOUT_REVERSE.length; layout++) {
+                if (!PermutationSearch.LAYOUT_REVERSE[layout] || considerReverse)
+                    tasks.add(new OrderColumns(columns, layout));
+            }
+        }
+        taskCount = tasks.size();
+        handle.startStage("Ordering columns", "column counts and layouts", taskCount);
+        CrackPool.get().invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+        if (cancelled.get())
+            return null;
+
+        List<Ordered> results = new ArrayList<>(ordered);
+        Collections.sort(results, BEST_FIRST);
+        return results;
+    }
+
+    /**
+     * @return the number of column counts and ways of reading the text ordered in the last search
+     */
+    int getTaskCount() { return taskCount; }
+
+    /**
+     * Build a path through all the columns with the best total pair score it can find
+     * @param pairScores the score of each pair of columns, indexed by left then right column
+     * @param wrapScores the score of each pair of columns with the right one a row lower, as
+     *                   when the text wraps from the last column of a row to the first of the next
+     * @return the column at each position of the best path, left to right
+     */
+    static int[] bestPath(float[][] pairScores, float[][] wrapScores) {
+        int columns = pairScores.length;
+        int[] best = null;
+        double bestScore = -Double.MAX_VALUE;
+        for (int first = 0; first < columns; first++) {
+            int[] path = greedyPath(pairScores, first);
+            improvePath(pairScores, path);
+            path = bestRotation(pairScores, wrapScores, path);
+            double score = scorePath(pairScores, wrapScores, path);
+            if (score > bestScore) {
+                bestScore = score;
+                best = path;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * The total pair score of a path through the columns, including the wrap to the next row
+     * @param pairScores the score of each pair of columns
+     * @param wrapScores the score of each pair of columns with the right one a row lower
+     * @param path the column at each position
+     * @return the sum of the scores of each column and the one to its right, and of the last
+     * column and the first
+     */
+    static double scorePath(float[][] pairScores, float[][] wrapScores, int[] path) {
+        double score = wrapScores[path[path.length - 1]][path[0]];
+        for (int pos = 1; pos < path.length; pos++)
+            score += pairScores[path[pos - 1]][path[pos]];
+        return score;
+    }
+
+    /**
+     * Score every pair of columns by the bigrams made by the left column and the right column
+     * one row lower, which the text wraps across from the last column to the first
+     * @param upperColumnText the upper case letters of each column
+     * @param languageAlphabet the letters of the language
+     * @param bigramLogProbabilities the log probability of each bigram in the language
+     * @param unknownScore the score of a pair with too few letters to judge
+     * @return the average bigram log probability, indexed by left column then right column
+     */
+    static float[][] scoreWraps(char[][] upperColumnText, String languageAlphabet,
+                                float[] bigramLogProbabilities, float unknownScore) {
+        // shift each column up a row, the last row has nothing to wrap to
+        int columns = upperColumnText.length, rows = upperColumnText[0].length;
+        char[][] shifted = new char[columns * 2][];
+        for (int column = 0; column < columns; column++) {
+            shifted[column] = new char[rows - 1];
+            shifted[columns + column] = new char[rows - 1];
+            System.arraycopy(upperColumnText[column], 0, shifted[column], 0, rows - 1);
+            System.arraycopy(upperColumnText[column], 1, shifted[columns + column], 0, rows - 1);
+        }
+        float[][] allScores = PermutationSearch.scorePairs(shifted, languageAlphabet, bigramLogProbabilities, unknownScore);
+        float[][] wrapScores = new float[columns][];
+        for (int column = 0; column < columns; column++)
+            wrapScores[column] = Arrays.copyOfRange(allScores[column], columns, columns * 2);
+        return wrapScores;
+    }
+
+    // the same cycle of columns, started at whichever column gives the best score with the wrap
+    private static int[] bestRotation(float[][] pairScores, float[][] wrapScores, int[] path) {
+        int columns = path.length;
+        int[] best = path;
+        double bestScore = scorePath(pairScores, wrapScores, path);
+        for (int start = 1; start < columns; start++) {
+            int[] rotated = new int[columns];
+            for (int pos = 0; pos < columns; pos++)
+                rotated[pos] = path[(start + pos) % columns];
+            double score = scorePath(pairScores, wrapScores, rotated);
+            if (score > bestScore) {
+                bestScore = score;
+                best = rotated;
+            }
+        }
+        return best;
+    }
+
+    // start at a column then keep adding the unused column that scores best after the last one
+    private static int[] greedyPath(float[][] pairScores, int first) {
+        int columns = pairScores.length;
+        int[] path = new int[columns];
+        boolean[] used = new boolean[columns];
+        path[0] = first;
+        used[first] = true;
+        for (int pos = 1; pos < columns; pos++) {
+            int last = path[pos - 1], next = -1;
+            for (int column = 0; column < columns; column++) {
+                if (!used[column] && (next < 0 || pairScores[last][column] > pairScores[last][next]))
+                    next = column;
+            }
+            path[pos] = next;
+            used[next] = true;
+        }
+        return path;
+    }
+
+    // move runs of columns to wherever raises the score most, until no move raises it, the path
+    // is changed in place
+    private static void improvePath(float[][] pairScores, int[] path) {
+        int columns = path.length;
+        int[] moved = new int[columns];
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int start = 0; start < columns && !improved; start++) {
+                for (int end = start; end < columns && !improved; end++) {
+                    if (start == 0 && end == columns - 1)
+                        continue;
+                    // the gain from taking the run out and joining up the columns either side
+                    int runFirst = path[start], runLast = path[end];
+                    int before = (start > 0) ? path[start - 1] : -1;
+                    int after = (end < columns - 1) ? path[end + 1] : -1;
+                    double removeGain = 0.0;
+                    if (before >= 0)
+                        removeGain -= pairScores[before][runFirst];
+                    if (after >= 0)
+                        removeGain -= pairScores[runLast][after];
+                    if (before >= 0 && after >= 0)
+                        removeGain += pairScores[before][after];
+
+                    // try the run in each gap of the rest of the path, except where it came from
+                    int runLength = end - start + 1, restLength = columns - runLength;
+                    int bestGap = -1;
+                    double bestGain = 1e-6;
+                    for (int gap = 0; gap <= restLength; gap++) {
+                        if (gap == start)
+                            continue;
+                        int left = (gap > 0) ? path[(gap - 1 < start) ? gap - 1 : gap - 1 + runLength] : -1;
+                        int right = (gap < restLength) ? path[(gap < start) ? gap : gap + runLength] : -1;
+                        double gain = removeGain;
+                        if (left >= 0)
+                            gain += pairScores[left][runFirst];
+                        if (right >= 0)
+                            gain += pairScores[runLast][right];
+                        if (left >= 0 && right >= 0)
+                            gain -= pairScores[left][right];
+                        if (gain > bestGain) {
+                            bestGain = gain;
+                            bestGap = gap;
+                        }
+                    }
+                    if (bestGap >= 0) {
+                        // rebuild the path with the run in its new gap
+                        int pos = 0;
+                        for (int rest = 0; rest <= restLength; rest++) {
+                            if (rest == bestGap) {
+                                for (int run = start; run <= end; run++)
+                                    moved[pos++] = path[run];
+                            }
+                            if (rest < restLength)
+                                moved[pos++] = path[(rest < start) ? rest : rest + runLength];
+                        }
+                        System.arraycopy(moved, 0, path, 0, columns);
+                        improved = true;
+                    }
+                }
+            }
+        }
+    }
+
+    // order the columns for one number of columns and way of reading the text
+    private class OrderColumns extends RecursiveAction {
+        private final int columns;
+        private final int layout;
+
+        OrderColumns(int columns, int layout) {
+            this.columns = columns;
+            this.layout = layout;
+        }
+
+        @Override
+        protected void compute() {
+            if (cancelled.get())
+                return;
+            if (handle.isCancelled()) {
+                cancelled.set(true);
+                return;
+            }
+            int rows = cipherText.length() / columns;
+            String text = PermutationSearch.LAYOUT_REVERSE[layout] ? reverseCipherText : cipherText;
+            char[][] columnText = PermutationSearch.cutIntoColumns(text, columns, rows,
+                    PermutationSearch.LAYOUT_ACROSS[layout]);
+            char[][] upperColumnText = PermutationSearch.toUpperCase(columnText);
+            float[][] pairScores = PermutationSearch.scorePairs(upperColumnText, languageAlphabet,
+                    bigramLogProbabilities, unknownScore);
+            float[][] wrapScores = scoreWraps(upperColumnText, languageAlphabet, bigramLogProbabilities, unknownScore);
+            int[] order = bestPath(pairScores, wrapScores);
+            String plainText = PermutationSearch.joinColumns(columnText, order);
+            double score = scorePath(pairScores, wrapScores, order) / columns;
+            Ordered result = new Ordered(new PermutationSearch.Found(order, layout, plainText), score,
+                    Cipher.containsAllCribs(plainText, cribSet));
+            synchronized (ordered) {
+                ordered.add(result);
+                tasksDone.incrementAndGet();
+            }
+            handle.addDone(1);
+            if (result.hasCribs())
+                handle.addMatches(1);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package mnh.game.ciphercrack.cipher;
+
+import java.util.Collection;
+import java.util.HashSet;
+
+import mnh.game.ciphercrack.language.WordAutomaton;
+
+/**
+ * A set of upper-case cribs, words we expect to find in the plain text of a successful crack.
+ * The cribs are compiled into a small automaton, on first use, so all the cribs can be looked
+ * for in a single pass over each decoded text
+ */
+public class CribSet extends HashSet<String> {
+
+    // built on first use, dropped if the cribs change
+    private WordAutomaton automaton = null;
+
+    CribSet(Collection<String> cribs) {
+        super(cribs);
+    }
+
+    @Override
+    public boolean add(String crib) {
+        automaton = null;
+        return super.add(crib);
+    }
+
+    @Override
+    public boolean remove(Object crib) {
+        automaton = null;
+        return super.remove(crib);
+    }
+
+    @Override
+    public void clear() {
+        automaton = null;
+        super.clear();
+    }
+
+    /**
+     * Determine whether all the cribs are in the text, case and whitespace in the text is ignored
+     * @param text the text to look for the cribs in
+     * @return true if every crib is in the text
+     */
+    public boolean isAllFoundIn(CharSequence text) {
+        WordAutomaton found = automaton;
+        if (found == null) {
+            found = new WordAutomaton(this);
+            automaton = found;
+        }
+        return found.containsAllWords(text);
+    }
+}
@@ -4,7 +4,6 @@ import android.content.Context;
 import android.os.Parcel;
 import android.text.InputFilter;
 import android.text.Spanned;
-import android.util.Log;
 import android.view.View;
 import android.widget.Button;
 import android.widget.EditText;
@@ -15,15 +14,20 @@ import android.widget.RadioGroup;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
 import androidx.appcompat.app.AppCompatActivity;
 import mnh.game.ciphercrack.R;
 import mnh.game.ciphercrack.language.Dictionary;
 import mnh.game.ciphercrack.language.Language;
+import mnh.game.ciphercrack.language.NGramFitness;
+import mnh.game.ciphercrack.services.CrackHandle;
 import mnh.game.ciphercrack.services.CrackResults;
+import mnh.game.ciphercrack.util.CrackLog;
 import mnh.game.ciphercrack.util.CrackMethod;
 import mnh.game.ciphercrack.util.CrackResult;
 import mnh.game.ciphercrack.util.CrackState;
+import mnh.game.ciphercrack.util.DictionaryCrackEngine;
 import mnh.game.ciphercrack.util.Directives;
 
 /**
@@ -68,6 +72,7 @@ public class Hill extends Cipher {
                     lCribs.setVisibility(View.GONE);
                     break;
                 case R.id.crack_button_brute_force:
+                case R.id.crack_button_row_climb:
                     lSize.setVisibility(View.VISIBLE);
                     lCribs.setVisibility(View.GONE);
                     break;
@@ -162,12 +167,12 @@ public class Hill extends Cipher {
     }
 
     /**
-     * Calculate the determinant of a 2x2 or 3x3 matrix,
-     * For 4x4, see https://en.wikipedia.org/wiki/Determinant#Definition
+     * Calculate the determinant of a square matrix,
+     * For 4x4 and above, see https://en.wikipedia.org/wiki/Laplace_expansion
      * @param m the matrix whose determinant is needed
-     * @return the determinant of the matrix, or 0 if matrix is not 2x2 or 3x3
+     * @return the determinant of the matrix, not taking any modulus
      */
-    private static int getDeterminant(int[] m) {
+    private static long getDeterminant(int[] m) {
         if (m.length == 4) {
             // det |A| = ad - bc
             return m[0]*m[3] - m[1]*m[2];
@@ -176,17 +181,47 @@ public class Hill extends Cipher {
                 // for 3x3 matrix, det |A| = a * |[efhi]| - b * |[dfgi]| + c * |[degh]|
                 int[] sub = new int[4];
                 sub[0] = m[4]; sub[1] = m[5]; sub[2] = m[7]; sub[3] = m[8];
-                int detA = getDeterminant(sub);
+                long detA = getDeterminant(sub);
                 sub[0] = m[3]; sub[1] = m[5]; sub[2] = m[6]; sub[3] = m[8];
-                int detB = getDeterminant(sub);
+                long detB = getDeterminant(sub);
                 sub[0] = m[3]; sub[1] = m[4]; sub[2] = m[6]; sub[3] = m[7];
-                int detC = getDeterminant(sub);
+                long detC = getDeterminant(sub);
                 return m[0] * detA - m[1] * detB + m[2] * detC;
             } else {
-                // TODO: calculate determinant of 5x5 matrix
-                return 0;
+                // expand along the top row, alternating the sign of each minor
+                int size = (int)(Math.sqrt(m.length)+0.001);
+                long det = 0;
+                for (int col = 0; col < size; col++) {
+                    if (m[col] != 0) {
+                        long minor = getDeterminant(getMinorMatrix(m, size, 0, col));
+                        det += (col % 2 == 0) ? m[col] * minor : -m[col] * minor;
+                    }
+                }
+                return det;
+            }
+        }
+    }
+
+    /**
+     * The matrix left when one row and one column are removed
+     * @param m the square matrix
+     * @param size the number of rows (and columns) in the matrix
+     * @param row the row to remove
+     * @param col the column to remove
+     * @return the smaller matrix
+     */
+    private static int[] getMinorMatrix(int[] m, int size, int row, int col) {
+        int[] minor = new int[(size-1)*(size-1)];
+        int pos = 0;
+        for (int r = 0; r < size; r++) {
+            if (r == row)
+                continue;
+            for (int c = 0; c < size; c++) {
+                if (c != col)
+                    minor[pos++] = m[r*size + c];
             }
         }
+        return minor;
     }
 
     /**
@@ -195,9 +230,8 @@ public class Hill extends Cipher {
      * @param modulus the number to modulus by
      * @return the determinant
      */
-    private static int getDeterminant(int[] m, int modulus) {
-        int d = getDeterminant(m);
-        d = d % modulus;
+    static int getDeterminant(int[] m, int modulus) {
+        int d = (int)(getDeterminant(m) % modulus);
         if (d < 0)
             d += modulus;
         return d;
@@ -210,13 +244,13 @@ public class Hill extends Cipher {
      * @param inverse the inverse number to multiply by
      * @return the calculated result
      */
-    private static int applyInverseWithModulus(int value, int modulus, int inverse) {
+    private static int applyInverseWithModulus(long value, int modulus, int inverse) {
         // take the modulus, but also make sure it is in the positive range 0 .. (modulus-1)
-        value %= modulus;
-        if (value < 0)
-            value += modulus;
+        int positive = (int)(value % modulus);
+        if (positive < 0)
+            positive += modulus;
         // apply the inverse but also ensure in range 0 .. (modulus - 1)
-        return (value * inverse) % modulus;
+        return (positive * inverse) % modulus;
     }
 
     /**
@@ -277,8 +311,16 @@ public class Hill extends Cipher {
             result[8] = applyInverseWithModulus(m[0]*m[4]-m[1]*m[3], modulus, inverse);
             return true;
         }
-
-        return false; // some other calc should have been done, e.g. 5x5 matrix
+        // for 4x4 and above, the inverse is the transposed matrix of cofactors (the adjugate)
+        // divided by the determinant
+        int size = (int)(Math.sqrt(m.length)+0.001);
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                long minor = getDeterminant(getMinorMatrix(m, size, row, col));
+                result[col*size + row] = applyInverseWithModulus(((row + col) % 2 == 0) ? minor : -minor, modulus, inverse);
+            }
+        }
+        return true;
     }
 
     private int[] matrix = null;
@@ -317,7 +359,9 @@ public class Hill extends Cipher {
                 " (11, 11 )   ( 4 )    (11x7+11x4)   ( 121 )          ( 17 )" +
                 "To decipher, use the same process with the inverse matrix. Not all matrices are suitable: " +
                 "to be usable in Hill, a matrix has to have a non-zero determinant which must not share factors with the alphabet length.\n\n"+
-                "To crack the cipher with brute force is challenging since even for an 2x2 matrix there are 400k+ matrices to check (though many are not suitable). A dictionary check can sometimes yield a key for the matrix. If enough plain text is known then linear algebra can be used to 'solve' the decryption. A hill climb may also yield some results.";
+                "To crack the cipher with brute force is challenging since even for an 2x2 matrix there are 400k+ matrices to check (though many are not suitable). " +
+                "Instead, each row of the decode matrix gives every Nth plain letter on its own, so all possible rows can be scored against the letter frequencies of the language and just the best rows combined into matrices to look for cribs. " +
+                "For 4x4 and 5x5 there are too many rows to score them all, so a Row Climb starts from many random rows and changes one value at a time while the letters get closer to the language, then puts the best rows in the order that makes the most likely bigrams. A dictionary check can sometimes yield a key for the matrix. If enough plain text is known then linear algebra can be used to 'solve' the decryption. A hill climb may also yield some results.";
     }
 
     /**
@@ -348,8 +392,6 @@ public class Hill extends Cipher {
             double sqrt = Math.sqrt(matrix.length);
             if ((int)sqrt != sqrt)
                 return "Matrix must be square";
-            if (matrix.length > 9)
-                return "Cannot invert 4x4 or higher matrices yet";
             for (int element : matrix) {
                 if (element < 0)
                     return "Matrix element "+element+" is negative";
@@ -368,7 +410,8 @@ public class Hill extends Cipher {
             String cribs = dirs.getCribs();
             if (cribs == null || cribs.length() == 0)
                 return "Some cribs must be provided";
-            if (crackMethod != CrackMethod.DICTIONARY && crackMethod != CrackMethod.BRUTE_FORCE && crackMethod != CrackMethod.CRIB_DRAG)
+            if (crackMethod != CrackMethod.DICTIONARY && crackMethod != CrackMethod.BRUTE_FORCE
+                    && crackMethod != CrackMethod.CRIB_DRAG && crackMethod != CrackMethod.ROW_CLIMB)
                 return "Invalid crack method";
             if (crackMethod == CrackMethod.DICTIONARY) {
                 // for the dictionary
@@ -403,6 +446,12 @@ public class Hill extends Cipher {
                 if (rowsAndCols != 22 && rowsAndCols != 33)
                     return "invalid Rows and Cols: "+rowsAndCols;
             }
+            if (crackMethod == CrackMethod.ROW_CLIMB) {
+                // any size up to 5x5, given as 22, 33, 44 or 55
+                int size = rowsAndCols / 10;
+                if (rowsAndCols % 11 != 0 || size < HillRowClimb.MIN_SIZE || size > HillRowClimb.MAX_SIZE)
+                    return "Invalid Rows and Cols: "+rowsAndCols;
+            }
         }
         this.matrix = matrix;
         return null;
@@ -444,7 +493,7 @@ public class Hill extends Cipher {
         dirs.setMatrix(matrix);
     }
 
-    // add 3 buttons, one for dictionary crack, one for brute-force, one for crib-drag
+    // add 4 buttons, one for dictionary crack, one for brute-force, one for row climb, one for crib-drag
     @Override
     public boolean addCrackControls(AppCompatActivity context, LinearLayout layout, String cipherText,
                                     Language language, String alphabet, String paddingChars) {
@@ -494,9 +543,11 @@ public class Hill extends Cipher {
         // locate the kind of crack we've been asked to do
         RadioButton dictButton = layout.findViewById(R.id.crack_button_dictionary);
         RadioButton bruteForceButton = layout.findViewById(R.id.crack_button_brute_force);
+        RadioButton rowClimbButton = layout.findViewById(R.id.crack_button_row_climb);
         return (dictButton.isChecked())
                 ? CrackMethod.DICTIONARY
-                : (bruteForceButton.isChecked()) ? CrackMethod.BRUTE_FORCE : CrackMethod.CRIB_DRAG;
+                : (bruteForceButton.isChecked()) ? CrackMethod.BRUTE_FORCE
+                : (rowClimbButton.isChecked()) ? CrackMethod.ROW_CLIMB : CrackMethod.CRIB_DRAG;
     }
 
     private String applyHill(String plainText, int[] matrix, String alphabet) {
@@ -571,7 +622,25 @@ public class Hill extends Cipher {
     }
 
     /**
-     * Crack a Hill cipher by either Brute Force or Dictionary check
+     * Brute force scores every possible row of the decode matrix, once for each row
+     * @param cipherText the text to be cracked
+     * @param dirs the directives of the crack, including ALPHABET and NUMBER_SIZE
+     * @return the guessed number of keys to try
+     */
+    @Override
+    public long estimateCrackWork(String cipherText, Directives dirs) {
+        if (dirs.getCrackMethod() != CrackMethod.BRUTE_FORCE)
+            return super.estimateCrackWork(cipherText, dirs);
+        long alphabetLength = super.estimateCrackWork(cipherText, dirs);
+        int size = dirs.getNumberSize() % 10;
+        long work = size;
+        for (int cell = 0; cell < size; cell++)
+            work = multiplyWork(work, alphabetLength);
+        return Math.max(1, work);
+    }
+
+    /**
+     * Crack a Hill cipher by Brute Force, Row Climb, Crib Drag or Dictionary check
      * @param cipherText the text to try to crack
      * @param dirs the directives with alphabet and cribs
      * @return the result of the crack attempt
@@ -585,12 +654,15 @@ public class Hill extends Cipher {
         if (method == CrackMethod.CRIB_DRAG) {
             return crackCribDrag(cipherText, dirs, crackId);
         }
+        if (method == CrackMethod.ROW_CLIMB) {
+            return crackRowClimb(cipherText, dirs, crackId, dirs.getNumberSize() / 10);
+        }
         // must be brute force
         if (dirs.getNumberSize() == 22) {
-            return crackBruteForce2x2(cipherText, dirs, crackId);
+            return crackBruteForceRows(cipherText, dirs, crackId, 2);
         } else {
             if (dirs.getNumberSize() == 33) {
-                return crackBruteForce3x3(cipherText, dirs, crackId);
+                return crackBruteForceRows(cipherText, dirs, crackId, 3);
             } else {
                 return new CrackResult(method, this, cipherText, "Unable to crack a Hill cipher of this size");
             }
@@ -626,7 +698,7 @@ public class Hill extends Cipher {
         int[] decryptMatrix = new int[rows*cols];
         int[] encryptMatrix = new int[rows*cols];
 
-        int attempts = 0, matchesFound = 0;
+        int attempts = 0;
         int modulus = alphabet.length();
         StringBuilder successResult = new StringBuilder()
                 .append("Success: Crib Drag scan: tried dragging the supplied crib (")
@@ -637,11 +709,12 @@ public class Hill extends Cipher {
         String foundPlainText = "";
         String foundKeyword = null;
         int[] foundMatrix = null;
+        CrackHandle handle = CrackResults.handleFor(crackId);
+        handle.startStage("Hill crib drag", "positions", cipherText.length());
         for (int textPos=0; textPos < cipherText.length()-sizeOfCribToUse-rows; textPos += rows) {
-            if (CrackResults.isCancelled(crackId))
+            if (handle.isCancelled())
                 return new CrackResult(crackMethod, this, cipherText, "Crack cancelled", CrackState.CANCELLED);
-            Log.i("CipherCrack", "Cracking Hill Drag: " + textPos + " positions tried, found="+matchesFound);
-            CrackResults.updateProgressDirectly(crackId, textPos+" positions: "+100*textPos/cipherText.length()+"% complete, found="+matchesFound);
+            handle.addDone(rows);
 
             String textToMatch = cipherText.substring(textPos, sizeOfCribToUse+textPos);
             int[] cipherTextMatrix = convertKeywordToMatrix(textToMatch, alphabet, false);
@@ -680,7 +753,7 @@ public class Hill extends Cipher {
                             } else {
                                 foundPlainText = plainText;
                                 foundMatrix = Arrays.copyOf(encryptMatrix, encryptMatrix.length);
-                                matchesFound++;
+                                handle.addMatches(1);
                             }
                         }
                     }
@@ -714,95 +787,84 @@ public class Hill extends Cipher {
      * @return the result of the crack attempt
      */
     @NotNull
-    private CrackResult crackDictionary(String cipherText, Directives dirs, int crackId) {
+    private CrackResult crackDictionary(String cipherText, final Directives dirs, int crackId) {
         String cribString = dirs.getCribs();
-        Set<String> cribSet = Cipher.getCribSet(cribString);
+        final Set<String> cribSet = Cipher.getCribSet(cribString);
         Dictionary dict = dirs.getLanguage().getDictionary();
-        String alphabet = dirs.getAlphabet();
-        StringBuilder reverser = new StringBuilder(cipherText.length());
+        final String alphabet = dirs.getAlphabet();
+        final String forwardCipherText = cipherText;
         CrackMethod crackMethod = dirs.getCrackMethod();
-        int wordsChecked = 0, wordsRead = 0, matchesFound = 0;
-        String foundWord = null, foundPlainText = "";
-        int[] foundMatrix = null;
-        StringBuilder successResult = new StringBuilder()
-                .append("Success: Dictionary scan: tried using acceptable words in the dictionary as keys to form matrices and look for cribs [")
-                .append(cribString)
-                .append("] in the decoded text.\n");
-        for (String word : dict) {
-            if (wordsRead++ % 500 == 499) {
-                if (CrackResults.isCancelled(crackId))
-                    return new CrackResult(crackMethod, this, cipherText, "Crack cancelled", CrackState.CANCELLED);
-                Log.i("CipherCrack", "Cracking Hill Dict: " + wordsRead + " words tried, found="+matchesFound);
-                CrackResults.updateProgressDirectly(crackId, wordsRead+" words of "+dict.size()+": "+100*wordsRead/dict.size()+"% complete, found="+matchesFound);
-            }
-            // skip words that don't make a square matrix
-            if (word.length() == 4 || word.length() == 9 || word.length() == 16) {
-                String wordUpper = word.toUpperCase();
-                int[] possibleMatrix = convertKeywordToMatrix(wordUpper, alphabet, true);
-                if (possibleMatrix != null) {
-                    wordsChecked++;
-                    dirs.setMatrix(possibleMatrix);
-                    String plainText = decode(cipherText, dirs);
-                    if (containsAllCribs(plainText, cribSet)) {
-                        successResult.append("Found cribs with word ")
-                                .append(wordsChecked)
-                                .append("=")
-                                .append(wordUpper)
-                                .append(", matrix: [")
-                                .append(matrixToString(possibleMatrix))
-                                .append("], giving: ")
-                                .append(plainText.substring(0, Math.min(Cipher.CRACK_PLAIN_LENGTH, plainText.length())))
-                                .append("\n");
-                        if (dirs.stopAtFirst()) {
-                            matrix = possibleMatrix;
-                            dirs.setKeyword(wordUpper);
-                            return new CrackResult(crackMethod, this, dirs, cipherText, plainText, successResult.toString());
-                        } else {
-                            matchesFound++;
-                            foundWord = wordUpper;
-                            foundMatrix = Arrays.copyOf(possibleMatrix, possibleMatrix.length);
-                            foundPlainText = plainText;
-                        }
+
+        // the words are shared across threads, each thread decodes with its own directives
+        DictionaryCrackEngine<int[]> engine = newDictionaryCrackEngine(dirs, crackId,
+                new DictionaryCrackEngine.KeyTrierFactory<int[]>() {
+            @Override
+            public DictionaryCrackEngine.KeyTrier<int[]> newKeyTrier() {
+                return new DictionaryCrackEngine.KeyTrier<int[]>() {
+                    private final Directives crackDirs = new Directives(dirs);
+                    private final StringBuilder reverser = new StringBuilder(forwardCipherText.length());
+                    private int[] plainMatrix = null;
+                    private String plainText = null;
+
+                    // skip words that don't make a square matrix
+                    @Override
+                    public int getKeyCount(String word) {
+                        return (word.length() == 4 || word.length() == 9 || word.length() == 16) ? 1 : 0;
                     }
-                    if (dirs.considerReverse()) {
-                        reverser.setLength(0);
-                        String reversePlainText = reverser.append(plainText).reverse().toString();
-                        if (containsAllCribs(reversePlainText, cribSet)) {
-                            successResult.append("Found cribs with word ")
-                                    .append(wordsChecked)
-                                    .append("=")
-                                    .append(wordUpper)
-                                    .append(", matrix: [")
-                                    .append(matrixToString(possibleMatrix))
-                                    .append("], in REVERSE decoded text giving: ")
-                                    .append(reversePlainText.substring(0, Math.min(Cipher.CRACK_PLAIN_LENGTH, reversePlainText.length())))
-                                    .append("\n");
-                            if (dirs.stopAtFirst()) {
-                                matrix = possibleMatrix;
-                                dirs.setKeyword(wordUpper);
-                                return new CrackResult(crackMethod, this, dirs, cipherText, reversePlainText, successResult.toString());
-                            } else {
-                                matchesFound++;
-                                foundWord = wordUpper;
-                                foundMatrix = Arrays.copyOf(possibleMatrix, possibleMatrix.length);
-                                foundPlainText = reversePlainText;
-                            }
+
+                    @Override
+                    public int[] getKey(String word, int variant) {
+                        return convertKeywordToMatrix(word, alphabet, true);
+                    }
+
+                    // the reverse text is the decoded text reversed, so decode once per matrix
+                    @Override
+                    public String tryKey(int[] possibleMatrix, boolean reverse) {
+                        if (possibleMatrix != plainMatrix) {
+                            crackDirs.setMatrix(possibleMatrix);
+                            plainText = decode(forwardCipherText, crackDirs);
+                            plainMatrix = possibleMatrix;
+                        }
+                        String text = plainText;
+                        if (reverse) {
+                            reverser.setLength(0);
+                            text = reverser.append(plainText).reverse().toString();
                         }
+                        return containsAllCribs(text, cribSet) ? text : null;
                     }
-                }
+                };
             }
-        }
-        // see if we found anything
-        if (foundPlainText.length() > 0) {
-            matrix = foundMatrix;
-            dirs.setKeyword(foundWord);
-            dirs.setMatrix(foundMatrix);
-            return new CrackResult(crackMethod, this, dirs, cipherText, foundPlainText, successResult.toString());
+        });
+        List<DictionaryCrackEngine.Match<int[]>> matches = engine.run();
+        if (matches == null)
+            return new CrackResult(crackMethod, this, cipherText, "Crack cancelled", CrackState.CANCELLED);
+
+        // see if we found anything, the last match is used
+        if (matches.size() > 0) {
+            StringBuilder successResult = new StringBuilder()
+                    .append("Success: Dictionary scan: tried using acceptable words in the dictionary as keys to form matrices and look for cribs [")
+                    .append(cribString)
+                    .append("] in the decoded text.\n");
+            for (DictionaryCrackEngine.Match<int[]> match : matches) {
+                String plainText = match.getPlainText();
+                successResult.append("Found cribs with word ")
+                        .append(match.getWord())
+                        .append(", matrix: [")
+                        .append(matrixToString(match.getKey()))
+                        .append(match.isReverse() ? "], in REVERSE decoded text giving: " : "], giving: ")
+                        .append(plainText.substring(0, Math.min(Cipher.CRACK_PLAIN_LENGTH, plainText.length())))
+                        .append("\n");
+            }
+            DictionaryCrackEngine.Match<int[]> found = matches.get(matches.size() - 1);
+            matrix = found.getKey();
+            dirs.setKeyword(found.getWord());
+            dirs.setMatrix(found.getKey());
+            return new CrackResult(crackMethod, this, dirs, cipherText, found.getPlainText(), successResult.toString());
         } else {
             matrix = null;
             dirs.setMatrix(null);
             String explainFailed = "Fail: Dictionary scan: tried using "
-                    + wordsChecked
+                    + engine.getWordsUsed()
                     + " acceptable words in the dictionary of "
                     + dict.size()
                     + " words as keys to form matrices and look for cribs ["
@@ -813,210 +875,173 @@ public class Hill extends Cipher {
     }
 
     /**
-     * Crack a Hill cipher by using all possible permutations of 2x2 matrices
+     * Crack a Hill cipher with a 2x2 or 3x3 matrix by scoring every possible row of the decode
+     * matrix on its own against the letter frequencies, then combining the best rows into full
+     * matrices and looking for the cribs, see HillRowSearch. For 3x3 this is 3 x 26^3 rather than
+     * 26^9 decodes, for 2x2 the 676 rows replace decoding each of the 157k invertible matrices.
      * @param cipherText the text to try to crack
      * @param dirs the directives with alphabet and cribs
+     * @param size the number of rows (and columns) of the matrix
      * @return the result of the crack attempt
      */
     @NotNull
-    private CrackResult crackBruteForce2x2(String cipherText, Directives dirs, int crackId) {
+    private CrackResult crackBruteForceRows(String cipherText, Directives dirs, int crackId, int size) {
         String cribString = dirs.getCribs();
         Set<String> cribSet = Cipher.getCribSet(cribString);
         String alphabet = dirs.getAlphabet();
         CrackMethod crackMethod = dirs.getCrackMethod();
-        String reverseCipherText = new StringBuilder(cipherText).reverse().toString();
         int modulus = alphabet.length();
-        int maxTries = modulus*modulus*modulus*modulus;
-        int triesCompleted = 0;
-        int validMatrices = 0;
-        int matchesFound = 0;
+        HillMatrixTable table = (size == 2) ? HillMatrixTable.forModulus(modulus) : null;
+        StringBuilder found = new StringBuilder();
+        int topRows = 0;
         int[] matrixFound = null;
-        StringBuilder successResult = new StringBuilder()
-                .append("Success: Brute Force: tried all possible matrices looking for cribs [")
-                .append(cribString)
-                .append("] in the decoded text\n");
         String plainTextFound = "";
-        int[] m = new int[4];
-        for (int a = 0; a < alphabet.length(); a++) {
-            m[0] = a;
-            for (int b = 0; b < alphabet.length(); b++) {
-                m[1] = b;
-                for (int c = 0; c < alphabet.length(); c++) {
-                    m[2] = c;
-                    for (int d = 0; d < alphabet.length(); d++) {
-                        m[3] = d;
-                        if (triesCompleted++ % 500 == 499) {
-                            if (CrackResults.isCancelled(crackId))
-                                return new CrackResult(crackMethod, this, cipherText, "Crack cancelled", CrackState.CANCELLED);
-                            Log.i("CipherCrack", "Cracking Hill Brute Force: " + triesCompleted + " matrices tried, " + validMatrices + " were valid, found="+matchesFound);
-                            CrackResults.updateProgressDirectly(crackId, "Scanned " + triesCompleted + " matrices of " + maxTries + " possible, of these " + validMatrices + " were invertible: " + 100 * triesCompleted / maxTries + "% complete, found="+matchesFound);
-                        }
-                        // matrix is only usable if invertible
-                        // and the determinant has to be co-prime with alpha length
-                        // else 2 symbols could encode to the same char and so not be decode-able
-                        int determinant = getDeterminant(m, modulus);
-                        if (determinant != 0 && areCoPrimes(determinant, modulus)) {
-                            validMatrices++;
-                            dirs.setMatrix(m);
-                            String plainText = decode(cipherText, dirs);
-                            if (containsAllCribs(plainText, cribSet)) {
-                                successResult.append("Found cribs after ")
-                                        .append(triesCompleted)
-                                        .append(" matrices scanned (")
-                                        .append(validMatrices)
-                                        .append(" invertible) with matrix: [")
-                                        .append(matrixToString(m))
-                                        .append("], keyword ")
-                                        .append(matrixToKeyword(m, alphabet))
-                                        .append(".\n");
-                                if (dirs.stopAtFirst()) {
-                                    return new CrackResult(crackMethod, this, dirs, cipherText, plainText, successResult.toString());
-                                } else {
-                                    matchesFound++;
-                                    matrixFound = Arrays.copyOf(m, m.length);
-                                    plainTextFound = plainText;
-                                }
-                            }
-                            if (dirs.considerReverse()) {
-                                plainText = decode(reverseCipherText, dirs);
-                                if (containsAllCribs(plainText, cribSet)) {
-                                    successResult.append("Found cribs in REVERSE text after ")
-                                            .append(triesCompleted)
-                                            .append(" matrices scanned (")
-                                            .append(validMatrices)
-                                            .append(" invertible) with matrix: [")
-                                            .append(matrixToString(m))
-                                            .append("], keyword ")
-                                            .append(matrixToKeyword(m, alphabet))
-                                            .append(".\n");
-                                    if (dirs.stopAtFirst()) {
-                                        return new CrackResult(crackMethod, this, dirs, cipherText, plainText, successResult.toString());
-                                    } else {
-                                        matchesFound++;
-                                        matrixFound = Arrays.copyOf(m, m.length);
-                                        plainTextFound = plainText;
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
+        int matricesTried = 0, validMatrices = 0;
+        for (int direction = 0; direction < 2; direction++) {
+            boolean reverse = (direction == 1);
+            if (reverse && !dirs.considerReverse())
+                break;
+            String text = reverse ? new StringBuilder(cipherText).reverse().toString() : cipherText;
+            HillRowSearch search = new HillRowSearch(text, size, alphabet, dirs.getLanguage(),
+                    cribSet, dirs.stopAtFirst(), crackId);
+            topRows = search.getTopRows();
+            List<int[]> decodeMatrices = search.search();
+            if (search.isCancelled())
+                return new CrackResult(crackMethod, this, cipherText, "Crack cancelled", CrackState.CANCELLED);
+            matricesTried += search.getMatricesTried();
+            validMatrices += search.getValidMatrices();
+            CrackLog.i("CipherCrack", "Cracking Hill Brute Force: " + search.getRowsScored() + " rows scored, "
+                    + search.getMatricesTried() + " matrices tried, " + search.getValidMatrices()
+                    + " were valid, found=" + decodeMatrices.size());
+            for (int[] decodeMatrix : decodeMatrices) {
+                // the key is the encoding matrix, i.e. the inverse of the one found
+                int[] m = new int[decodeMatrix.length];
+                if (table != null)
+                    table.invert(decodeMatrix, m);
+                else
+                    invertMatrix(decodeMatrix, modulus, m, true);
+                dirs.setMatrix(m);
+                plainTextFound = decode(text, dirs);
+                matrixFound = m;
+                found.append(reverse ? "Found cribs in REVERSE text with matrix: [" : "Found cribs with matrix: [")
+                        .append(matrixToString(m))
+                        .append("], keyword ")
+                        .append(matrixToKeyword(m, alphabet))
+                        .append(".\n");
             }
+            if (matrixFound != null && dirs.stopAtFirst())
+                break;
         }
-        if (plainTextFound.length() > 0) {
+        if (matrixFound != null) {
             matrix = matrixFound;
             dirs.setMatrix(matrix);
-            return new CrackResult(crackMethod, this, dirs, cipherText, plainTextFound, successResult.toString());
+            String successResult = "Success: Brute Force: scored all possible matrix rows against the letter frequencies, combined the best "
+                    + topRows
+                    + " looking for cribs ["
+                    + cribString
+                    + "] in the decoded text\n"
+                    + found;
+            return new CrackResult(crackMethod, this, dirs, cipherText, plainTextFound, successResult);
         }
-        matrix = null;
         dirs.setMatrix(null);
-        String explainFail = "Fail: Brute Force: tried using "
-                + triesCompleted
+        matrix = null;
+        String explain = "Fail: Brute Force: scored all possible matrix rows, combined the best "
+                + topRows
+                + " into "
+                + matricesTried
                 + " matrices of which "
                 + validMatrices
                 + " were invertible, looked for cribs ["
                 + cribString
                 + "] in the decoded text but did not find them.\n";
-        return new CrackResult(crackMethod, this, cipherText, explainFail);
+        return new CrackResult(crackMethod, this, cipherText, explain);
     }
 
     /**
-     * Crack a Hill cipher by using all possible permutations of 3x3 matrices
-     * TAKES A VERY LONG TIME TO RUN
+     * Crack a Hill cipher of any size up to 5x5 by climbing each row of the decode matrix from
+     * many random starts, then ordering the best rows into matrices by the bigrams they make
+     * and looking for the cribs, see HillRowClimb
      * @param cipherText the text to try to crack
-     * @param dirs the directives with alphabet and cribs
+     * @param dirs the directives with alphabet, language and cribs
+     * @param size the number of rows (and columns) of the matrix
      * @return the result of the crack attempt
      */
     @NotNull
-    private CrackResult crackBruteForce3x3(String cipherText, Directives dirs, int crackId) {
+    private CrackResult crackRowClimb(String cipherText, Directives dirs, int crackId, int size) {
         String cribString = dirs.getCribs();
         Set<String> cribSet = Cipher.getCribSet(cribString);
         String alphabet = dirs.getAlphabet();
         CrackMethod crackMethod = dirs.getCrackMethod();
-        String reverseCipherText = new StringBuilder(cipherText).reverse().toString();
         int modulus = alphabet.length();
+        long climbs = 0;
+        int rowsKept = 0, matricesTried = 0, validMatrices = 0;
+        String fittestText = null;
+        double fittestScore = -Double.MAX_VALUE;
+        NGramFitness fitness = dirs.getLanguage().getQuadgramFitness();
+        for (int direction = 0; direction < 2; direction++) {
+            boolean reverse = (direction == 1);
+            if (reverse && !dirs.considerReverse())
+                break;
+            String text = reverse ? new StringBuilder(cipherText).reverse().toString() : cipherText;
+            HillRowClimb search = new HillRowClimb(text, size, alphabet, dirs.getLanguage(), cribSet, crackId);
+            rowsKept = search.getRowsKept();
+            int[] decodeMatrix = search.search();
+            if (search.isCancelled())
+                return new CrackResult(crackMethod, this, cipherText, "Crack cancelled", CrackState.CANCELLED);
+            climbs += search.getClimbs();
+            matricesTried += search.getMatricesTried();
+            validMatrices += search.getValidMatrices();
+            CrackLog.i("CipherCrack", "Cracking Hill Row Climb: " + search.getClimbs() + " climbs, "
+                    + search.getMatricesTried() + " matrices tried, " + search.getValidMatrices()
+                    + " were valid, found=" + (decodeMatrix != null));
 
-        // this keeping track is just using 26^6 rather than 26^9
-        // and tracks how many of the 3 inner loops we've done
-        int maxTries6 = modulus*modulus*modulus*modulus*modulus*modulus;
-        int triesCompleted = 0;
-        int alphaLength = alphabet.length();
-        int[] x = new int[9];
-        for (int a = 0; a < alphaLength; a++) {
-            x[0] = a;
-            for (int b = 0; b < alphaLength; b++) {
-                x[1] = b;
-                for (int c = 0; c < alphaLength; c++) {
-                    x[2] = c;
-                    for (int d = 0; d < alphaLength; d++) {
-                        x[3] = d;
-                        for (int e = 0; e < alphaLength; e++) {
-                            x[4] = e;
-                            for (int f = 0; f < alphaLength; f++) {
-                                x[5] = f;
-                                if (triesCompleted++ % 400 == 399) {
-                                    if (CrackResults.isCancelled(crackId))
-                                        return new CrackResult(crackMethod, this, cipherText, "Crack cancelled", CrackState.CANCELLED);
-                                    Log.i("CipherCrack", "Cracking Hill Brute Force: " + triesCompleted + " matrices tried");
-                                    CrackResults.updateProgressDirectly(crackId, "Scanned " + triesCompleted + " matrices of " + maxTries6 + " possible: " + 100 * triesCompleted / maxTries6 + "% complete");
-                                }
-                                for (int g = 0; g < alphaLength; g++) {
-                                    x[6] = g;
-                                    for (int h = 0; h < alphaLength; h++) {
-                                        x[7] = h;
-                                        for (int i = 0; i < alphaLength; i++) {
-                                            x[8] = i;
-                                            // matrix is only usable if invertible
-                                            // and the determinant has to be co-prime with alpha length
-                                            // else 2 symbols could encode to the same char and so not be decode-able
-                                            int determinant = getDeterminant(x, modulus);
-                                            if (determinant != 0 && areCoPrimes(determinant, modulus)) {
-                                                dirs.setMatrix(x);
-                                                String plainText = decode(cipherText, dirs);
-                                                if (containsAllCribs(plainText, cribSet)) {
-                                                    matrix = x;
-                                                    String explain = "Success: Brute Force: tried all possible matrices looking for cribs ["
-                                                            + cribString
-                                                            + "] in the decoded text and found them after "
-                                                            + triesCompleted
-                                                            + " scanned with matrix: ["
-                                                            + matrixToString(x)
-                                                            + "], keyword "
-                                                            + matrixToKeyword(x, alphabet)
-                                                            + ".\n";
-                                                    return new CrackResult(crackMethod, this, dirs, cipherText, plainText, explain);
-                                                }
-                                                plainText = decode(reverseCipherText, dirs);
-                                                if (containsAllCribs(plainText, cribSet)) {
-                                                    matrix = x;
-                                                    String explain = "Success: Brute Force REVERSE: tried all possible matrices looking for cribs ["
-                                                            + cribString
-                                                            + "] in the decoded REVERSE text and found them after "
-                                                            + triesCompleted
-                                                            + " scanned with matrix: ["
-                                                            + matrixToString(x)
-                                                            + "], keyword "
-                                                            + matrixToKeyword(x, alphabet)
-                                                            + ".\n";
-                                                    return new CrackResult(crackMethod, this, dirs, cipherText, plainText, explain);
-                                                }
-                                            }
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                    }
+            // the key is the encoding matrix, i.e. the inverse of the one found
+            int[] m = new int[size * size];
+            if (decodeMatrix != null && invertMatrix(decodeMatrix, modulus, m, true)) {
+                matrix = m;
+                dirs.setMatrix(m);
+                String plainText = decode(text, dirs);
+                String successResult = "Success: Row Climb: climbed "
+                        + climbs
+                        + " times from random matrix rows, ordered the best "
+                        + rowsKept
+                        + " into matrices by their bigrams, looking for cribs ["
+                        + cribString
+                        + "] in the decoded text\n"
+                        + (reverse ? "Found cribs in REVERSE text with matrix: [" : "Found cribs with matrix: [")
+                        + matrixToString(m)
+                        + "], keyword "
+                        + matrixToKeyword(m, alphabet)
+                        + ".\n";
+                return new CrackResult(crackMethod, this, dirs, cipherText, plainText, successResult);
+            }
+            int[] fittestMatrix = search.getFittestMatrix();
+            if (fittestMatrix != null && invertMatrix(fittestMatrix, modulus, m, true)) {
+                dirs.setMatrix(m);
+                String plainText = decode(text, dirs);
+                byte[] ordinals = Cipher.toOrdinals(plainText, alphabet);
+                double score = fitness.score(ordinals, ordinals.length);
+                if (score > fittestScore) {
+                    fittestScore = score;
+                    fittestText = plainText;
                 }
             }
         }
         dirs.setMatrix(null);
         matrix = null;
-        String explain = "Fail: Brute Force: tried using "
-                + triesCompleted
-                + " matrices, looked for cribs ["
+        String explain = "Fail: Row Climb: climbed "
+                + climbs
+                + " times from random matrix rows, ordered the best "
+                + rowsKept
+                + " into "
+                + matricesTried
+                + " matrices of which "
+                + validMatrices
+                + " were invertible, looked for cribs ["
                 + cribString
                 + "] in the decoded text but did not find them.\n";
-        return new CrackResult(crackMethod, this, cipherText, explain);
+        if (fittestText == null)
+            return new CrackResult(crackMethod, this, cipherText, explain);
+        return new CrackResult(crackMethod, this, cipherText, explain, fittestText);
     }
-}
\ No newline at end of file
+}
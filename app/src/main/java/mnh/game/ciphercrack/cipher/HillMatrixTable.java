@@ -0,0 +1,118 @@
+package mnh.game.ciphercrack.cipher;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Every 2x2 matrix for an alphabet length that can be used for a Hill cipher, i.e. whose
+ * determinant is co-prime with the length, together with its inverse.
+ * A matrix [a,b,c,d] is numbered a*m^3 + b*m^2 + c*m + d for modulus m, and the table holds the
+ * number of the inverse of each matrix, so checking and inverting a matrix is one lookup rather
+ * than a determinant, a greatest common divisor and a search for the determinant's inverse.
+ * The table for each modulus is built once, on first use, and shared
+ */
+class HillMatrixTable {
+
+    private static final Map<Integer, HillMatrixTable> TABLES = new HashMap<>();
+
+    private final int modulus;
+    private final int[] inverseOf;      // number of the inverse of each matrix, -1 if none
+    private final int usable;           // how many matrices have an inverse
+
+    /**
+     * Get the table for an alphabet length, building it the first time
+     * @param modulus the length of the alphabet
+     * @return the table of usable 2x2 matrices
+     */
+    static HillMatrixTable forModulus(int modulus) {
+        synchronized (TABLES) {
+            HillMatrixTable table = TABLES.get(modulus);
+            if (table == null) {
+                table = new HillMatrixTable(modulus);
+                TABLES.put(modulus, table);
+            }
+            return table;
+        }
+    }
+
+    private HillMatrixTable(int modulus) {
+        this.modulus = modulus;
+
+        // the multiplicative inverse of each value, or 0 if it has none
+        int[] valueInverse = new int[modulus];
+        for (int value = 1; value < modulus; value++) {
+            for (int candidate = 1; candidate < modulus; candidate++) {
+                if ((value * candidate) % modulus == 1) {
+                    valueInverse[value] = candidate;
+                    break;
+                }
+            }
+        }
+
+        // inverse of [a,b,c,d] is [d,-b,-c,a] / (ad - bc)
+        int count = modulus * modulus * modulus * modulus;
+        inverseOf = new int[count];
+        int found = 0;
+        for (int number = 0; number < count; number++) {
+            int a = number / (modulus * modulus * modulus), b = (number / (modulus * modulus)) % modulus;
+            int c = (number / modulus) % modulus, d = number % modulus;
+            int determinant = ((a * d - b * c) % modulus + modulus) % modulus;
+            int inverse = valueInverse[determinant];
+            if (inverse == 0) {
+                inverseOf[number] = -1;
+            } else {
+                inverseOf[number] = numberOf((d * inverse) % modulus,
+                        ((modulus - b) * inverse) % modulus,
+                        ((modulus - c) * inverse) % modulus,
+                        (a * inverse) % modulus);
+                found++;
+            }
+        }
+        usable = found;
+    }
+
+    // the number of a matrix in the table
+    private int numberOf(int a, int b, int c, int d) {
+        return ((a * modulus + b) * modulus + c) * modulus + d;
+    }
+
+    private int numberOf(int[] matrix) {
+        return numberOf(matrix[0], matrix[1], matrix[2], matrix[3]);
+    }
+
+    /**
+     * Whether a matrix can be used for a Hill cipher
+     * @param matrix a 2x2 matrix with elements less than the modulus
+     * @return true if the determinant is co-prime with the modulus
+     */
+    boolean isInvertible(int[] matrix) {
+        return inverseOf[numberOf(matrix)] >= 0;
+    }
+
+    /**
+     * Invert a matrix
+     * @param matrix a 2x2 matrix with elements less than the modulus
+     * @param result where the inverse is put
+     * @return true if the matrix has an inverse, false if not and the result is unchanged
+     */
+    boolean invert(int[] matrix, int[] result) {
+        int inverse = inverseOf[numberOf(matrix)];
+        if (inverse < 0)
+            return false;
+        toMatrix(inverse, result);
+        return true;
+    }
+
+    // turn the number of a matrix back into its elements
+    private void toMatrix(int number, int[] result) {
+        result[0] = number / (modulus * modulus * modulus);
+        result[1] = (number / (modulus * modulus)) % modulus;
+        result[2] = (number / modulus) % modulus;
+        result[3] = number % modulus;
+    }
+
+    /**
+     * @return how many matrices can be used for a Hill cipher
+     */
+    int size() { return usable; }
+}
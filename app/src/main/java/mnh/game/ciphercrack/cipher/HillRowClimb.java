@@ -0,0 +1,447 @@
+package mnh.game.ciphercrack.cipher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import mnh.game.ciphercrack.language.Language;
+import mnh.game.ciphercrack.language.NGramFitness;
+import mnh.game.ciphercrack.services.CrackHandle;
+import mnh.game.ciphercrack.services.CrackResults;
+import mnh.game.ciphercrack.util.CrackPool;
+
+/**
+ * Search for the decode matrix of a Hill cipher too big to scan every row of, up to 5x5.
+ * As for HillRowSearch, each row of the decode matrix gives every size'th plain letter on its
+ * own, but rather than scoring all modulus^size rows, many climbs are run at once in the shared
+ * crack pool, each starting from a random row and in turn trying every value in each position
+ * of the row, keeping the value whose letters score best by the letter log probabilities of the
+ * language, until no single change improves the row. The best distinct rows from all the climbs
+ * are kept, then ordered into matrices by the bigrams the rows make with each other, within a
+ * block and across to the next block, and the best orderings that can be inverted are decoded
+ * and checked for the cribs. The climbs run in rounds, stopping at the first round whose rows
+ * give the cribs, or when the budget of climbing is used up
+ */
+class HillRowClimb {
+
+    static final int MIN_SIZE = 2;
+    static final int MAX_SIZE = 5;
+
+    // each row position keeps this many of the best distinct rows found
+    static final int ROWS_PER_POSITION = 4;
+
+    // how many of the best orderings of the kept rows are decoded in each round
+    static final int ORDERINGS_CHECKED = 64;
+
+    // the climbs are done in this many rounds, the kept rows combined after each one
+    static final int ROUNDS = 8;
+
+    // each value tried in a position scores modulus rows, so modulus^(size-1) tries could reach
+    // every row once, allow this many times that before giving up
+    static final int TRY_BUDGET = 6;
+
+    private final int size;
+    private final int modulus;
+    private final int blocks;          // number of blocks of size letters in the cipher text
+    private final int[] cipher;        // cipher text ordinals, padded to a whole number of blocks
+    private final float[] letterLogs;  // log probability of each letter
+    private final float[] bigramLogs;  // log probability of each pair of letters
+    private final NGramFitness fitness;
+    private final byte[][] cribs;
+    private final CrackHandle handle;
+    private final int rowsKept;
+    private final long triesAllowed;
+
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+    private final AtomicLong climbs = new AtomicLong(0);
+    private final List<ScoredRow> bestRows = new ArrayList<>();
+    private int matricesTried = 0;
+    private int validMatrices = 0;
+    private int[] fittestMatrix = null;
+    private double fittestScore = -Double.MAX_VALUE;
+
+    // a row of the decode matrix and the sum of the log probabilities of its letters
+    private static class ScoredRow {
+        final int[] row;
+        final double score;
+        ScoredRow(int[] row, double score) {
+            this.row = row;
+            this.score = score;
+        }
+    }
+
+    // an ordering of kept rows and the sum of the log probabilities of the bigrams it makes
+    private static class Ordering {
+        final int[] rows;
+        final double score;
+        Ordering(int[] rows, double score) {
+            this.rows = rows;
+            this.score = score;
+        }
+    }
+
+    /**
+     * Prepare to search for the decode matrix for a given cipher text
+     * @param cipherText the text to be cracked, non-alphabet characters are ignored
+     * @param size the number of rows (and columns) in the matrix, 2 to 5
+     * @param alphabet the alphabet the text was encoded with
+     * @param language the language of the plain text, gives the letter and bigram probabilities
+     * @param cribSet the cribs, in upper case, that must all appear in the decoded text
+     * @param crackId the identifier of the crack, for progress and cancellation
+     */
+    HillRowClimb(String cipherText, int size, String alphabet, Language language,
+                 Set<String> cribSet, int crackId) {
+        this.size = size;
+        this.modulus = alphabet.length();
+        this.handle = CrackResults.handleFor(crackId);
+        this.cipher = HillRowSearch.toBlockOrdinals(cipherText, size, alphabet);
+        this.blocks = cipher.length / size;
+        this.letterLogs = language.getNGramLogProbabilities(1);
+        this.bigramLogs = language.getNGramLogProbabilities(2);
+        this.fitness = language.getQuadgramFitness();
+        this.cribs = Cipher.getCribOrdinals(cribSet, alphabet);
+        this.rowsKept = ROWS_PER_POSITION * size;
+        long reach = 1;
+        for (int i = 1; i < size; i++)
+            reach *= modulus;
+        this.triesAllowed = TRY_BUDGET * reach;
+    }
+
+    /**
+     * Climb in rounds, combining the best rows found so far after each round into decode
+     * matrices, until one decodes to text with all the cribs
+     * @return the decode matrix whose decoded text has all the cribs, or null if none found
+     */
+    int[] search() {
+        if (blocks == 0)
+            return null;
+        int tasks = Math.max(1, CrackPool.get().getParallelism() * 2);
+        long triesPerTask = Math.max(1, triesAllowed / ROUNDS / tasks);
+        handle.startStage("Climbing " + size + "x" + size + " Hill matrix rows", "tries", triesPerTask * tasks * ROUNDS);
+        for (int round = 0; round < ROUNDS; round++) {
+            final List<ForkJoinTask<Void>> climbers = new ArrayList<>(tasks);
+            for (int t = 0; t < tasks; t++) {
+                climbers.add(new Climber(triesPerTask));
+            }
+            CrackPool.get().invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(climbers);
+                }
+            });
+            if (cancelled.get())
+                return null;
+            int[] found = combine();
+            if (found != null)
+                return found;
+        }
+        return null;
+    }
+
+    boolean isCancelled() { return cancelled.get(); }
+    long getClimbs() { return climbs.get(); }
+    int getRowsKept() { return rowsKept; }
+    int getMatricesTried() { return matricesTried; }
+    int getValidMatrices() { return validMatrices; }
+
+    /**
+     * @return the invertible decode matrix, of those tried, whose decode had the best quadgram
+     * fitness, or null if none could be inverted
+     */
+    int[] getFittestMatrix() { return fittestMatrix; }
+
+    // check for cancellation
+    private boolean shouldStop() {
+        if (cancelled.get())
+            return true;
+        if (handle.isCancelled()) {
+            cancelled.set(true);
+            return true;
+        }
+        return false;
+    }
+
+    // add a row to the best rows, if it is one of the best and not already there
+    private void addIfBest(List<ScoredRow> best, ScoredRow candidate) {
+        if (best.size() == rowsKept && candidate.score <= best.get(rowsKept - 1).score)
+            return;
+        for (ScoredRow row : best) {
+            if (Arrays.equals(row.row, candidate.row))
+                return;
+        }
+        int pos = best.size();
+        while (pos > 0 && best.get(pos - 1).score < candidate.score)
+            pos--;
+        best.add(pos, candidate);
+        if (best.size() > rowsKept)
+            best.remove(rowsKept);
+    }
+
+    // a row can only be part of an invertible matrix if its values share no factor with modulus
+    private boolean isUsable(int[] row) {
+        int common = modulus;
+        for (int value : row)
+            common = greatestCommonDivisor(common, value);
+        return common == 1;
+    }
+
+    private static int greatestCommonDivisor(int a, int b) {
+        while (b != 0) {
+            int r = a % b;
+            a = b;
+            b = r;
+        }
+        return a;
+    }
+
+    /**
+     * Climb from random rows until the tries for this task are used up, then add the rows
+     * reached to the best rows
+     */
+    private class Climber extends RecursiveAction {
+        private final long triesToMake;
+
+        Climber(long triesToMake) {
+            this.triesToMake = triesToMake;
+        }
+
+        @Override
+        protected void compute() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            List<ScoredRow> best = new ArrayList<>(rowsKept + 1);
+            int[] row = new int[size];
+            int[] sums = new int[blocks];       // the letter each block decodes to with the row
+            int[] others = new int[blocks];     // the same, leaving out one position of the row
+            long made = 0;
+            while (made < triesToMake) {
+                if (shouldStop())
+                    return;
+                for (int col = 0; col < size; col++)
+                    row[col] = random.nextInt(modulus);
+                for (int b = 0; b < blocks; b++) {
+                    int sum = 0;
+                    for (int col = 0; col < size; col++)
+                        sum += row[col] * cipher[b * size + col];
+                    sums[b] = sum % modulus;
+                }
+                double score = scoreLetters(sums);
+
+                // change one position at a time to its best value until nothing improves
+                int unchanged = 0;
+                for (int col = 0; unchanged < size; col = (col + 1) % size) {
+                    for (int b = 0; b < blocks; b++) {
+                        others[b] = (sums[b] + (modulus - row[col]) * cipher[b * size + col]) % modulus;
+                    }
+                    int bestValue = row[col];
+                    double bestScore = score;
+                    for (int value = 0; value < modulus; value++) {
+                        if (value == row[col])
+                            continue;
+                        double total = 0.0;
+                        for (int b = 0; b < blocks; b++) {
+                            total += letterLogs[(others[b] + value * cipher[b * size + col]) % modulus];
+                        }
+                        if (total > bestScore) {
+                            bestScore = total;
+                            bestValue = value;
+                        }
+                    }
+                    made++;
+                    if (bestValue == row[col]) {
+                        unchanged++;
+                    } else {
+                        row[col] = bestValue;
+                        score = bestScore;
+                        for (int b = 0; b < blocks; b++) {
+                            sums[b] = (others[b] + bestValue * cipher[b * size + col]) % modulus;
+                        }
+                        unchanged = 1;
+                    }
+                }
+                climbs.incrementAndGet();
+                if (isUsable(row) && (best.size() < rowsKept || score > best.get(rowsKept - 1).score))
+                    addIfBest(best, new ScoredRow(row.clone(), score));
+            }
+            handle.addDone(made);
+            synchronized (bestRows) {
+                for (ScoredRow scored : best)
+                    addIfBest(bestRows, scored);
+            }
+        }
+    }
+
+    // the sum of the log probabilities of the letters
+    private double scoreLetters(int[] letters) {
+        double total = 0.0;
+        for (int letter : letters)
+            total += letterLogs[letter];
+        return total;
+    }
+
+    /**
+     * Order the best rows into matrices by the bigrams each row makes with the next, try the
+     * best orderings for being invertible and decode those that are, looking for the cribs
+     * @return the first decode matrix found to give all the cribs, with any rows that were only
+     * half right corrected, or null if none
+     */
+    private int[] combine() {
+        List<ScoredRow> rows;
+        synchronized (bestRows) {
+            rows = new ArrayList<>(bestRows);
+        }
+        int count = rows.size();
+        if (count < size)
+            return null;
+
+        // the letters each row decodes, and the bigrams each pair of rows make, one after the
+        // other within a block and from the end of one block to the start of the next
+        int[][] letters = new int[count][blocks];
+        for (int r = 0; r < count; r++) {
+            int[] row = rows.get(r).row;
+            for (int b = 0; b < blocks; b++) {
+                int sum = 0;
+                for (int col = 0; col < size; col++)
+                    sum += row[col] * cipher[b * size + col];
+                letters[r][b] = sum % modulus;
+            }
+        }
+        double[][] within = new double[count][count];
+        double[][] across = new double[count][count];
+        for (int a = 0; a < count; a++) {
+            for (int c = 0; c < count; c++) {
+                if (a == c)
+                    continue;
+                double total = 0.0, wrap = 0.0;
+                for (int b = 0; b < blocks; b++) {
+                    total += bigramLogs[letters[a][b] * modulus + letters[c][b]];
+                    if (b + 1 < blocks)
+                        wrap += bigramLogs[letters[a][b] * modulus + letters[c][b + 1]];
+                }
+                within[a][c] = total;
+                across[a][c] = wrap;
+            }
+        }
+        List<Ordering> orderings = new ArrayList<>(ORDERINGS_CHECKED + 1);
+        addOrderings(orderings, new int[size], new boolean[count], 0, 0.0, within, across);
+
+        int[] matrix = new int[size * size];
+        int[] inverse = new int[size * size];
+        byte[] plain = new byte[cipher.length];
+        for (Ordering ordering : orderings) {
+            matricesTried++;
+            for (int r = 0; r < size; r++)
+                System.arraycopy(rows.get(ordering.rows[r]).row, 0, matrix, r * size, size);
+            if (!Hill.invertMatrix(matrix, modulus, inverse, true))
+                continue;
+            validMatrices++;
+            for (int r = 0; r < size; r++) {
+                int[] rowLetters = letters[ordering.rows[r]];
+                for (int b = 0; b < blocks; b++)
+                    plain[b * size + r] = (byte)rowLetters[b];
+            }
+            double score = fitness.score(plain, plain.length);
+            if (score > fittestScore) {
+                fittestScore = score;
+                fittestMatrix = matrix.clone();
+            }
+            if (Cipher.containsAllCribs(plain, plain.length, cribs))
+                return refineHalves(matrix.clone(), plain, score);
+        }
+        return null;
+    }
+
+    /**
+     * With an even modulus a row that differs from the true one by half the modulus in some
+     * positions still decodes about half its letters right, enough to score well and even to
+     * give the cribs, so once the cribs are found try adding half the modulus to every subset
+     * of the positions of each row, keeping any change that improves the quadgram fitness of
+     * the whole decode and leaves the matrix invertible, until no change helps
+     * @param matrix the decode matrix that gave the cribs, changed in place
+     * @param plain the text the matrix decodes to, used as work space
+     * @param score the quadgram fitness of that text
+     * @return the matrix, with any improving changes made
+     */
+    private int[] refineHalves(int[] matrix, byte[] plain, double score) {
+        if (modulus % 2 != 0)
+            return matrix;
+        int half = modulus / 2;
+        int[] inverse = new int[size * size];
+        int[] original = new int[size];
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int r = 0; r < size; r++) {
+                System.arraycopy(matrix, r * size, original, 0, size);
+                int bestMask = 0;
+                for (int mask = 1; mask < (1 << size); mask++) {
+                    for (int col = 0; col < size; col++) {
+                        int add = ((mask >> col) & 1) * half;
+                        matrix[r * size + col] = (original[col] + add) % modulus;
+                    }
+                    if (!Hill.invertMatrix(matrix, modulus, inverse, true))
+                        continue;
+                    decodeRow(matrix, r, plain);
+                    double changed = fitness.score(plain, plain.length);
+                    if (changed > score && Cipher.containsAllCribs(plain, plain.length, cribs)) {
+                        score = changed;
+                        bestMask = mask;
+                    }
+                }
+                for (int col = 0; col < size; col++) {
+                    int add = ((bestMask >> col) & 1) * half;
+                    matrix[r * size + col] = (original[col] + add) % modulus;
+                }
+                decodeRow(matrix, r, plain);
+                if (bestMask != 0)
+                    improved = true;
+            }
+        }
+        if (score > fittestScore) {
+            fittestScore = score;
+            fittestMatrix = matrix.clone();
+        }
+        return matrix;
+    }
+
+    // decode the letters given by one row of the matrix into every size'th place of the text
+    private void decodeRow(int[] matrix, int r, byte[] plain) {
+        for (int b = 0; b < blocks; b++) {
+            int sum = 0;
+            for (int col = 0; col < size; col++)
+                sum += matrix[r * size + col] * cipher[b * size + col];
+            plain[b * size + r] = (byte)(sum % modulus);
+        }
+    }
+
+    // extend an ordering by every unused row, keeping the best complete orderings
+    private void addOrderings(List<Ordering> orderings, int[] chosen, boolean[] used, int placed,
+                              double score, double[][] within, double[][] across) {
+        if (placed == size) {
+            double total = score + across[chosen[size - 1]][chosen[0]];
+            if (orderings.size() == ORDERINGS_CHECKED && total <= orderings.get(ORDERINGS_CHECKED - 1).score)
+                return;
+            int pos = orderings.size();
+            while (pos > 0 && orderings.get(pos - 1).score < total)
+                pos--;
+            orderings.add(pos, new Ordering(chosen.clone(), total));
+            if (orderings.size() > ORDERINGS_CHECKED)
+                orderings.remove(ORDERINGS_CHECKED);
+            return;
+        }
+        for (int r = 0; r < used.length; r++) {
+            if (used[r])
+                continue;
+            used[r] = true;
+            chosen[placed] = r;
+            double next = (placed == 0) ? 0.0 : score + within[chosen[placed - 1]][r];
+            addOrderings(orderings, chosen, used, placed + 1, next, within, across);
+            used[r] = false;
+        }
+    }
+}
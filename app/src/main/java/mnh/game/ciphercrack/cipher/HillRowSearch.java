@@ -0,0 +1,436 @@
+package mnh.game.ciphercrack.cipher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import mnh.game.ciphercrack.language.Language;
+import mnh.game.ciphercrack.services.CrackHandle;
+import mnh.game.ciphercrack.services.CrackResults;
+import mnh.game.ciphercrack.util.CrackPool;
+
+/**
+ * Search for the decode matrix of a Hill cipher one row at a time.
+ * Row r of the decode matrix multiplied by a block of cipher text gives the plain letter at
+ * position r of the block, so each possible row can be scored on its own by how well the letters
+ * it produces match the letter frequencies of the language: modulus^size rows per position rather
+ * than modulus^(size*size) whole matrices. The best rows are then combined into matrices which
+ * are checked for being invertible and for containing the cribs.
+ * A 2x2 matrix has only modulus^2 rows, so the shorter the text the more of the best rows are
+ * kept, up to all of them when the text is too short for letter frequencies to pick out the
+ * right rows, and matrices are checked against the shared HillMatrixTable.
+ * Both the row scan and the combining are split by first value across the shared crack pool
+ */
+class HillRowSearch {
+
+    // how many of the best scoring rows are kept to be combined into matrices
+    static final int TOP_ROWS = 16;
+
+    // for 2x2, keep as many rows as gives about this many decoded letters when combining
+    static final int COMBINE_LETTERS_2X2 = 1 << 25;
+
+    private final int size;
+    private final int modulus;
+    private final int blocks;          // number of blocks of size letters in the cipher text
+    private final int[] cipher;        // cipher text ordinals, padded to a whole number of blocks
+    private final float[] expected;    // expected proportion of each letter in plain text
+    private final int[][] cribs;       // ordinals of each crib, null entry if crib not in alphabet
+    private final CrackHandle handle;
+    private final boolean stopAtFirst;
+    private final int topRows;         // how many of the best scoring rows are combined
+    private final HillMatrixTable table;   // usable 2x2 matrices, null for larger sizes
+
+    private final AtomicLong firstMatchOrder = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+    private final AtomicInteger rowsScored = new AtomicInteger(0);
+    private final AtomicInteger matricesTried = new AtomicInteger(0);
+    private final AtomicInteger validMatrices = new AtomicInteger(0);
+    private final List<Found> found = new ArrayList<>();
+
+    // a row of the decode matrix and how far its letters are from the expected frequencies
+    private static class ScoredRow {
+        final int[] row;
+        final double chiSquared;
+        ScoredRow(int[] row, double chiSquared) {
+            this.row = row;
+            this.chiSquared = chiSquared;
+        }
+    }
+
+    // a decode matrix found to contain all the cribs, and the order it would be found serially
+    private static class Found {
+        final int[] matrix;
+        final long order;
+        Found(int[] matrix, long order) {
+            this.matrix = matrix;
+            this.order = order;
+        }
+    }
+
+    private static final Comparator<ScoredRow> BEST_FIRST = new Comparator<ScoredRow>() {
+        @Override
+        public int compare(ScoredRow a, ScoredRow b) {
+            return Double.compare(a.chiSquared, b.chiSquared);
+        }
+    };
+
+    /**
+     * Prepare to search for the decode matrix for a given cipher text
+     * @param cipherText the text to be cracked, non-alphabet characters are ignored
+     * @param size the number of rows (and columns) in the matrix, e.g. 3 for 3x3
+     * @param alphabet the alphabet the text was encoded with
+     * @param language the language of the plain text, gives expected letter frequencies
+     * @param cribSet the cribs, in upper case, that must all appear in the decoded text
+     * @param stopAtFirst whether to stop once the matrix a serial scan would find first is found
+     * @param crackId the identifier of the crack, for progress and cancellation
+     */
+    HillRowSearch(String cipherText, int size, String alphabet, Language language,
+                  Set<String> cribSet, boolean stopAtFirst, int crackId) {
+        this.size = size;
+        this.modulus = alphabet.length();
+        this.handle = CrackResults.handleFor(crackId);
+        this.stopAtFirst = stopAtFirst;
+
+        this.cipher = toBlockOrdinals(cipherText, size, alphabet);
+        this.blocks = cipher.length / size;
+        int letters = cipher.length;
+        if (size == 2) {
+            int rowsForBudget = (int)Math.sqrt(COMBINE_LETTERS_2X2 / Math.max(letters, 1));
+            this.topRows = Math.min(modulus * modulus, Math.max(TOP_ROWS, rowsForBudget));
+            this.table = HillMatrixTable.forModulus(modulus);
+        } else {
+            this.topRows = TOP_ROWS;
+            this.table = null;
+        }
+
+        Map<String, Float> frequencies = language.getLetterFrequencies();
+        float total = 0.0f;
+        this.expected = new float[modulus];
+        for (int i = 0; i < modulus; i++) {
+            Float freq = frequencies.get(String.valueOf(alphabet.charAt(i)));
+            expected[i] = (freq == null) ? 0.0f : freq;
+            total += expected[i];
+        }
+        for (int i = 0; i < modulus; i++) {
+            // avoid dividing by zero for letters the language never uses
+            expected[i] = Math.max(expected[i] / total, 0.0001f);
+        }
+
+        this.cribs = new int[cribSet.size()][];
+        int c = 0;
+        for (String crib : cribSet) {
+            int[] cribOrdinals = new int[crib.length()];
+            for (int i = 0; i < crib.length(); i++) {
+                cribOrdinals[i] = alphabet.indexOf(crib.charAt(i));
+                if (cribOrdinals[i] < 0) {
+                    cribOrdinals = null;
+                    break;
+                }
+            }
+            cribs[c++] = cribOrdinals;
+        }
+    }
+
+    /**
+     * Convert cipher text to ordinals in whole blocks: as for applyHill, use only alphabet
+     * letters, then pad out the last block with X
+     * @param cipherText the text to convert, non-alphabet characters are ignored
+     * @param size the number of letters in a block
+     * @param alphabet the alphabet the text was encoded with
+     * @return the ordinals, a multiple of size long
+     */
+    static int[] toBlockOrdinals(String cipherText, int size, String alphabet) {
+        String upper = cipherText.toUpperCase();
+        int letters = 0;
+        int[] ordinals = new int[upper.length() + size];
+        for (int i = 0; i < upper.length(); i++) {
+            int pos = alphabet.indexOf(upper.charAt(i));
+            if (pos >= 0)
+                ordinals[letters++] = pos;
+        }
+        int padding = alphabet.indexOf('X');
+        while (letters % size != 0)
+            ordinals[letters++] = Math.max(padding, 0);
+        return Arrays.copyOf(ordinals, letters);
+    }
+
+    /**
+     * Score every possible row, combine the best into matrices and look for the cribs
+     * @return the decode matrices whose decoded text has all the cribs, in the order a
+     * serial scan would find them, or just one if stopping at first
+     */
+    List<int[]> search() {
+        List<int[]> results = new ArrayList<>();
+        if (blocks == 0)
+            return results;
+        handle.startStage("Scoring " + size + "x" + size + " Hill matrix rows", "rows", getRowsPossible());
+        List<ScoredRow> bestRows = CrackPool.get().invoke(new RowScan(0, modulus));
+        if (cancelled.get() || bestRows.size() < size)
+            return results;
+
+        // the letters produced by each of the best rows, block by block
+        int[][] rowLetters = new int[bestRows.size()][blocks];
+        for (int r = 0; r < bestRows.size(); r++) {
+            int[] row = bestRows.get(r).row;
+            for (int b = 0; b < blocks; b++) {
+                rowLetters[r][b] = applyRow(row, b);
+            }
+        }
+        List<ForkJoinTask<Void>> tasks = new ArrayList<>(bestRows.size());
+        for (int first = 0; first < bestRows.size(); first++) {
+            tasks.add(new Combine(first, bestRows, rowLetters));
+        }
+        CrackPool.get().invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+        synchronized (found) {
+            Collections.sort(found, new Comparator<Found>() {
+                @Override
+                public int compare(Found a, Found b) {
+                    return Long.compare(a.order, b.order);
+                }
+            });
+            for (Found f : found) {
+                results.add(f.matrix);
+                if (stopAtFirst)
+                    break;
+            }
+        }
+        return results;
+    }
+
+    boolean isCancelled() { return cancelled.get(); }
+    int getTopRows() { return topRows; }
+    int getRowsScored() { return rowsScored.get(); }
+    int getMatricesTried() { return matricesTried.get(); }
+    int getValidMatrices() { return validMatrices.get(); }
+
+    // the number of rows the full scan will score
+    int getRowsPossible() {
+        int rows = 1;
+        for (int i = 0; i < size; i++)
+            rows *= modulus;
+        return rows;
+    }
+
+    // the decoded letter at one position of a block, given the row of the decode matrix
+    private int applyRow(int[] row, int block) {
+        int sum = 0;
+        int start = block * size;
+        for (int col = 0; col < size; col++) {
+            sum += row[col] * cipher[start + col];
+        }
+        return sum % modulus;
+    }
+
+    // check for cancellation
+    private boolean shouldStop() {
+        if (cancelled.get())
+            return true;
+        if (handle.isCancelled()) {
+            cancelled.set(true);
+            return true;
+        }
+        return false;
+    }
+
+    // keep the order of the earliest match, so later combinations can be skipped when
+    // stopping at first
+    private void noteFirstMatch(long order) {
+        long current = firstMatchOrder.get();
+        while (order < current && !firstMatchOrder.compareAndSet(current, order)) {
+            current = firstMatchOrder.get();
+        }
+    }
+
+    // add a row to a list of the best, kept in order and limited to topRows entries
+    private void addIfBest(List<ScoredRow> best, ScoredRow candidate) {
+        if (best.size() == topRows && candidate.chiSquared >= best.get(topRows - 1).chiSquared)
+            return;
+        int pos = best.size();
+        while (pos > 0 && best.get(pos - 1).chiSquared > candidate.chiSquared)
+            pos--;
+        best.add(pos, candidate);
+        if (best.size() > topRows)
+            best.remove(topRows);
+    }
+
+    /**
+     * Score all the rows whose first value is in a range, splitting the range until it is
+     * just one first value, i.e. modulus^(size-1) rows
+     */
+    private class RowScan extends RecursiveTask<List<ScoredRow>> {
+        private final int from, to;
+
+        RowScan(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<ScoredRow> compute() {
+            if (to - from > 1) {
+                int middle = (from + to) / 2;
+                RowScan left = new RowScan(from, middle);
+                left.fork();
+                List<ScoredRow> best = new RowScan(middle, to).compute();
+                for (ScoredRow row : left.join()) {
+                    addIfBest(best, row);
+                }
+                return best;
+            }
+            List<ScoredRow> best = new ArrayList<>(topRows + 1);
+            if (shouldStop())
+                return best;
+            int[] row = new int[size];
+            int[] counts = new int[modulus];
+            row[0] = from;
+            int rowsToScan = getRowsPossible() / modulus;
+            for (int r = 0; r < rowsToScan; r++) {
+                // next row, counting through the values after the first
+                int value = r;
+                for (int col = size - 1; col > 0; col--) {
+                    row[col] = value % modulus;
+                    value /= modulus;
+                }
+                for (int i = 0; i < modulus; i++)
+                    counts[i] = 0;
+                for (int b = 0; b < blocks; b++) {
+                    counts[applyRow(row, b)]++;
+                }
+                double chiSquared = 0.0;
+                for (int i = 0; i < modulus; i++) {
+                    double expect = expected[i] * blocks;
+                    double diff = counts[i] - expect;
+                    chiSquared += diff * diff / expect;
+                }
+                if (best.size() < topRows || chiSquared < best.get(topRows - 1).chiSquared) {
+                    addIfBest(best, new ScoredRow(row.clone(), chiSquared));
+                }
+            }
+            rowsScored.addAndGet(rowsToScan);
+            handle.addDone(rowsToScan);
+            return best;
+        }
+    }
+
+    /**
+     * Combine one of the best rows as the first row of the decode matrix with all orderings of
+     * the other best rows, decode using the letters already worked out for each row and check
+     * for the cribs
+     */
+    private class Combine extends RecursiveAction {
+        private final int first;
+        private final List<ScoredRow> bestRows;
+        private final int[][] rowLetters;
+
+        Combine(int first, List<ScoredRow> bestRows, int[][] rowLetters) {
+            this.first = first;
+            this.bestRows = bestRows;
+            this.rowLetters = rowLetters;
+        }
+
+        @Override
+        protected void compute() {
+            int count = bestRows.size();
+            int[] chosen = new int[size];
+            int[] matrix = new int[size * size];
+            int[] plain = new int[cipher.length];
+            int combinations = 1;
+            for (int i = 1; i < size; i++)
+                combinations *= count;
+            chosen[0] = first;
+            for (int c = 0; c < combinations; c++) {
+                if (c % 100 == 0 && shouldStop())
+                    return;
+                long order = (long)first * combinations + c;
+                if (stopAtFirst && order > firstMatchOrder.get())
+                    return; // an earlier combination has already matched
+
+                // pick the other rows, skipping any combination that repeats a row
+                int value = c;
+                boolean repeated = false;
+                for (int r = size - 1; r > 0; r--) {
+                    chosen[r] = value % count;
+                    value /= count;
+                }
+                for (int r = 1; r < size && !repeated; r++) {
+                    for (int s = 0; s < r; s++) {
+                        if (chosen[r] == chosen[s]) {
+                            repeated = true;
+                            break;
+                        }
+                    }
+                }
+                if (repeated)
+                    continue;
+                matricesTried.incrementAndGet();
+
+                // matrix is only usable if invertible
+                // and the determinant has to be co-prime with alpha length
+                for (int r = 0; r < size; r++) {
+                    System.arraycopy(bestRows.get(chosen[r]).row, 0, matrix, r * size, size);
+                }
+                if (table != null) {
+                    if (!table.isInvertible(matrix))
+                        continue;
+                } else {
+                    int determinant = Hill.getDeterminant(matrix, modulus);
+                    if (determinant == 0 || !Cipher.areCoPrimes(determinant, modulus))
+                        continue;
+                }
+                validMatrices.incrementAndGet();
+
+                for (int r = 0; r < size; r++) {
+                    int[] letters = rowLetters[chosen[r]];
+                    for (int b = 0; b < blocks; b++) {
+                        plain[b * size + r] = letters[b];
+                    }
+                }
+                if (containsAllCribs(plain)) {
+                    synchronized (found) {
+                        found.add(new Found(matrix.clone(), order));
+                    }
+                    if (stopAtFirst) {
+                        noteFirstMatch(order);
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    // whether the decoded ordinals contain every one of the crib ordinals
+    private boolean containsAllCribs(int[] plain) {
+        for (int[] crib : cribs) {
+            if (crib == null || !contains(plain, crib))
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean contains(int[] text, int[] crib) {
+        int last = text.length - crib.length;
+        for (int start = 0; start <= last; start++) {
+            int i = 0;
+            while (i < crib.length && text[start + i] == crib[i])
+                i++;
+            if (i == crib.length)
+                return true;
+        }
+        return false;
+    }
+}
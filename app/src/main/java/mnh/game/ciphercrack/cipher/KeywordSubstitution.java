@@ -6,7 +6,6 @@ import android.text.Editable;
 import android.text.InputFilter;
 import android.text.Spanned;
 import android.text.TextWatcher;
-import android.util.Log;
 import android.view.View;
 import android.widget.Button;
 import android.widget.EditText;
@@ -15,7 +14,6 @@ import android.widget.RadioButton;
 import android.widget.RadioGroup;
 import android.widget.TextView;
 
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -25,14 +23,19 @@ import java.util.TreeMap;
 import androidx.appcompat.app.AppCompatActivity;
 import mnh.game.ciphercrack.R;
 import mnh.game.ciphercrack.language.Dictionary;
+import mnh.game.ciphercrack.language.IncrementalNGramFitness;
 import mnh.game.ciphercrack.language.Language;
 import mnh.game.ciphercrack.services.CrackResults;
 import mnh.game.ciphercrack.util.Climb;
+import mnh.game.ciphercrack.util.CrackLog;
 import mnh.game.ciphercrack.util.CrackMethod;
 import mnh.game.ciphercrack.util.CrackResult;
 import mnh.game.ciphercrack.util.CrackState;
+import mnh.game.ciphercrack.util.DictionaryCrackEngine;
 import mnh.game.ciphercrack.util.Directives;
+import mnh.game.ciphercrack.util.KeySwapScorer;
 import mnh.game.ciphercrack.util.KeywordExtend;
+import mnh.game.ciphercrack.util.ParallelAnnealing;
 import mnh.game.ciphercrack.util.Settings;
 import mnh.game.ciphercrack.staticanalysis.StaticAnalysis;
 
@@ -244,10 +247,10 @@ public class KeywordSubstitution extends Cipher {
         KeywordExtend keywordExtend = getKeywordExtend(layout);
 
         // build the extended keyword
-        String alphabet = Settings.instance().getString(layout.getContext(), R.string.pref_alphabet_plain);
+        String alphabet = Settings.instance().getString(Settings.PREF_ALPHABET_PLAIN);
         String fullKeyword = KeywordSubstitution.applyKeywordExtend(keywordExtend, keyword, alphabet);
         dirs.setKeyword(fullKeyword);
-        String languageName = Settings.instance().getString(layout.getContext(), R.string.pref_language);
+        String languageName = Settings.instance().getString(Settings.PREF_LANGUAGE);
         Language language = Language.instanceOf(languageName);
         dirs.setLanguage(language);
     }
@@ -350,6 +353,114 @@ public class KeywordSubstitution extends Cipher {
         return doKeyedEncodeDecode(cipherText, keyword, alphabet);
     }
 
+    /**
+     * Keyword Substitution needs just one decode table
+     * @param dirs the directives holding the KEYWORD
+     * @return the number of tables needed to decode ordinals, always 1
+     */
+    @Override
+    public int getDecodeTableCount(Directives dirs) {
+        return 1;
+    }
+
+    /**
+     * Fill in the table used to decode ordinals, each cipher letter decodes to the alphabet
+     * letter in the same position as it is in the keyword, letters not in the keyword are unchanged
+     * @param dirs the directives holding the KEYWORD and ALPHABET
+     * @param tables the tables to fill, only the first is used
+     */
+    @Override
+    public void fillDecodeTables(Directives dirs, int[][] tables) {
+        String alphabet = dirs.getAlphabet();
+        String keyword = dirs.getKeyword();
+        int[] table = tables[0];
+        for (int ordinal = 0; ordinal < alphabet.length(); ordinal++) {
+            int plain = keyword.indexOf(alphabet.charAt(ordinal));
+            table[ordinal] = (plain < 0 || plain >= alphabet.length()) ? ordinal : plain;
+        }
+    }
+
+    /**
+     * Swapping two letters of the keyword changes what just those two cipher letters decode to,
+     * so only the quadgrams around where they are in the text need to be scored again
+     * @param text the text to be decoded
+     * @param dirs the directives for the climb, with the ALPHABET and LANGUAGE
+     * @return a new scorer, or null if the quadgrams of the language don't fit the alphabet
+     */
+    @Override
+    public KeySwapScorer getKeySwapScorer(String text, Directives dirs) {
+        Language language = dirs.getLanguage();
+        if (language == null || !language.getAlphabet().equals(dirs.getAlphabet()))
+            return null;
+        return new SwapScorer(text, dirs.getAlphabet(), language);
+    }
+
+    // keeps the decode table for the keyword and the quadgram score of the decode up to date
+    private static class SwapScorer implements KeySwapScorer {
+        private final String alphabet;
+        private final IncrementalNGramFitness fitness;
+        private final int[] table;
+        private char[] key = new char[0];
+        private char[] committedKey = new char[0];
+
+        SwapScorer(String text, String alphabet, Language language) {
+            this.alphabet = alphabet;
+            byte[] cipherOrdinals = Cipher.toOrdinals(text, alphabet);
+            this.fitness = new IncrementalNGramFitness(language, Language.MAX_NGRAM, cipherOrdinals, cipherOrdinals.length);
+            this.table = new int[alphabet.length()];
+        }
+
+        @Override
+        public double setKey(String newKey) {
+            key = newKey.toCharArray();
+            committedKey = newKey.toCharArray();
+            for (int ordinal = 0; ordinal < alphabet.length(); ordinal++)
+                table[ordinal] = decodeOf(ordinal);
+            return fitness.setDecodeTable(table);
+        }
+
+        @Override
+        public double trySwap(int first, int second) {
+            char swap = key[first]; key[first] = key[second]; key[second] = swap;
+            int cipherA = alphabet.indexOf(key[first]);
+            int cipherB = alphabet.indexOf(key[second]);
+            if (cipherA < 0 && cipherB < 0)
+                return fitness.getScore();
+            if (cipherA < 0)
+                cipherA = cipherB;
+            else if (cipherB < 0)
+                cipherB = cipherA;
+            return fitness.changeDecodes(cipherA, decodeOf(cipherA), cipherB, decodeOf(cipherB));
+        }
+
+        @Override
+        public void commit() {
+            System.arraycopy(key, 0, committedKey, 0, key.length);
+            fitness.commit();
+        }
+
+        @Override
+        public void rollback() {
+            System.arraycopy(committedKey, 0, key, 0, key.length);
+            fitness.rollback();
+        }
+
+        @Override
+        public String getKey() {
+            return String.valueOf(key);
+        }
+
+        // as fillDecodeTables: the position of the cipher letter in the key, else unchanged
+        private int decodeOf(int ordinal) {
+            char letter = alphabet.charAt(ordinal);
+            for (int pos = 0; pos < key.length && pos < alphabet.length(); pos++) {
+                if (key[pos] == letter)
+                    return pos;
+            }
+            return ordinal;
+        }
+    }
+
     /**
      * Find the keyword that most closely matches the letter frequency
      * @param cipherText the text to be decoded
@@ -386,9 +497,9 @@ public class KeywordSubstitution extends Cipher {
     /**
      * Crack a substitution cipher using simulated anealing. Start with a keyword built based on
      * the frequency of cipher letters compared to the frequency of letters in the language. Then
-     * loop around first with low temperature and then with higher for a few thousand iterations
-     * each time mutating the key based on the temperature and measuring fitness by counting how
-     * many dictionary word letters can be seen in the decoded text.
+     * anneal several chains at once from around that key, each mutating its key a few thousand
+     * times, measuring fitness by the quadgram log probabilities of the decoded text and now and
+     * again accepting a less fit key so a chain can get out of a local best.
      * Slower than dictionary check but can find keyword even if not based on a dictionary work
      * or is from a compound word (like LEONARDO DA VINCI)
      * @param cipherText the text to be cracked
@@ -428,47 +539,29 @@ public class KeywordSubstitution extends Cipher {
         int startTemperature = countAlpha/800 + 1;
         crackProps.setProperty(Climb.CLIMB_TEMPERATURE, String.valueOf(startTemperature));
         crackProps.setProperty(Climb.CLIMB_CYCLES, String.valueOf(5000/startTemperature));
-        CrackResults.updateProgressDirectly(crackId, "Started first localised simulated anealing climb");
+        CrackResults.updateProgressDirectly(crackId, "Started parallel simulated anealing climb");
 
-        // returns true if found all cribs, unlikely on first scan
-        String firstActivity = "";
-        boolean success = Climb.doSimulatedAnealing(cipherText, this, crackProps, crackId);
-        Log.i("CipherCrack", "Cracking "+getCipherName()+" Climb, finished first pass");
+        // several chains at once, returns true as soon as any finds all the cribs
+        boolean success = ParallelAnnealing.doAnnealing(cipherText, this, crackProps, crackId);
+        CrackLog.i("CipherCrack", "Cracking "+getCipherName()+" Climb, finished anealing");
         if (CrackResults.isCancelled(crackId))
             return new CrackResult(dirs.getCrackMethod(), this, cipherText, "Crack cancelled", CrackState.CANCELLED);
-        // we do another pass if we have not matched cribs
-        // use different TEMPERATURE and CYCLES based on certain heuristics
         if (!success) {
-            // save first activity (explain) so we can include it in final explain text later
-            firstActivity = crackProps.getProperty(Climb.CLIMB_ACTIVITY);
-
-            // scan with higher temperature, should not wander too far
-            crackProps.setProperty(Climb.CLIMB_START_KEYWORD, crackProps.getProperty(Climb.CLIMB_BEST_KEYWORD));
-            crackProps.setProperty(Climb.CLIMB_TEMPERATURE, String.valueOf(8));
-            crackProps.setProperty(Climb.CLIMB_CYCLES, String.valueOf(500));
-            CrackResults.updateProgressDirectly(crackId, "Started second wider simulated anealing climb");
-            if (!Climb.doSimulatedAnealing(cipherText, this, crackProps, crackId)) {
-                if (CrackResults.isCancelled(crackId))
-                    return new CrackResult(dirs.getCrackMethod(), this, cipherText, "Crack cancelled", CrackState.CANCELLED);
-                // even this did not work, give up
-                String explain = "Fail: Searched for largest word match but did not find cribs ["
-                        + cribString + "], best key was "
-                        + crackProps.getProperty(Climb.CLIMB_BEST_KEYWORD)
-                        + ".\n"
-                        + firstActivity
-                        + crackProps.getProperty(Climb.CLIMB_ACTIVITY);
-                keyword = "";
-                return new CrackResult(crackMethod, this, cipherText, explain, crackProps.getProperty(Climb.CLIMB_BEST_DECODE));
-            }
+            String explain = "Fail: Searched for largest word match but did not find cribs ["
+                    + cribString + "], best key was "
+                    + crackProps.getProperty(Climb.CLIMB_BEST_KEYWORD)
+                    + ".\n"
+                    + crackProps.getProperty(Climb.CLIMB_ACTIVITY);
+            keyword = "";
+            return new CrackResult(crackMethod, this, cipherText, explain, crackProps.getProperty(Climb.CLIMB_BEST_DECODE));
         }
-        // one or other of the simulated anealing above worked, report back
+        // the simulated anealing worked, report back
         keyword = crackProps.getProperty(Climb.CLIMB_BEST_KEYWORD);
         dirs.setKeyword(keyword);
         String plainText = crackProps.getProperty(Climb.CLIMB_BEST_DECODE);
         String explain = "Success: Searched for largest word match and found all cribs ["
                 + cribString + "] with key "
                 + crackProps.getProperty(Climb.CLIMB_BEST_KEYWORD) + ".\n"
-                + firstActivity
                 + crackProps.getProperty(Climb.CLIMB_ACTIVITY);
         return new CrackResult(crackMethod, this, dirs, cipherText, plainText, explain);
     }
@@ -481,104 +574,94 @@ public class KeywordSubstitution extends Cipher {
      *              also include EXPLAIN and (if successfully cracked) DECODE_KEYWORD
      * @return the result of the crack attempt
      */
-    private CrackResult crackDictionary(String cipherText, Directives dirs, int crackId) {
-        String alphabet = dirs.getAlphabet();
+    private CrackResult crackDictionary(String cipherText, final Directives dirs, int crackId) {
+        final String alphabet = dirs.getAlphabet();
         String cribString = dirs.getCribs();
         Language language = dirs.getLanguage();
         CrackMethod crackMethod = dirs.getCrackMethod();
-        String reverseCipherText = new StringBuilder(cipherText).reverse().toString();
+        final String forwardCipherText = cipherText;
+        final String reverseCipherText = new StringBuilder(cipherText).reverse().toString();
 
         // work out our crib set just once
         Set<String> cribs = Cipher.getCribSet(cribString);
-        Directives crackDirs = new Directives();
-        crackDirs.setAlphabet(alphabet);
+
+        // decode as ordinals, only making a string of the text for keywords giving the cribs
+        final byte[][] cribOrdinals = Cipher.getCribOrdinals(cribs, alphabet);
+        final byte[] cipherOrdinals = Cipher.toOrdinals(cipherText, alphabet);
+        final byte[] reverseOrdinals = Cipher.toOrdinals(reverseCipherText, alphabet);
+        final KeywordExtend[] extendMethods = KeywordExtend.values();
 
         // look through all words (length > 1) to see which makes a keyword that decodes the text
-        // and results in a plain text with all the cribs in it
+        // and results in a plain text with all the cribs in it, the words are shared across threads
+        // and a keyword made by more than one word is only tried once
         Dictionary dict = language.getDictionary();
-        Set<String> triedKeywords = new HashSet<>(2000);
-        StringBuilder successResult = new StringBuilder()
-                .append("Success: Dictionary scan: Searched using ")
-                .append(dict.size())
-                .append(" dictionary words as keywords, looking for cribs [")
-                .append(cribString)
-                .append("] in decoded text.\n");
-        String foundKeyword = "", foundPlainText = "";
-        int wordsRead = 0, foundCount = 0;
-
-        for (String word : dict) {
-            if (wordsRead++ % 200 == 199) {
-                if (CrackResults.isCancelled(crackId))
-                    return new CrackResult(dirs.getCrackMethod(), this, cipherText, "Crack cancelled", CrackState.CANCELLED);
-                Log.i("CipherCrack", "Cracking Substitution Dict: " + wordsRead + " words tried, found="+foundCount);
-                CrackResults.updateProgressDirectly(crackId, wordsRead+" words of "+dict.size()+": "+100*wordsRead/dict.size()+"% complete, found="+foundCount);
-            }
-            if (word.length() > 1) {
-                word = word.toUpperCase();
-
-                // could be a number of ways of extending a partial keyword
-                for (KeywordExtend extend : KeywordExtend.values()) {
+        DictionaryCrackEngine<String> engine = newDictionaryCrackEngine(dirs, crackId,
+                new DictionaryCrackEngine.KeyTrierFactory<String>() {
+            @Override
+            public DictionaryCrackEngine.KeyTrier<String> newKeyTrier() {
+                return new DictionaryCrackEngine.KeyTrier<String>() {
+                    private final Directives crackDirs = new Directives(dirs);
+                    private final byte[] plainOrdinals = new byte[cipherOrdinals.length];
+                    private final int[][] tables = new int[1][alphabet.length()];
+                    private String tablesKeyword = null;
+
+                    // could be a number of ways of extending a partial keyword
+                    @Override
+                    public int getKeyCount(String word) {
+                        return (word.length() > 1) ? extendMethods.length : 0;
+                    }
 
                     // we need the whole square filled in, ignore the None method
-                    if (extend != KeywordExtend.EXTEND_NONE) {
-                        String keyword = applyKeywordExtend(extend, word, alphabet);
+                    @Override
+                    public String getKey(String word, int variant) {
+                        if (extendMethods[variant] == KeywordExtend.EXTEND_NONE)
+                            return null;
+                        return applyKeywordExtend(extendMethods[variant], word, alphabet);
+                    }
 
-                        // only try to decode the cipherText with this keyword if not already tried
-                        if (!triedKeywords.contains(keyword)) {
-                            triedKeywords.add(keyword);
+                    @Override
+                    public String tryKey(String keyword, boolean reverse) {
+                        if (!keyword.equals(tablesKeyword)) {
+                            tablesKeyword = keyword;
                             crackDirs.setKeyword(keyword);
-                            String plainText = decode(cipherText, crackDirs);
-                            if (Cipher.containsAllCribs(plainText, cribs)) {
-                                successResult.append("Using ")
-                                        .append(word)
-                                        .append(" gave keyword ")
-                                        .append(keyword)
-                                        .append(" which decoded to text starting ")
-                                        .append(plainText.substring(0, Math.min(Cipher.CRACK_PLAIN_LENGTH, plainText.length())))
-                                        .append(".\n");
-                                if (dirs.stopAtFirst()) {
-                                    this.keyword = keyword;
-                                    dirs.setKeyword(keyword);
-                                    return new CrackResult(crackMethod, this, dirs, cipherText, plainText, successResult.toString());
-                                } else {
-                                    foundCount++;
-                                    foundKeyword = keyword;
-                                    foundPlainText = plainText;
-                                }
-                            }
-                            if (dirs.considerReverse()) {
-                                // now do same again with reverse text - could be backwards
-                                plainText = decode(reverseCipherText, crackDirs);
-                                if (Cipher.containsAllCribs(plainText, cribs)) {
-                                    successResult.append("With REVERSE text, using ")
-                                            .append(word)
-                                            .append(" gave keyword ")
-                                            .append(keyword)
-                                            .append(" which decoded to text starting ")
-                                            .append(plainText.substring(0, Math.min(Cipher.CRACK_PLAIN_LENGTH, plainText.length())))
-                                            .append(".\n");
-                                    if (dirs.stopAtFirst()) {
-                                        this.keyword = keyword;
-                                        dirs.setKeyword(keyword);
-                                        return new CrackResult(crackMethod, this, dirs, cipherText, plainText, successResult.toString());
-                                    } else {
-                                        foundCount++;
-                                        foundKeyword = keyword;
-                                        foundPlainText = plainText;
-                                    }
-                                }
-                            }
+                            fillDecodeTables(crackDirs, tables);
                         }
+                        byte[] ordinals = reverse ? reverseOrdinals : cipherOrdinals;
+                        Cipher.decodeOrdinals(ordinals, ordinals.length, tables, 1, plainOrdinals);
+                        if (!Cipher.containsAllCribs(plainOrdinals, ordinals.length, cribOrdinals))
+                            return null;
+                        return decode(reverse ? reverseCipherText : forwardCipherText, crackDirs);
                     }
-                }
+                };
             }
-        }
-
-        // let's see if we found anything
-        if (foundPlainText.length() > 0) {
-            keyword = foundKeyword;
-            dirs.setKeyword(foundKeyword);
-            return new CrackResult(crackMethod, this, dirs, cipherText, foundPlainText, successResult.toString());
+        });
+        engine.setDedupeKeys(true);
+        List<DictionaryCrackEngine.Match<String>> matches = engine.run();
+        if (matches == null)
+            return new CrackResult(crackMethod, this, cipherText, "Crack cancelled", CrackState.CANCELLED);
+
+        // let's see if we found anything, the last match is used
+        if (matches.size() > 0) {
+            StringBuilder successResult = new StringBuilder()
+                    .append("Success: Dictionary scan: Searched using ")
+                    .append(dict.size())
+                    .append(" dictionary words as keywords, looking for cribs [")
+                    .append(cribString)
+                    .append("] in decoded text.\n");
+            for (DictionaryCrackEngine.Match<String> match : matches) {
+                String plainText = match.getPlainText();
+                successResult.append(match.isReverse() ? "With REVERSE text, using " : "Using ")
+                        .append(match.getWord())
+                        .append(" gave keyword ")
+                        .append(match.getKey())
+                        .append(" which decoded to text starting ")
+                        .append(plainText.substring(0, Math.min(Cipher.CRACK_PLAIN_LENGTH, plainText.length())))
+                        .append(".\n");
+            }
+            DictionaryCrackEngine.Match<String> found = matches.get(matches.size() - 1);
+            keyword = found.getKey();
+            dirs.setKeyword(found.getKey());
+            return new CrackResult(crackMethod, this, dirs, cipherText, found.getPlainText(), successResult.toString());
         }
         keyword = "";
         String explainString = "Fail: Dictionary scan: Searched using "
@@ -618,4 +701,21 @@ public class KeywordSubstitution extends Cipher {
     public double getFitness(String text, Directives dirs) {
         return Cipher.getWordCountFitness(text, dirs);
     }
+
+    /**
+     * Fitness of ordinal text is measured by quadgram log probabilities, in one pass of the text
+     * rather than searching for every dictionary word
+     * @param plainOrdinals the decoded text as ordinals within the alphabet
+     * @param length how many of the ordinals are used
+     * @param dirs directives with the LANGUAGE
+     * @return the average quadgram log probability, larger (nearer zero) is more fit
+     */
+    @Override
+    public double getFitness(byte[] plainOrdinals, int length, Directives dirs) {
+        Language language = dirs.getLanguage();
+        // the quadgram table is indexed by the language's alphabet, so they must match
+        if (!language.getAlphabet().equals(dirs.getAlphabet()))
+            return super.getFitness(plainOrdinals, length, dirs);
+        return language.getQuadgramFitness().score(plainOrdinals, length);
+    }
 }
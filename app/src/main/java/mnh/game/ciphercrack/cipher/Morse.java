@@ -5,15 +5,22 @@ import android.os.Parcel;
 import android.widget.EditText;
 import android.widget.LinearLayout;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 import androidx.appcompat.app.AppCompatActivity;
 import mnh.game.ciphercrack.R;
 import mnh.game.ciphercrack.language.Language;
+import mnh.game.ciphercrack.language.NGramFitness;
+import mnh.game.ciphercrack.services.CrackResults;
 import mnh.game.ciphercrack.util.CrackMethod;
 import mnh.game.ciphercrack.util.CrackResult;
+import mnh.game.ciphercrack.util.CrackState;
 import mnh.game.ciphercrack.util.Directives;
+import mnh.game.ciphercrack.util.SymbolTokenizer;
 
 public class Morse extends Cipher {
 
@@ -79,11 +86,26 @@ public class Morse extends Cipher {
     private static final int MAX_MORSE_SYMBOLS = 2;
     private static final String MORSE_SYMBOLS = ".-";
 
+    // the longest code of any letter or digit, a longer run of symbols has no separators
+    private static final int MAX_CODE_LENGTH = 5;
+
+    // how many of the most frequent symbols in a cipher text are tried as dot and dash
+    private static final int CRACK_CANDIDATES = 3;
+
     private String symbols = ".-";
     private String separator = " ";
 
     Morse(Context context) { super(context, "Morse"); }
 
+    /**
+     * The Morse code of a letter or digit
+     * @param letter the upper case letter or digit
+     * @return the dots and dashes of the code, or null if it has none
+     */
+    static String codeFor(char letter) {
+        return encoding.get(letter);
+    }
+
     // used to send a cipher to a service
     @Override
     public void writeToParcel(Parcel dest, int flags) {
@@ -226,7 +248,8 @@ public class Morse extends Cipher {
     }
 
     /**
-     * Decode a text using Morse Code with given symbols and separator
+     * Decode a text using Morse Code with given symbols and separator. With no separator the
+     * symbols are split into the most likely letters for the language, see MorseSegmenter
      * @param cipherText the text to be decoded
      * @param dirs a group of directives that define how the cipher will work,
      *             especially SYMBOLS and SEPARATOR
@@ -234,56 +257,251 @@ public class Morse extends Cipher {
      */
     @Override
     public String decode(String cipherText, Directives dirs) {
+        StringBuilder result = new StringBuilder(cipherText.length() / 2);
+        try {
+            decode(cipherText, result, dirs);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex); // a StringBuilder does not throw
+        }
+        return result.toString();
+    }
+
+    /**
+     * Decode a text using Morse Code as it is read, without holding the whole text
+     * @param cipherText the text to be decoded, read to the end but not closed
+     * @param plainText where the decoded text is written
+     * @param dirs a group of directives that define how the cipher will work,
+     *             especially SYMBOLS and SEPARATOR
+     */
+    public void decode(Reader cipherText, Appendable plainText, Directives dirs) throws IOException {
         String separatorStr = dirs.getSeparator();
-        String symbolsStr = dirs.getDigits().toUpperCase();
+        if (separatorStr == null || separatorStr.length() == 0)
+            unseparatedTokenizer(dirs).tokenize(cipherText, new UnseparatedDecoder(dirs.getLanguage(), plainText));
+        else
+            separatedTokenizer(dirs).tokenize(cipherText, new SeparatedDecoder(plainText));
+    }
 
-        // remove all but the separators and the symbols
-        cipherText = cipherText.replaceAll("[^"+separatorStr+symbolsStr+"]","").toUpperCase();
+    private void decode(CharSequence cipherText, Appendable plainText, Directives dirs) throws IOException {
+        String separatorStr = dirs.getSeparator();
+        if (separatorStr == null || separatorStr.length() == 0)
+            unseparatedTokenizer(dirs).tokenize(cipherText, new UnseparatedDecoder(dirs.getLanguage(), plainText));
+        else
+            separatedTokenizer(dirs).tokenize(cipherText, new SeparatedDecoder(plainText));
+    }
 
-        // scan the text, separated by the separator
-        StringBuilder result = new StringBuilder(cipherText.length());
-        String[] codedLetters = cipherText.split(separatorStr);
-        for (String codedLetter : codedLetters) {
-            if (codedLetter.length() == 0) { // could be 2 separators together - perhaps between words
-                result.append(" ");
-            } else {
-                char[] chars = codedLetter.toCharArray();
-                boolean badSymbol = false;
-                for (int pos = 0; pos < chars.length; pos++) {
-                    int ordinal = symbolsStr.indexOf(chars[pos]);
-                    if (ordinal < 0) {
-                        badSymbol = true;
-                        break;
-                    }
-                    chars[pos] = MORSE_SYMBOLS.charAt(ordinal);
-                }
-                if (badSymbol) {
-                    result.append("[").append(codedLetter).append("]");
-                } else {
-                    String morseSequence = String.valueOf(chars);
-                    Character decodedLetter = decoding.get(morseSequence);
-                    if (decodedLetter == null) {
-                        if (morseSequence.equals("----")) // special case we've seen sometimes
-                            result.append("CH");
-                        else
-                            result.append("{").append(codedLetter).append("}");
-                    } else {
-                        result.append(decodedLetter);
-                    }
-                }
-            }
+    // letters end at the separator, anything else is ignored
+    private static SymbolTokenizer separatedTokenizer(Directives dirs) {
+        return new SymbolTokenizer(new String[] { dirs.getDigits() }, dirs.getSeparator(), 0, "", SymbolTokenizer.Others.SKIPPED);
+    }
+
+    // runs of symbols end at anything else, except line breaks which are taken as layout
+    private static SymbolTokenizer unseparatedTokenizer(Directives dirs) {
+        return new SymbolTokenizer(new String[] { dirs.getDigits() }, "", 0, "\n\r", SymbolTokenizer.Others.PASSED);
+    }
+
+    /**
+     * Decode each letter, separators straight after another are gaps between words, which
+     * are kept unless at the end
+     */
+    private static class SeparatedDecoder implements SymbolTokenizer.Listener {
+        private final Appendable result;
+        private int gaps = 0;
+
+        SeparatedDecoder(Appendable result) {
+            this.result = result;
         }
-        return result.toString();
+
+        @Override
+        public void token(byte[] ordinals, char[] chars, int length) throws IOException {
+            for (; gaps > 0; gaps--)
+                result.append(' ');
+            char[] morse = new char[length];
+            for (int pos = 0; pos < length; pos++)
+                morse[pos] = MORSE_SYMBOLS.charAt(ordinals[pos]);
+            String morseSequence = String.valueOf(morse);
+            Character decodedLetter = decoding.get(morseSequence);
+            if (decodedLetter != null)
+                result.append(decodedLetter);
+            else if (morseSequence.equals("----")) // special case we've seen sometimes
+                result.append("CH");
+            else
+                result.append('{').append(String.valueOf(chars, 0, length).toUpperCase()).append('}');
+        }
+
+        @Override
+        public void emptyToken() {
+            gaps++; // could be 2 separators together - perhaps between words
+        }
+
+        @Override
+        public void other(char c) { }
     }
 
     /**
-     * Not able to crack this yet
+     * Split each run of symbols into the most likely letters, with a space between runs
+     */
+    private static class UnseparatedDecoder implements SymbolTokenizer.Listener {
+        private final MorseSegmenter segmenter;
+        private final Appendable result;
+        private final StringBuilder run = new StringBuilder();
+        private boolean started = false;
+
+        UnseparatedDecoder(Language language, Appendable result) {
+            this.segmenter = new MorseSegmenter(language);
+            this.result = result;
+        }
+
+        @Override
+        public void token(byte[] ordinals, char[] chars, int length) throws IOException {
+            run.setLength(0);
+            for (int pos = 0; pos < length; pos++)
+                run.append(MORSE_SYMBOLS.charAt(ordinals[pos]));
+            if (started)
+                result.append(' ');
+            started = true;
+            String letters = segmenter.segment(run);
+            if (letters == null)
+                result.append('{').append(run).append('}');
+            else
+                result.append(letters);
+        }
+
+        @Override
+        public void emptyToken() { }
+
+        @Override
+        public void other(char c) { }
+    }
+
+    /**
+     * Crack Morse with unknown symbols by counting the symbols in one pass and trying the most
+     * frequent in pairs as dot and dash (both ways round), with anything else as separators.
+     * If the runs of a pair are too long to be single letters the text has no separators and
+     * the runs are split into the most likely letters instead. The decode that has the cribs
+     * and scores best as the language is used
      * @param cipherText the text to be cracked
      * @param dirs the controls and parameters for this crack request
      * @return the result of the crack attempt
      */
     public CrackResult crack(String cipherText, Directives dirs, int crackId) {
-        // Morse Crack: perhaps suggest looking for most common symbol => ".", next most common => "-", and third is separator, look for cribs, or words
-        return new CrackResult(dirs.getCrackMethod(), this, cipherText, "No crack of "+getCipherName()+" available, use inspection and decode.\n");
+        String cribString = dirs.getCribs();
+        Set<String> cribSet = Cipher.getCribSet(cribString);
+        Language language = dirs.getLanguage();
+        String languageAlphabet = language.getAlphabet();
+        NGramFitness fitness = language.getQuadgramFitness();
+        CrackMethod crackMethod = dirs.getCrackMethod();
+
+        // count the symbols, whitespace can only separate, the most frequent are the candidates
+        int[] counts = new int[128];
+        for (int pos = 0; pos < cipherText.length(); pos++) {
+            char c = cipherText.charAt(pos);
+            if (c < counts.length && !Character.isWhitespace(c))
+                counts[c]++;
+        }
+        StringBuilder candidates = new StringBuilder(CRACK_CANDIDATES);
+        while (candidates.length() < CRACK_CANDIDATES) {
+            int most = -1;
+            for (int c = 0; c < counts.length; c++) {
+                if (counts[c] > 0 && candidates.indexOf(String.valueOf((char)c)) < 0 && (most < 0 || counts[c] > counts[most]))
+                    most = c;
+            }
+            if (most < 0)
+                break;
+            candidates.append((char)most);
+        }
+        String searched = "Symbol scan: counted the symbols in the text and tried the "
+                + candidates.length()
+                + " most frequent ["
+                + candidates
+                + "] in pairs as dot and dash with anything else as separators, splitting runs"
+                + " too long for one letter into the most likely letters, looking for cribs ["
+                + cribString
+                + "] in the decoded text";
+        if (candidates.length() < 2)
+            return new CrackResult(crackMethod, this, cipherText, "Fail: " + searched + " but there are too few symbols.\n");
+
+        String bestText = null, bestSymbols = null, bestSeparator = null, fittestText = null;
+        double bestScore = -Double.MAX_VALUE, fittestScore = -Double.MAX_VALUE;
+        byte[] ordinals = new byte[cipherText.length()];
+        for (int first = 0; first < candidates.length(); first++) {
+            for (int second = 0; second < candidates.length(); second++) {
+                if (first == second)
+                    continue;
+                if (CrackResults.isCancelled(crackId))
+                    return new CrackResult(crackMethod, this, cipherText, "Crack cancelled", CrackState.CANCELLED);
+                char dot = candidates.charAt(first), dash = candidates.charAt(second);
+                String pairSymbols = "" + dot + dash;
+                String pairSeparator = findSeparator(cipherText, dot, dash);
+                Directives pairDirs = new Directives(dirs);
+                pairDirs.setDigits(pairSymbols);
+                pairDirs.setSeparator(pairSeparator);
+                String plainText = decode(cipherText, pairDirs);
+
+                int letters = 0;
+                for (int pos = 0; pos < plainText.length(); pos++) {
+                    int ordinal = languageAlphabet.indexOf(plainText.charAt(pos));
+                    if (ordinal >= 0)
+                        ordinals[letters++] = (byte)ordinal;
+                }
+                double score = fitness.score(ordinals, letters);
+                if (score > fittestScore) {
+                    fittestScore = score;
+                    fittestText = plainText;
+                }
+                if (score > bestScore && Cipher.containsAllCribs(plainText, cribSet)) {
+                    bestScore = score;
+                    bestText = plainText;
+                    bestSymbols = pairSymbols;
+                    bestSeparator = pairSeparator;
+                }
+            }
+        }
+        if (bestText == null) {
+            return new CrackResult(crackMethod, this, cipherText, "Fail: " + searched + " but did not find them.\n", fittestText);
+        }
+        symbols = bestSymbols;
+        separator = bestSeparator;
+        dirs.setDigits(bestSymbols);
+        dirs.setSeparator(bestSeparator);
+        String explain = "Success: "
+                + searched
+                + " and found them with dot="
+                + bestSymbols.charAt(0)
+                + ", dash="
+                + bestSymbols.charAt(1)
+                + (bestSeparator.length() == 0 ? " and no separator" : ", separator=" + bestSeparator)
+                + ".\n";
+        return new CrackResult(crackMethod, this, dirs, cipherText, bestText, explain);
+    }
+
+    /**
+     * Find the separator when a pair of symbols are the dot and dash: the most frequent other
+     * character, or none if the runs of the pair are too long to be single letters
+     * @param cipherText the text to be cracked
+     * @param dot the symbol taken as dot
+     * @param dash the symbol taken as dash
+     * @return the separator, empty if there is none
+     */
+    private static String findSeparator(String cipherText, char dot, char dash) {
+        int[] counts = new int[128];
+        int run = 0, longest = 0;
+        for (int pos = 0; pos < cipherText.length(); pos++) {
+            char c = cipherText.charAt(pos);
+            if (c == dot || c == dash) {
+                longest = Math.max(longest, ++run);
+            } else {
+                run = 0;
+                if (c < counts.length)
+                    counts[c]++;
+            }
+        }
+        if (longest > MAX_CODE_LENGTH)
+            return "";
+        int most = -1;
+        for (int c = 0; c < counts.length; c++) {
+            if (counts[c] > 0 && (most < 0 || counts[c] > counts[most]))
+                most = c;
+        }
+        return (most < 0) ? "" : String.valueOf((char)most);
     }
 }
@@ -0,0 +1,140 @@
+package mnh.game.ciphercrack.cipher;
+
+import java.util.Arrays;
+
+import mnh.game.ciphercrack.language.Language;
+
+/**
+ * Split a run of Morse dots and dashes with no separators into letters.
+ * A letter is 1 to 4 symbols, so there are very many ways to split a long run and trying each
+ * in turn takes exponential time. Instead the best split is found by dynamic programming (the
+ * Viterbi algorithm): moving along the run, for each place and each pair of letters that could
+ * end there only the best scoring split so far is kept, scored by the trigram log probabilities
+ * of the language, and each is extended by the letters whose code starts at that place. This is
+ * linear in the length of the run, and gives the most likely letters rather than just any letters
+ */
+class MorseSegmenter {
+
+    // the longest code of a letter, the digits (5 symbols) are not in the language's n-grams
+    static final int MAX_CODE_LENGTH = 4;
+
+    private final int alphabetLength;
+    private final int none;             // stands for no letter yet, before the start of the run
+    private final int states;           // pairs of the last two letters, either may be none
+    private final String alphabet;
+    private final float[] unigramLogs;
+    private final float[] bigramLogs;
+    private final float[] trigramLogs;
+    private final int[][] letterOf;     // by code length and code (dash = 1), ordinal or -1
+
+    /**
+     * Prepare to segment Morse runs into letters of a language
+     * @param language the language of the plain text, gives the letters and their n-grams
+     */
+    MorseSegmenter(Language language) {
+        alphabet = language.getAlphabet();
+        alphabetLength = alphabet.length();
+        none = alphabetLength;
+        states = (alphabetLength + 1) * (alphabetLength + 1);
+        unigramLogs = language.getNGramLogProbabilities(1);
+        bigramLogs = language.getNGramLogProbabilities(2);
+        trigramLogs = language.getNGramLogProbabilities(3);
+        letterOf = new int[MAX_CODE_LENGTH + 1][];
+        for (int length = 1; length <= MAX_CODE_LENGTH; length++) {
+            letterOf[length] = new int[1 << length];
+            Arrays.fill(letterOf[length], -1);
+        }
+        for (int ordinal = 0; ordinal < alphabetLength; ordinal++) {
+            String code = Morse.codeFor(alphabet.charAt(ordinal));
+            if (code == null || code.length() > MAX_CODE_LENGTH)
+                continue;
+            letterOf[code.length()][toBits(code, 0, code.length())] = ordinal;
+        }
+    }
+
+    // the code of dots and dashes as a number, dash = 1, first symbol most significant
+    private static int toBits(CharSequence code, int from, int to) {
+        int bits = 0;
+        for (int pos = from; pos < to; pos++)
+            bits = (bits << 1) | (code.charAt(pos) == '-' ? 1 : 0);
+        return bits;
+    }
+
+    // the log probability of a letter following the two before it, either of which may be none
+    private float transition(int first, int second, int letter) {
+        if (second == none)
+            return unigramLogs[letter];
+        if (first == none)
+            return bigramLogs[second * alphabetLength + letter];
+        return trigramLogs[(first * alphabetLength + second) * alphabetLength + letter];
+    }
+
+    /**
+     * Find the most likely letters for a run of dots and dashes
+     * @param run the run, as '.' and '-' characters
+     * @return the letters, or null if the run cannot be split into letters at all
+     */
+    String segment(CharSequence run) {
+        int length = run.length();
+        if (length == 0)
+            return "";
+
+        // best score of a split ending at each of the next few places in each state, reused
+        // round a ring as the split moves along, and how each state was reached, kept for all
+        int window = MAX_CODE_LENGTH + 1;
+        float[][] best = new float[window][states];
+        for (float[] row : best)
+            Arrays.fill(row, Float.NEGATIVE_INFINITY);
+        byte[][] cameFrom = new byte[length + 1][states];    // first letter * 5 + code length
+        best[0][none * (alphabetLength + 1) + none] = 0.0f;
+
+        for (int pos = 0; pos < length; pos++) {
+            float[] here = best[pos % window];
+            for (int state = 0; state < states; state++) {
+                float score = here[state];
+                if (score == Float.NEGATIVE_INFINITY)
+                    continue;
+                int first = state / (alphabetLength + 1), second = state % (alphabetLength + 1);
+                int bits = 0;
+                for (int codeLength = 1; codeLength <= MAX_CODE_LENGTH && pos + codeLength <= length; codeLength++) {
+                    bits = (bits << 1) | (run.charAt(pos + codeLength - 1) == '-' ? 1 : 0);
+                    int letter = letterOf[codeLength][bits];
+                    if (letter < 0)
+                        continue;
+                    float total = score + transition(first, second, letter);
+                    int next = second * (alphabetLength + 1) + letter;
+                    float[] there = best[(pos + codeLength) % window];
+                    if (total > there[next]) {
+                        there[next] = total;
+                        cameFrom[pos + codeLength][next] = (byte)(first * window + codeLength);
+                    }
+                }
+            }
+            Arrays.fill(here, Float.NEGATIVE_INFINITY);
+        }
+
+        // the best state at the end, then follow how each was reached back to the start
+        float[] end = best[length % window];
+        int state = -1;
+        for (int s = 0; s < states; s++) {
+            if (end[s] > Float.NEGATIVE_INFINITY && (state < 0 || end[s] > end[state]))
+                state = s;
+        }
+        if (state < 0)
+            return null;
+        char[] letters = new char[length];
+        int count = 0;
+        for (int pos = length; pos > 0; ) {
+            int came = cameFrom[pos][state] & 0xFF;
+            int first = came / window, codeLength = came % window;
+            int second = state / (alphabetLength + 1), letter = state % (alphabetLength + 1);
+            letters[count++] = alphabet.charAt(letter);
+            state = first * (alphabetLength + 1) + second;
+            pos -= codeLength;
+        }
+        StringBuilder result = new StringBuilder(count);
+        for (int i = count - 1; i >= 0; i--)
+            result.append(letters[i]);
+        return result.toString();
+    }
+}
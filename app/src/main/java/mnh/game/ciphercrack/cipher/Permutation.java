@@ -4,7 +4,6 @@ import android.content.Context;
 import android.os.Parcel;
 import android.text.InputFilter;
 import android.text.Spanned;
-import android.util.Log;
 import android.view.View;
 import android.widget.Button;
 import android.widget.CheckBox;
@@ -14,23 +13,25 @@ import android.widget.RadioButton;
 
 import org.jetbrains.annotations.NotNull;
 
-import java.util.Arrays;
+import java.util.List;
 import java.util.HashSet;
 import java.util.NavigableSet;
 import java.util.Set;
 import java.util.TreeSet;
 
-import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 import mnh.game.ciphercrack.R;
 import mnh.game.ciphercrack.language.Dictionary;
 import mnh.game.ciphercrack.language.Language;
 import mnh.game.ciphercrack.services.CrackResults;
+import mnh.game.ciphercrack.util.CrackLog;
 import mnh.game.ciphercrack.util.CrackMethod;
 import mnh.game.ciphercrack.util.CrackResult;
 import mnh.game.ciphercrack.util.CrackState;
+import mnh.game.ciphercrack.util.DictionaryCrackEngine;
 import mnh.game.ciphercrack.util.Directives;
 import mnh.game.ciphercrack.util.Settings;
+import mnh.game.ciphercrack.util.TranspositionPlan;
 
 /**
  * Class that contains methods to assist with Permutation transposition cipher operations
@@ -42,6 +43,9 @@ public class Permutation extends Cipher {
 
     private static final String TAG = "CrackPermutation";
 
+    // the most columns to search when the text is too short to drop any permutations early
+    private static final int MAX_UNPRUNED_COLUMNS = 9;
+
     // delete the keyword if 'X' is pressed
     private static final View.OnClickListener PERM_ON_CLICK_DELETE = new View.OnClickListener() {
         @Override
@@ -64,9 +68,6 @@ public class Permutation extends Cipher {
     int[] permutation = null;
     boolean readAcross = true;
     private int maxCrackColumns;
-    private int decodes = 0;
-    private int maxDecodes = 0;
-    private int foundCount = 0;
 
     Permutation(Context context) { super(context, "Permutation"); }
 
@@ -115,8 +116,12 @@ public class Permutation extends Cipher {
                 "Occasionally to aid remembering the sequence of columns, the permutation numbers are based on the alphabetical sequence of letters in a keyword, e.g. 0,2,3,1,5,4 for keyword ALBION.\n" +
                 "To decipher, the process is reversed, or repeated with the permutations being the inverse of the first, i.e. the order of positions in the first key: 1,2,0,4,3\n\n"+
                 "A columnar permutation cipher can be cracked by checking all words in a dictionary (around 10k checks) as the keyword and looking for cribs when decoded. " +
-                "If this fails then a brute force approach of checking every permutation up to say 9 columns, and looking for cribs. " +
-                "After 9 columns (362k possible permutations) the number of checks required grows large and some kind of hill climb with fitness test is needed.";
+                "If this fails then a brute force approach of checking every permutation up to say 12 columns, and looking for cribs. " +
+                "There are 479 million permutations of 12 columns, so they are built a column at a time and dropped as soon as the columns placed so far give unlikely bigrams down the rows, " +
+                "or the columns so far cannot hold the cribs.\n" +
+                "Beyond this the columns can be ordered by how well they join up: each pair of columns placed side by side is scored by the bigrams they make down the rows, " +
+                "then the path through all the columns with the best total score is built up greedily and improved by moving runs of columns around. " +
+                "This is done for 2 to 30 columns and the decodes checked for cribs.";
     }
 
     /**
@@ -157,7 +162,8 @@ public class Permutation extends Cipher {
             String cribs = dirs.getCribs();
             if (cribs == null || cribs.length() == 0)
                 return "Some cribs must be provided";
-            if (crackMethod != CrackMethod.DICTIONARY && crackMethod != CrackMethod.BRUTE_FORCE)
+            if (crackMethod != CrackMethod.DICTIONARY && crackMethod != CrackMethod.BRUTE_FORCE
+                    && crackMethod != CrackMethod.COLUMN_ADJACENCY)
                 return "Invalid crack method";
             if (crackMethod == CrackMethod.DICTIONARY) {
                 // for the dictionary
@@ -195,7 +201,7 @@ public class Permutation extends Cipher {
         dirs.setReadAcross(useReadAcross.isChecked());
     }
 
-    // add 2 buttons, one for dictionary crack, one for brute-force
+    // add 3 buttons, one for dictionary crack, one for brute-force, one for column adjacency
     @Override
     public boolean addCrackControls(AppCompatActivity context, LinearLayout layout, String cipherText,
                                     Language language, String alphabet, String paddingChars) {
@@ -214,6 +220,9 @@ public class Permutation extends Cipher {
     public CrackMethod fetchCrackControls(LinearLayout layout, Directives dirs) {
         // locate the kind of crack we've been asked to do
         RadioButton dictButton = layout.findViewById(R.id.crack_button_dictionary);
+        RadioButton adjacencyButton = layout.findViewById(R.id.crack_button_column_adjacency);
+        if (adjacencyButton.isChecked())
+            return CrackMethod.COLUMN_ADJACENCY;
         return (dictButton.isChecked()) ? CrackMethod.DICTIONARY : CrackMethod.BRUTE_FORCE;
     }
 
@@ -261,71 +270,39 @@ public class Permutation extends Cipher {
     }
 
     /**
-     * provide the inverse for a permutation, e.g. 1,2,0,4,3 => 2,0,1,4,3, used
-     * @param perm the permutation we want to find the inverse for
-     * @return the inverse permutation
-     */
-    private int[] invert(int[] perm) {
-        int[] inverse = new int[perm.length];
-        for (int newPos=0; newPos < perm.length; newPos++) {
-            for (int c=0; c < perm.length; c++) {
-                if (perm[c] == newPos) {
-                    inverse[newPos] = c;
-                    break;
-                }
-            }
-        }
-        return inverse;
-    }
-
-    /**
-     * Decode a cipher text using Permutation cipher assuming encoded with given permutation
+     * Decode a cipher text using Permutation cipher assuming encoded with given permutation.
+     * Read across, each row is put back in column order, as encoding with the inverse
+     * permutation would, e.g. 1,2,0,4,3 => 2,0,1,4,3, and the last row is padded with X.
+     * Read down, the cipher text is the columns one after the other, so for 3,0,1,2 the
+     * text "EHSLTAEDNETLHSEDEWOETFTAAFCL" is decoded by reading column 1, then 2, 3 and 0 across
      * @param cipherText the text to be decoded
      * @param dirs a group of directives, we need PERMUTATION (int[])
      * @return the decoded string
      */
     @Override
     public String decode(String cipherText, Directives dirs) {
+        return TranspositionPlan.permutation(dirs.getPermutation(), dirs.isReadAcross(), cipherText.length())
+                .apply(cipherText);
+    }
 
-        int[] inverse = invert(dirs.getPermutation());
-        if (dirs.isReadAcross()) {
-            // we take the column order and de-order it (inverse) and then call encode()
-            // e.g. 1,2,0,4,3 => 2,0,1,4,3
-            Directives newDirs = new Directives();
-            newDirs.setAlphabet(dirs.getAlphabet());
-            newDirs.setLanguage(dirs.getLanguage());
-            newDirs.setPermutation(inverse);
-            newDirs.setReadAcross(true);
-            // now apply the inverse...
-            return encode(cipherText, newDirs);
-        } else {
-            //String plainText = "DEFENDTHEEASTWALLOFTHECASTLE";
-            // DEFE
-            // NDTH
-            // EEAS
-            // TWAL
-            // LOFT
-            // HECA
-            // STLE
-            // encoded (3,0,1,2:down) is then:
-            // EHSLTAE
-            // DNETLHS
-            // EDEWOET
-            // FTAAFCL
-            // inverse would be using ROWS:1,2,3,0, we read in col 1, then col 2, then col3, ...
-            char[] plainText = new char[cipherText.length()];
-            int lengthOfRow = cipherText.length()/inverse.length;
-            for (int colPos = 0; colPos < lengthOfRow; colPos++) {
-                for (int rowPos = 0; rowPos < inverse.length; rowPos++) {
-                    plainText[colPos*inverse.length+rowPos] = cipherText.charAt(inverse[rowPos]*lengthOfRow+colPos);
-                }
-            }
-            return String.valueOf(plainText);
-        }
+    /**
+     * Brute force may try every order of the columns, until there are enough columns to prune
+     * @param cipherText the text to be cracked
+     * @param dirs the directives of the crack
+     * @return the guessed number of keys to try
+     */
+    @Override
+    public long estimateCrackWork(String cipherText, Directives dirs) {
+        if (dirs.getCrackMethod() != CrackMethod.BRUTE_FORCE)
+            return super.estimateCrackWork(cipherText, dirs);
+        long work = 1;
+        for (int columns = 2; columns <= Math.min(MAX_UNPRUNED_COLUMNS, cipherText.length()); columns++)
+            work = multiplyWork(work, columns);
+        return work;
     }
 
     /**
-     * Crack a permutation cipher by either Brute Force or Dictionary check
+     * Crack a permutation cipher by either Brute Force, Dictionary check or Column Adjacency
      * @param cipherText the text to try to crack
      * @param dirs the directives with alphabet and cribs
      * @return the result of the crack attempt
@@ -335,6 +312,8 @@ public class Permutation extends Cipher {
         CrackMethod method = dirs.getCrackMethod();
         if (method == CrackMethod.BRUTE_FORCE) {
             return crackBruteForce(cipherText, dirs, crackId);
+        } else if (method == CrackMethod.COLUMN_ADJACENCY) {
+            return crackColumnAdjacency(cipherText, dirs, crackId);
         } else {
             return crackDictionary(cipherText, dirs, crackId);
         }
@@ -379,64 +358,72 @@ public class Permutation extends Cipher {
      * @return the result of the crack attempt
      */
     @NotNull
-    private CrackResult crackDictionary(String cipherText, Directives dirs, int crackId) {
+    private CrackResult crackDictionary(String cipherText, final Directives dirs, int crackId) {
         String cribString = dirs.getCribs();
-        Set<String> cribSet = Cipher.getCribSet(cribString);
+        final Set<String> cribSet = Cipher.getCribSet(cribString);
         Dictionary dict = dirs.getLanguage().getDictionary();
         CrackMethod crackMethod = dirs.getCrackMethod();
-        String reverseCipherText = new StringBuilder(cipherText).reverse().toString();
-
-        int wordsChecked = 0, wordsRead = 0;
-        String foundPlainText = null;
-        boolean foundReadAcross = false;
-        int[] foundPermutation = null;
-        int foundCount = 0;
-        StringBuilder explain = new StringBuilder();
-        for (String word : dict) {
-            if (wordsRead++ % 500 == 499) {
-                if (CrackResults.isCancelled(crackId))
-                    return new CrackResult(crackMethod, this, cipherText,"Crack cancelled", CrackState.CANCELLED);
-                Log.i("CipherCrack", "Cracking Permutation Dict: " + wordsRead + " words tried");
-                CrackResults.updateProgressDirectly(crackId, wordsRead+" words of "+dict.size()+": "+100*wordsRead/dict.size()+"% complete, found="+foundCount);
-            }
-            String keyword = word.toUpperCase();
-            int[] possiblePerm = convertKeywordToColumns(keyword,0);
-            if (possiblePerm != null) {
-                wordsChecked++;
-                dirs.setPermutation(possiblePerm);
-                // try read across and read down
-                for (Boolean direction : Arrays.asList(Boolean.TRUE, Boolean.FALSE)) {
-                    dirs.setReadAcross(direction);
-                    String plainText = decode(cipherText, dirs);
-                    if (containsAllCribs(plainText, cribSet)) {
-                        reportDictSuccess(dirs, explain, false, cribString, keyword, plainText);
-                        foundCount++;
-                        foundReadAcross = dirs.isReadAcross();
-                        foundPermutation = Arrays.copyOf(possiblePerm, possiblePerm.length);
-                        foundPlainText = plainText;
+        final String forwardCipherText = cipherText;
+        final String reverseCipherText = new StringBuilder(cipherText).reverse().toString();
+
+        // each word gives a permutation read across and read down, the key is the directives
+        // holding both so the words can be shared across threads
+        DictionaryCrackEngine<Directives> engine = newDictionaryCrackEngine(dirs, crackId,
+                new DictionaryCrackEngine.KeyTrierFactory<Directives>() {
+            @Override
+            public DictionaryCrackEngine.KeyTrier<Directives> newKeyTrier() {
+                return new DictionaryCrackEngine.KeyTrier<Directives>() {
+                    private String permutationWord = null;
+                    private int[] possiblePerm = null;
+
+                    @Override
+                    public int getKeyCount(String word) {
+                        return 2;
                     }
-                    if (dirs.considerReverse()) {
-                        plainText = decode(reverseCipherText, dirs);
-                        if (containsAllCribs(plainText, cribSet)) {
-                            reportDictSuccess(dirs, explain, true, cribString, keyword, plainText);
-                            foundCount++;
-                            foundReadAcross = dirs.isReadAcross();
-                            foundPermutation = Arrays.copyOf(possiblePerm, possiblePerm.length);
-                            foundPlainText = plainText;
+
+                    // try read across and read down
+                    @Override
+                    public Directives getKey(String word, int variant) {
+                        if (!word.equals(permutationWord)) {
+                            possiblePerm = convertKeywordToColumns(word, 0);
+                            permutationWord = word;
                         }
+                        if (possiblePerm == null)
+                            return null;
+                        Directives keyDirs = new Directives(dirs);
+                        keyDirs.setPermutation(possiblePerm);
+                        keyDirs.setReadAcross(variant == 0);
+                        return keyDirs;
                     }
-                }
+
+                    @Override
+                    public String tryKey(Directives keyDirs, boolean reverse) {
+                        String plainText = decode(reverse ? reverseCipherText : forwardCipherText, keyDirs);
+                        return containsAllCribs(plainText, cribSet) ? plainText : null;
+                    }
+                };
             }
-        }
-        if (foundPlainText != null) {
-            dirs.setReadAcross(foundReadAcross);
-            dirs.setPermutation(foundPermutation);
-            return new CrackResult(crackMethod, this, dirs, cipherText, foundPlainText, explain.toString());
+        });
+        List<DictionaryCrackEngine.Match<Directives>> matches = engine.run();
+        if (matches == null)
+            return new CrackResult(crackMethod, this, cipherText,"Crack cancelled", CrackState.CANCELLED);
+
+        // the last match found is used
+        if (matches.size() > 0) {
+            StringBuilder explain = new StringBuilder();
+            for (DictionaryCrackEngine.Match<Directives> match : matches) {
+                reportDictSuccess(match.getKey(), explain, match.isReverse(), cribString, match.getWord(), match.getPlainText());
+            }
+            DictionaryCrackEngine.Match<Directives> found = matches.get(matches.size() - 1);
+            dirs.setKeyword(found.getWord());
+            dirs.setReadAcross(found.getKey().isReadAcross());
+            dirs.setPermutation(found.getKey().getPermutation());
+            return new CrackResult(crackMethod, this, dirs, cipherText, found.getPlainText(), explain.toString());
         }
         dirs.setPermutation(null);
         permutation = null;
         String explainNotFound = "Fail: Dictionary scan: tried using "
-                + wordsChecked
+                + engine.getWordsUsed()
                 + " acceptable words in the dictionary of "
                 + dict.size()
                 + " words as keys to form permutations and look for cribs ["
@@ -446,134 +433,28 @@ public class Permutation extends Cipher {
     }
 
     /**
-     * Take an input set and check the decode for all possible permutations, recursively
-     * Completes at first one if dirs.stopAtFirst is true, else tries to locate all matches
-     * @param start the start in input to commence from, starts at 0 and increases recursively
-     * @param input the possible integers in the permutations, e.g. [0,1,2,3,4,5]
-     * @param cipherText the cipher text to be decoded
-     * @param reverseCipherText the cipher text to be decoded, also to be checked
-     * @param cribSet the set of cribs to check for in any decoded text
-     * @param dirs the Directives to use to guide the decoding
-     * @return the result of a successful crack finding all cribs, or null if crack was not successful
+     * Describe a column order found by the brute force search
+     * @param match the column order whose decode contained the cribs
+     * @return a line for the explain text
      */
-    @Nullable
-    private CrackResult checkPossiblePermutations(int start, int[] input, String cipherText, String reverseCipherText,
-                                                  Set<String> cribSet, Directives dirs, StringBuilder explain, int crackId) {
-        if (start == input.length) {
-            dirs.setPermutation(input);
-            if (decodes++ % 2000 == 1999) {
-                if (CrackResults.isCancelled(crackId))
-                    return new CrackResult(dirs.getCrackMethod(), this, cipherText, "Crack cancelled", CrackState.CANCELLED);
-                CrackResults.updateProgressDirectly(crackId, decodes+" decodes of "+maxDecodes+": "+100*decodes/maxDecodes+"% complete, found="+foundCount);
-                Log.i(TAG, "Permutation crack has performed "+decodes+" of "+maxDecodes+", "+(100*decodes/maxDecodes)+"%, found="+foundCount);
-            }
-            dirs.setReadAcross(false);
-            String plainText = decode(cipherText, dirs);
-            boolean containsAllCribs = containsAllCribs(plainText, cribSet);
-            if (!containsAllCribs) {
-                dirs.setReadAcross(true);
-                plainText = decode(cipherText, dirs);
-                containsAllCribs = containsAllCribs(plainText, cribSet);
-            }
-            if (containsAllCribs) {
-                String result = "Found with "
-                        + input.length
-                        + " columns: "
-                        + Permutation.permutationToString(input)
-                        + ":"
-                        + (dirs.isReadAcross()?"across":"down")
-                        + ", text starts: "
-                        + plainText.substring(0, Math.min(CRACK_PLAIN_LENGTH, plainText.length()))
-                        + "\n";
-                permutation = Arrays.copyOf(input, input.length);
-                readAcross = dirs.isReadAcross();
-                if (dirs.stopAtFirst()) {
-                    result = "Success: Brute Force: tried decode all permutations up to "
-                            + maxCrackColumns
-                            + " columns, looking for cribs ["
-                            + dirs.getCribs()
-                            + "] in the decoded text.\n"
-                            + result;
-                    dirs.setPermutation(permutation);
-                    dirs.setReadAcross(readAcross);
-                    return new CrackResult(dirs.getCrackMethod(), this, dirs, cipherText, plainText, result);
-                } else {
-                    dirs.setPermutation(permutation);
-                    dirs.setReadAcross(readAcross);
-                    dirs.setKeyword(plainText);
-                    explain.append(result);
-                    foundCount++;
-                }
-            }
-
-            // now try checking the decode of the REVERSE text for the cribs
-            if (dirs.considerReverse()) {
-                dirs.setReadAcross(false);
-                plainText = decode(reverseCipherText, dirs);
-                containsAllCribs = containsAllCribs(plainText, cribSet);
-                if (!containsAllCribs) {
-                    dirs.setReadAcross(true);
-                    plainText = decode(reverseCipherText, dirs);
-                    containsAllCribs = containsAllCribs(plainText, cribSet);
-                }
-                if (containsAllCribs) {
-                    String result = "Found with REVERSE "
-                            + input.length
-                            + " columns: "
-                            + Permutation.permutationToString(input)
-                            + ":"
-                            + (dirs.isReadAcross() ? "across" : "down")
-                            + ", text starts: "
-                            + plainText.substring(0, Math.min(CRACK_PLAIN_LENGTH, plainText.length()))
-                            + "\n";
-                    permutation = Arrays.copyOf(input, input.length);
-                    readAcross = dirs.isReadAcross();
-                    if (dirs.stopAtFirst()) {
-                        result = "Success: Brute Force: tried decode all permutations up to "
-                                + maxCrackColumns
-                                + " columns, looking for cribs ["
-                                + dirs.getCribs()
-                                + "] in the decoded text.\n"
-                                + result;
-                        dirs.setPermutation(permutation);
-                        dirs.setReadAcross(readAcross);
-                        return new CrackResult(dirs.getCrackMethod(), this, dirs, cipherText, plainText, result);
-                    } else {
-                        dirs.setKeyword(plainText);
-                        explain.append(result);
-                        foundCount++;
-                    }
-                }
-            }
-        } else {
-            for (int i = start; i < input.length; i++) {
-                // swapping
-                int temp = input[i]; input[i] = input[start]; input[start] = temp;
-                CrackResult result = checkPossiblePermutations(start + 1, input, cipherText, reverseCipherText, cribSet, dirs, explain, crackId);
-                if (result != null)
-                    return result;
-                temp = input[i]; input[i] = input[start]; input[start] = temp;
-            }
-        }
-        return null;
-    }
-
-    /**
-     * Create an int array with set number of columns and containing 0..columns-1
-     * This will be used during brute-force crack with elements switching around
-     * @param columns the number of columns in the array
-     * @return the constructed column array
-     */
-    private int [] createPermutationColumns(int columns) {
-        int[] input = new int[columns];
-        for (int a = 0; a < columns; a++) {
-            input[a] = a;
-        }
-        return input;
+    private static String describeFound(PermutationSearch.Found match) {
+        String plainText = match.getPlainText();
+        return "Found with "
+                + (match.isReverse() ? "REVERSE " : "")
+                + match.getPermutation().length
+                + " columns: "
+                + Permutation.permutationToString(match.getPermutation())
+                + ":"
+                + (match.isReadAcross() ? "across" : "down")
+                + ", text starts: "
+                + plainText.substring(0, Math.min(CRACK_PLAIN_LENGTH, plainText.length()))
+                + "\n";
     }
 
     /**
-     * Crack a permutation cipher by checking all permutations (to a max) and looking for cribs
+     * Crack a permutation cipher by checking all permutations (to a max) and looking for cribs.
+     * Column orders are built left to right and dropped early when the columns placed make
+     * unlikely bigrams or cannot hold the cribs, see PermutationSearch
      * @param cipherText the text to try to crack
      * @param dirs the directives with alphabet and cribs
      * @return the result of the crack attempt
@@ -583,53 +464,113 @@ public class Permutation extends Cipher {
         String cribString = dirs.getCribs();
         Set<String> cribSet = Cipher.getCribSet(cribString);
         CrackResults.updateProgressDirectly(crackId, "Calculating permutation limit");
-        maxCrackColumns = Integer.valueOf(Settings.instance().getString(context, R.string.pref_limit_railfence_rails, Settings.DEFAULT_LIMIT_PERM_COLS));
-        String reverseCipherText = new StringBuilder(cipherText).reverse().toString();
-
-        // calculate the maximum number of decodes we could do
-        // 1, 2, 6, 24, 120, 720, 5040, 40320, 362880, etc
-        maxDecodes = 1;
-        int thisDecodes = 1;
-        for (int columns = 1; columns <= maxCrackColumns; columns++) {
-            thisDecodes *= columns;
-            maxDecodes += thisDecodes;
-        }
+        maxCrackColumns = Integer.valueOf(Settings.instance().getString(Settings.PREF_LIMIT_PERM_BRUTE_FORCE_COLS, Settings.DEFAULT_LIMIT_PERM_COLS));
+        PermutationSearch search = new PermutationSearch(cipherText, cribSet, dirs.getLanguage(), crackId,
+                dirs.stopAtFirst(), dirs.considerReverse());
 
-        // loop through the possible number of columns, trying every combination
-        decodes = foundCount = 0;
+        // loop through the possible number of columns, the search for each is done in parallel
         StringBuilder explain = new StringBuilder();
+        StringBuilder notSearched = new StringBuilder();
+        PermutationSearch.Found first = null;
         CrackResults.updateProgressDirectly(crackId, "Looking at first permutations");
         for (int columns = 1; columns <= maxCrackColumns; columns++) {
-            Log.i("CipherCrack", "Cracking Permutation with " + columns + " columns");
-            // do the checking in-line, without creating massive lists of permutations
-            // Do the decode/containsAllCribs check in createPossiblePermutations() and if found
-            // then return a CrackResult else return null and try next size column
-            int[] input = createPermutationColumns(columns);
-            CrackResult crackResult = checkPossiblePermutations(0, input, cipherText, reverseCipherText, cribSet, dirs, explain, crackId);
-            if (crackResult != null) // we stopped at first
-                return crackResult;
+            // encoding pads the text to fill the last row, so only whole rows are possible
+            if (cipherText.length() % columns != 0)
+                continue;
+            // too few rows to prune with, so every order would be decoded, too many if large
+            if (columns > MAX_UNPRUNED_COLUMNS && !search.canPrune(columns)) {
+                notSearched.append(notSearched.length() == 0 ? "" : ", ").append(columns);
+                continue;
+            }
+            CrackLog.i(TAG, "Cracking Permutation with " + columns + " columns");
+            List<PermutationSearch.Found> matches = search.search(columns);
+            if (matches == null)
+                return new CrackResult(dirs.getCrackMethod(), this, cipherText, "Crack cancelled", CrackState.CANCELLED);
+            for (PermutationSearch.Found match : matches) {
+                explain.append(describeFound(match));
+                if (first == null)
+                    first = match;
+            }
+            if (first != null && dirs.stopAtFirst())
+                break;
+        }
+        String searched = "tried decode all permutations up to "
+                + maxCrackColumns
+                + " columns that fit the text length, building them column by column and dropping those"
+                + " with unlikely bigrams between neighbouring columns or no room for the cribs ("
+                + search.getBranches()
+                + " partial permutations), looking for cribs ["
+                + cribString
+                + "] in the decoded text";
+        if (notSearched.length() > 0) {
+            searched += ", but not " + notSearched + " columns as the text has too few rows to drop any";
         }
-        if (explain.length() > 0) { // we found at least one result, choose most recent to reply with
-            String plainText = dirs.getKeyword();
-            dirs.setKeyword(null);
+        if (first != null) { // we found at least one result, the one with fewest columns is used
+            permutation = first.getPermutation();
+            readAcross = first.isReadAcross();
             dirs.setPermutation(permutation);
             dirs.setReadAcross(readAcross);
-            String result = "Success: Brute Force: tried decode all permutations up to "
-                    + maxCrackColumns
-                    + " columns, looking for cribs ["
-                    + dirs.getCribs()
-                    + "] in the decoded text.\n"
-                    + explain.toString();
-            return new CrackResult(dirs.getCrackMethod(), this, dirs, cipherText, plainText, result);
+            String result = "Success: Brute Force: " + searched + ".\n" + explain.toString();
+            return new CrackResult(dirs.getCrackMethod(), this, dirs, cipherText, first.getPlainText(), result);
         }
         // did not find any result
         dirs.setPermutation(null);
         permutation = null;
-        String explainFail = "Fail: Brute force approach: tried decode all permutations up to "
-                + maxCrackColumns
-                + " columns looking for cribs ["
-                + cribString
-                + "] in the decoded text but did not find them.\n";
+        String explainFail = "Fail: Brute force approach: " + searched + " but did not find them.\n";
         return new CrackResult(dirs.getCrackMethod(), this, cipherText, explainFail);
     }
+
+    /**
+     * Crack a permutation cipher by ordering the columns by how likely the bigrams are that
+     * each pair of neighbouring columns make, for all numbers of columns up to a limit
+     * @param cipherText the text to try to crack
+     * @param dirs the directives with language and cribs
+     * @return the result of the crack attempt
+     */
+    @NotNull
+    private CrackResult crackColumnAdjacency(String cipherText, Directives dirs, int crackId) {
+        String cribString = dirs.getCribs();
+        Set<String> cribSet = Cipher.getCribSet(cribString);
+        CrackMethod crackMethod = dirs.getCrackMethod();
+        ColumnAdjacencySearch search = new ColumnAdjacencySearch(cipherText, cribSet, dirs.getLanguage(),
+                crackId, dirs.considerReverse());
+        List<ColumnAdjacencySearch.Ordered> orders = search.search();
+        if (orders == null)
+            return new CrackResult(crackMethod, this, cipherText, "Crack cancelled", CrackState.CANCELLED);
+
+        // the orders are best scoring first, the best one that gives the cribs is used
+        String searched = "Column Adjacency: scored every pair of columns side by side by their bigrams for "
+                + ColumnAdjacencySearch.MIN_COLUMNS
+                + " to "
+                + ColumnAdjacencySearch.MAX_COLUMNS
+                + " columns that fit the text length ("
+                + search.getTaskCount()
+                + " column counts and layouts), ordered the columns greedily then moved runs of columns"
+                + " while the score improved, looking for cribs ["
+                + cribString
+                + "] in the decoded text";
+        StringBuilder explain = new StringBuilder();
+        PermutationSearch.Found first = null;
+        for (ColumnAdjacencySearch.Ordered order : orders) {
+            if (order.hasCribs()) {
+                explain.append(describeFound(order.getFound()));
+                if (first == null)
+                    first = order.getFound();
+            }
+        }
+        if (first != null) {
+            permutation = first.getPermutation();
+            readAcross = first.isReadAcross();
+            dirs.setPermutation(permutation);
+            dirs.setReadAcross(readAcross);
+            String result = "Success: " + searched + ".\n" + explain.toString();
+            return new CrackResult(crackMethod, this, dirs, cipherText, first.getPlainText(), result);
+        }
+        dirs.setPermutation(null);
+        permutation = null;
+        String explainFail = "Fail: " + searched + " but did not find them.\n";
+        if (orders.size() > 0)
+            explainFail += "Best scoring order: " + describeFound(orders.get(0).getFound());
+        return new CrackResult(crackMethod, this, cipherText, explainFail);
+    }
 }
@@ -0,0 +1,457 @@
+package mnh.game.ciphercrack.cipher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import mnh.game.ciphercrack.language.Language;
+import mnh.game.ciphercrack.services.CrackHandle;
+import mnh.game.ciphercrack.services.CrackResults;
+import mnh.game.ciphercrack.util.CrackPool;
+
+/**
+ * Brute force search for the column order of a Permutation cipher.
+ * However the cipher text was read out (across the rows or down the columns) it can be cut
+ * into one piece for each column of the plain text, and the plain text is those pieces side by
+ * side in the right order. The order is built up left to right, and a partial order is dropped
+ * as soon as the bigrams down the rows between the columns placed so far are too unlikely for
+ * the language, or the columns placed cannot hold a crib that is too long to fit in the columns
+ * still to be placed. The bigram test allows for the noise in a few rows, so is loose with two
+ * or three columns placed and tightens as more are placed.
+ * Only full orders that survive are turned into text and checked for all the cribs.
+ * The search for each way of reading the text and each first column is split across the
+ * shared crack pool
+ */
+class PermutationSearch {
+
+    // how many standard deviations below the average for the language the bigrams of the
+    // columns placed can be before they are dropped, high enough that the right order survives
+    static final double BIGRAM_THRESHOLD_DEVIATIONS = 3.0;
+    // how far below the average for the language a real text's bigrams can be on average, as
+    // the words of any one text are not quite those the language's tables were built from
+    static final double BIGRAM_MEAN_ALLOWANCE = 0.1;
+
+    // with fewer rows than this the bigram score of a pair of columns is too noisy to prune with
+    static final int MIN_ROWS_TO_PRUNE = 16;
+
+    // a pair of columns with fewer letter pairs than this down the rows cannot be judged at all
+    static final int MIN_LETTERS_TO_SCORE = MIN_ROWS_TO_PRUNE / 2;
+
+    // how many partial orders are looked at between checks for cancellation
+    private static final int CANCEL_CHECK_INTERVAL = 4096;
+
+    // ways the cipher text is cut into columns, in the order the serial crack tried them
+    static final boolean[] LAYOUT_REVERSE = { false, false, true, true };
+    static final boolean[] LAYOUT_ACROSS = { false, true, false, true };
+
+    /**
+     * A column order whose decode contained all the cribs
+     */
+    static class Found {
+        private final int[] permutation;
+        private final int[] order;
+        private final int layout;
+        private final String plainText;
+
+        Found(int[] order, int layout, String plainText) {
+            this.order = order;
+            this.layout = layout;
+            this.plainText = plainText;
+            // the plain column each cipher column came from is the permutation used to encode
+            permutation = new int[order.length];
+            for (int plainColumn = 0; plainColumn < order.length; plainColumn++)
+                permutation[order[plainColumn]] = plainColumn;
+        }
+
+        int[] getPermutation() { return permutation; }
+        boolean isReadAcross() { return LAYOUT_ACROSS[layout]; }
+        boolean isReverse() { return LAYOUT_REVERSE[layout]; }
+        String getPlainText() { return plainText; }
+    }
+
+    // the order the serial crack would have found them: layout, then column order
+    private static final Comparator<Found> SERIAL_ORDER = new Comparator<Found>() {
+        @Override
+        public int compare(Found a, Found b) {
+            if (a.layout != b.layout)
+                return Integer.compare(a.layout, b.layout);
+            for (int i = 0; i < a.order.length; i++) {
+                if (a.order[i] != b.order[i])
+                    return Integer.compare(a.order[i], b.order[i]);
+            }
+            return 0;
+        }
+    };
+
+    private final String cipherText;
+    private final String reverseCipherText;
+    private final Set<String> cribSet;
+    private final char[][] cribs;           // upper case, null if cribs cannot be checked early
+    private final float[] bigramLogProbabilities;
+    private final String languageAlphabet;
+    private final double bigramMean;        // average bigram log probability in the language
+    private final double bigramDeviation;   // standard deviation of that log probability
+    private final double letterShare;       // proportion of the text that is letters
+    private final CrackHandle handle;
+    private final boolean stopAtFirst;
+    private final boolean considerReverse;
+
+    private final AtomicLong firstMatchOrder = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+    private final AtomicLong branches = new AtomicLong(0);
+    private final List<Found> found = new ArrayList<>();
+
+    /**
+     * Prepare to search for the column order of a cipher text
+     * @param cipherText the text to be cracked
+     * @param cribSet the cribs that must all be in the plain text
+     * @param language the language of the plain text, its bigrams are used to prune, or null
+     * @param crackId the id of the crack, for progress and cancellation
+     * @param stopAtFirst whether the search for a number of columns stops at the first match
+     * @param considerReverse whether to also look at the reversed cipher text
+     */
+    PermutationSearch(String cipherText, Set<String> cribSet, Language language, int crackId,
+                      boolean stopAtFirst, boolean considerReverse) {
+        this.cipherText = cipherText;
+        this.reverseCipherText = new StringBuilder(cipherText).reverse().toString();
+        this.cribSet = cribSet;
+        this.handle = CrackResults.handleFor(crackId);
+        this.stopAtFirst = stopAtFirst;
+        this.considerReverse = considerReverse;
+
+        // the crib check ignores whitespace, so cribs can only be looked for early without any
+        boolean hasWhitespace = false;
+        for (int pos = 0; pos < cipherText.length() && !hasWhitespace; pos++)
+            hasWhitespace = Character.isWhitespace(cipherText.charAt(pos));
+        if (hasWhitespace) {
+            cribs = null;
+        } else {
+            cribs = new char[cribSet.size()][];
+            int c = 0;
+            for (String crib : cribSet)
+                cribs[c++] = crib.toCharArray();
+        }
+
+        // how the bigram log probabilities of real text in the language are spread
+        if (language == null) {
+            bigramLogProbabilities = null;
+            languageAlphabet = null;
+            bigramMean = bigramDeviation = letterShare = 0.0;
+        } else {
+            bigramLogProbabilities = language.getNGramLogProbabilities(2);
+            languageAlphabet = language.getAlphabet();
+            double mean = averageLogProbability(bigramLogProbabilities), squares = 0.0;
+            for (float logProbability : bigramLogProbabilities)
+                squares += Math.pow(10.0, logProbability) * logProbability * logProbability;
+            bigramMean = mean;
+            bigramDeviation = Math.sqrt(Math.max(0.0, squares - mean * mean));
+            int letters = 0;
+            for (int pos = 0; pos < cipherText.length(); pos++) {
+                if (languageAlphabet.indexOf(Character.toUpperCase(cipherText.charAt(pos))) >= 0)
+                    letters++;
+            }
+            letterShare = (cipherText.length() == 0) ? 0.0 : (double)letters / cipherText.length();
+        }
+    }
+
+    /**
+     * Whether partial column orders can be pruned by bigram score, without this a search of
+     * many columns is a full search of every order
+     * @param columns the number of columns
+     * @return true if there are enough rows to judge pairs of columns by their bigrams
+     */
+    boolean canPrune(int columns) {
+        return bigramLogProbabilities != null && cipherText.length() / columns >= MIN_ROWS_TO_PRUNE;
+    }
+
+    /**
+     * @return the number of partial and full column orders looked at so far
+     */
+    long getBranches() { return branches.get(); }
+
+    /**
+     * Try every order of a number of columns, forward and (if asked) reverse text, read across
+     * and read down, pruning where possible
+     * @param columns the number of columns, must divide the length of the text
+     * @return the orders whose decode contains all the cribs, in the order the serial search
+     * would find them, or null if the crack was cancelled
+     */
+    List<Found> search(final int columns) {
+        found.clear();
+        firstMatchOrder.set(Long.MAX_VALUE);
+        final int rows = cipherText.length() / columns;
+
+        // the least total of pair scores with each number of pairs placed, the average of
+        // the letter pairs down the rows varies less the more pairs and rows there are
+        double[] minTotals = new double[columns];
+        double letterPairs = Math.max(1.0, rows * letterShare * letterShare);
+        for (int pairs = 1; pairs < columns; pairs++)
+            minTotals[pairs] = pairs * (bigramMean - BIGRAM_MEAN_ALLOWANCE) - BIGRAM_THRESHOLD_DEVIATIONS * bigramDeviation * Math.sqrt(pairs / letterPairs);
+
+        // one task per way of reading the text and first column, the search fans out from there
+        final List<Branch> tasks = new ArrayList<>();
+        for (int layout = 0; layout < LAYOUT_REVERSE.length; layout++) {
+            if (LAYOUT_REVERSE[layout] && !considerReverse)
+                continue;
+            // with one row or one column, reading across or down is the same thing
+            if (LAYOUT_ACROSS[layout] && (rows == 1 || columns == 1))
+                continue;
+            String text = LAYOUT_REVERSE[layout] ? reverseCipherText : cipherText;
+            char[][] columnText = cutIntoColumns(text, columns, rows, LAYOUT_ACROSS[layout]);
+            char[][] upperColumnText = toUpperCase(columnText);
+            float[][] pairScores = canPrune(columns)
+                    ? scorePairs(upperColumnText, languageAlphabet, bigramLogProbabilities, (float)bigramMean)
+                    : null;
+            for (int first = 0; first < columns; first++)
+                tasks.add(new Branch(tasks.size(), layout, columnText, upperColumnText, pairScores, minTotals, columns, rows, first));
+        }
+        int taskCount = tasks.size();
+        handle.startStage(columns + " column Permutation search", "branches", taskCount);
+        CrackPool.get().invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+        if (cancelled.get())
+            return null;
+
+        List<Found> results = new ArrayList<>(found);
+        Collections.sort(results, SERIAL_ORDER);
+        if (stopAtFirst && results.size() > 1)
+            results = results.subList(0, 1);
+        return results;
+    }
+
+    /**
+     * The average log probability of a gram in text of the language
+     * @param logProbabilities the log probability of every gram
+     * @return the sum of each log probability weighted by its probability
+     */
+    static double averageLogProbability(float[] logProbabilities) {
+        double average = 0.0;
+        for (float logProbability : logProbabilities)
+            average += Math.pow(10.0, logProbability) * logProbability;
+        return average;
+    }
+
+    /**
+     * Cut a cipher text into the piece that came from each plain column
+     * @param text the cipher text, a whole number of rows
+     * @param columns the number of columns
+     * @param rows the number of rows
+     * @param readAcross whether the text was read across the rows rather than down the columns
+     * @return the letters of each column, top to bottom
+     */
+    static char[][] cutIntoColumns(String text, int columns, int rows, boolean readAcross) {
+        char[][] columnText = new char[columns][rows];
+        for (int column = 0; column < columns; column++) {
+            for (int row = 0; row < rows; row++) {
+                columnText[column][row] = readAcross
+                        ? text.charAt(row * columns + column)
+                        : text.charAt(column * rows + row);
+            }
+        }
+        return columnText;
+    }
+
+    /**
+     * @param columnText the letters of each column
+     * @return a copy of the letters of each column in upper case
+     */
+    static char[][] toUpperCase(char[][] columnText) {
+        char[][] upperColumnText = new char[columnText.length][];
+        for (int column = 0; column < columnText.length; column++)
+            upperColumnText[column] = String.valueOf(columnText[column]).toUpperCase().toCharArray();
+        return upperColumnText;
+    }
+
+    /**
+     * Join columns side by side in an order to give the plain text, read across the rows
+     * @param columnText the letters of each column
+     * @param order the column to put at each position, left to right
+     * @return the plain text
+     */
+    static String joinColumns(char[][] columnText, int[] order) {
+        int columns = order.length, rows = columnText[0].length;
+        char[] plain = new char[rows * columns];
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++)
+                plain[row * columns + column] = columnText[order[column]][row];
+        }
+        return String.valueOf(plain);
+    }
+
+    /**
+     * Score every pair of columns side by side by the bigrams they make down the rows
+     * @param upperColumnText the upper case letters of each column
+     * @param languageAlphabet the letters of the language
+     * @param bigramLogProbabilities the log probability of each bigram in the language
+     * @param unknownScore the score of a pair with too few letters to judge
+     * @return the average bigram log probability, indexed by left column then right column
+     */
+    static float[][] scorePairs(char[][] upperColumnText, String languageAlphabet,
+                                float[] bigramLogProbabilities, float unknownScore) {
+        int columns = upperColumnText.length, rows = upperColumnText[0].length;
+        int alphabetLength = languageAlphabet.length();
+        int[][] ordinals = new int[columns][rows];
+        for (int column = 0; column < columns; column++) {
+            for (int row = 0; row < rows; row++)
+                ordinals[column][row] = languageAlphabet.indexOf(upperColumnText[column][row]);
+        }
+        float[][] pairScores = new float[columns][columns];
+        for (int left = 0; left < columns; left++) {
+            for (int right = 0; right < columns; right++) {
+                double total = 0.0;
+                int count = 0;
+                for (int row = 0; row < rows; row++) {
+                    int first = ordinals[left][row], second = ordinals[right][row];
+                    if (first >= 0 && second >= 0) {
+                        total += bigramLogProbabilities[first * alphabetLength + second];
+                        count++;
+                    }
+                }
+                // too few letters to judge, e.g. columns of punctuation, so score as usual text
+                pairScores[left][right] = (count < MIN_LETTERS_TO_SCORE) ? unknownScore : (float)(total / count);
+            }
+        }
+        return pairScores;
+    }
+
+    // note a task has finished, the sampler reports progress from the count
+    private void taskDone() {
+        handle.addDone(1);
+    }
+
+    // keep the order of the earliest branch to match, so later branches can be skipped when
+    // stopping at first
+    private void noteFirstMatch(long order) {
+        long current = firstMatchOrder.get();
+        while (order < current && !firstMatchOrder.compareAndSet(current, order)) {
+            current = firstMatchOrder.get();
+        }
+    }
+
+    // the search of all column orders with a given way of reading and first column, the
+    // branches are made in the order the serial search tried them, and each tries its column
+    // orders in that order too
+    private class Branch extends RecursiveAction {
+        private final long branchOrder;
+        private final int layout;
+        private final char[][] columnText;
+        private final char[][] upperColumnText;
+        private final float[][] pairScores;
+        private final double[] minTotals;
+        private final int columns;
+        private final int rows;
+        private final int first;
+        private final int[] order;
+        private final boolean[] used;
+        private long visited = 0;
+        private boolean matched = false;
+
+        Branch(long branchOrder, int layout, char[][] columnText, char[][] upperColumnText, float[][] pairScores,
+               double[] minTotals, int columns, int rows, int first) {
+            this.branchOrder = branchOrder;
+            this.layout = layout;
+            this.columnText = columnText;
+            this.upperColumnText = upperColumnText;
+            this.pairScores = pairScores;
+            this.minTotals = minTotals;
+            this.columns = columns;
+            this.rows = rows;
+            this.first = first;
+            this.order = new int[columns];
+            this.used = new boolean[columns];
+        }
+
+        @Override
+        protected void compute() {
+            order[0] = first;
+            used[first] = true;
+            place(1, 0.0);
+            branches.addAndGet(visited);
+            taskDone();
+        }
+
+        // choose the column to go at position placed, with those before it already chosen
+        // and the total of the pair scores between them
+        private void place(int placed, double total) {
+            if (matched || cancelled.get() || (stopAtFirst && branchOrder > firstMatchOrder.get()))
+                return; // a match in this or an earlier branch means the rest are not needed
+            if (++visited % CANCEL_CHECK_INTERVAL == 0) {
+                if (handle.isCancelled()) {
+                    cancelled.set(true);
+                    return;
+                }
+            }
+            if (cribs != null && !cribsCanFit(placed))
+                return;
+            if (placed == columns) {
+                checkFullOrder();
+                return;
+            }
+            int previous = order[placed - 1];
+            for (int column = 0; column < columns; column++) {
+                if (used[column])
+                    continue;
+                double newTotal = 0.0;
+                if (pairScores != null) {
+                    newTotal = total + pairScores[previous][column];
+                    if (newTotal < minTotals[placed])
+                        continue;
+                }
+                order[placed] = column;
+                used[column] = true;
+                place(placed + 1, newTotal);
+                used[column] = false;
+            }
+        }
+
+        // build the plain text from a full order and look for all the cribs
+        private void checkFullOrder() {
+            String plainText = joinColumns(columnText, order);
+            if (Cipher.containsAllCribs(plainText, cribSet)) {
+                synchronized (found) {
+                    found.add(new Found(order.clone(), layout, plainText));
+                    handle.addMatches(1);
+                }
+                if (stopAtFirst) {
+                    matched = true;
+                    noteFirstMatch(branchOrder);
+                }
+            }
+        }
+
+        // whether every crib too long to fit in the columns not yet placed could be in the text
+        private boolean cribsCanFit(int placed) {
+            for (char[] crib : cribs) {
+                if (crib.length > columns - placed && !cribCanFit(crib, placed))
+                    return false;
+            }
+            return true;
+        }
+
+        // look for a place in the text where the crib matches the letters in the placed columns
+        private boolean cribCanFit(char[] crib, int placed) {
+            int length = rows * columns;
+            for (int start = 0; start + crib.length <= length; start++) {
+                boolean fits = true;
+                for (int i = 0; i < crib.length && fits; i++) {
+                    int pos = start + i;
+                    int column = pos % columns;
+                    if (column < placed)
+                        fits = upperColumnText[order[column]][pos / columns] == crib[i];
+                }
+                if (fits)
+                    return true;
+            }
+            return false;
+        }
+    }
+}
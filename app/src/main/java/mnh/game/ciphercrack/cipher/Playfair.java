@@ -6,7 +6,6 @@ import android.text.Editable;
 import android.text.InputFilter;
 import android.text.Spanned;
 import android.text.TextWatcher;
-import android.util.Log;
 import android.view.View;
 import android.widget.Button;
 import android.widget.EditText;
@@ -15,19 +14,20 @@ import android.widget.RadioButton;
 import android.widget.RadioGroup;
 import android.widget.TextView;
 
-import java.util.HashSet;
-import java.util.Properties;
-import java.util.Set;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
 
 import androidx.appcompat.app.AppCompatActivity;
 import mnh.game.ciphercrack.R;
 import mnh.game.ciphercrack.language.Dictionary;
 import mnh.game.ciphercrack.language.Language;
 import mnh.game.ciphercrack.services.CrackResults;
-import mnh.game.ciphercrack.util.Climb;
+import mnh.game.ciphercrack.util.CrackLog;
 import mnh.game.ciphercrack.util.CrackMethod;
 import mnh.game.ciphercrack.util.CrackResult;
 import mnh.game.ciphercrack.util.CrackState;
+import mnh.game.ciphercrack.util.DictionaryCrackEngine;
 import mnh.game.ciphercrack.util.Directives;
 import mnh.game.ciphercrack.util.KeywordExtend;
 
@@ -136,7 +136,8 @@ public class Playfair extends Cipher {
                 "2. If the letters are on the same row, replace them with letters to their immediate right, wrapping around if necessary, e.g. TP is encoded as LQ." +
                 "3. If the letters are in the same column, replace them with letters immediately below if required, e.g. EU is encoded as LM." +
                 "To decode a pair of letters, reverse the process.\n" +
-                "This cipher can be broken similar to a substitution cipher by looking at frequencies of digrams, for example with the above table the coding ER=>GM would generally be more common than others.\n";
+                "This cipher can be broken similar to a substitution cipher by looking at frequencies of digrams, for example with the above table the coding ER=>GM would generally be more common than others.\n" +
+                "Without a keyword from the dictionary, the square can be found by simulated anealing: starting from a random square, letters are swapped, and now and again rows or columns are swapped or the square turned round, keeping changes that make the decode more like the language by its quadgrams and sometimes a worse one so as not to get stuck.\n";
     }
 
     /**
@@ -214,8 +215,9 @@ public class Playfair extends Cipher {
             if (lang.getDictionary() == null) {
                 return "No " + lang.getName() + " dictionary is defined";
             }
-            // Check rows and cols
-            if (rows < 3 || rows > 5 || cols < 3 || cols > 5)
+            // Check rows and cols, the anealing can also fill a 6x6 square with letters and digits
+            int maxRowsCols = (crackMethod == CrackMethod.WORD_COUNT) ? 6 : 5;
+            if (rows < 3 || rows > maxRowsCols || cols < 3 || cols > maxRowsCols)
                 return "Cannot crack with rows and columns: "+rowsAndCols;
 
             // check to ensure replace field has even length
@@ -546,6 +548,90 @@ public class Playfair extends Cipher {
         return result.toString();
     }
 
+    /**
+     * Turn cipher text into digraph numbers once, so that many keys can be tried against it with
+     * decodeDigraphs. Letters not in the square are skipped, as decode does, and the digraph of
+     * letters a and b is numbered a*n+b, where n is the number of letters in the square
+     * @param cipherText the text to be decoded
+     * @param squareLetters the upper-case letters of the square, in any order
+     * @return the digraph numbers, without any odd letter at the end
+     */
+    public static int[] toDigraphs(String cipherText, String squareLetters) {
+        int letterCount = squareLetters.length();
+        int[] digraphs = new int[cipherText.length() / 2];
+        int count = 0;
+        int first = -1;
+        for (int pos = 0; pos < cipherText.length(); pos++) {
+            int letter = squareLetters.indexOf(Character.toUpperCase(cipherText.charAt(pos)));
+            if (letter >= 0) {
+                if (first < 0) {
+                    first = letter;
+                } else {
+                    digraphs[count++] = first * letterCount + letter;
+                    first = -1;
+                }
+            }
+        }
+        return Arrays.copyOf(digraphs, count);
+    }
+
+    /**
+     * Compile a key into a digraph-to-digraph table, so decoding is a lookup per digraph rather
+     * than finding the letters in the square and working out their rows and columns
+     * @param key the letters of the square, row by row, using all of the square letters
+     * @param rows the number of rows in the square
+     * @param cols the number of columns in the square
+     * @param squareLetters the upper-case letters of the square, in the order used by toDigraphs
+     * @param table where the two plain letter ordinals for each digraph number are put, size 2*n*n;
+     *              a doubled letter cannot be Playfair cipher text, and decodes to -1, -1
+     */
+    public static void fillDigraphTable(String key, int rows, int cols, String squareLetters, byte[] table) {
+        int letterCount = squareLetters.length();
+        int[] cellOfLetter = new int[letterCount];
+        byte[] letterInCell = new byte[letterCount];
+        for (int cell = 0; cell < letterCount; cell++) {
+            int letter = squareLetters.indexOf(Character.toUpperCase(key.charAt(cell)));
+            cellOfLetter[letter] = cell;
+            letterInCell[cell] = (byte)letter;
+        }
+        for (int letter1 = 0, t = 0; letter1 < letterCount; letter1++) {
+            int row1 = cellOfLetter[letter1] / cols;
+            int col1 = cellOfLetter[letter1] % cols;
+            for (int letter2 = 0; letter2 < letterCount; letter2++, t += 2) {
+                if (letter1 == letter2) {
+                    table[t] = table[t + 1] = -1;
+                    continue;
+                }
+                int row2 = cellOfLetter[letter2] / cols;
+                int col2 = cellOfLetter[letter2] % cols;
+                if (row1 == row2) {
+                    table[t] = letterInCell[row1 * cols + (col1 - 1 + cols) % cols];
+                    table[t + 1] = letterInCell[row2 * cols + (col2 - 1 + cols) % cols];
+                } else if (col1 == col2) {
+                    table[t] = letterInCell[((row1 - 1 + rows) % rows) * cols + col1];
+                    table[t + 1] = letterInCell[((row2 - 1 + rows) % rows) * cols + col2];
+                } else {
+                    table[t] = letterInCell[row1 * cols + col2];
+                    table[t + 1] = letterInCell[row2 * cols + col1];
+                }
+            }
+        }
+    }
+
+    /**
+     * Decode digraph numbers with a table from fillDigraphTable, into a caller-owned buffer
+     * @param digraphs the cipher text digraphs from toDigraphs
+     * @param table the compiled key
+     * @param plain where the plain letter ordinals are put, size at least 2*digraphs.length
+     */
+    public static void decodeDigraphs(int[] digraphs, byte[] table, byte[] plain) {
+        for (int i = 0, p = 0; i < digraphs.length; i++) {
+            int t = digraphs[i] << 1;
+            plain[p++] = table[t];
+            plain[p++] = table[t + 1];
+        }
+    }
+
     /**
      * Crack a Playfair cipher by various means
      *
@@ -570,100 +656,99 @@ public class Playfair extends Cipher {
      * @param dirs       the directives with alphabet and cribs
      * @return the results of the crack attempt
      */
-    private CrackResult crackDictionary(String cipherText, Directives dirs, int crackId) {
+    private CrackResult crackDictionary(String cipherText, final Directives dirs, int crackId) {
         String alphabet = dirs.getAlphabet();
         String cribString = dirs.getCribs();
         CrackMethod crackMethod = dirs.getCrackMethod();
-        String reverseCipherText = new StringBuilder(cipherText).reverse().toString();
+        final String forwardCipherText = cipherText;
+        final String reverseCipherText = new StringBuilder(cipherText).reverse().toString();
 
         // this will be used to generate the keywords
-        alphabet = alphabet.replaceAll("J","");
+        final String squareAlphabet = alphabet.replaceAll("J","");
         dirs.setReplace("JI");
+        final int rows = dirs.getNumberSize() / 10;
+        final int cols = dirs.getNumberSize() % 10;
+        if (rows * cols != squareAlphabet.length())
+            return new CrackResult(crackMethod, this, cipherText, "Fail: Dictionary scan: a "+rows+"x"+cols
+                    +" square cannot hold the "+squareAlphabet.length()+" letters of "+squareAlphabet+"\n");
 
-        // returns the first decode that has all the cribs
+        // each key is compiled to a digraph table, then tried against the text tokenized once
+        final int[] forwardDigraphs = toDigraphs(forwardCipherText, squareAlphabet);
+        final int[] reverseDigraphs = toDigraphs(reverseCipherText, squareAlphabet);
+
+        // the words are shared across threads, a keyword made by more than one word is only tried once
         CrackResults.updateProgressDirectly(crackId, "Starting "+getCipherName()+" dictionary crack");
-        Set<String> cribs = Cipher.getCribSet(cribString);
+        final byte[][] cribOrdinals = Cipher.getCribOrdinals(Cipher.getCribSet(cribString), squareAlphabet);
+        final KeywordExtend[] extendMethods = KeywordExtend.values();
         Dictionary dict = dirs.getLanguage().getDictionary();
-        Set<String> triedKeywords = new HashSet<>(2000);
-        int wordsRead = 0, matchesFound = 0;
-        StringBuilder successResult = new StringBuilder()
-                .append("Success: Dictionary scan: Searched using ")
-                .append(dict.size())
-                .append(" dictionary words as keywords, looking for cribs [")
-                .append(cribString)
-                .append("] in decoded text.\n");
-        String foundPlainText = "", foundKeyword = null;
-        for (String word : dict) {
-            if (wordsRead++ % 200 == 199) {
-                if (CrackResults.isCancelled(crackId))
-                    return new CrackResult(dirs.getCrackMethod(), this, cipherText, "Crack cancelled", CrackState.CANCELLED);
-                Log.i("CipherCrack", "Cracking " + getCipherName() + " Dict: " + wordsRead + " words tried, found="+matchesFound);
-                CrackResults.updateProgressDirectly(crackId, wordsRead+" words of "+dict.size()+": "+100*wordsRead/dict.size()+"% complete, found="+matchesFound);
-            }
-            word = word.toUpperCase();
-
-            // could be a number of ways of extending a partial keyword
-            for (KeywordExtend extendMethod : KeywordExtend.values()) {
-
-                // we need the whole square filled in, ignore the None method
-                if (extendMethod != KeywordExtend.EXTEND_NONE) {
-                    String fullKeywordForSquare = applyKeywordExtend(extendMethod, word, alphabet);
-                    fullKeywordForSquare.replaceAll("J", "I");
-                    // don't try to decode the cipherText with this keyword if already tried
-                    if (!triedKeywords.contains(fullKeywordForSquare)) {
-                        triedKeywords.add(fullKeywordForSquare);
-                        dirs.setKeyword(fullKeywordForSquare);
-                        String plainText = decode(cipherText, dirs);
-                        if (Cipher.containsAllCribs(plainText, cribs)) {
-                            successResult.append("Keyword ")
-                                    .append(fullKeywordForSquare)
-                                    .append(" gave decoded text: ")
-                                    .append(plainText.substring(0, Math.min(Cipher.CRACK_PLAIN_LENGTH, plainText.length())))
-                                    .append("\n");
-                            if (dirs.stopAtFirst()) {
-                                keyword = fullKeywordForSquare;
-                                rowscols = dirs.getNumberSize();
-                                replace = dirs.getReplace();
-                                dirs.setKeyword(foundKeyword);
-                                return new CrackResult(crackMethod, this, dirs, cipherText, plainText, successResult.toString());
-                            } else {
-                                matchesFound++;
-                                foundKeyword = fullKeywordForSquare;
-                                foundPlainText = plainText;
-                            }
-                        }
-                        // now try reverse text
-                        if (dirs.considerReverse()) {
-                            plainText = decode(reverseCipherText, dirs);
-                            if (Cipher.containsAllCribs(plainText, cribs)) {
-                                successResult.append("Keyword ")
-                                        .append(fullKeywordForSquare)
-                                        .append(" gave decoded REVERSE text: ")
-                                        .append(plainText.substring(0, Math.min(Cipher.CRACK_PLAIN_LENGTH, plainText.length())))
-                                        .append("\n");
-                                if (dirs.stopAtFirst()) {
-                                    keyword = fullKeywordForSquare;
-                                    rowscols = dirs.getNumberSize();
-                                    replace = dirs.getReplace();
-                                    dirs.setKeyword(foundKeyword);
-                                    return new CrackResult(crackMethod, this, dirs, cipherText, plainText, successResult.toString());
-                                } else {
-                                    matchesFound++;
-                                    foundKeyword = fullKeywordForSquare;
-                                    foundPlainText = plainText;
-                                }
-                            }
+        DictionaryCrackEngine<String> engine = newDictionaryCrackEngine(dirs, crackId,
+                new DictionaryCrackEngine.KeyTrierFactory<String>() {
+            @Override
+            public DictionaryCrackEngine.KeyTrier<String> newKeyTrier() {
+                return new DictionaryCrackEngine.KeyTrier<String>() {
+                    private final Directives crackDirs = new Directives(dirs);
+                    private final byte[] table = new byte[2 * squareAlphabet.length() * squareAlphabet.length()];
+                    private final byte[] plain = new byte[2 * Math.max(forwardDigraphs.length, reverseDigraphs.length)];
+                    private String tableKeyword = null;
+
+                    // could be a number of ways of extending a partial keyword
+                    @Override
+                    public int getKeyCount(String word) {
+                        return extendMethods.length;
+                    }
+
+                    // we need the whole square filled in, ignore the None method
+                    @Override
+                    public String getKey(String word, int variant) {
+                        if (extendMethods[variant] == KeywordExtend.EXTEND_NONE)
+                            return null;
+                        return applyKeywordExtend(extendMethods[variant], word, squareAlphabet);
+                    }
+
+                    // the text is only decoded as a string once the cribs have been found
+                    @Override
+                    public String tryKey(String fullKeywordForSquare, boolean reverse) {
+                        if (!fullKeywordForSquare.equals(tableKeyword)) {
+                            fillDigraphTable(fullKeywordForSquare, rows, cols, squareAlphabet, table);
+                            tableKeyword = fullKeywordForSquare;
                         }
+                        int[] digraphs = reverse ? reverseDigraphs : forwardDigraphs;
+                        decodeDigraphs(digraphs, table, plain);
+                        if (!Cipher.containsAllCribs(plain, 2 * digraphs.length, cribOrdinals))
+                            return null;
+                        crackDirs.setKeyword(fullKeywordForSquare);
+                        return decode(reverse ? reverseCipherText : forwardCipherText, crackDirs);
                     }
-                }
+                };
             }
-        }
-        if (foundPlainText.length() > 0) {
-            keyword = foundKeyword;
+        });
+        engine.setDedupeKeys(true);
+        List<DictionaryCrackEngine.Match<String>> matches = engine.run();
+        if (matches == null)
+            return new CrackResult(crackMethod, this, cipherText, "Crack cancelled", CrackState.CANCELLED);
+
+        // the last match found is used
+        if (matches.size() > 0) {
+            StringBuilder successResult = new StringBuilder()
+                    .append("Success: Dictionary scan: Searched using ")
+                    .append(dict.size())
+                    .append(" dictionary words as keywords, looking for cribs [")
+                    .append(cribString)
+                    .append("] in decoded text.\n");
+            for (DictionaryCrackEngine.Match<String> match : matches) {
+                String plainText = match.getPlainText();
+                successResult.append("Keyword ")
+                        .append(match.getKey())
+                        .append(match.isReverse() ? " gave decoded REVERSE text: " : " gave decoded text: ")
+                        .append(plainText.substring(0, Math.min(Cipher.CRACK_PLAIN_LENGTH, plainText.length())))
+                        .append("\n");
+            }
+            DictionaryCrackEngine.Match<String> found = matches.get(matches.size() - 1);
+            keyword = found.getKey();
             rowscols = dirs.getNumberSize();
             replace = dirs.getReplace();
-            dirs.setKeyword(foundKeyword);
-            return new CrackResult(crackMethod, this, dirs, cipherText, foundPlainText, successResult.toString());
+            dirs.setKeyword(found.getKey());
+            return new CrackResult(crackMethod, this, dirs, cipherText, found.getPlainText(), successResult.toString());
         } else {
             dirs.setKeyword(null);
             keyword = null;
@@ -677,16 +762,16 @@ public class Playfair extends Cipher {
     }
 
     /**
-     * Crack a Playfair cipher using simulated anealing. Start with a keyword built based on
-     * the default alphabet with J removed.
-     * Then loop around first with low temperature followed by higher for a few thousand iterations
-     * each time mutating the key based on the temperature and measuring fitness by counting how
-     * many dictionary word letters can be seen in the decoded text.
+     * Crack a Playfair cipher using simulated anealing made for the Playfair square, see
+     * PlayfairAnnealing. Several chains each start from a random square and change it with
+     * letter swaps and, now and again, row and column swaps and turns of the square, measuring
+     * the decode by quadgrams, until one finds all the cribs.
      * Slower than dictionary check but can find keyword even if not based on a dictionary work
      * or is from a compound word (like LEONARDO DA VINCI)
      * @param cipherText the text to be cracked
-     * @param dirs directives we need: ALPHABET, CRIBS, LANGUAGE. On return the CrackResult will
-     *              also include EXPLAIN and (if successfully cracked) DECODE_KEYWORD
+     * @param dirs directives we need: ALPHABET, CRIBS, LANGUAGE, NUMBER SIZE and REPLACE. On
+     *             return the CrackResult will also include EXPLAIN and (if successfully cracked)
+     *             the KEYWORD
      * @return the result of the crack attempt
      */
     private CrackResult crackWordCount(String cipherText, Directives dirs, int crackId) {
@@ -694,71 +779,72 @@ public class Playfair extends Cipher {
         String cribString = dirs.getCribs();
         Language language = dirs.getLanguage();
         CrackMethod crackMethod = dirs.getCrackMethod();
-
-        Properties crackProps = new Properties();
-        crackProps.setProperty(Climb.CLIMB_ALPHABET, alphabet);
-        crackProps.setProperty(Climb.CLIMB_LANGUAGE, language.getName());
-        crackProps.setProperty(Climb.CLIMB_CRIBS, cribString);
-
-        // assume a 5x5 playfair, with J replaced with I, randomise the alphabet a bit
-        String startKeyword = Climb.mutateKey(alphabet.replaceAll("J",""), 14);
-        crackProps.setProperty(Climb.CLIMB_START_KEYWORD, startKeyword);
-        crackProps.setProperty(Climb.CLIMB_NUMBER_SIZE, String.valueOf(55));
-
-        // we are not starting with a key even close to what we need.
-        // do a short one (5000 iterations overall) to try to get close (ish)
-        // short texts are best cracked with low temperature to start with:
-        // < 400 => 2, 400 - 799 => 3, 800 - 1199 => 4, etc
-        int countAlpha=0;
-        for (int pos=0; pos < cipherText.length(); pos++) {
-            if (alphabet.indexOf(Character.toUpperCase(cipherText.charAt(pos))) >= 0)
-                countAlpha++;
+        int rows = dirs.getNumberSize() / 10;
+        int cols = dirs.getNumberSize() % 10;
+
+        // the square holds the alphabet less any letters that are replaced, e.g. J by I,
+        // and digits if there is room for them, as for a 6x6 square
+        String replaceLetters = dirs.getReplace();
+        StringBuilder squareLetters = new StringBuilder(rows * cols);
+        for (int i = 0; i < alphabet.length(); i++) {
+            char letter = alphabet.charAt(i);
+            int posInReplace = replaceLetters.indexOf(letter);
+            if (posInReplace < 0 || posInReplace % 2 != 0)
+                squareLetters.append(letter);
+        }
+        for (char digit = '0'; digit <= '9' && squareLetters.length() < rows * cols; digit++) {
+            if (squareLetters.indexOf(String.valueOf(digit)) < 0)
+                squareLetters.append(digit);
         }
-        int startTemperature = countAlpha/400 + 2;
-        crackProps.setProperty(Climb.CLIMB_TEMPERATURE, String.valueOf(startTemperature));
-        crackProps.setProperty(Climb.CLIMB_CYCLES, String.valueOf(5000/startTemperature));
-        CrackResults.updateProgressDirectly(crackId, "Started first localised simulated anealing climb");
-
-        // returns true if found all cribs, unlikely on first scan
-        String firstActivity = "";
-        boolean success = Climb.doSimulatedAnealing(cipherText, this, crackProps, crackId);
-        Log.i("CipherCrack", "Cracking "+getCipherName()+" Climb, finished first pass");
-        if (CrackResults.isCancelled(crackId))
-            return new CrackResult(dirs.getCrackMethod(), this, cipherText, "Crack cancelled", CrackState.CANCELLED);
-        // we do another pass if we have not matched cribs
-        // use different TEMPERATURE and CYCLES based on certain heuristics
+        if (squareLetters.length() != rows * cols) {
+            String explain = "Fail: Unable to fill a " + rows + "x" + cols + " square with the "
+                    + squareLetters.length() + " letters of the alphabet, replacing [" + replaceLetters + "].\n";
+            return new CrackResult(crackMethod, this, cipherText, explain);
+        }
+        CrackResults.updateProgressDirectly(crackId, "Started parallel simulated anealing of the "+rows+"x"+cols+" square");
+
+        // several chains at once, stops as soon as any finds all the cribs
+        PlayfairAnnealing annealing = new PlayfairAnnealing(cipherText, squareLetters.toString(), rows, cols,
+                language, Cipher.getCribSet(cribString), crackId);
+        boolean success = annealing.run();
+        CrackLog.i("CipherCrack", "Cracking "+getCipherName()+" Climb, finished anealing after "
+                + annealing.getMoves() + " changes");
+        if (annealing.isCancelled())
+            return new CrackResult(crackMethod, this, cipherText, "Crack cancelled", CrackState.CANCELLED);
+        String bestKey = annealing.getBestKey();
+        String activity = "Annealed from " + annealing.getAnneals() + " random squares, starting at temperature "
+                + String.format(Locale.getDefault(), "%.1f", annealing.getStartTemperature())
+                + ", making " + annealing.getMoves() + " changes to the square, best average quadgram measure "
+                + String.format(Locale.getDefault(), "%7.6f", annealing.getBestScore()) + ".\n";
+        if (bestKey == null) {
+            String explain = "Fail: Searched for the best quadgram match but did not find cribs ["
+                    + cribString + "].\n" + activity;
+            return new CrackResult(crackMethod, this, cipherText, explain);
+        }
+
+        // shift the square round to look most like a keyword followed by the rest of the letters
+        bestKey = PlayfairAnnealing.alignKey(bestKey, rows, cols);
+        Directives decodeDirs = new Directives(dirs);
+        decodeDirs.setKeyword(bestKey);
+        String plainText = decode(cipherText, decodeDirs);
         if (!success) {
-            // save first activity (explain) so we can include it in final explain text later
-            firstActivity = crackProps.getProperty(Climb.CLIMB_ACTIVITY);
-
-            // scan with higher temperature, should not wander too far
-            crackProps.setProperty(Climb.CLIMB_START_KEYWORD, crackProps.getProperty(Climb.CLIMB_BEST_KEYWORD));
-            crackProps.setProperty(Climb.CLIMB_TEMPERATURE, String.valueOf(10));
-            crackProps.setProperty(Climb.CLIMB_CYCLES, String.valueOf(1000));
-            CrackResults.updateProgressDirectly(crackId, "Started second wider simulated anealing climb");
-            if (!Climb.doSimulatedAnealing(cipherText, this, crackProps, crackId)) {
-                if (CrackResults.isCancelled(crackId))
-                    return new CrackResult(dirs.getCrackMethod(), this, cipherText, "Crack cancelled", CrackState.CANCELLED);
-                // even this did not work, give up
-                String explain = "Fail: Searched for largest word match but did not find cribs ["
-                        + cribString + "], best key was "
-                        + crackProps.getProperty(Climb.CLIMB_BEST_KEYWORD)
-                        + ".\n"
-                        + firstActivity
-                        + crackProps.getProperty(Climb.CLIMB_ACTIVITY);
-                keyword = "";
-                return new CrackResult(crackMethod, this, cipherText, explain, crackProps.getProperty(Climb.CLIMB_BEST_DECODE));
-            }
+            String explain = "Fail: Searched for the best quadgram match but did not find cribs ["
+                    + cribString + "], best key was "
+                    + bestKey
+                    + ".\n"
+                    + activity;
+            keyword = "";
+            return new CrackResult(crackMethod, this, cipherText, explain, plainText);
         }
-        // one or other of the simulated anealing above worked, report back
-        keyword = crackProps.getProperty(Climb.CLIMB_BEST_KEYWORD);
+        // the simulated anealing worked, report back
+        keyword = bestKey;
+        rowscols = dirs.getNumberSize();
+        replace = replaceLetters;
         dirs.setKeyword(keyword);
-        String plainText = crackProps.getProperty(Climb.CLIMB_BEST_DECODE);
-        String explain = "Success: Searched for largest word match and found all cribs ["
+        String explain = "Success: Searched for the best quadgram match and found all cribs ["
                 + cribString + "] with key "
-                + crackProps.getProperty(Climb.CLIMB_BEST_KEYWORD) + ".\n"
-                + firstActivity
-                + crackProps.getProperty(Climb.CLIMB_ACTIVITY);
+                + bestKey + ".\n"
+                + activity;
         return new CrackResult(crackMethod, this, dirs, cipherText, plainText, explain);
     }
 
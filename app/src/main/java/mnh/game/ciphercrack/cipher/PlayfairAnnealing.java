@@ -0,0 +1,487 @@
+package mnh.game.ciphercrack.cipher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import mnh.game.ciphercrack.language.Language;
+import mnh.game.ciphercrack.services.CrackHandle;
+import mnh.game.ciphercrack.services.CrackResults;
+import mnh.game.ciphercrack.util.CrackPool;
+
+/**
+ * Simulated anealing made for the Playfair square, several chains at once in the CrackPool.
+ * The cipher text is turned once into pairs of grid positions, and a key is held as the letter
+ * in each cell of the square together with the cell of each letter, so decoding a pair is a
+ * few array lookups. Each step changes the square in one of the ways that keeps much of a good
+ * square intact: most often two letters are swapped, but sometimes two rows or two columns are
+ * swapped, or the rows, the columns or the whole square are turned round. The decode is
+ * measured by the quadgram log probabilities of the language, a worse square being accepted
+ * with probability exp(-drop/T) as the temperature T falls in steps to zero, and the fittest
+ * square is finished off with a climb. Each chain restarts from a new random square if it
+ * cools without finding the cribs, and the other chains stop as soon as one of them finds a
+ * decode with all the cribs, that one cooling to the end to get the last few letters right
+ */
+class PlayfairAnnealing {
+
+    // at least this many chains are run, on fewer threads they are run in turn
+    static final int MIN_CHAINS = 4;
+
+    // each chain anneals from this many random squares before giving up
+    static final int RESTARTS = 3;
+
+    // the start temperature, for a text of BASE_LETTERS, and how it rises with longer texts
+    static final double BASE_TEMPERATURE = 10.0;
+    static final int BASE_LETTERS = 84;
+    static final double TEMPERATURE_PER_LETTER = 0.04;
+
+    // how far the temperature falls each step, and how many changes are tried at each step
+    static final double TEMPERATURE_STEP = 0.2;
+    static final int MOVES_PER_STEP = 2500;
+
+    private final String gridLetters;  // the letters that fill the square
+    private final int rows, cols, cells;
+    private final int[] cipher;        // cipher text as indexes into gridLetters, even length
+    private final int[] languageOrdinal;   // ordinal in the language alphabet of each grid letter, -1 if none
+    private final int alphabetLength;
+    private final float[] quadgramLogs;
+    private final float floorLog;      // score for a quadgram with a letter the language does not have
+    private final byte[][] cribs;
+    private final CrackHandle handle;
+    private final double startTemperature;
+    private final int[] cellLeft, cellUp;  // the cell to the left of, and above, each cell, wrapping
+
+    private final AtomicBoolean stop = new AtomicBoolean(false);
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+    private final AtomicLong moves = new AtomicLong(0);
+    private final AtomicInteger anneals = new AtomicInteger(0);
+    private String bestKey = null;
+    private double bestScore = -Double.MAX_VALUE;
+    private boolean foundCribs = false;
+
+    /**
+     * Prepare to anneal a Playfair cipher text
+     * @param cipherText the text to be cracked, letters not in the square are ignored
+     * @param gridLetters the letters that fill the square, e.g. the alphabet without J
+     * @param rows the number of rows in the square
+     * @param cols the number of columns in the square
+     * @param language the language of the plain text, gives the quadgram probabilities
+     * @param cribSet the cribs, in upper case, that must all appear in the decoded text
+     * @param crackId the identifier of the crack, for progress and cancellation
+     */
+    PlayfairAnnealing(String cipherText, String gridLetters, int rows, int cols, Language language,
+                      Set<String> cribSet, int crackId) {
+        this.gridLetters = gridLetters;
+        this.rows = rows;
+        this.cols = cols;
+        this.cells = rows * cols;
+        this.handle = CrackResults.handleFor(crackId);
+
+        // as decode does, skip anything not in the square, and drop any odd letter at the end
+        String upper = cipherText.toUpperCase();
+        int[] ordinals = new int[upper.length()];
+        int length = 0;
+        for (int i = 0; i < upper.length(); i++) {
+            int pos = gridLetters.indexOf(upper.charAt(i));
+            if (pos >= 0)
+                ordinals[length++] = pos;
+        }
+        length -= length % 2;
+        this.cipher = new int[length];
+        System.arraycopy(ordinals, 0, cipher, 0, length);
+
+        String alphabet = language.getAlphabet();
+        this.alphabetLength = alphabet.length();
+        this.languageOrdinal = new int[gridLetters.length()];
+        for (int i = 0; i < gridLetters.length(); i++)
+            languageOrdinal[i] = alphabet.indexOf(gridLetters.charAt(i));
+        this.quadgramLogs = language.getNGramLogProbabilities(4);
+        float lowest = 0.0f;
+        for (float log : quadgramLogs)
+            lowest = Math.min(lowest, log);
+        this.floorLog = lowest;
+        this.cribs = Cipher.getCribOrdinals(cribSet, gridLetters);
+        this.startTemperature = Math.max(BASE_TEMPERATURE,
+                BASE_TEMPERATURE + TEMPERATURE_PER_LETTER * (length - BASE_LETTERS));
+
+        this.cellLeft = new int[cells];
+        this.cellUp = new int[cells];
+        for (int cell = 0; cell < cells; cell++) {
+            int row = cell / cols, col = cell % cols;
+            cellLeft[cell] = row * cols + (col + cols - 1) % cols;
+            cellUp[cell] = ((row + rows - 1) % rows) * cols + col;
+        }
+    }
+
+    /**
+     * Anneal with several chains at once until one finds the cribs or all have cooled
+     * @return true if a decode with all the cribs was found, its key is then the best key
+     */
+    boolean run() {
+        if (cipher.length == 0 || cells != gridLetters.length())
+            return false;
+        int chainCount = Math.max(MIN_CHAINS, CrackPool.get().getParallelism());
+        handle.startStage("Annealing the " + rows + "x" + cols + " Playfair square", "anneals", (long)chainCount * RESTARTS);
+        final List<Chain> chains = new ArrayList<>(chainCount);
+        for (int c = 0; c < chainCount; c++) {
+            chains.add(new Chain());
+        }
+        CrackPool.get().invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(chains);
+            }
+        });
+        return foundCribs && !cancelled.get();
+    }
+
+    boolean isCancelled() { return cancelled.get(); }
+    long getMoves() { return moves.get(); }
+    int getAnneals() { return anneals.get(); }
+    double getStartTemperature() { return startTemperature; }
+
+    /**
+     * @return the square with all the cribs, if found, else the square with the fittest decode
+     */
+    synchronized String getBestKey() { return bestKey; }
+
+    /**
+     * @return the average quadgram log probability of the decode with the best key
+     */
+    synchronized double getBestScore() {
+        return (cipher.length > 3) ? bestScore / (cipher.length - 3) : bestScore;
+    }
+
+    // check for cancellation or another chain finding the cribs
+    private boolean shouldStop() {
+        if (stop.get())
+            return true;
+        if (handle.isCancelled()) {
+            cancelled.set(true);
+            stop.set(true);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * A chain has a new best of its own, see if it is the best overall or has all the cribs.
+     * A square with the cribs may still have a few letters in the wrong place, so the chain that
+     * found it stops the others, but carries on cooling and finishes off its square
+     * @param grid the letter in each cell of the square
+     * @param score the fitness of the decode
+     * @param plain the decode, as grid letter indexes
+     * @return true if this is the first square found with all the cribs
+     */
+    private synchronized boolean reportBest(int[] grid, double score, int[] plain) {
+        boolean hasCribs = Cipher.containsAllCribs(toBytes(plain), plain.length, cribs);
+        if (foundCribs && !hasCribs)
+            return false;
+        boolean first = hasCribs && !foundCribs;
+        handle.offerScore(score);
+        if (first)
+            handle.addMatches(1);
+        if (score > bestScore || first) {
+            bestKey = toKey(grid);
+            bestScore = score;
+        }
+        if (first) {
+            foundCribs = true;
+            stop.set(true);
+        }
+        return first;
+    }
+
+    private static byte[] toBytes(int[] values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++)
+            bytes[i] = (byte)values[i];
+        return bytes;
+    }
+
+    private String toKey(int[] grid) {
+        char[] key = new char[cells];
+        for (int cell = 0; cell < cells; cell++)
+            key[cell] = gridLetters.charAt(grid[cell]);
+        return String.valueOf(key);
+    }
+
+    /**
+     * Decode the cipher text with a square, as Playfair decode does, into grid letter indexes
+     * @param grid the letter in each cell
+     * @param cellOf the cell of each letter
+     * @param plain where the decoded letters are put
+     */
+    private void decode(int[] grid, int[] cellOf, int[] plain) {
+        for (int i = 0; i < cipher.length; i += 2) {
+            int cell1 = cellOf[cipher[i]];
+            int cell2 = cellOf[cipher[i + 1]];
+            int row1 = cell1 / cols, row2 = cell2 / cols;
+            int col1 = cell1 - row1 * cols, col2 = cell2 - row2 * cols;
+            if (row1 == row2) {
+                plain[i] = grid[cellLeft[cell1]];
+                plain[i + 1] = grid[cellLeft[cell2]];
+            } else if (col1 == col2) {
+                plain[i] = grid[cellUp[cell1]];
+                plain[i + 1] = grid[cellUp[cell2]];
+            } else {
+                plain[i] = grid[row1 * cols + col2];
+                plain[i + 1] = grid[row2 * cols + col1];
+            }
+        }
+    }
+
+    // the sum of the quadgram log probabilities of the decoded text
+    private double score(int[] plain) {
+        double total = 0.0;
+        int size = alphabetLength * alphabetLength * alphabetLength;
+        int index = 0, valid = 0;
+        for (int letter : plain) {
+            int ordinal = languageOrdinal[letter];
+            if (ordinal < 0) {
+                total += floorLog;
+                valid = 0;
+                index = 0;
+            } else {
+                index = (index % size) * alphabetLength + ordinal;
+                if (++valid >= 4)
+                    total += quadgramLogs[index];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * One chain of the anealing, which restarts from a new random square each time it cools
+     */
+    private class Chain extends RecursiveAction {
+
+        @Override
+        protected void compute() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int[] grid = new int[cells], cellOf = new int[cells];
+            int[] trial = new int[cells], trialCellOf = new int[cells];
+            int[] plain = new int[cipher.length];
+            int[] chainGrid = new int[cells];
+            boolean finder = false;     // whether this chain found the cribs
+            for (int restart = 0; restart < RESTARTS && !shouldStop(); restart++) {
+                anneals.incrementAndGet();
+
+                // start from a random square
+                for (int cell = 0; cell < cells; cell++)
+                    grid[cell] = cell;
+                for (int cell = cells - 1; cell > 0; cell--) {
+                    int other = random.nextInt(cell + 1);
+                    int letter = grid[cell];
+                    grid[cell] = grid[other];
+                    grid[other] = letter;
+                }
+                for (int cell = 0; cell < cells; cell++)
+                    cellOf[grid[cell]] = cell;
+                decode(grid, cellOf, plain);
+                double score = score(plain);
+                double chainBest = score;
+                System.arraycopy(grid, 0, chainGrid, 0, cells);
+                long made = 0;
+
+                for (double temperature = startTemperature; temperature > 0.0; temperature -= TEMPERATURE_STEP) {
+                    if (shouldStop() && (cancelled.get() || !finder))
+                        break;
+                    for (int move = 0; move < MOVES_PER_STEP; move++) {
+                        System.arraycopy(grid, 0, trial, 0, cells);
+                        change(trial, random);
+                        for (int cell = 0; cell < cells; cell++)
+                            trialCellOf[trial[cell]] = cell;
+                        decode(trial, trialCellOf, plain);
+                        double trialScore = score(plain);
+                        double drop = score - trialScore;
+                        if (drop <= 0.0 || random.nextDouble() < Math.exp(-drop / temperature)) {
+                            int[] swap = grid;
+                            grid = trial;
+                            trial = swap;
+                            swap = cellOf;
+                            cellOf = trialCellOf;
+                            trialCellOf = swap;
+                            score = trialScore;
+                            if (score > chainBest) {
+                                chainBest = score;
+                                System.arraycopy(grid, 0, chainGrid, 0, cells);
+                                if (reportBest(grid, score, plain))
+                                    finder = true;
+                            }
+                        }
+                    }
+                    made += MOVES_PER_STEP;
+                }
+
+                // finish off the fittest square this chain has reached, which may already have
+                // the cribs, by swapping whole rows, columns and letters while that improves it
+                if (!cancelled.get()) {
+                    System.arraycopy(chainGrid, 0, grid, 0, cells);
+                    for (int cell = 0; cell < cells; cell++)
+                        cellOf[grid[cell]] = cell;
+                    double polished = polish(grid, cellOf, plain, chainBest);
+                    if (polished > chainBest)
+                        reportBest(grid, polished, plain);
+                }
+                moves.addAndGet(made);
+                handle.addDone(1);
+            }
+        }
+
+        // change the square in one of the ways suited to Playfair
+        private void change(int[] grid, ThreadLocalRandom random) {
+            int kind = random.nextInt(50);
+            if (kind == 0) {
+                // swap two rows
+                int row1 = random.nextInt(rows), row2 = random.nextInt(rows);
+                for (int col = 0; col < cols; col++)
+                    swap(grid, row1 * cols + col, row2 * cols + col);
+            } else if (kind == 1) {
+                // swap two columns
+                int col1 = random.nextInt(cols), col2 = random.nextInt(cols);
+                for (int row = 0; row < rows; row++)
+                    swap(grid, row * cols + col1, row * cols + col2);
+            } else if (kind == 2) {
+                // turn the rows upside down
+                for (int row = 0; row < rows / 2; row++)
+                    for (int col = 0; col < cols; col++)
+                        swap(grid, row * cols + col, (rows - 1 - row) * cols + col);
+            } else if (kind == 3) {
+                // turn each row back to front
+                for (int row = 0; row < rows; row++)
+                    for (int col = 0; col < cols / 2; col++)
+                        swap(grid, row * cols + col, row * cols + cols - 1 - col);
+            } else if (kind == 4) {
+                // turn the whole square round
+                for (int cell = 0; cell < cells / 2; cell++)
+                    swap(grid, cell, cells - 1 - cell);
+            } else {
+                swap(grid, random.nextInt(cells), random.nextInt(cells));
+            }
+        }
+
+        /**
+         * Climb from a square by trying every swap of two letters and every move of a row or a
+         * column to another place, keeping any that improve the decode, until none do
+         * @param grid the square, changed to the best found
+         * @param cellOf the cell of each letter, kept in step with the square
+         * @param plain left holding the decode of the best square
+         * @return the fitness of the best square
+         */
+        private double polish(int[] grid, int[] cellOf, int[] plain, double score) {
+            boolean improved = true;
+            while (improved && !cancelled.get()) {
+                improved = false;
+                for (int a = 0; a < cells; a++) {
+                    for (int b = a + 1; b < cells; b++) {
+                        swap(grid, a, b);
+                        cellOf[grid[a]] = a;
+                        cellOf[grid[b]] = b;
+                        decode(grid, cellOf, plain);
+                        double trialScore = score(plain);
+                        if (trialScore > score) {
+                            score = trialScore;
+                            improved = true;
+                        } else {
+                            swap(grid, a, b);
+                            cellOf[grid[a]] = a;
+                            cellOf[grid[b]] = b;
+                        }
+                    }
+                }
+                for (int lines = 0; lines < 2; lines++) {
+                    boolean byRow = (lines == 0);
+                    int count = byRow ? rows : cols;
+                    for (int from = 0; from < count; from++) {
+                        for (int to = 0; to < count; to++) {
+                            if (to == from)
+                                continue;
+                            moveLine(grid, cellOf, byRow, from, to);
+                            decode(grid, cellOf, plain);
+                            double trialScore = score(plain);
+                            if (trialScore > score) {
+                                score = trialScore;
+                                improved = true;
+                            } else {
+                                moveLine(grid, cellOf, byRow, to, from);
+                            }
+                        }
+                    }
+                }
+            }
+            decode(grid, cellOf, plain);
+            return score;
+        }
+
+        // move a row or a column to another place, the ones in between moving up one
+        private void moveLine(int[] grid, int[] cellOf, boolean byRow, int from, int to) {
+            int step = (to > from) ? 1 : -1;
+            for (int line = from; line != to; line += step)
+                swapLines(grid, cellOf, byRow, line, line + step);
+        }
+
+        // swap two rows or two columns, keeping the cell of each letter in step
+        private void swapLines(int[] grid, int[] cellOf, boolean byRow, int a, int b) {
+            int length = byRow ? cols : rows;
+            for (int i = 0; i < length; i++) {
+                int cellA = byRow ? a * cols + i : i * cols + a;
+                int cellB = byRow ? b * cols + i : i * cols + b;
+                swap(grid, cellA, cellB);
+                cellOf[grid[cellA]] = cellA;
+                cellOf[grid[cellB]] = cellB;
+            }
+        }
+
+        private void swap(int[] grid, int a, int b) {
+            int letter = grid[a];
+            grid[a] = grid[b];
+            grid[b] = letter;
+        }
+    }
+
+    /**
+     * A square can be shifted any number of rows down and columns across and still encode in
+     * the same way, so choose the shift that reads most like a keyword followed by the rest of
+     * the letters in order, i.e. ends in the longest run of letters in order, and then has the
+     * most letters followed by a later letter
+     * @param key the letters of the square, row by row
+     * @param rows the number of rows in the square
+     * @param cols the number of columns in the square
+     * @return the shifted square that best matches a keyword square
+     */
+    static String alignKey(String key, int rows, int cols) {
+        String best = key;
+        int bestRun = -1, bestRising = -1;
+        char[] shifted = new char[key.length()];
+        for (int down = 0; down < rows; down++) {
+            for (int across = 0; across < cols; across++) {
+                for (int cell = 0; cell < key.length(); cell++) {
+                    int row = (cell / cols + down) % rows;
+                    int col = (cell % cols + across) % cols;
+                    shifted[cell] = key.charAt(row * cols + col);
+                }
+                // the run of letters in order at the end, then how many letters are followed by a later one
+                int run = 1;
+                while (run < shifted.length && shifted[shifted.length - run - 1] < shifted[shifted.length - run])
+                    run++;
+                int rising = 0;
+                for (int cell = 1; cell < shifted.length; cell++) {
+                    if (shifted[cell] > shifted[cell - 1])
+                        rising++;
+                }
+                if (run > bestRun || (run == bestRun && rising > bestRising)) {
+                    bestRun = run;
+                    bestRising = rising;
+                    best = String.valueOf(shifted);
+                }
+            }
+        }
+        return best;
+    }
+}
@@ -4,7 +4,6 @@ import android.content.Context;
 import android.os.Parcel;
 import android.text.InputFilter;
 import android.text.Spanned;
-import android.util.Log;
 import android.view.View;
 import android.widget.Button;
 import android.widget.EditText;
@@ -12,19 +11,27 @@ import android.widget.LinearLayout;
 import android.widget.RadioButton;
 import android.widget.RadioGroup;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.SortedSet;
+import java.util.TreeSet;
 
 import androidx.appcompat.app.AppCompatActivity;
 import mnh.game.ciphercrack.R;
 import mnh.game.ciphercrack.language.Dictionary;
 import mnh.game.ciphercrack.language.Language;
 import mnh.game.ciphercrack.services.CrackResults;
+import mnh.game.ciphercrack.util.CrackLog;
 import mnh.game.ciphercrack.util.CrackMethod;
 import mnh.game.ciphercrack.util.CrackResult;
 import mnh.game.ciphercrack.util.CrackState;
+import mnh.game.ciphercrack.util.DictionaryCrackEngine;
 import mnh.game.ciphercrack.util.Directives;
 import mnh.game.ciphercrack.util.KeywordExtend;
+import mnh.game.ciphercrack.util.SymbolTokenizer;
 
 /**
  * Class that contains methods to assist with Polybius Cipher operations
@@ -80,7 +87,7 @@ public class Polybius extends Cipher {
             LinearLayout lRowHeading = v.getRootView().findViewById(R.id.extra_polybius_crack_row_heading_layout);
             switch (v.getId()) {
                 case R.id.crack_button_dictionary:
-                case R.id.crack_button_brute_force:
+                case R.id.crack_button_word_count:
                     lColHeading.setVisibility(View.VISIBLE);
                     lRowHeading.setVisibility(View.VISIBLE);
                     break;
@@ -134,7 +141,8 @@ public class Polybius extends Cipher {
                 "The column headings can be any letters or digits, the table can have letters in any order not just alphabetic as shown here. Often they are comprised of a keyword followed by the remaining letters of the alphabet, with a rare letter (J or Z) omitted.\n" +
                 "To encode a plain letter, locate it in the table and read off the row and column headings, e.g. letter C is encoded as 13, U is encoded as 45. If the letter is not there, then always replace with a specific one, e.g. I is often substituted for J to fit 25 chars into the table.\n" +
                 "To decode a pair of letters, use them to locate the row and column and read off the plain letter, e.g. 34 decodes to O, 11 decodes to A. Any letter missing in the table (usually a rare one) is decoded incorrectly, e.g. J will be decoded as I.\n" +
-                "This cipher can be broken similar to a substitution cipher by looking at frequencies of digrams, for example with the above table the coding 15 would generally be more common than others as it represents E.\n";
+                "This cipher can be broken similar to a substitution cipher by looking at frequencies of digrams, for example with the above table the coding 15 would generally be more common than others as it represents E.\n" +
+                "The Dictionary crack tries dictionary words as the keyword for the grid, with the headings given. The Anneal crack reads each row and column pair as one symbol and solves the symbols as a simple substitution, starting from the letter frequencies and using simulated anealing measured by quadgrams, so it finds grids in any order, 5x5 or 6x6, and finds the headings from the cipher text if none are given.\n";
     }
 
     /**
@@ -213,7 +221,7 @@ public class Polybius extends Cipher {
 
             keyword = keywordValue;
         } else {
-            if (crackMethod != CrackMethod.DICTIONARY)
+            if (crackMethod != CrackMethod.DICTIONARY && crackMethod != CrackMethod.WORD_COUNT)
                 return "Invalid crack method";
             String cribs = dirs.getCribs();
             if (cribs == null || cribs.length() == 0)
@@ -223,22 +231,28 @@ public class Polybius extends Cipher {
             Language lang = dirs.getLanguage();
             if (lang == null)
                 return "Language must be provided";
-            if (lang.getDictionary() == null) {
+            if (crackMethod == CrackMethod.DICTIONARY && lang.getDictionary() == null) {
                 return "No " + lang.getName() + " dictionary is defined";
             }
-            // Check heading letters have decent lengths and do not contain repeats
-            reason = canHeadingBeSet("Col", colHeadingLetters);
-            if (reason != null)
-                return reason;
-            reason = canHeadingBeSet("Row", rowHeadingLetters);
-            if (reason != null)
-                return reason;
+            // Check heading letters have decent lengths and do not contain repeats,
+            // anealing can find the headings from the cipher text if they are not given
+            boolean findHeadings = crackMethod == CrackMethod.WORD_COUNT
+                    && (colHeadingLetters == null || colHeadingLetters.isEmpty())
+                    && (rowHeadingLetters == null || rowHeadingLetters.isEmpty());
+            if (!findHeadings) {
+                reason = canHeadingBeSet("Col", colHeadingLetters);
+                if (reason != null)
+                    return reason;
+                reason = canHeadingBeSet("Row", rowHeadingLetters);
+                if (reason != null)
+                    return reason;
+            }
         }
 
         // check the replace field:
         if (replaceLetters.length() % 2 != 0)
             return "Invalid replacement length " + replaceLetters.length();
-        for (int pos = 0; pos < replaceLetters.length(); pos += 2) {
+        for (int pos = 0; pos < replaceLetters.length() && keywordValue != null; pos += 2) {
             char ch1 = replaceLetters.charAt(pos);
             if (keywordValue.indexOf(ch1) >= 0)
                 return "Replace symbol " + ch1 + " must not be in the keyword";
@@ -316,7 +330,7 @@ public class Polybius extends Cipher {
         dirs.setReplace(replace);
     }
 
-    // add 2 buttons, one for dictionary crack, one for brute-force
+    // add 2 buttons, one for dictionary crack, one for simulated anealing
     @Override
     public boolean addCrackControls(AppCompatActivity context, LinearLayout layout, String cipherText,
                                     Language language, String alphabet, String paddingChars) {
@@ -362,7 +376,7 @@ public class Polybius extends Cipher {
 
         // locate the kind of crack we've been asked to do
         RadioButton dictButton = layout.findViewById(R.id.crack_button_dictionary);
-        return (dictButton.isChecked()) ? CrackMethod.DICTIONARY : CrackMethod.BRUTE_FORCE;
+        return (dictButton.isChecked()) ? CrackMethod.DICTIONARY : CrackMethod.WORD_COUNT;
     }
 
     /**
@@ -414,55 +428,174 @@ public class Polybius extends Cipher {
      */
     @Override
     public String decode(String cipherText, Directives dirs) {
-        String keywordLower = dirs.getKeyword().toLowerCase();
-        String colHeadingUpper = dirs.getColHeading().toUpperCase();
-        String rowHeadingUpper = dirs.getRowHeading().toUpperCase();
-        int colHeadingLength = colHeadingUpper.length();
+        StringBuilder result = new StringBuilder(cipherText.length());
+        try {
+            cellTokenizer(dirs.getRowHeading(), dirs.getColHeading()).tokenize(cipherText, new Decoder(dirs, result));
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex); // a StringBuilder does not throw
+        }
+        return result.toString();
+    }
 
-        // decode does not work with padding
-        // but tests assume it does... so make following code skip non-heading chars
-        // cipherText = cipherText.replaceAll("\\s","");
+    /**
+     * Decode a text using Polybius cipher as it is read, without holding the whole text
+     *
+     * @param cipherText the text to be decoded, read to the end but not closed
+     * @param plainText  where the decoded text is written
+     * @param dirs       a group of directives that define how the cipher will work, especially KEYWORD and HEADING
+     */
+    public void decode(Reader cipherText, Appendable plainText, Directives dirs) throws IOException {
+        cellTokenizer(dirs.getRowHeading(), dirs.getColHeading()).tokenize(cipherText, new Decoder(dirs, plainText));
+    }
 
-        StringBuilder result = new StringBuilder(cipherText.length());
-        for (int i = 0; i < cipherText.length(); ) {
-
-            // find first character from the cipher text
-            char cipherChar1 = cipherText.charAt(i++);
-            char cipherCharUpper1 = Character.toUpperCase(cipherChar1);
-            int offset1 = rowHeadingUpper.indexOf(cipherCharUpper1);
-            // char is not in the heading (e.g. space), or we're at the end - just add this to result
-            while (offset1 < 0 && i < cipherText.length()) {
-                result.append(cipherChar1);
-                if (i < cipherText.length()) {
-                    cipherChar1 = cipherText.charAt(i++);
-                    cipherCharUpper1 = Character.toUpperCase(cipherChar1);
-                    offset1 = rowHeadingUpper.indexOf(cipherCharUpper1);
+    // pairs of row then column heading characters, anything else (e.g. spaces) is passed
+    // through, including a lone character at the end
+    private static SymbolTokenizer cellTokenizer(String rowHeading, String colHeading) {
+        return new SymbolTokenizer(new String[] { rowHeading, colHeading }, "", 2, "", SymbolTokenizer.Others.PASSED);
+    }
+
+    /**
+     * Decode each pair into the plain letter in the grid at its row and column
+     */
+    private static class Decoder implements SymbolTokenizer.Listener {
+        private final String keywordLower;
+        private final int colHeadingLength;
+        private final Appendable result;
+
+        Decoder(Directives dirs, Appendable result) {
+            this.keywordLower = dirs.getKeyword().toLowerCase();
+            this.colHeadingLength = dirs.getColHeading().length();
+            this.result = result;
+        }
+
+        @Override
+        public void token(byte[] ordinals, char[] chars, int length) throws IOException {
+            if (length == 2)
+                result.append(keywordLower.charAt(colHeadingLength * ordinals[0] + ordinals[1]));
+            else
+                result.append(chars[0]);
+        }
+
+        @Override
+        public void emptyToken() { }
+
+        @Override
+        public void other(char c) throws IOException {
+            result.append(c);
+        }
+    }
+
+    /**
+     * Turn cipher text into square cells once, so that many keys can be tried against it with
+     * decodeCells. The text is read in the same way as decode, the cell at a row and column is
+     * numbered row*cols+col, and a character that decode would pass through is numbered rows*cols,
+     * except whitespace, which is dropped
+     * @param cipherText the text to be decoded
+     * @param rowHeading the row heading, e.g. ABCDE
+     * @param colHeading the column heading, e.g. ABCDE
+     * @return the cell numbers
+     */
+    public static int[] toCells(String cipherText, String rowHeading, String colHeading) {
+        return toCells(cipherText, rowHeading, colHeading, null);
+    }
+
+    /**
+     * Turn cipher text into square cells once, as above, noting where the words start
+     * @param cipherText the text to be decoded
+     * @param rowHeading the row heading, e.g. ABCDE
+     * @param colHeading the column heading, e.g. ABCDE
+     * @param wordStarts if not null, at least as long as the text, set true for each cell
+     *                   that comes after whitespace
+     * @return the cell numbers
+     */
+    static int[] toCells(String cipherText, String rowHeading, String colHeading, final boolean[] wordStarts) {
+        final int cols = colHeading.length();
+        final int passed = rowHeading.length() * cols;
+        final int[] cells = new int[cipherText.length()];
+        final int[] count = new int[1];
+        final boolean[] afterSpace = new boolean[1];
+        try {
+            cellTokenizer(rowHeading, colHeading).tokenize(cipherText, new SymbolTokenizer.Listener() {
+                @Override
+                public void token(byte[] ordinals, char[] chars, int length) {
+                    if (length == 2)
+                        addCell(ordinals[0] * cols + ordinals[1]);
+                    else
+                        other(chars[0]);
                 }
-            }
-            int offset2 = -1;
-            if (i < cipherText.length()) {
-                // get second character from the cipher text
-                char cipherChar2 = cipherText.charAt(i++);
-                char cipherCharUpper2 = Character.toUpperCase(cipherChar2);
-                offset2 = colHeadingUpper.indexOf(cipherCharUpper2);
-                // get second char - if this is not in a heading, weird - just add both to output
-                while (offset2 < 0 && i < cipherText.length()) {
-                    result.append(cipherChar2);
-                    if (i < cipherText.length()) {
-                        cipherChar2 = cipherText.charAt(i++);
-                        cipherCharUpper2 = Character.toUpperCase(cipherChar2);
-                        offset2 = colHeadingUpper.indexOf(cipherCharUpper2);
-                    }
+
+                @Override
+                public void emptyToken() { }
+
+                @Override
+                public void other(char c) {
+                    if (Character.isWhitespace(c))
+                        afterSpace[0] = true;
+                    else
+                        addCell(passed);
                 }
-                if (offset1 >= 0 && offset2 >= 0) {
-                    // decode this pair into the plain letter in the grid at this row/col
-                    result.append(keywordLower.charAt(colHeadingLength * offset1 + offset2));
+
+                private void addCell(int cell) {
+                    if (wordStarts != null)
+                        wordStarts[count[0]] = afterSpace[0];
+                    afterSpace[0] = false;
+                    cells[count[0]++] = cell;
                 }
-            } else {
-                result.append(cipherChar1);
+            });
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex); // nothing is written
+        }
+        return Arrays.copyOf(cells, count[0]);
+    }
+
+    /**
+     * Whether the spaces in a cipher text fall between words, rather than between blocks of the
+     * same number of cells, like 5 cells or each pair, or not at all
+     * @param wordStarts for each cell, whether it came after whitespace, see toCells
+     * @param cells the number of cells in the text
+     * @return true if the runs of cells between spaces are not all the same length
+     */
+    static boolean spacedByWords(boolean[] wordStarts, int cells) {
+        // the last run is left out, as the last block is often short
+        int firstRun = -1;
+        for (int pos = 1, runStart = 0; pos < cells; pos++) {
+            if (wordStarts[pos]) {
+                int run = pos - runStart;
+                if (firstRun >= 0 && run != firstRun)
+                    return true;
+                firstRun = run;
+                runStart = pos;
             }
         }
-        return result.toString();
+        return false;
+    }
+
+    /**
+     * Compile a key into a cell-to-letter table, so decoding is a lookup per cell rather than
+     * finding each heading character and working out the offset in the keyword
+     * @param key the letters of the square, row by row
+     * @param alphabet the upper-case letters that the plain ordinals refer to
+     * @param table where the plain letter ordinal for each cell is put, size rows*cols+1; the
+     *              last entry, for passed through characters, and any letter not in the
+     *              alphabet are -1, which no crib can match
+     */
+    public static void fillCellTable(String key, String alphabet, byte[] table) {
+        for (int cell = 0; cell < table.length; cell++) {
+            table[cell] = (cell < key.length() && cell < table.length - 1)
+                    ? (byte)alphabet.indexOf(Character.toUpperCase(key.charAt(cell)))
+                    : -1;
+        }
+    }
+
+    /**
+     * Decode cell numbers with a table from fillCellTable, into a caller-owned buffer
+     * @param cells the cipher text cells from toCells
+     * @param table the compiled key
+     * @param plain where the plain letter ordinals are put, size at least cells.length
+     */
+    public static void decodeCells(int[] cells, byte[] table, byte[] plain) {
+        for (int i = 0; i < cells.length; i++)
+            plain[i] = table[cells[i]];
     }
 
     /**
@@ -477,12 +610,158 @@ public class Polybius extends Cipher {
         CrackMethod crackMethod = dirs.getCrackMethod();
         if (crackMethod == CrackMethod.DICTIONARY) {
             return crackDictionary(cipherText, dirs, crackId);
+        } else if (crackMethod == CrackMethod.WORD_COUNT) {
+            return crackWordCount(cipherText, dirs, crackId);
         } else {
-            // TODO - use Word Count Simulated Anealing crack
             return new CrackResult(crackMethod, this, cipherText, "Unable to crack with that method");
         }
     }
 
+    /**
+     * Find the row and column headings of a cipher text, as the letters and digits read first
+     * and second in each pair, in order. If either has fewer than the other, or fewer than 5, it
+     * is made up with symbols not used in the text, so the grid is square
+     *
+     * @param cipherText the text to be cracked
+     * @return the row heading and the column heading
+     */
+    static String[] findHeadings(String cipherText) {
+        SortedSet<Character> rowSymbols = new TreeSet<>();
+        SortedSet<Character> colSymbols = new TreeSet<>();
+        boolean first = true;
+        for (int i = 0; i < cipherText.length(); i++) {
+            char symbol = Character.toUpperCase(cipherText.charAt(i));
+            if (Character.isLetterOrDigit(symbol)) {
+                (first ? rowSymbols : colSymbols).add(symbol);
+                first = !first;
+            }
+        }
+        int size = Math.max(5, Math.max(rowSymbols.size(), colSymbols.size()));
+        StringBuilder rowHeading = new StringBuilder(size);
+        StringBuilder colHeading = new StringBuilder(size);
+        for (Character symbol : rowSymbols)
+            rowHeading.append(symbol);
+        for (Character symbol : colSymbols)
+            colHeading.append(symbol);
+        String spare = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+        for (int i = 0; i < spare.length() && rowHeading.length() < size; i++) {
+            char symbol = spare.charAt(i);
+            if (!rowSymbols.contains(symbol) && !colSymbols.contains(symbol))
+                rowHeading.append(symbol);
+        }
+        for (int i = spare.length() - 1; i >= 0 && colHeading.length() < size; i--) {
+            char symbol = spare.charAt(i);
+            if (!rowSymbols.contains(symbol) && !colSymbols.contains(symbol))
+                colHeading.append(symbol);
+        }
+        return new String[] { rowHeading.toString(), colHeading.toString() };
+    }
+
+    /**
+     * Crack a Polybius cipher as a simple substitution: each row and column pair in the text is
+     * a cell of the grid, which stands for one plain letter, so the text is read once into
+     * cells, which are then solved by simulated anealing of the letter for each cell. The grid
+     * is then the letter found for each cell, row by row. Works for any grid mixing, and for
+     * 5x5 and 6x6 grids, the headings being found from the text if they are not given
+     *
+     * @param cipherText the text to be cracked
+     * @param dirs       the directives with alphabet, language and cribs, maybe the headings
+     * @return the results of the crack attempt
+     */
+    private CrackResult crackWordCount(String cipherText, Directives dirs, int crackId) {
+        String alphabet = dirs.getAlphabet();
+        String cribString = dirs.getCribs();
+        Language language = dirs.getLanguage();
+        CrackMethod crackMethod = dirs.getCrackMethod();
+        String rowHeadingLetters = dirs.getRowHeading();
+        String colHeadingLetters = dirs.getColHeading();
+        if (rowHeadingLetters == null || rowHeadingLetters.isEmpty()
+                || colHeadingLetters == null || colHeadingLetters.isEmpty()) {
+            String[] headings = findHeadings(cipherText);
+            rowHeadingLetters = headings[0];
+            colHeadingLetters = headings[1];
+        }
+        int cells = rowHeadingLetters.length() * colHeadingLetters.length();
+
+        // the grid holds the alphabet less any letters that are replaced, J by I if the grid
+        // is too small for the whole alphabet, and digits if there is room for them
+        String replaceLetters = (dirs.getReplace() == null) ? "" : dirs.getReplace();
+        if (replaceLetters.isEmpty() && cells < alphabet.length())
+            replaceLetters = "JI";
+        StringBuilder gridLetters = new StringBuilder(cells);
+        for (int i = 0; i < alphabet.length(); i++) {
+            char letter = alphabet.charAt(i);
+            int posInReplace = replaceLetters.indexOf(letter);
+            if (posInReplace < 0 || posInReplace % 2 != 0)
+                gridLetters.append(letter);
+        }
+        for (char digit = '0'; digit <= '9' && gridLetters.length() < cells; digit++) {
+            if (gridLetters.indexOf(String.valueOf(digit)) < 0)
+                gridLetters.append(digit);
+        }
+        if (gridLetters.length() != cells) {
+            String explain = "Fail: Unable to fill a " + rowHeadingLetters.length() + "x" + colHeadingLetters.length()
+                    + " grid, for rows " + rowHeadingLetters + " and columns " + colHeadingLetters + ", with the "
+                    + gridLetters.length() + " letters of the alphabet, replacing [" + replaceLetters + "].\n";
+            return new CrackResult(crackMethod, this, cipherText, explain);
+        }
+        CrackResults.updateProgressDirectly(crackId, "Started parallel simulated anealing of the "
+                + rowHeadingLetters.length() + "x" + colHeadingLetters.length() + " grid");
+
+        // each cell is a symbol of a simple substitution, read the text into cells just once
+        boolean[] wordStarts = new boolean[cipherText.length()];
+        int[] cellText = toCells(cipherText, rowHeadingLetters, colHeadingLetters, wordStarts);
+        SubstitutionAnnealing annealing = new SubstitutionAnnealing(cellText,
+                spacedByWords(wordStarts, cellText.length) ? wordStarts : null, gridLetters.toString(),
+                language, Cipher.getCribSet(cribString), crackId);
+        boolean success = annealing.run();
+        CrackLog.i("CipherCrack", "Cracking " + getCipherName() + " Climb, finished anealing after "
+                + annealing.getMoves() + " changes");
+        if (annealing.isCancelled())
+            return new CrackResult(crackMethod, this, cipherText, "Crack cancelled", CrackState.CANCELLED);
+        String bestKey = annealing.getBestKey();
+        String activity = "Read " + cellText.length + " cells with rows " + rowHeadingLetters
+                + " and columns " + colHeadingLetters + ", annealed " + annealing.getAnneals()
+                + " times from the letter frequencies, starting at temperature "
+                + String.format(Locale.getDefault(), "%.1f", annealing.getStartTemperature())
+                + ", making " + annealing.getMoves() + " changes to the grid, best average quadgram measure "
+                + String.format(Locale.getDefault(), "%7.6f", annealing.getBestScore()) + ".\n";
+        if (bestKey == null) {
+            String explain = "Fail: Searched for the best quadgram match but did not find cribs ["
+                    + cribString + "].\n" + activity;
+            return new CrackResult(crackMethod, this, cipherText, explain);
+        }
+
+        Directives decodeDirs = new Directives(dirs);
+        decodeDirs.setKeyword(bestKey);
+        decodeDirs.setRowHeading(rowHeadingLetters);
+        decodeDirs.setColHeading(colHeadingLetters);
+        String plainText = decode(cipherText, decodeDirs);
+        if (!success) {
+            String explain = "Fail: Searched for the best quadgram match but did not find cribs ["
+                    + cribString + "], best grid was "
+                    + bestKey
+                    + ".\n"
+                    + activity;
+            keyword = "";
+            return new CrackResult(crackMethod, this, cipherText, explain, plainText);
+        }
+        // the simulated anealing worked, report back
+        keyword = bestKey;
+        rowHeading = rowHeadingLetters;
+        colHeading = colHeadingLetters;
+        replace = replaceLetters;
+        dirs.setKeyword(keyword);
+        dirs.setRowHeading(rowHeading);
+        dirs.setColHeading(colHeading);
+        dirs.setReplace(replace);
+        String explain = "Success: Searched for the best quadgram match and found all cribs ["
+                + cribString + "] with grid "
+                + bestKey + ", rows " + rowHeading + " and columns " + colHeading + ".\n"
+                + activity;
+        return new CrackResult(crackMethod, this, dirs, cipherText, plainText, explain);
+    }
+
     /**
      * Crack a Polybius cipher by using a dictionary to generate keywords for the Polybius square
      *
@@ -490,105 +769,102 @@ public class Polybius extends Cipher {
      * @param dirs       the directives with alphabet and cribs
      * @return the results of the crack attempt
      */
-    private CrackResult crackDictionary(String cipherText, Directives dirs, int crackId) {
+    private CrackResult crackDictionary(String cipherText, final Directives dirs, int crackId) {
         String alphabet = dirs.getAlphabet();
         String cribString = dirs.getCribs();
         CrackMethod crackMethod = dirs.getCrackMethod();
-        String reverseCipherText = new StringBuilder(cipherText).reverse().toString();
-        StringBuilder reverser = new StringBuilder(cipherText.length());
+        final String forwardCipherText = cipherText;
 
         // this will be used to generate the keywords
-        alphabet = alphabet.replaceAll("J", "");
+        final String squareAlphabet = alphabet.replaceAll("J", "");
         dirs.setReplace("JI");
 
-        // returns the first decode that has all the cribs
+        // each key is compiled to a cell table, then tried against the text tokenized once
+        final int[] cells = toCells(forwardCipherText, dirs.getRowHeading(), dirs.getColHeading());
+        final int tableSize = dirs.getRowHeading().length() * dirs.getColHeading().length() + 1;
+
+        // the words are shared across threads, a keyword made by more than one word is only tried once
         CrackResults.updateProgressDirectly(crackId, "Starting " + getCipherName() + " dictionary crack");
-        Set<String> cribs = Cipher.getCribSet(cribString);
+        final byte[][] cribOrdinals = Cipher.getCribOrdinals(Cipher.getCribSet(cribString), squareAlphabet);
+        final KeywordExtend[] extendMethods = KeywordExtend.values();
         Dictionary dict = dirs.getLanguage().getDictionary();
-        Set<String> triedKeywords = new HashSet<>(2000);
-        int wordsRead = 0, matchesFound = 0;
-        String foundPlainText = "", foundKeyword = null;
-        StringBuilder successResult = new StringBuilder()
-                .append("Success: Dictionary scan: Searched using ")
-                .append(dict.size())
-                .append(" dictionary words as keywords looking for cribs [")
-                .append(cribString)
-                .append("] in the decoded text.\n");
-        for (String word : dict) {
-            if (wordsRead++ % 200 == 199) {
-                if (CrackResults.isCancelled(crackId))
-                    return new CrackResult(dirs.getCrackMethod(), this, cipherText, "Crack cancelled", CrackState.CANCELLED);
-                Log.i("CipherCrack", "Cracking " + getCipherName() + " Dict: " + wordsRead + " words tried, found=" + matchesFound);
-                CrackResults.updateProgressDirectly(crackId, wordsRead + " words of " + dict.size() + ": " + 100 * wordsRead / dict.size() + "% complete, found=" + matchesFound);
-            }
-            word = word.toUpperCase();
-
-            // could be a number of ways of extending a partial keyword
-            for (KeywordExtend extendMethod : KeywordExtend.values()) {
-
-                // we need the whole square filled in, ignore the None method
-                if (extendMethod != KeywordExtend.EXTEND_NONE) {
-                    String fullKeywordForSquare = applyKeywordExtend(extendMethod, word, alphabet);
-
-                    // don't try to decode the cipherText with this keyword if already tried
-                    if (!triedKeywords.contains(fullKeywordForSquare)) {
-                        triedKeywords.add(fullKeywordForSquare);
-                        dirs.setKeyword(fullKeywordForSquare);
-                        String plainText = decode(cipherText, dirs);
-                        if (Cipher.containsAllCribs(plainText, cribs)) {
-                            successResult.append("Keyword ")
-                                    .append(fullKeywordForSquare)
-                                    .append(" gave decoded text: ")
-                                    .append(plainText.substring(0, Math.min(Cipher.CRACK_PLAIN_LENGTH, plainText.length())))
-                                    .append("\n");
-                            if (dirs.stopAtFirst()) {
-                                keyword = fullKeywordForSquare;
-                                colHeading = dirs.getColHeading();
-                                rowHeading = dirs.getRowHeading();
-                                replace = dirs.getReplace();
-                                dirs.setKeyword(foundKeyword);
-                                return new CrackResult(crackMethod, this, dirs, cipherText, plainText, successResult.toString());
-                            } else {
-                                matchesFound++;
-                                foundPlainText = plainText;
-                                foundKeyword = fullKeywordForSquare;
-                            }
+        DictionaryCrackEngine<String> engine = newDictionaryCrackEngine(dirs, crackId,
+                new DictionaryCrackEngine.KeyTrierFactory<String>() {
+            @Override
+            public DictionaryCrackEngine.KeyTrier<String> newKeyTrier() {
+                return new DictionaryCrackEngine.KeyTrier<String>() {
+                    private final Directives crackDirs = new Directives(dirs);
+                    private final byte[] table = new byte[tableSize];
+                    private final byte[] plain = new byte[cells.length];
+                    private final byte[] reversePlain = new byte[cells.length];
+                    private String plainKeyword = null;
+
+                    // could be a number of ways of extending a partial keyword
+                    @Override
+                    public int getKeyCount(String word) {
+                        return extendMethods.length;
+                    }
+
+                    // we need the whole square filled in, ignore the None method
+                    @Override
+                    public String getKey(String word, int variant) {
+                        if (extendMethods[variant] == KeywordExtend.EXTEND_NONE)
+                            return null;
+                        return applyKeywordExtend(extendMethods[variant], word, squareAlphabet);
+                    }
+
+                    // the reverse text is the decoded text reversed, so decode once per keyword,
+                    // and only as a string once the cribs have been found
+                    @Override
+                    public String tryKey(String fullKeywordForSquare, boolean reverse) {
+                        if (!fullKeywordForSquare.equals(plainKeyword)) {
+                            fillCellTable(fullKeywordForSquare, squareAlphabet, table);
+                            decodeCells(cells, table, plain);
+                            plainKeyword = fullKeywordForSquare;
                         }
-                        // now try reverse text
-                        if (dirs.considerReverse()) {
-                            reverser.setLength(0);
-                            String reversePlainText = reverser.append(plainText).reverse().toString();
-                            if (Cipher.containsAllCribs(reversePlainText, cribs)) {
-                                successResult.append("Keyword ")
-                                        .append(fullKeywordForSquare)
-                                        .append(" gave REVERSE decoded text: ")
-                                        .append(reversePlainText.substring(0, Math.min(Cipher.CRACK_PLAIN_LENGTH, reversePlainText.length())))
-                                        .append("\n");
-                                if (dirs.stopAtFirst()) {
-                                    keyword = fullKeywordForSquare;
-                                    colHeading = dirs.getColHeading();
-                                    rowHeading = dirs.getRowHeading();
-                                    replace = dirs.getReplace();
-                                    dirs.setKeyword(foundKeyword);
-                                    return new CrackResult(crackMethod, this, dirs, cipherText, reversePlainText, successResult.toString());
-                                } else {
-                                    matchesFound++;
-                                    foundPlainText = reversePlainText;
-                                    foundKeyword = fullKeywordForSquare;
-                                }
-                            }
+                        byte[] text = plain;
+                        if (reverse) {
+                            for (int i = 0, j = cells.length - 1; j >= 0; i++, j--)
+                                reversePlain[i] = plain[j];
+                            text = reversePlain;
                         }
+                        if (!Cipher.containsAllCribs(text, cells.length, cribOrdinals))
+                            return null;
+                        crackDirs.setKeyword(fullKeywordForSquare);
+                        String plainText = decode(forwardCipherText, crackDirs);
+                        return reverse ? new StringBuilder(plainText).reverse().toString() : plainText;
                     }
-                }
+                };
             }
-        }
-        if (foundPlainText.length() > 0) {
-            keyword = foundKeyword;
+        });
+        engine.setDedupeKeys(true);
+        List<DictionaryCrackEngine.Match<String>> matches = engine.run();
+        if (matches == null)
+            return new CrackResult(crackMethod, this, cipherText, "Crack cancelled", CrackState.CANCELLED);
+
+        // the last match found is used
+        if (matches.size() > 0) {
+            StringBuilder successResult = new StringBuilder()
+                    .append("Success: Dictionary scan: Searched using ")
+                    .append(dict.size())
+                    .append(" dictionary words as keywords looking for cribs [")
+                    .append(cribString)
+                    .append("] in the decoded text.\n");
+            for (DictionaryCrackEngine.Match<String> match : matches) {
+                String plainText = match.getPlainText();
+                successResult.append("Keyword ")
+                        .append(match.getKey())
+                        .append(match.isReverse() ? " gave REVERSE decoded text: " : " gave decoded text: ")
+                        .append(plainText.substring(0, Math.min(Cipher.CRACK_PLAIN_LENGTH, plainText.length())))
+                        .append("\n");
+            }
+            DictionaryCrackEngine.Match<String> found = matches.get(matches.size() - 1);
+            keyword = found.getKey();
             colHeading = dirs.getColHeading();
             rowHeading = dirs.getRowHeading();
             replace = dirs.getReplace();
-            dirs.setKeyword(foundKeyword);
-            return new CrackResult(crackMethod, this, dirs, cipherText, foundPlainText, successResult.toString());
+            dirs.setKeyword(found.getKey());
+            return new CrackResult(crackMethod, this, dirs, cipherText, found.getPlainText(), successResult.toString());
         }
         dirs.setKeyword(null);
         keyword = colHeading = rowHeading = null;
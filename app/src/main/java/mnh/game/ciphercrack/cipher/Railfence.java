@@ -11,12 +11,14 @@ import java.util.Set;
 import androidx.appcompat.app.AppCompatActivity;
 import mnh.game.ciphercrack.R;
 import mnh.game.ciphercrack.language.Language;
+import mnh.game.ciphercrack.services.CrackHandle;
 import mnh.game.ciphercrack.services.CrackResults;
 import mnh.game.ciphercrack.util.CrackMethod;
 import mnh.game.ciphercrack.util.CrackResult;
 import mnh.game.ciphercrack.util.CrackState;
 import mnh.game.ciphercrack.util.Directives;
 import mnh.game.ciphercrack.util.Settings;
+import mnh.game.ciphercrack.util.TranspositionPlan;
 
 /**
  * Class that contains methods to assist with Railfence Cipher operations
@@ -172,54 +174,7 @@ public class Railfence extends Cipher {
      */
     @Override
     public String decode(String cipherText, Directives dirs) {
-        int railCount = dirs.getRails();
-        int period = (railCount * 2) - 2;
-        int extra = cipherText.length() % period; // how many rails need to be a bit longer
-        int[] lengthRail = new int[railCount];
-        // basic length (floored) - later we may make some rails 1 char longer, based on extra
-        int baseRailLength = cipherText.length() / period;
-        // DFNTEATALEEDHESWL
-        // D F N T E A T A L
-        //  E E D H E S W L
-
-        // work out base length of first and last rail
-        lengthRail[0] = lengthRail[railCount-1] = baseRailLength;
-        // work out base lengths of the middle rails - twice as big
-        for (int railItem=1; railItem < railCount-1; railItem++) {
-            lengthRail[railItem] = 2*baseRailLength;
-        }
-        // increment the lengths of some rails of text is not multiple of rails
-        // first down
-        for (int railItem=0; railItem < railCount && extra != 0; railItem++) {
-            lengthRail[railItem]++;
-            extra--;
-        }
-        // and then back up, if necessary
-        for (int railItem=railCount-2; railItem > 0 && extra != 0; railItem--) {
-            lengthRail[railItem]++;
-            extra--;
-        }
-
-        // now start to build up the text on the rails
-        int[] railUsed = new int[railCount];
-        String[] railText = new String[railCount];
-        for (int railItem=0, pos=0; railItem < railCount; pos += lengthRail[railItem], railItem++) {
-            railText[railItem] = cipherText.substring(pos, pos+lengthRail[railItem]);
-            railUsed[railItem] = 0; // zeroing as well need this in the next loop
-        }
-
-        // now read the zigzags to get the plain text
-        StringBuilder result = new StringBuilder(cipherText.length());
-        int direction = -1;
-        for (int railItem=0, pos=0; pos < cipherText.length(); pos++) {
-            result.append(railText[railItem].charAt(railUsed[railItem]));
-            railUsed[railItem]++;
-            if (railItem == 0 || railItem == railCount-1) {
-                direction = -direction;
-            }
-            railItem += direction;
-        }
-        return result.toString();
+        return TranspositionPlan.railfence(dirs.getRails(), cipherText.length()).apply(cipherText);
     }
 
     /**
@@ -227,11 +182,12 @@ public class Railfence extends Cipher {
      * @return the user-specified maximum number of rails
      */
     private int getMaxRails() {
-        return Integer.valueOf(Settings.instance().getString(context, R.string.pref_limit_railfence_rails, Settings.DEFAULT_LIMIT_RAILFENCE_RAILS));
+        return Integer.valueOf(Settings.instance().getString(Settings.PREF_LIMIT_RAILFENCE_RAILS, Settings.DEFAULT_LIMIT_RAILFENCE_RAILS));
     }
 
     /**
-     * Crack a Railfence cipher by checking all rails and looking for cribs
+     * Crack a Railfence cipher by checking all rails and looking for cribs, the plan for each
+     * number of rails serves both the forward and the reverse text
      * @param cipherText the text to try to crack
      * @param dirs the directives with alphabet and cribs
      * @return the result of the crack attempt
@@ -243,13 +199,16 @@ public class Railfence extends Cipher {
 
         int maxRails = getMaxRails();
         maxRails = Math.min(maxRails, cipherText.length()/2);
+        CrackHandle handle = CrackResults.handleFor(crackId);
+        handle.startStage("Railfence brute force", "rails", Math.max(maxRails-2, 0));
         for (int currentRail=2; currentRail < maxRails; currentRail++) {
-            if (CrackResults.isCancelled(crackId))
+            if (handle.isCancelled())
                 return new CrackResult(dirs.getCrackMethod(), this, cipherText, "Crack cancelled", CrackState.CANCELLED);
-            CrackResults.updateProgressDirectly(crackId, currentRail+" rails  of "+maxRails+": "+100*currentRail/maxRails+"% complete");
+            handle.addDone(1);
 
             dirs.setRails(currentRail);
-            String plainText = decode(cipherText, dirs);
+            TranspositionPlan plan = TranspositionPlan.railfence(currentRail, cipherText.length());
+            String plainText = plan.apply(cipherText);
             if (Cipher.containsAllCribs(plainText, cribSet)) {
                 String explain = "Success: Brute force scan: tried possible rails from 2 to "
                         + maxRails
@@ -263,7 +222,7 @@ public class Railfence extends Cipher {
             }
             // now try reverse text
             if (dirs.considerReverse()) {
-                plainText = decode(reverseCipherText, dirs);
+                plainText = plan.apply(reverseCipherText);
                 if (Cipher.containsAllCribs(plainText, cribSet)) {
                     String explain = "Success: Brute force scan: tried possible rails from 2 to "
                             + maxRails
@@ -12,6 +12,7 @@ import java.util.Set;
 import androidx.appcompat.app.AppCompatActivity;
 import mnh.game.ciphercrack.R;
 import mnh.game.ciphercrack.language.Language;
+import mnh.game.ciphercrack.services.CrackHandle;
 import mnh.game.ciphercrack.services.CrackResults;
 import mnh.game.ciphercrack.transform.RemoveNonAlphabetic;
 import mnh.game.ciphercrack.transform.Transform;
@@ -19,6 +20,7 @@ import mnh.game.ciphercrack.util.CrackMethod;
 import mnh.game.ciphercrack.util.CrackResult;
 import mnh.game.ciphercrack.util.CrackState;
 import mnh.game.ciphercrack.util.Directives;
+import mnh.game.ciphercrack.util.TranspositionPlan;
 
 /**
  * Class that contains methods to assist with Skytale Cipher operations
@@ -166,27 +168,12 @@ public class Skytale extends Cipher {
      */
     @Override
     public String decode(String cipherText, Directives dirs) {
-        int cycleLength = dirs.getCycleLength();
-        StringBuilder[] lines = new StringBuilder[cycleLength];
-        for (int i = 0; i < cycleLength; i++) {
-            lines[i] = new StringBuilder();
-        }
-
-        // now cycle through the text, adding to correct string builder
-        for (int pos=0; pos < cipherText.length(); pos++) {
-            lines[pos % cycleLength].append(cipherText.charAt(pos));
-        }
-
-        // now append these cyclic strings to one final string
-        StringBuilder result = new StringBuilder();
-        for (int i = 0; i < cycleLength; i++) {
-            result.append(lines[i]);
-        }
-        return result.toString().trim();
+        return TranspositionPlan.skytale(dirs.getCycleLength(), cipherText.length()).apply(cipherText).trim();
     }
 
     /**
-     * Crack a Skytale cipher by checking all cycle lengths and looking for cribs
+     * Crack a Skytale cipher by checking all cycle lengths and looking for cribs, the plan for
+     * each cycle length serves both the forward and the reverse text
      * @param cipherText the text to try to crack
      * @param dirs the directives with alphabet and cribs
      * @return the result of the crack attempt
@@ -196,13 +183,16 @@ public class Skytale extends Cipher {
         Set<String> cribSet = Cipher.getCribSet(cribString);
         String reverseCipherText = new StringBuilder(cipherText).reverse().toString();
         int maxCycleLength = Math.min(MAX_CYCLE_LENGTH, cipherText.length()/2);
+        CrackHandle handle = CrackResults.handleFor(crackId);
+        handle.startStage("Skytale brute force", "cycle lengths", Math.max(maxCycleLength-2, 0));
         for (int currentCycleLength=2; currentCycleLength < maxCycleLength; currentCycleLength++) {
-            if (CrackResults.isCancelled(crackId))
+            if (handle.isCancelled())
                 return new CrackResult(dirs.getCrackMethod(), this, cipherText, "Crack cancelled", CrackState.CANCELLED);
-            CrackResults.updateProgressDirectly(crackId, currentCycleLength+" cycles  of "+maxCycleLength+": "+100*currentCycleLength/maxCycleLength+"% complete");
+            handle.addDone(1);
 
             dirs.setCycleLength(currentCycleLength);
-            String plainText = decode(cipherText, dirs);
+            TranspositionPlan plan = TranspositionPlan.skytale(currentCycleLength, cipherText.length());
+            String plainText = plan.apply(cipherText).trim();
             if (Cipher.containsAllCribs(plainText, cribSet)) {
                 cycleLength = currentCycleLength;
                 String explain = "Success: Brute force scan: tried possible cycle lengths from 2 to "
@@ -215,7 +205,7 @@ public class Skytale extends Cipher {
                 return new CrackResult(dirs.getCrackMethod(), this, dirs, cipherText, plainText, explain);
             }
             if (dirs.considerReverse()) {
-                plainText = decode(reverseCipherText, dirs);
+                plainText = plan.apply(reverseCipherText).trim();
                 if (Cipher.containsAllCribs(plainText, cribSet)) {
                     cycleLength = currentCycleLength;
                     String explain = "Success: Brute force scan: tried possible cycle lengths from 2 to "
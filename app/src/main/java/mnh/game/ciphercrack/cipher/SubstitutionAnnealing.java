@@ -0,0 +1,497 @@
+package mnh.game.ciphercrack.cipher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import mnh.game.ciphercrack.language.Dictionary;
+import mnh.game.ciphercrack.language.Language;
+import mnh.game.ciphercrack.language.WordAutomaton;
+import mnh.game.ciphercrack.services.CrackHandle;
+import mnh.game.ciphercrack.services.CrackResults;
+import mnh.game.ciphercrack.util.CrackPool;
+
+/**
+ * Simulated anealing of a simple substitution over a stream of symbols, several chains at once
+ * in the CrackPool. The symbols are numbered 0 to n-1, one for each of the n plain letters, so
+ * any cipher that turns each letter into some fixed token (like a Polybius grid cell) can be
+ * solved once its text is turned into symbols. A key is the letter for each symbol, and the
+ * first chain starts from the key that matches the most common symbols with the most common
+ * letters of the language, the others from that key with a few letters swapped. Each step
+ * swaps the letters of two symbols, the decode is measured by the quadgram log probabilities of
+ * the language and a worse key is accepted with probability exp(-drop/T) as the temperature T
+ * falls in steps to zero, and the fittest key is finished off with a climb of all the swaps.
+ * All chains stop as soon as any one of them finds a decode with all the cribs. Quadgrams can
+ * rate a key with a few letters out of place above the right one, so if the language has a
+ * dictionary the best key is finally climbed by the letters in whole dictionary words, those
+ * between the spaces of the text if they fall between words. A rare letter is only seen in a
+ * word or two, so a short word found inside a longer one, like KING in BLAKING, must not count
+ * for more, and the climb may not take the quadgram measure more than a little below the
+ * key it starts from
+ */
+class SubstitutionAnnealing {
+
+    // at least this many chains are run, on fewer threads they are run in turn
+    static final int MIN_CHAINS = 4;
+
+    // each chain anneals this many times before giving up
+    static final int RESTARTS = 3;
+
+    // how many letters are swapped in the frequency key to start the other chains
+    static final int START_SWAPS = 4;
+
+    // the start temperature, for a text of BASE_LETTERS, and how it rises with longer texts
+    static final double BASE_TEMPERATURE = 10.0;
+    static final int BASE_LETTERS = 100;
+    static final double TEMPERATURE_PER_LETTER = 0.02;
+
+    // how many steps the temperature falls in, and how many swaps are tried at each step
+    static final int TEMPERATURE_STEPS = 20;
+    static final int MOVES_PER_STEP = 1000;
+
+    // how far, per quadgram, the climb by dictionary words may take the quadgram measure below
+    // that of the key it starts from, enough to put a rare letter right but no more
+    static final double WORD_CLIMB_MARGIN = 0.01;
+
+    private final String letters;       // the plain letter for each number in a key
+    private final int symbolCount;
+    private final int[] symbols;        // the text, as symbols, with symbolCount for a break
+    private final boolean[] wordStarts; // whether a space comes before each symbol, null if not known
+    private final int[] languageOrdinal;    // ordinal in the language alphabet of each letter, -1 if none
+    private final int alphabetLength;
+    private final float[] quadgramLogs;
+    private final float floorLog;       // score for a quadgram with a letter the language does not have
+    private final byte[][] cribs;
+    private final CrackHandle handle;
+    private final int[] startKey;
+    private final double startTemperature;
+    private final Dictionary dictionary;    // null if the language has none
+    private final WordAutomaton words;  // null if the language has no dictionary
+
+    private final AtomicBoolean stop = new AtomicBoolean(false);
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+    private final AtomicLong moves = new AtomicLong(0);
+    private final AtomicInteger anneals = new AtomicInteger(0);
+    private String bestKey = null;
+    private double bestScore = -Double.MAX_VALUE;
+    private boolean foundCribs = false;
+
+    /**
+     * Prepare to anneal a stream of symbols
+     * @param symbols the cipher text as symbols from 0 to letters.length()-1, and
+     *                letters.length() for anything else in the text, like punctuation,
+     *                which breaks up the decode so no quadgram or crib is found across it
+     * @param wordStarts whether a space came before each symbol in the text, or null if
+     *                   the spaces are not known or do not fall between words, e.g. blocks
+     * @param letters the plain letters, one for each symbol
+     * @param language the language of the plain text, gives the letter frequencies and quadgrams
+     * @param cribSet the cribs, in upper case, that must all appear in the decoded text
+     * @param crackId the identifier of the crack, for progress and cancellation
+     */
+    SubstitutionAnnealing(int[] symbols, boolean[] wordStarts, String letters, Language language,
+                          Set<String> cribSet, int crackId) {
+        this.symbols = symbols;
+        this.wordStarts = wordStarts;
+        this.letters = letters;
+        this.symbolCount = letters.length();
+        this.handle = CrackResults.handleFor(crackId);
+
+        String alphabet = language.getAlphabet();
+        this.alphabetLength = alphabet.length();
+        this.languageOrdinal = new int[symbolCount];
+        for (int i = 0; i < symbolCount; i++)
+            languageOrdinal[i] = alphabet.indexOf(letters.charAt(i));
+        this.quadgramLogs = language.getNGramLogProbabilities(4);
+        float lowest = 0.0f;
+        for (float log : quadgramLogs)
+            lowest = Math.min(lowest, log);
+        this.floorLog = lowest;
+        this.cribs = Cipher.getCribOrdinals(cribSet, letters);
+
+        int length = 0;
+        for (int symbol : symbols) {
+            if (symbol < symbolCount)
+                length++;
+        }
+        this.startTemperature = Math.max(BASE_TEMPERATURE,
+                BASE_TEMPERATURE + TEMPERATURE_PER_LETTER * (length - BASE_LETTERS));
+        this.startKey = frequencyKey(language);
+        this.dictionary = language.getDictionary();
+        this.words = (dictionary == null) ? null : dictionary.getWordAutomaton();
+    }
+
+    /**
+     * The key that gives the most common letters of the language to the most common symbols,
+     * letters the language does not have, like digits, going to the least common
+     * @param language the language of the plain text
+     * @return the letter number for each symbol
+     */
+    private int[] frequencyKey(Language language) {
+        final int[] counts = new int[symbolCount];
+        for (int symbol : symbols) {
+            if (symbol < symbolCount)
+                counts[symbol]++;
+        }
+        // symbols, most common first, the sort is stable so ties keep their order
+        Integer[] bySymbolCount = new Integer[symbolCount];
+        for (int symbol = 0; symbol < symbolCount; symbol++)
+            bySymbolCount[symbol] = symbol;
+        Arrays.sort(bySymbolCount, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return counts[b] - counts[a];
+            }
+        });
+
+        // letters, most common in the language first, then any the language does not have
+        List<Integer> byLetterFrequency = new ArrayList<>(symbolCount);
+        for (Character letter : language.lettersOrderedByFrequency()) {
+            int number = letters.indexOf(letter);
+            if (number >= 0)
+                byLetterFrequency.add(number);
+        }
+        for (int number = 0; number < symbolCount; number++) {
+            if (!byLetterFrequency.contains(number))
+                byLetterFrequency.add(number);
+        }
+        int[] key = new int[symbolCount];
+        for (int i = 0; i < symbolCount; i++)
+            key[bySymbolCount[i]] = byLetterFrequency.get(i);
+        return key;
+    }
+
+    /**
+     * Anneal with several chains at once until one finds the cribs or all have cooled
+     * @return true if a decode with all the cribs was found, its key is then the best key
+     */
+    boolean run() {
+        if (symbols.length == 0)
+            return false;
+        int chainCount = Math.max(MIN_CHAINS, CrackPool.get().getParallelism());
+        handle.startStage("Annealing the substitution key", "anneals", (long)chainCount * RESTARTS);
+        final List<Chain> chains = new ArrayList<>(chainCount);
+        for (int c = 0; c < chainCount; c++) {
+            chains.add(new Chain(c));
+        }
+        CrackPool.get().invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(chains);
+            }
+        });
+        if (words != null && bestKey != null && !cancelled.get())
+            chains.get(0).polishByWords(bestKey);
+        return foundCribs && !cancelled.get();
+    }
+
+    boolean isCancelled() { return cancelled.get(); }
+    long getMoves() { return moves.get(); }
+    int getAnneals() { return anneals.get(); }
+    double getStartTemperature() { return startTemperature; }
+
+    /**
+     * @return the letter for each symbol, with all the cribs if found, else the fittest decode
+     */
+    synchronized String getBestKey() { return bestKey; }
+
+    /**
+     * @return the average quadgram log probability of the decode with the best key
+     */
+    synchronized double getBestScore() {
+        return (symbols.length > 3) ? bestScore / (symbols.length - 3) : bestScore;
+    }
+
+    // check for cancellation or another chain finding the cribs
+    private boolean shouldStop() {
+        if (stop.get())
+            return true;
+        if (handle.isCancelled()) {
+            cancelled.set(true);
+            stop.set(true);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * A chain has a new best of its own, see if it is the best overall or has all the cribs
+     * @param key the letter number for each symbol
+     * @param score the fitness of the decode
+     * @param plain a buffer for the decode, as letter numbers
+     * @return true if the decode has all the cribs
+     */
+    private synchronized boolean reportBest(int[] key, double score, byte[] plain) {
+        for (int i = 0; i < symbols.length; i++)
+            plain[i] = (symbols[i] < symbolCount) ? (byte)key[symbols[i]] : -1;
+        boolean hasCribs = Cipher.containsAllCribs(plain, plain.length, cribs);
+        if (foundCribs && !hasCribs)
+            return false;
+        if (score > bestScore || (hasCribs && !foundCribs)) {
+            char[] keyLetters = new char[symbolCount];
+            for (int symbol = 0; symbol < symbolCount; symbol++)
+                keyLetters[symbol] = letters.charAt(key[symbol]);
+            bestKey = String.valueOf(keyLetters);
+            bestScore = score;
+        }
+        if (hasCribs) {
+            foundCribs = true;
+            stop.set(true);
+        }
+        return hasCribs;
+    }
+
+    /**
+     * The sum of the quadgram log probabilities of the decode, a break in the text starts
+     * a new run of quadgrams, and each quadgram with a letter the language does not have
+     * scores the lowest, so such letters go to the symbols that are least used
+     * @param symbolOrdinal the language ordinal for each symbol with the key, -1 for a letter
+     *                      the language does not have and -2 for a break
+     * @return the fitness of the decode
+     */
+    private double score(int[] symbolOrdinal) {
+        double total = 0.0;
+        int size = alphabetLength * alphabetLength * alphabetLength;
+        int index = 0, valid = 0, unknown = 0;
+        for (int symbol : symbols) {
+            int ordinal = symbolOrdinal[symbol];
+            if (ordinal == -2) {
+                valid = 0;
+                index = 0;
+                unknown = 0;
+                continue;
+            }
+            if (ordinal == -1) {
+                ordinal = 0;
+                unknown = 4;    // the quadgrams this letter is in
+            }
+            index = (index % size) * alphabetLength + ordinal;
+            if (++valid >= 4)
+                total += (unknown > 0) ? floorLog : quadgramLogs[index];
+            if (unknown > 0)
+                unknown--;
+        }
+        return total;
+    }
+
+    /**
+     * One chain of the anealing, which starts again from the frequency key each time it cools
+     */
+    private class Chain extends RecursiveAction {
+        private final int chain;
+        private final int[] key = new int[symbolCount];
+        private final int[] symbolOrdinal = new int[symbolCount + 1];
+
+        Chain(int chain) {
+            this.chain = chain;
+            symbolOrdinal[symbolCount] = -2;
+        }
+
+        @Override
+        protected void compute() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            byte[] plain = new byte[symbols.length];
+            int[] chainKey = new int[symbolCount];
+            for (int restart = 0; restart < RESTARTS && !shouldStop(); restart++) {
+                anneals.incrementAndGet();
+
+                // the first anneal of the first chain starts at the frequency key
+                System.arraycopy(startKey, 0, key, 0, symbolCount);
+                if (chain != 0 || restart != 0) {
+                    for (int swap = 0; swap < START_SWAPS; swap++)
+                        swap(random.nextInt(symbolCount), random.nextInt(symbolCount));
+                }
+                for (int symbol = 0; symbol < symbolCount; symbol++)
+                    symbolOrdinal[symbol] = languageOrdinal[key[symbol]];
+                double score = score(symbolOrdinal);
+                double chainBest = score;
+                System.arraycopy(key, 0, chainKey, 0, symbolCount);
+                long made = 0;
+
+                double temperatureStep = startTemperature / TEMPERATURE_STEPS;
+                for (double temperature = startTemperature; temperature > 0.0; temperature -= temperatureStep) {
+                    if (shouldStop())
+                        break;
+                    for (int move = 0; move < MOVES_PER_STEP; move++) {
+                        int a = random.nextInt(symbolCount);
+                        int b = random.nextInt(symbolCount);
+                        if (a == b)
+                            continue;
+                        swap(a, b);
+                        double trialScore = score(symbolOrdinal);
+                        double drop = score - trialScore;
+                        if (drop <= 0.0 || random.nextDouble() < Math.exp(-drop / temperature)) {
+                            score = trialScore;
+                            if (score > chainBest) {
+                                chainBest = score;
+                                System.arraycopy(key, 0, chainKey, 0, symbolCount);
+                            }
+                        } else {
+                            swap(a, b);
+                        }
+                    }
+                    made += MOVES_PER_STEP;
+                }
+
+                // finish off the fittest key this chain has reached
+                if (!cancelled.get()) {
+                    System.arraycopy(chainKey, 0, key, 0, symbolCount);
+                    for (int symbol = 0; symbol < symbolCount; symbol++)
+                        symbolOrdinal[symbol] = languageOrdinal[key[symbol]];
+                    double polished = polish(chainBest);
+                    reportBest(key, polished, plain);
+                }
+                moves.addAndGet(made);
+                handle.addDone(1);
+            }
+        }
+
+        // climb by trying every swap of two letters, and every turn of three letters round,
+        // since a key can be stuck with three letters each in the place of the next, keeping
+        // any that improve the decode
+        private double polish(double score) {
+            boolean improved = true;
+            while (improved && !cancelled.get()) {
+                improved = false;
+                for (int a = 0; a < symbolCount; a++) {
+                    for (int b = a + 1; b < symbolCount; b++) {
+                        swap(a, b);
+                        double trialScore = score(symbolOrdinal);
+                        if (trialScore > score) {
+                            score = trialScore;
+                            improved = true;
+                        } else {
+                            swap(a, b);
+                        }
+                    }
+                }
+                for (int a = 0; a < symbolCount && !improved; a++) {
+                    for (int b = a + 1; b < symbolCount; b++) {
+                        for (int c = b + 1; c < symbolCount; c++) {
+                            // a->b->c->a, then the other way round, else put them back
+                            swap(a, b);
+                            swap(b, c);
+                            double trialScore = score(symbolOrdinal);
+                            if (trialScore > score) {
+                                score = trialScore;
+                                improved = true;
+                                continue;
+                            }
+                            swap(a, c);
+                            swap(a, b);
+                            trialScore = score(symbolOrdinal);
+                            if (trialScore > score) {
+                                score = trialScore;
+                                improved = true;
+                            } else {
+                                swap(b, c);
+                                swap(a, c);
+                            }
+                        }
+                    }
+                }
+            }
+            return score;
+        }
+
+        /**
+         * Climb from a key by the swaps and turns that polish makes, measuring each by the
+         * letters of the decode in whole dictionary words, then by the letters in words found
+         * anywhere, then by the quadgrams, never going more than WORD_CLIMB_MARGIN a quadgram
+         * below the quadgrams of the key it starts from, and make it the best key if it is
+         * better, and keeps the cribs if the best key has them
+         * @param fromKey the letter for each symbol
+         */
+        void polishByWords(String fromKey) {
+            for (int symbol = 0; symbol < symbolCount; symbol++) {
+                key[symbol] = letters.indexOf(fromKey.charAt(symbol));
+                symbolOrdinal[symbol] = languageOrdinal[key[symbol]];
+            }
+            int spaces = 0;
+            for (int i = 0; wordStarts != null && i < symbols.length; i++) {
+                if (wordStarts[i])
+                    spaces++;
+            }
+            char[] text = new char[symbols.length + spaces];
+            long bestWords = wordLetters(text);
+            double score = score(symbolOrdinal);
+            double floor = score - WORD_CLIMB_MARGIN * Math.max(1, symbols.length - 3);
+            boolean improved = true;
+            while (improved && !cancelled.get()) {
+                improved = false;
+                for (int a = 0; a < symbolCount; a++) {
+                    for (int b = a + 1; b < symbolCount; b++) {
+                        for (int c = b; c < symbolCount; c++) {
+                            // a swap when c is b, else a turn a->b->c->a
+                            swap(a, b);
+                            if (c != b)
+                                swap(b, c);
+                            long trialWords = wordLetters(text);
+                            double trialScore = (trialWords >= bestWords) ? score(symbolOrdinal) : score;
+                            boolean better = trialWords > bestWords || (trialWords == bestWords && trialScore > score);
+                            if (better && trialScore >= floor) {
+                                bestWords = trialWords;
+                                score = trialScore;
+                                improved = true;
+                            } else {
+                                if (c != b)
+                                    swap(b, c);
+                                swap(a, b);
+                            }
+                        }
+                    }
+                }
+            }
+            byte[] plain = new byte[symbols.length];
+            synchronized (SubstitutionAnnealing.this) {
+                for (int i = 0; i < symbols.length; i++)
+                    plain[i] = (symbols[i] < symbolCount) ? (byte)key[symbols[i]] : -1;
+                boolean hasCribs = Cipher.containsAllCribs(plain, plain.length, cribs);
+                if (hasCribs || !foundCribs) {
+                    char[] keyLetters = new char[symbolCount];
+                    for (int symbol = 0; symbol < symbolCount; symbol++)
+                        keyLetters[symbol] = letters.charAt(key[symbol]);
+                    bestKey = String.valueOf(keyLetters);
+                    bestScore = score;
+                    foundCribs = hasCribs;
+                }
+            }
+        }
+
+        // how many letters of the decode are in whole dictionary words, in the high half, and
+        // how many are in words found anywhere, which breaks ties, in the low half
+        private long wordLetters(char[] text) {
+            int length = 0;
+            for (int i = 0; i < symbols.length; i++) {
+                if (wordStarts != null && wordStarts[i])
+                    text[length++] = ' ';
+                text[length++] = (symbols[i] < symbolCount) ? letters.charAt(key[symbols[i]]) : '.';
+            }
+            String decode = String.valueOf(text, 0, length);
+            int whole = 0;
+            for (int start = 0, end = 0; start < length; start = end + 1) {
+                end = start;
+                while (end < length && text[end] != ' ' && text[end] != '.')
+                    end++;
+                if (end > start && dictionary.contains(decode.substring(start, end)))
+                    whole += end - start;
+            }
+            return ((long)whole << 32) | words.countWordLetters(decode);
+        }
+
+        // swap the letters of two symbols, keeping their language ordinals in step
+        private void swap(int a, int b) {
+            int letter = key[a];
+            key[a] = key[b];
+            key[b] = letter;
+            symbolOrdinal[a] = languageOrdinal[key[a]];
+            symbolOrdinal[b] = languageOrdinal[key[b]];
+        }
+    }
+}
@@ -4,7 +4,6 @@ import android.content.Context;
 import android.os.Parcel;
 import android.text.InputFilter;
 import android.text.Spanned;
-import android.util.Log;
 import android.view.View;
 import android.widget.Button;
 import android.widget.EditText;
@@ -12,8 +11,15 @@ import android.widget.LinearLayout;
 import android.widget.RadioButton;
 import android.widget.RadioGroup;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
 import java.util.Properties;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.RecursiveAction;
 
 import androidx.appcompat.app.AppCompatActivity;
 import mnh.game.ciphercrack.R;
@@ -22,8 +28,10 @@ import mnh.game.ciphercrack.language.Language;
 import mnh.game.ciphercrack.services.CrackResults;
 import mnh.game.ciphercrack.util.Climb;
 import mnh.game.ciphercrack.util.CrackMethod;
+import mnh.game.ciphercrack.util.CrackPool;
 import mnh.game.ciphercrack.util.CrackResult;
 import mnh.game.ciphercrack.util.CrackState;
+import mnh.game.ciphercrack.util.DictionaryCrackEngine;
 import mnh.game.ciphercrack.util.Directives;
 import mnh.game.ciphercrack.staticanalysis.StaticAnalysis;
 
@@ -58,6 +66,7 @@ public class Vigenere extends Cipher {
             LinearLayout lLen = v.getRootView().findViewById(R.id.extra_vigenere_crack_layout_length);
             switch (v.getId()) {
                 case R.id.crack_button_dictionary:
+                case R.id.crack_button_ioc_find_length:
                     lLen.setVisibility(View.GONE);
                     break;
                 case R.id.crack_button_ioc:
@@ -67,6 +76,17 @@ public class Vigenere extends Cipher {
         }
     };
 
+    // the longest keyword looked for when finding the length, and the fewest letters of text
+    // each letter of the keyword must decode for its column to be measured
+    private static final int MAX_KEYWORD_LENGTH_TO_FIND = 30;
+    private static final int MIN_LETTERS_PER_KEY_LETTER = 8;
+
+    // how many of the lengths with the best IOC are tried
+    private static final int KEYWORD_LENGTHS_TO_TRY = 5;
+
+    // the Kasiski length must divide at least this share of the gaps the best factor divides
+    private static final double KASISKI_SHARE_OF_MOST_GAPS = 0.8;
+
     String keyword = "";
 
     Vigenere(Context context) { super(context, "Vigenere"); }
@@ -130,7 +150,8 @@ public class Vigenere extends Cipher {
             }
         } else {
             String cribs = dirs.getCribs();
-            if (crackMethod != CrackMethod.DICTIONARY && crackMethod != CrackMethod.IOC)
+            if (crackMethod != CrackMethod.DICTIONARY && crackMethod != CrackMethod.IOC
+                    && crackMethod != CrackMethod.IOC_FIND_LENGTH)
                 return "Invalid crack method";
 
             if (cribs == null || cribs.length() == 0)
@@ -244,7 +265,10 @@ public class Vigenere extends Cipher {
 
         // locate the kind of crack we've been asked to do
         RadioButton dictButton = layout.findViewById(R.id.crack_button_dictionary);
-        return (dictButton.isChecked()) ? CrackMethod.DICTIONARY : CrackMethod.IOC;
+        if (dictButton.isChecked())
+            return CrackMethod.DICTIONARY;
+        RadioButton findLengthButton = layout.findViewById(R.id.crack_button_ioc_find_length);
+        return (findLengthButton.isChecked()) ? CrackMethod.IOC_FIND_LENGTH : CrackMethod.IOC;
     }
 
     /**
@@ -305,6 +329,37 @@ public class Vigenere extends Cipher {
         return result.toString();
     }
 
+    /**
+     * Vigenere needs one decode table per letter of the keyword
+     * @param dirs the directives holding the KEYWORD
+     * @return the number of tables needed to decode ordinals, the keyword length
+     */
+    @Override
+    public int getDecodeTableCount(Directives dirs) {
+        return dirs.getKeyword().length();
+    }
+
+    /**
+     * Fill in the tables used to decode ordinals, each table is the Caesar shift back by the
+     * ordinal of the keyword letter at that position
+     * @param dirs the directives holding the KEYWORD and ALPHABET
+     * @param tables the tables to fill, one per keyword letter
+     */
+    @Override
+    public void fillDecodeTables(Directives dirs, int[][] tables) {
+        String alphabet = dirs.getAlphabet();
+        String keyword = dirs.getKeyword();
+        int alphabetLength = alphabet.length();
+        for (int keyPos = 0; keyPos < keyword.length(); keyPos++) {
+            int keyShift = alphabet.indexOf(Character.toUpperCase(keyword.charAt(keyPos)));
+            int[] table = tables[keyPos];
+            for (int ordinal = 0; ordinal < alphabetLength; ordinal++) {
+                int plain = (ordinal - keyShift) % alphabetLength;
+                table[ordinal] = (plain < 0) ? plain + alphabetLength : plain;
+            }
+        }
+    }
+
     /**
      * Crack a Vigenere cipher by checking all words in a dictionary as keys, looking for cribs
      * @param cipherText the text to try to crack
@@ -312,73 +367,87 @@ public class Vigenere extends Cipher {
      * @param crackId used to pass progress results around
      * @return the results of the crack attempt
      */
-    private CrackResult crackUsingDictionary(String cipherText, Directives dirs, int crackId) {
+    private CrackResult crackUsingDictionary(String cipherText, final Directives dirs, int crackId) {
         CrackResults.updateProgressDirectly(crackId, "Starting "+getCipherName()+" dictionary crack");
         String cribString = dirs.getCribs();
         CrackMethod crackMethod = dirs.getCrackMethod();
-        String reverseCipherText = new StringBuilder(cipherText).reverse().toString();
+        final String forwardCipherText = cipherText;
+        final String reverseCipherText = new StringBuilder(cipherText).reverse().toString();
 
         Set<String> cribs = Cipher.getCribSet(cribString);
         Dictionary dict = dirs.getLanguage().getDictionary();
-        int wordsRead = 0, foundCount = 0;
-        String foundWord = null, foundPlainText = "";
-        StringBuilder successResult = new StringBuilder()
-                .append("Success: Dictionary scan: Searched using ")
-                .append(dict.size())
-                .append(" dictionary words as keywords looking for cribs [")
-                .append(cribString)
-                .append("].\n");
-        for (String word : dict) {
-            if (wordsRead++ % 200 == 199) {
-                if (CrackResults.isCancelled(crackId))
-                    return new CrackResult(dirs.getCrackMethod(), this, cipherText, "Crack cancelled", CrackState.CANCELLED);
-                Log.i("CipherCrack", "Cracking " + getCipherName() + " Dict: " + wordsRead + " words tried, found "+foundCount);
-                CrackResults.updateProgressDirectly(crackId, wordsRead+" words of "+dict.size()+": "+100*wordsRead/dict.size()+"% complete, found="+foundCount);
+
+        // decode as ordinals, only making a string of the text for keywords giving the cribs
+        final String alphabet = dirs.getAlphabet();
+        final byte[][] cribOrdinals = Cipher.getCribOrdinals(cribs, alphabet);
+        final byte[] cipherOrdinals = Cipher.toOrdinals(cipherText, alphabet);
+        final byte[] reverseOrdinals = Cipher.toOrdinals(reverseCipherText, alphabet);
+
+        // each dictionary word is tried as the keyword, the words are shared across threads
+        DictionaryCrackEngine<String> engine = newDictionaryCrackEngine(dirs, crackId,
+                new DictionaryCrackEngine.KeyTrierFactory<String>() {
+            @Override
+            public DictionaryCrackEngine.KeyTrier<String> newKeyTrier() {
+                return new DictionaryCrackEngine.KeyTrier<String>() {
+                    private final Directives crackDirs = new Directives(dirs);
+                    private final byte[] plainOrdinals = new byte[cipherOrdinals.length];
+                    private int[][] tables = null;
+                    private int tableCount = 0;
+                    private String tablesWord = null;
+
+                    @Override
+                    public int getKeyCount(String word) {
+                        return 1;
+                    }
+
+                    @Override
+                    public String getKey(String word, int variant) {
+                        return word;
+                    }
+
+                    @Override
+                    public String tryKey(String word, boolean reverse) {
+                        // tables are only filled once for the forward and reverse tries
+                        if (!word.equals(tablesWord)) {
+                            tablesWord = word;
+                            crackDirs.setKeyword(word);
+                            tableCount = getDecodeTableCount(crackDirs);
+                            tables = Cipher.ensureDecodeTables(tables, tableCount, alphabet.length());
+                            fillDecodeTables(crackDirs, tables);
+                        }
+                        byte[] ordinals = reverse ? reverseOrdinals : cipherOrdinals;
+                        Cipher.decodeOrdinals(ordinals, ordinals.length, tables, tableCount, plainOrdinals);
+                        if (!Cipher.containsAllCribs(plainOrdinals, ordinals.length, cribOrdinals))
+                            return null;
+                        return decode(reverse ? reverseCipherText : forwardCipherText, crackDirs);
+                    }
+                };
             }
-            word = word.toUpperCase();
-            dirs.setKeyword(word);
-            String plainText = decode(cipherText, dirs);
-            if (Cipher.containsAllCribs(plainText, cribs)) {
+        });
+        List<DictionaryCrackEngine.Match<String>> matches = engine.run();
+        if (matches == null)
+            return new CrackResult(crackMethod, this, cipherText, "Crack cancelled", CrackState.CANCELLED);
+
+        // let's see what we found, could be zero or multiple words, the last one is used
+        if (matches.size() > 0) {
+            StringBuilder successResult = new StringBuilder()
+                    .append("Success: Dictionary scan: Searched using ")
+                    .append(dict.size())
+                    .append(" dictionary words as keywords looking for cribs [")
+                    .append(cribString)
+                    .append("].\n");
+            for (DictionaryCrackEngine.Match<String> match : matches) {
+                String plainText = match.getPlainText();
                 successResult.append("Keyword ")
-                        .append(word)
-                        .append(" gave decoded text: ")
+                        .append(match.getKey())
+                        .append(match.isReverse() ? " gave decoded REVERSE text: " : " gave decoded text: ")
                         .append(plainText.substring(0, Math.min(Cipher.CRACK_PLAIN_LENGTH, plainText.length())))
                         .append("\n");
-                if (dirs.stopAtFirst()) {
-                    keyword = word;
-                    return new CrackResult(crackMethod, this, dirs, cipherText, plainText, successResult.toString());
-                } else {
-                    foundCount++;
-                    foundWord = word;
-                    foundPlainText = plainText;
-                }
             }
-            // now try reverse text decoding
-            if (dirs.considerReverse()) {
-                plainText = decode(reverseCipherText, dirs);
-                if (Cipher.containsAllCribs(plainText, cribs)) {
-                    successResult.append("Keyword ")
-                            .append(word)
-                            .append(" gave decoded REVERSE text: ")
-                            .append(plainText.substring(0, Math.min(Cipher.CRACK_PLAIN_LENGTH, plainText.length())))
-                            .append("\n");
-                    if (dirs.stopAtFirst()) {
-                        keyword = word;
-                        return new CrackResult(crackMethod, this, dirs, cipherText, plainText, successResult.toString());
-                    } else {
-                        foundCount++;
-                        foundWord = word;
-                        foundPlainText = plainText;
-                    }
-                }
-            }
-        }
-
-        // let's see what we found, could be zero or multiple words
-        if (foundPlainText.length() > 0) {
-            dirs.setKeyword(foundWord);
-            keyword = foundWord;
-            return new CrackResult(crackMethod, this, dirs, cipherText, foundPlainText, successResult.toString());
+            DictionaryCrackEngine.Match<String> found = matches.get(matches.size() - 1);
+            dirs.setKeyword(found.getKey());
+            keyword = found.getKey();
+            return new CrackResult(crackMethod, this, dirs, cipherText, found.getPlainText(), successResult.toString());
         }
 
         // nothing found
@@ -393,15 +462,16 @@ public class Vigenere extends Cipher {
     }
 
     /**
-     * Crack a Vigenere cipher by checking all shifts, climbing based on IOC and when best IOC found
-     * we take that keyword and look through all equally shifted keys for the cribs
+     * Crack a Vigenere cipher with a keyword length found by IOC, each letter of the key is
+     * solved on its own from the letter frequencies of the column of text it decodes, then the
+     * key is refined by quadgrams and checked for the cribs
      * @param cipherText the text to try to crack
      * @param dirs the directives with alphabet and cribs
      * @param crackId used to pass progress results around
      * @return the results of the crack attempt
      */
     private CrackResult crackUsingIndexOfCoincidence(String cipherText, Directives dirs, int crackId) {
-        CrackResults.updateProgressDirectly(crackId, "Starting "+getCipherName()+" hill climb using IOC fitness");
+        CrackResults.updateProgressDirectly(crackId, "Starting "+getCipherName()+" column solve of key letters");
         String alphabet = dirs.getAlphabet();
         String cribString = dirs.getCribs();
         String paddingChars = dirs.getPaddingChars();
@@ -409,23 +479,20 @@ public class Vigenere extends Cipher {
         StringBuilder explain = new StringBuilder();
 
         // build a candidate keyword, all 'A's to start with
-        int keywordLength = dirs.getKeywordLength();
-        StringBuilder sbKeyword = new StringBuilder(alphabet.length());
-        for (int pos=0; pos < keywordLength; pos++) {
-            sbKeyword.append(alphabet.charAt(0));
-        }
+        String startKey = startKeyword(alphabet, dirs.getKeywordLength());
 
         Properties crackProps = new Properties();
         crackProps.setProperty(Climb.CLIMB_ALPHABET, alphabet);
+        crackProps.setProperty(Climb.CLIMB_LANGUAGE, dirs.getLanguage().getName());
         crackProps.setProperty(Climb.CLIMB_CRIBS, cribString);
-        crackProps.setProperty(Climb.CLIMB_START_KEYWORD, sbKeyword.toString());
+        crackProps.setProperty(Climb.CLIMB_START_KEYWORD, startKey);
         crackProps.setProperty(Climb.CLIMB_PADDING_CHARS, paddingChars);
 
         // publisher.publishProgress(crackId, 1);
         if (Climb.doClimb(cipherText, this, crackProps, crackId)) {
             keyword = crackProps.getProperty(Climb.CLIMB_BEST_KEYWORD);
             dirs.setKeyword(keyword);
-            explain.append("Success: Searched for best IOC and found all cribs [")
+            explain.append("Success: Solved key letters by column frequencies and found all cribs [")
                     .append(cribString)
                     .append("] with key ")
                     .append(crackProps.getProperty(Climb.CLIMB_BEST_KEYWORD)).append("\n")
@@ -436,7 +503,7 @@ public class Vigenere extends Cipher {
                 return new CrackResult(dirs.getCrackMethod(), this, cipherText, "Crack cancelled", CrackState.CANCELLED);
             keyword = null;
             String bestDecode = crackProps.getProperty(Climb.CLIMB_BEST_DECODE);
-            explain.append("Fail: Searched for best IOC, but did not find cribs [")
+            explain.append("Fail: Solved key letters by column frequencies, but did not find cribs [")
                     .append(cribString)
                     .append("], best key was ")
                     .append(crackProps.getProperty(Climb.CLIMB_BEST_KEYWORD))
@@ -448,6 +515,164 @@ public class Vigenere extends Cipher {
         }
     }
 
+    /**
+     * Crack a Vigenere cipher without being told the keyword length. The likely lengths are
+     * those whose columns have the IOC nearest the language, plus the Kasiski and Friedman
+     * estimates, and the key of each length is solved at the same time in the CrackPool.
+     * The shortest key giving the cribs wins, else the one whose decode has the best fitness
+     * @param cipherText the text to try to crack
+     * @param dirs the directives with alphabet, language and cribs
+     * @param crackId used to pass progress results around
+     * @return the results of the crack attempt
+     */
+    private CrackResult crackUsingAllKeywordLengths(final String cipherText, Directives dirs, final int crackId) {
+        CrackResults.updateProgressDirectly(crackId, "Starting "+getCipherName()+" search for keyword length");
+        String alphabet = dirs.getAlphabet();
+        Language language = dirs.getLanguage();
+        String cribString = dirs.getCribs();
+        CrackMethod crackMethod = dirs.getCrackMethod();
+        StringBuilder explain = new StringBuilder();
+
+        // find the likely lengths from the IOC of the columns, Kasiski and Friedman
+        byte[] cipherOrdinals = Cipher.toOrdinals(cipherText, alphabet);
+        int length = cipherOrdinals.length;
+        int maxLength = Math.max(1, Math.min(MAX_KEYWORD_LENGTH_TO_FIND, length / MIN_LETTERS_PER_KEY_LETTER));
+        double[] cyclicIOC = StaticAnalysis.getCyclicIOC(cipherOrdinals, length, alphabet.length(), maxLength + 1);
+        Integer[] byIOC = new Integer[maxLength];
+        for (int keyLength = 1; keyLength <= maxLength; keyLength++)
+            byIOC[keyLength - 1] = keyLength;
+        final double expectedIOC = language.getExpectedIOC();
+        final double[] iocs = cyclicIOC;
+        Arrays.sort(byIOC, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer len1, Integer len2) {
+                return Double.compare(Math.abs(iocs[len1] - expectedIOC), Math.abs(iocs[len2] - expectedIOC));
+            }
+        });
+        Set<Integer> lengths = new TreeSet<>();
+        for (int i = 0; i < Math.min(KEYWORD_LENGTHS_TO_TRY, byIOC.length); i++)
+            lengths.add(byIOC[i]);
+        int[] kasiski = StaticAnalysis.getKasiskiFactorCounts(cipherOrdinals, length, alphabet.length(), maxLength);
+        // factors of the key length divide as many gaps as it does, and multiples of it fewer,
+        // so take the largest that divides nearly as many gaps as the most
+        int mostGaps = 0;
+        for (int factor = 2; factor <= maxLength; factor++)
+            mostGaps = Math.max(mostGaps, kasiski[factor]);
+        int kasiskiLength = 0;
+        for (int factor = 2; factor <= maxLength; factor++) {
+            if (mostGaps > 0 && kasiski[factor] >= mostGaps * KASISKI_SHARE_OF_MOST_GAPS)
+                kasiskiLength = factor;
+        }
+        if (kasiskiLength > 0)
+            lengths.add(kasiskiLength);
+        double friedman = StaticAnalysis.getFriedmanKeyLength(cipherOrdinals, length, alphabet.length(), expectedIOC);
+        int friedmanLength = (int)Math.round(friedman);
+        if (friedmanLength >= 1 && friedmanLength <= maxLength)
+            lengths.add(friedmanLength);
+        explain.append("Keyword lengths with column IOC nearest ")
+                .append(String.format(Locale.getDefault(), "%5.4f", expectedIOC))
+                .append(":");
+        for (int i = 0; i < Math.min(KEYWORD_LENGTHS_TO_TRY, byIOC.length); i++) {
+            explain.append(" ")
+                    .append(byIOC[i])
+                    .append(" (")
+                    .append(String.format(Locale.getDefault(), "%5.4f", cyclicIOC[byIOC[i]]))
+                    .append(")");
+        }
+        explain.append(", Kasiski suggests ")
+                .append(kasiskiLength == 0 ? "nothing" : String.valueOf(kasiskiLength))
+                .append(", Friedman suggests ")
+                .append(String.format(Locale.getDefault(), "%3.1f", friedman))
+                .append(".\n");
+
+        // solve the key of every length at once, each with its own properties
+        final List<Integer> keyLengths = new ArrayList<>(lengths);
+        final Properties[] results = new Properties[keyLengths.size()];
+        final boolean[] foundCribs = new boolean[keyLengths.size()];
+        List<RecursiveAction> solvers = new ArrayList<>(keyLengths.size());
+        for (int i = 0; i < keyLengths.size(); i++) {
+            final int index = i;
+            final Properties crackProps = new Properties();
+            crackProps.setProperty(Climb.CLIMB_ALPHABET, alphabet);
+            crackProps.setProperty(Climb.CLIMB_LANGUAGE, language.getName());
+            crackProps.setProperty(Climb.CLIMB_CRIBS, cribString);
+            crackProps.setProperty(Climb.CLIMB_START_KEYWORD, startKeyword(alphabet, keyLengths.get(i)));
+            crackProps.setProperty(Climb.CLIMB_PADDING_CHARS, dirs.getPaddingChars());
+            results[i] = crackProps;
+            solvers.add(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    foundCribs[index] = Climb.doClimb(cipherText, Vigenere.this, crackProps, crackId);
+                }
+            });
+        }
+        final List<RecursiveAction> allSolvers = solvers;
+        CrackPool.get().invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(allSolvers);
+            }
+        });
+        if (CrackResults.isCancelled(crackId))
+            return new CrackResult(crackMethod, this, cipherText, "Crack cancelled", CrackState.CANCELLED);
+
+        // the shortest key with the cribs, as a longer one may just repeat it, else the fittest
+        int best = -1;
+        double bestFitness = -Double.MAX_VALUE;
+        for (int i = 0; i < keyLengths.size(); i++) {
+            String decode = results[i].getProperty(Climb.CLIMB_BEST_DECODE);
+            double fitness = decodeFitness(decode, alphabet, language);
+            explain.append("Length ")
+                    .append(keyLengths.get(i))
+                    .append(": key ")
+                    .append(results[i].getProperty(Climb.CLIMB_BEST_KEYWORD))
+                    .append(foundCribs[i] ? " found all cribs" : " did not find all cribs")
+                    .append(", fitness ")
+                    .append(String.format(Locale.getDefault(), "%7.6f", fitness))
+                    .append(".\n");
+            if (best < 0 || (foundCribs[i] && !foundCribs[best])
+                    || (!foundCribs[i] && !foundCribs[best] && fitness > bestFitness)) {
+                best = i;
+                bestFitness = fitness;
+            }
+        }
+        Properties bestProps = results[best];
+        String bestKey = bestProps.getProperty(Climb.CLIMB_BEST_KEYWORD);
+        String bestDecode = bestProps.getProperty(Climb.CLIMB_BEST_DECODE);
+        if (foundCribs[best]) {
+            keyword = bestKey;
+            dirs.setKeyword(bestKey);
+            dirs.setKeywordLength(bestKey.length());
+            explain.insert(0, "Success: Tried "+keyLengths.size()+" keyword lengths and found all cribs ["
+                    +cribString+"] with key "+bestKey+"\n")
+                    .append(bestProps.getProperty(Climb.CLIMB_ACTIVITY));
+            return new CrackResult(crackMethod, this, dirs, cipherText, bestDecode, explain.toString());
+        }
+        keyword = null;
+        explain.insert(0, "Fail: Tried "+keyLengths.size()+" keyword lengths, but did not find cribs ["
+                +cribString+"], best key was "+bestKey+", which gave text starting: "
+                +bestDecode.substring(0, Math.min(Cipher.CRACK_PLAIN_LENGTH, bestDecode.length()))+"\n")
+                .append(bestProps.getProperty(Climb.CLIMB_ACTIVITY));
+        return new CrackResult(crackMethod, this, cipherText, explain.toString(), bestDecode);
+    }
+
+    // a keyword of the given length, all the first letter of the alphabet
+    private static String startKeyword(String alphabet, int length) {
+        StringBuilder sbKeyword = new StringBuilder(length);
+        for (int pos = 0; pos < length; pos++) {
+            sbKeyword.append(alphabet.charAt(0));
+        }
+        return sbKeyword.toString();
+    }
+
+    // quadgram fitness of a decode, or its IOC if the quadgrams don't fit the alphabet
+    private static double decodeFitness(String decode, String alphabet, Language language) {
+        byte[] plainOrdinals = Cipher.toOrdinals(decode, alphabet);
+        if (language.getAlphabet().equals(alphabet))
+            return language.getQuadgramFitness().score(plainOrdinals, plainOrdinals.length);
+        return StaticAnalysis.calculateIOC(plainOrdinals, plainOrdinals.length, alphabet.length());
+    }
+
     /**
      * Crack a Vigenere cipher by one of several methods
      * @param cipherText the text to try to crack
@@ -460,6 +685,8 @@ public class Vigenere extends Cipher {
         CrackMethod crackMethod = dirs.getCrackMethod();
         if (crackMethod == CrackMethod.IOC) {
             return crackUsingIndexOfCoincidence(cipherText, dirs, crackId);
+        } else if (crackMethod == CrackMethod.IOC_FIND_LENGTH) {
+            return crackUsingAllKeywordLengths(cipherText, dirs, crackId);
         } else { // do dictionary search
             return crackUsingDictionary(cipherText, dirs, crackId);
         }
@@ -475,4 +702,16 @@ public class Vigenere extends Cipher {
     public double getFitness(String text, Directives dirs) {
         return StaticAnalysis.calculateIOC(text, dirs.getAlphabet(), dirs.getPaddingChars());
     }
+
+    /**
+     * Fitness for vigenere (and beaufort) of ordinal text, via IOC as for the string version
+     * @param plainOrdinals the decoded text as ordinals within the alphabet
+     * @param length how many of the ordinals are used
+     * @param dirs directives that may be required for the check
+     * @return a measure of fitness, higher is better, more fit
+     */
+    @Override
+    public double getFitness(byte[] plainOrdinals, int length, Directives dirs) {
+        return StaticAnalysis.calculateIOC(plainOrdinals, length, dirs.getAlphabet().length());
+    }
 }
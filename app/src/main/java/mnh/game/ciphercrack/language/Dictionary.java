@@ -1,11 +1,10 @@
 package mnh.game.ciphercrack.language;
 
-import android.util.Log;
-
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -13,6 +12,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import mnh.game.ciphercrack.util.CrackLog;
+
 /**
  * A dictionary is a hash set of upper-case trimmed words in a particular language
  */
@@ -28,6 +29,9 @@ public class Dictionary extends HashSet<String> {
     // so whole dictionary is not scanned for each word to be split
     private Map<String, List<String>> mapOf2LetterPrefixes = null;
 
+    // Finds all the (2+ letter) words in a text in one pass, see getWordCountFitness in Cipher
+    private WordAutomaton wordAutomaton = null;
+
     // a dictionary will have thousands of entries, so ensure we ALWAYS specify size
     Dictionary() { super(DEFAULT_INITIAL_SIZE); }
 
@@ -51,7 +55,7 @@ public class Dictionary extends HashSet<String> {
                 }
             }
         } catch (IOException ex) {
-            Log.i("Dictionary", "Unable to load dictionary: "+ex.getMessage());
+            CrackLog.i("Dictionary", "Unable to load dictionary: "+ex.getMessage());
             this.clear();
             return false; // can't be loaded, keep it null
         }
@@ -84,6 +88,25 @@ public class Dictionary extends HashSet<String> {
         return mapOf2LetterPrefixes;
     }
 
+    /**
+     * Construct an automaton that finds all words of 2 or more letters in a text in one pass,
+     * single-letter words are left out as they match almost any text
+     * Automaton is constructed on first call, subsequent ones re-use the same automaton
+     * @return the automaton for the words of this dictionary
+     */
+    public synchronized WordAutomaton getWordAutomaton() {
+        if (wordAutomaton == null) {
+            List<String> words = new ArrayList<>(size());
+            for (String word : this) {
+                if (word.length() > 1) {
+                    words.add(word);
+                }
+            }
+            wordAutomaton = new WordAutomaton(words);
+        }
+        return wordAutomaton;
+    }
+
     public Set<Character> getSingleLetterWords() {
         return singleLetterWords;
     }
@@ -0,0 +1,186 @@
+package mnh.game.ciphercrack.language;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the n-gram fitness of a monoalphabetic decode of a text up to date as the decode of
+ * one or two cipher letters is changed, rather than decoding and scoring the whole text again.
+ * The contribution of each n-gram is kept, along with where each cipher letter occurs, so a
+ * change only re-scores the n-grams touching the occurrences of the changed letters.
+ * Changes since the last commit can be rolled back, which is what happens to most changes
+ * during a climb. Gives the same score as NGramFitness of the whole decoded text.
+ * Not thread safe, each climbing thread needs its own
+ */
+public class IncrementalNGramFitness {
+
+    private final float[] logProbabilities;
+    private final int n;
+    private final int alphabetLength;
+    private final byte[] cipher;            // the text as cipher ordinals
+    private final int length;
+    private final int[][] occurrences;      // cipher ordinal -> the positions it is at
+    private final byte[] plain;             // the text as decoded ordinals
+    private final int[] table;              // cipher ordinal -> plain ordinal
+    private final float[] contribution;     // n-gram start -> its log probability
+    private double total;
+
+    // n-gram starts already re-scored by the current change
+    private final int[] stamp;
+    private int change = 0;
+
+    // what to put back on a rollback: earlier n-gram contributions and decode table entries
+    private int[] undoStarts = new int[64];
+    private float[] undoContributions = new float[64];
+    private int undoCount = 0;
+    private int[] undoTable = new int[8];   // pairs of cipher ordinal, previous plain ordinal
+    private int undoTableCount = 0;
+    private double committedTotal;
+
+    /**
+     * Set up the scoring of a text
+     * @param language the language whose n-gram probabilities are used
+     * @param n the size of n-gram, e.g. 4 for quadgrams
+     * @param cipherOrdinals the cipher text as ordinals within the language alphabet
+     * @param length how many of the ordinals are used
+     */
+    public IncrementalNGramFitness(Language language, int n, byte[] cipherOrdinals, int length) {
+        this.logProbabilities = language.getNGramLogProbabilities(n);
+        this.n = n;
+        this.alphabetLength = language.getAlphabet().length();
+        this.cipher = cipherOrdinals;
+        this.length = length;
+        this.plain = new byte[length];
+        this.table = new int[alphabetLength];
+        int starts = Math.max(0, length - n + 1);
+        this.contribution = new float[starts];
+        this.stamp = new int[starts];
+
+        // index where each cipher letter is, so a change only looks at those places
+        int[] counts = new int[alphabetLength];
+        for (int pos = 0; pos < length; pos++)
+            counts[cipherOrdinals[pos]]++;
+        occurrences = new int[alphabetLength][];
+        for (int ordinal = 0; ordinal < alphabetLength; ordinal++)
+            occurrences[ordinal] = new int[counts[ordinal]];
+        Arrays.fill(counts, 0);
+        for (int pos = 0; pos < length; pos++) {
+            int ordinal = cipherOrdinals[pos];
+            occurrences[ordinal][counts[ordinal]++] = pos;
+        }
+    }
+
+    /**
+     * Decode and score the whole text with a new decode table, anything not committed is lost
+     * @param decodeTable cipher ordinal -> plain ordinal, for every letter of the alphabet
+     * @return the average log probability per n-gram, as NGramFitness.score
+     */
+    public double setDecodeTable(int[] decodeTable) {
+        System.arraycopy(decodeTable, 0, table, 0, alphabetLength);
+        for (int pos = 0; pos < length; pos++)
+            plain[pos] = (byte)table[cipher[pos]];
+        total = 0.0;
+        for (int start = 0; start < contribution.length; start++) {
+            contribution[start] = logProbabilities[gramIndex(start)];
+            total += contribution[start];
+        }
+        committedTotal = total;
+        undoCount = 0;
+        undoTableCount = 0;
+        return getScore();
+    }
+
+    /**
+     * @return the average log probability per n-gram of the decode as it is now, or a very low
+     * value if the text is shorter than one n-gram
+     */
+    public double getScore() {
+        return (contribution.length == 0) ? -Double.MAX_VALUE : total / contribution.length;
+    }
+
+    /**
+     * Change what two cipher letters decode to, e.g. when two letters of a key are swapped
+     * @param cipherA the first cipher ordinal
+     * @param plainA what the first cipher ordinal now decodes to
+     * @param cipherB the second cipher ordinal
+     * @param plainB what the second cipher ordinal now decodes to
+     * @return the score of the changed decode
+     */
+    public double changeDecodes(int cipherA, int plainA, int cipherB, int plainB) {
+        change++;
+        setDecode(cipherA, plainA);
+        setDecode(cipherB, plainB);
+        rescore(cipherA);
+        if (cipherB != cipherA)
+            rescore(cipherB);
+        return getScore();
+    }
+
+    /**
+     * Keep the changes made since the last commit
+     */
+    public void commit() {
+        committedTotal = total;
+        undoCount = 0;
+        undoTableCount = 0;
+    }
+
+    /**
+     * Put back the decode and score as they were at the last commit
+     */
+    public void rollback() {
+        for (int u = undoCount - 1; u >= 0; u--)
+            contribution[undoStarts[u]] = undoContributions[u];
+        for (int u = undoTableCount - 2; u >= 0; u -= 2) {
+            int ordinal = undoTable[u];
+            table[ordinal] = undoTable[u + 1];
+            for (int pos : occurrences[ordinal])
+                plain[pos] = (byte)table[ordinal];
+        }
+        total = committedTotal;
+        undoCount = 0;
+        undoTableCount = 0;
+    }
+
+    // change one entry of the decode table, and the decoded text where that letter is
+    private void setDecode(int ordinal, int plainOrdinal) {
+        if (table[ordinal] == plainOrdinal)
+            return;
+        if (undoTableCount + 2 > undoTable.length)
+            undoTable = Arrays.copyOf(undoTable, undoTable.length * 2);
+        undoTable[undoTableCount++] = ordinal;
+        undoTable[undoTableCount++] = table[ordinal];
+        table[ordinal] = plainOrdinal;
+        for (int pos : occurrences[ordinal])
+            plain[pos] = (byte)plainOrdinal;
+    }
+
+    // re-score every n-gram touching an occurrence of the cipher letter, once per change
+    private void rescore(int ordinal) {
+        int lastStart = contribution.length - 1;
+        for (int pos : occurrences[ordinal]) {
+            int from = Math.max(0, pos - n + 1);
+            int to = Math.min(pos, lastStart);
+            for (int start = from; start <= to; start++) {
+                if (stamp[start] != change) {
+                    stamp[start] = change;
+                    if (undoCount == undoStarts.length) {
+                        undoStarts = Arrays.copyOf(undoStarts, undoCount * 2);
+                        undoContributions = Arrays.copyOf(undoContributions, undoCount * 2);
+                    }
+                    undoStarts[undoCount] = start;
+                    undoContributions[undoCount++] = contribution[start];
+                    float newContribution = logProbabilities[gramIndex(start)];
+                    total += newContribution - contribution[start];
+                    contribution[start] = newContribution;
+                }
+            }
+        }
+    }
+
+    private int gramIndex(int start) {
+        int index = 0;
+        for (int i = start; i < start + n; i++)
+            index = index * alphabetLength + plain[i];
+        return index;
+    }
+}
@@ -16,10 +16,21 @@ public abstract class Language {
     // keep track of created Languages, we just want one of each so dictionary only loaded once
     private static final HashMap<String, Language> instances = new HashMap<>();
 
+    // the longest n-gram we hold log probabilities for, quadgrams
+    public static final int MAX_NGRAM = 4;
+
+    // how much of each n-gram probability comes from the letter frequencies alone, so that
+    // n-grams not seen in the dictionary are unlikely but not impossible
+    private static final double LETTER_FREQUENCY_WEIGHT = 0.1;
+
     // instance variables
     private Dictionary dictionary = null;
     private final String name;
 
+    // log probabilities of n-grams, indexed by n, built on first use
+    private final float[][] nGramLogProbabilities = new float[MAX_NGRAM+1][];
+    private volatile NGramFitness quadgramFitness = null;
+
     // don't instantiate this root class, but subclasses can call this
     Language(String name) {
         this.name = name;
@@ -169,6 +180,143 @@ public abstract class Language {
         return dictionary;
     }
 
+    /**
+     * Return the log (base 10) probability of each n-gram of letters in this language, in a flat
+     * array indexed by the alphabet ordinals of the letters, first letter most significant,
+     * e.g. for quadgrams index = ((a*L + b)*L + c)*L + d where L is the alphabet length.
+     * The table is built on first use from the words in the dictionary, both the n-grams within
+     * words and those that span the gap between one word and the next, blended with the letter
+     * frequencies so that no n-gram is impossible
+     * @param n the length of n-gram, 1 to MAX_NGRAM
+     * @return the table of log probabilities, L^n entries, shared so must not be changed
+     */
+    public synchronized float[] getNGramLogProbabilities(int n) {
+        if (n < 1 || n > MAX_NGRAM)
+            throw new IllegalArgumentException("N-gram size must be 1 to "+MAX_NGRAM+", not "+n);
+        if (nGramLogProbabilities[n] == null) {
+            nGramLogProbabilities[n] = buildNGramLogProbabilities(n);
+        }
+        return nGramLogProbabilities[n];
+    }
+
+    /**
+     * Return the quadgram fitness measure for this language, created on first use
+     * @return the fitness measure, which can be shared between threads
+     */
+    public NGramFitness getQuadgramFitness() {
+        NGramFitness fitness = quadgramFitness;
+        if (fitness == null) {
+            fitness = new NGramFitness(this, MAX_NGRAM);
+            quadgramFitness = fitness;
+        }
+        return fitness;
+    }
+
+    // count n-grams in the dictionary and turn them into log probabilities
+    private float[] buildNGramLogProbabilities(int n) {
+        String alphabet = getAlphabet();
+        int alphabetLength = alphabet.length();
+        int size = 1;
+        for (int i = 0; i < n; i++)
+            size *= alphabetLength;
+
+        // the chance of each letter on its own, from the known letter frequencies
+        double[] letterProbability = new double[alphabetLength];
+        double letterTotal = 0.0;
+        Map<String, Float> letterFrequencies = getLetterFrequencies();
+        for (int i = 0; i < alphabetLength; i++) {
+            Float freq = letterFrequencies.get(String.valueOf(alphabet.charAt(i)));
+            letterProbability[i] = (freq == null || freq <= 0.0f) ? 0.01 : freq;
+            letterTotal += letterProbability[i];
+        }
+        for (int i = 0; i < alphabetLength; i++)
+            letterProbability[i] /= letterTotal;
+
+        // count the n-grams inside words, and the prefixes and suffixes of each word
+        // so we can work out how often n-grams appear across the gap between words
+        double[] counts = new double[size];
+        double[][] prefixCounts = new double[n][];
+        double[][] suffixCounts = new double[n][];
+        int prefixSize = 1;
+        for (int k = 1; k < n; k++) {
+            prefixSize *= alphabetLength;
+            prefixCounts[k] = new double[prefixSize];
+            suffixCounts[k] = new double[prefixSize];
+        }
+        int words = 0;
+        if (dictionary != null && n > 1) {
+            for (String word : dictionary) {
+                byte[] ordinals = wordOrdinals(word, alphabet);
+                if (ordinals == null)
+                    continue;
+                words++;
+                for (int start = 0; start + n <= ordinals.length; start++) {
+                    counts[gramIndex(ordinals, start, n, alphabetLength)]++;
+                }
+                for (int k = 1; k < n && k <= ordinals.length; k++) {
+                    prefixCounts[k][gramIndex(ordinals, 0, k, alphabetLength)]++;
+                    suffixCounts[k][gramIndex(ordinals, ordinals.length - k, k, alphabetLength)]++;
+                }
+            }
+        }
+        if (words > 0) {
+            // an n-gram spanning a gap is the suffix of one word followed by the prefix of the next
+            for (int k = 1; k < n; k++) {
+                int prefixGrams = prefixCounts[n - k].length;
+                for (int suffix = 0; suffix < suffixCounts[k].length; suffix++) {
+                    double suffixCount = suffixCounts[k][suffix];
+                    if (suffixCount > 0.0) {
+                        for (int prefix = 0; prefix < prefixGrams; prefix++) {
+                            counts[suffix * prefixGrams + prefix] += suffixCount * prefixCounts[n - k][prefix] / words;
+                        }
+                    }
+                }
+            }
+        }
+        double total = 0.0;
+        for (double count : counts)
+            total += count;
+
+        float[] logProbabilities = new float[size];
+        int[] letters = new int[n];
+        for (int index = 0; index < size; index++) {
+            // work out the letters in this n-gram, last letter is least significant
+            int value = index;
+            double independent = 1.0;
+            for (int i = n - 1; i >= 0; i--) {
+                letters[i] = value % alphabetLength;
+                value /= alphabetLength;
+                independent *= letterProbability[letters[i]];
+            }
+            double probability = (total > 0.0)
+                    ? (1.0 - LETTER_FREQUENCY_WEIGHT) * counts[index] / total + LETTER_FREQUENCY_WEIGHT * independent
+                    : independent;
+            logProbabilities[index] = (float)Math.log10(probability);
+        }
+        return logProbabilities;
+    }
+
+    // the alphabet ordinals of a dictionary word, or null if it has letters not in the alphabet
+    private static byte[] wordOrdinals(String word, String alphabet) {
+        byte[] ordinals = new byte[word.length()];
+        for (int i = 0; i < word.length(); i++) {
+            int ordinal = alphabet.indexOf(word.charAt(i));
+            if (ordinal < 0)
+                return null;
+            ordinals[i] = (byte)ordinal;
+        }
+        return ordinals;
+    }
+
+    // the index in a flat n-gram table of the letters at start .. start+n-1
+    private static int gramIndex(byte[] ordinals, int start, int n, int alphabetLength) {
+        int index = 0;
+        for (int i = start; i < start + n; i++) {
+            index = index * alphabetLength + ordinals[i];
+        }
+        return index;
+    }
+
     /**
      * Load the dictionary if necessary, it will be set to null if not found or can't be loaded
      */
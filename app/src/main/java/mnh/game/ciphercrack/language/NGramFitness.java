@@ -0,0 +1,52 @@
+package mnh.game.ciphercrack.language;
+
+/**
+ * Measures how much a text looks like a language by adding up the log probabilities of each
+ * n-gram in the text, in one pass over the text held as alphabet ordinals.
+ * Uses the table built by the Language, so is cheap to create once the table exists
+ */
+public class NGramFitness {
+
+    private final float[] logProbabilities;
+    private final int n;
+    private final int alphabetLength;
+    private final int span; // alphabetLength^(n-1), to drop the oldest letter from the index
+
+    /**
+     * Create a fitness measure for n-grams of a given language
+     * @param language the language the text should look like
+     * @param n the size of n-gram, e.g. 4 for quadgrams
+     */
+    public NGramFitness(Language language, int n) {
+        this.logProbabilities = language.getNGramLogProbabilities(n);
+        this.n = n;
+        this.alphabetLength = language.getAlphabet().length();
+        int span = 1;
+        for (int i = 1; i < n; i++)
+            span *= alphabetLength;
+        this.span = span;
+    }
+
+    /**
+     * Score text held as alphabet ordinals, a rolling index is kept so each letter is only
+     * looked at once
+     * @param ordinals the text as ordinals within the language alphabet
+     * @param length how many of the ordinals are used
+     * @return the average log probability per n-gram, bigger (nearer zero) is more fit, or
+     * a very low value if the text is shorter than one n-gram
+     */
+    public double score(byte[] ordinals, int length) {
+        if (length < n)
+            return -Double.MAX_VALUE;
+        int index = 0;
+        for (int i = 0; i < n - 1; i++) {
+            index = index * alphabetLength + ordinals[i];
+        }
+        double total = 0.0;
+        for (int i = n - 1; i < length; i++) {
+            index = (index % span) * alphabetLength + ordinals[i];
+            total += logProbabilities[index];
+        }
+        return total / (length - n + 1);
+    }
+}
@@ -0,0 +1,275 @@
+package mnh.game.ciphercrack.language;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * An Aho-Corasick automaton over a set of upper-case words, used to find all the words that
+ * occur in a text in one pass over the text, rather than searching the text once per word.
+ * As with the crib and word count checks, the text is treated as upper case and whitespace in
+ * the text is skipped, so words can be found across 5-letter blocks.
+ * The trie is held compactly: the root has a transition for every letter, other states keep
+ * their children in one shared sorted list, and failure links are followed when no child matches
+ */
+public class WordAutomaton {
+
+    private static final int ROOT = 0;
+
+    private final int[] symbolOf;       // char -> symbol number, -1 if the char is in no word
+    private final int[] rootNext;       // symbol -> state from the root, ROOT if no word starts so
+    private final int[] childStart;     // state -> start of its children in childSymbol/childState
+    private final int[] childSymbol;    // children of each state, sorted by symbol
+    private final int[] childState;
+    private final int[] fail;           // state -> longest proper suffix that is also a state
+    private final int[] wordAt;         // state -> the word ending exactly here, -1 if none
+    private final int[] outputLink;     // state -> nearest suffix state that ends a word, -1 if none
+    private final int[] wordLength;     // word -> its length
+    private final int words;            // non-empty words, empty words are in every text
+
+    // per-thread working space for counting non-overlapping words
+    private final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch(words);
+        }
+    };
+
+    private static class Scratch {
+        final int[] nextAllowed;    // word -> first position a new match of it may start
+        final int[] stamp;          // word -> the scan when nextAllowed was set
+        int scan = 0;
+        Scratch(int words) {
+            nextAllowed = new int[words];
+            stamp = new int[words];
+        }
+    }
+
+    /**
+     * Build the automaton for a set of words
+     * @param wordsToFind the distinct upper-case words to look for
+     */
+    public WordAutomaton(Collection<String> wordsToFind) {
+        // sort the words so the trie is built in order and children come out sorted
+        List<String> sorted = new ArrayList<>(wordsToFind.size());
+        char maxChar = 0;
+        for (String word : wordsToFind) {
+            if (word.length() > 0) {
+                sorted.add(word);
+                for (int i = 0; i < word.length(); i++)
+                    maxChar = (char)Math.max(maxChar, word.charAt(i));
+            }
+        }
+        String[] wordArray = sorted.toArray(new String[0]);
+        Arrays.sort(wordArray);
+        this.words = wordArray.length;
+
+        // number the chars that appear in words, in char order so symbol order is char order
+        boolean[] used = new boolean[maxChar + 1];
+        for (String word : wordArray)
+            for (int i = 0; i < word.length(); i++)
+                used[word.charAt(i)] = true;
+        symbolOf = new int[maxChar + 1];
+        int symbols = 0;
+        for (int c = 0; c <= maxChar; c++)
+            symbolOf[c] = used[c] ? symbols++ : -1;
+
+        // build the trie, new states along each word after the prefix shared with the previous
+        int maxStates = 1;
+        for (String word : wordArray)
+            maxStates += word.length();
+        int[] parent = new int[maxStates];
+        int[] symbol = new int[maxStates];
+        int[] ending = new int[maxStates];
+        Arrays.fill(ending, -1);
+        wordLength = new int[words];
+        int states = 1;
+        int[] path = new int[64];
+        String previous = "";
+        for (int w = 0; w < words; w++) {
+            String word = wordArray[w];
+            wordLength[w] = word.length();
+            if (path.length <= word.length())
+                path = Arrays.copyOf(path, word.length() * 2);
+            int shared = 0;
+            while (shared < word.length() && shared < previous.length()
+                    && word.charAt(shared) == previous.charAt(shared))
+                shared++;
+            path[0] = ROOT;
+            for (int i = shared; i < word.length(); i++) {
+                parent[states] = path[i];
+                symbol[states] = symbolOf[word.charAt(i)];
+                path[i + 1] = states++;
+            }
+            ending[path[word.length()]] = w;
+            previous = word;
+        }
+
+        // lay out the children of each state together, states were made in sorted word order
+        // so the children of each state are already sorted by symbol
+        childStart = new int[states + 1];
+        for (int s = 1; s < states; s++)
+            childStart[parent[s] + 1]++;
+        for (int s = 0; s < states; s++)
+            childStart[s + 1] += childStart[s];
+        int[] filled = Arrays.copyOf(childStart, states);
+        childSymbol = new int[Math.max(states - 1, 0)];
+        childState = new int[Math.max(states - 1, 0)];
+        for (int s = 1; s < states; s++) {
+            int at = filled[parent[s]]++;
+            childSymbol[at] = symbol[s];
+            childState[at] = s;
+        }
+        rootNext = new int[symbols];
+        for (int at = childStart[ROOT]; at < childStart[ROOT + 1]; at++)
+            rootNext[childSymbol[at]] = childState[at];
+
+        // failure and output links, breadth first so shorter suffixes are done first
+        fail = new int[states];
+        outputLink = new int[states];
+        wordAt = Arrays.copyOf(ending, states);
+        Arrays.fill(outputLink, -1);
+        int[] queue = new int[states];
+        int head = 0, tail = 0;
+        for (int at = childStart[ROOT]; at < childStart[ROOT + 1]; at++)
+            queue[tail++] = childState[at];
+        while (head < tail) {
+            int s = queue[head++];
+            for (int at = childStart[s]; at < childStart[s + 1]; at++) {
+                int child = childState[at];
+                int f = (s == ROOT) ? ROOT : next(fail[s], childSymbol[at]);
+                fail[child] = f;
+                outputLink[child] = (wordAt[f] >= 0) ? f : outputLink[f];
+                queue[tail++] = child;
+            }
+        }
+    }
+
+    /**
+     * @return the number of non-empty words the automaton looks for
+     */
+    public int getWordCount() {
+        return words;
+    }
+
+    // the child of a state for a symbol, or -1 if there is none
+    private int child(int state, int sym) {
+        if (state == ROOT) {
+            int next = rootNext[sym];
+            return (next == ROOT) ? -1 : next;
+        }
+        for (int at = childStart[state]; at < childStart[state + 1]; at++) {
+            if (childSymbol[at] == sym)
+                return childState[at];
+            if (childSymbol[at] > sym)
+                break;
+        }
+        return -1;
+    }
+
+    // move from a state on a symbol, following failure links until a child is found
+    private int next(int state, int sym) {
+        while (true) {
+            int child = child(state, sym);
+            if (child >= 0)
+                return child;
+            if (state == ROOT)
+                return ROOT;
+            state = fail[state];
+        }
+    }
+
+    // move from a state on a char from the text, chars in no word go back to the root
+    private int step(int state, char c) {
+        c = Character.toUpperCase(c);
+        int sym = (c < symbolOf.length) ? symbolOf[c] : -1;
+        return (sym < 0) ? ROOT : next(state, sym);
+    }
+
+    // the whitespace that the regex \s matches, skipped in the text
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == 0x0B;
+    }
+
+    /**
+     * Count the letters of the words found in the text, each word is counted each time it is
+     * found not overlapping an earlier match of the same word, as searching word by word does
+     * @param text the text to search, case and whitespace are ignored
+     * @return the total length of all the word matches
+     */
+    public int countWordLetters(CharSequence text) {
+        Scratch work = scratch.get();
+        int scan = ++work.scan;
+        int[] nextAllowed = work.nextAllowed;
+        int[] stamp = work.stamp;
+        int letters = 0;
+        int state = ROOT;
+        int pos = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (isSpace(c))
+                continue;
+            state = step(state, c);
+            for (int s = (wordAt[state] >= 0) ? state : outputLink[state]; s >= 0; s = outputLink[s]) {
+                int w = wordAt[s];
+                int start = pos - wordLength[w] + 1;
+                if (stamp[w] != scan || start >= nextAllowed[w]) {
+                    stamp[w] = scan;
+                    nextAllowed[w] = pos + 1;
+                    letters += wordLength[w];
+                }
+            }
+            pos++;
+        }
+        return letters;
+    }
+
+    /**
+     * Determine whether every one of the words is in the text, stopping as soon as all are seen
+     * @param text the text to search, case and whitespace are ignored
+     * @return true if all the words are found in the text
+     */
+    public boolean containsAllWords(CharSequence text) {
+        if (words == 0)
+            return true;
+        if (words > 64)
+            return containsAllManyWords(text);
+        long all = (words == 64) ? -1L : (1L << words) - 1;
+        long found = 0L;
+        int state = ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (isSpace(c))
+                continue;
+            state = step(state, c);
+            for (int s = (wordAt[state] >= 0) ? state : outputLink[state]; s >= 0; s = outputLink[s]) {
+                found |= 1L << wordAt[s];
+            }
+            if (found == all)
+                return true;
+        }
+        return false;
+    }
+
+    // as containsAllWords but for more words than fit in a long
+    private boolean containsAllManyWords(CharSequence text) {
+        boolean[] found = new boolean[words];
+        int foundCount = 0;
+        int state = ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (isSpace(c))
+                continue;
+            state = step(state, c);
+            for (int s = (wordAt[state] >= 0) ? state : outputLink[state]; s >= 0; s = outputLink[s]) {
+                if (!found[wordAt[s]]) {
+                    found[wordAt[s]] = true;
+                    if (++foundCount == words)
+                        return true;
+                }
+            }
+        }
+        return false;
+    }
+}
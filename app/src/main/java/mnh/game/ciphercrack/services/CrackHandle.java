@@ -0,0 +1,155 @@
+package mnh.game.ciphercrack.services;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import mnh.game.ciphercrack.util.CrackResult;
+import mnh.game.ciphercrack.util.CrackState;
+
+/**
+ * The live state of one crack, shared by the thread doing the crack and the screens showing it.
+ * A crack's loops can keep hold of its handle and check for cancellation with one read of a
+ * volatile field, and count their progress without locking, rather than looking the crack up
+ * in the list of results each time. Loops that run for a while count their work here, and the
+ * ProgressSampler turns the counts into a description for the user now and again
+ */
+public class CrackHandle {
+
+    // the handle for a crack that is not in the results, e.g. one run directly by a test
+    static final CrackHandle NONE = new CrackHandle(-1, null);
+
+    private static final long NO_SCORE = Double.doubleToLongBits(Double.NaN);
+
+    private final int id;
+    private volatile CrackResult result;
+    private volatile boolean cancelled = false;
+
+    // the stage being counted and its counters, the best score is held as the bits of a double
+    private volatile String stage = null;
+    private volatile String unit = "";
+    private final AtomicLong done = new AtomicLong(0);
+    private final AtomicLong total = new AtomicLong(0);
+    private final AtomicLong valid = new AtomicLong(0);
+    private final AtomicLong matches = new AtomicLong(0);
+    private final AtomicLong bestScore = new AtomicLong(NO_SCORE);
+
+    // used only by the ProgressSampler, the counts at its last sample
+    long sampledDone = 0;
+    long sampledMillis = 0;
+    double sampledRate = 0.0;
+
+    CrackHandle(int id, CrackResult result) {
+        this.id = id;
+        this.result = result;
+    }
+
+    public int getId() { return id; }
+
+    /**
+     * @return the result shown for the crack, in progress or complete, null for NONE
+     */
+    public CrackResult getResult() { return result; }
+    void setResult(CrackResult result) { this.result = result; }
+
+    /**
+     * Move the crack on to its next state, if it can go there from where it is, see CrackState
+     * @param next the state to move to
+     * @return true if the crack moved, false if it was already beyond that, e.g. cancelled
+     */
+    synchronized boolean moveTo(CrackState next) {
+        CrackResult current = result;
+        if (current == null || !current.getCrackState().canMoveTo(next))
+            return false;
+        current.setCrackState(next);
+        return true;
+    }
+
+    /**
+     * @return true if the user has asked for the crack to stop
+     */
+    public boolean isCancelled() { return cancelled; }
+    void cancel() {
+        if (this != NONE)
+            cancelled = true;
+    }
+
+    /**
+     * Record the progress of the crack as a description for the user, for a step that is not
+     * counted, this ends any stage the sampler was describing
+     * @param progress the description, e.g. "Starting dictionary crack"
+     */
+    public void setProgress(String progress) {
+        stage = null;
+        CrackResult current = result;
+        if (current != null)
+            current.setProgress(progress);
+    }
+
+    /**
+     * Start a counted stage of the crack, the counters are reset and the ProgressSampler
+     * describes the stage from them from now on, so the crack's loops only count
+     * @param stage what the crack is doing, e.g. "Dictionary crack"
+     * @param unit what is counted, e.g. "words"
+     * @param total how many there are to do, 0 if not known
+     */
+    public void startStage(String stage, String unit, long total) {
+        this.unit = unit;
+        done.set(0);
+        valid.set(0);
+        matches.set(0);
+        bestScore.set(NO_SCORE);
+        this.total.set(total);
+        this.stage = stage;
+    }
+
+    public String getStage() { return stage; }
+    public String getUnit() { return unit; }
+
+    /**
+     * Count some more of the crack's work as done, e.g. keys tried
+     * @param amount how much more has been done
+     * @return how much has been done in the stage
+     */
+    public long addDone(long amount) { return done.addAndGet(amount); }
+    public long getDone() { return done.get(); }
+
+    /**
+     * Change how much work the stage expects to do, 0 if not known
+     * @param amount the amount of work, in the same units as addDone
+     */
+    public void setTotal(long amount) { total.set(amount); }
+    public long getTotal() { return total.get(); }
+
+    /**
+     * Count candidates that were valid keys, e.g. invertible matrices
+     * @param amount how many more were valid
+     */
+    public void addValid(long amount) { valid.addAndGet(amount); }
+    public long getValid() { return valid.get(); }
+
+    /**
+     * Count decodes that contained all the cribs
+     * @param amount how many more matched
+     */
+    public void addMatches(long amount) { matches.addAndGet(amount); }
+    public long getMatches() { return matches.get(); }
+
+    /**
+     * Offer a score, kept if it is the best so far in the stage
+     * @param score the score, higher is better
+     */
+    public void offerScore(double score) {
+        long current = bestScore.get();
+        while ((current == NO_SCORE || score > Double.longBitsToDouble(current))
+                && !bestScore.compareAndSet(current, Double.doubleToLongBits(score))) {
+            current = bestScore.get();
+        }
+    }
+
+    /**
+     * @return the best score offered in the stage, or NaN if none
+     */
+    public double getBestScore() {
+        long current = bestScore.get();
+        return (current == NO_SCORE) ? Double.NaN : Double.longBitsToDouble(current);
+    }
+}
@@ -1,12 +1,10 @@
 package mnh.game.ciphercrack.services;
 
-import android.content.BroadcastReceiver;
-import android.content.Context;
-import android.content.Intent;
-import android.util.Log;
-
-import java.util.LinkedList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import mnh.game.ciphercrack.util.CrackResult;
 import mnh.game.ciphercrack.util.CrackState;
@@ -16,82 +14,98 @@ import mnh.game.ciphercrack.util.CrackState;
  */
 public class CrackResults {
 
-    private static final String TAG = "CrackResults";
-
-    // collection of completed crack results
-    public static final LinkedList<CrackResult> crackResults = new LinkedList<>();
-
-    // handle messages coming back from the Crack Service
-    public static final BroadcastReceiver mReceiver = new BroadcastReceiver() {
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            String typeOfMessage = intent.getStringExtra(CrackService.MSG_TYPE);
-            switch (typeOfMessage) {
-                case CrackService.MSG_TYPE_PROGRESS:
-                    int crackId = intent.getIntExtra(CrackService.CRACK_ID, -1);
-                    CrackResult crackResult = findCrackResult(crackId);
-                    if (crackResult != null) {
-                        String progress = intent.getStringExtra(CrackService.PROGRESS);
-                        Log.i(TAG, "Received message from service: " + typeOfMessage + ", for id=" + crackId + ", progress: " + progress);
-                        crackResult.setProgress(progress);
-                    //} else {
-                    //    Toast.makeText(HomeActivity.this, "Crack Service sent message for unknown id=" + crackId, Toast.LENGTH_LONG).show();
-                    }
-                    break;
-                case CrackService.MSG_TYPE_COMPLETE:
-                    CrackResult finalResult = intent.getParcelableExtra(CrackService.CRACK_RESULT);
-                    Log.i(TAG, "Received message from service: " + typeOfMessage + ", for id=" + finalResult.getId() + ", success=" + finalResult.isSuccess());
-                    //Toast.makeText(HomeActivity.this, "Crack completed: " + (finalResult.isSuccess() ? "success" : "false"), Toast.LENGTH_LONG).show();
-                    replaceCrackResult(finalResult);
-                    break;
-            }
-        }
-    };
+    // the cracks by id, for the crack threads, and in order (newest first) for the screens,
+    // the list is copied on change, which is rare, so it can be read while cracks run
+    private static final ConcurrentHashMap<Integer, CrackHandle> handles = new ConcurrentHashMap<>();
+    private static final CopyOnWriteArrayList<CrackResult> results = new CopyOnWriteArrayList<>();
+
+    // collection of in-flight and completed crack results, to be changed only via this class
+    public static final List<CrackResult> crackResults = Collections.unmodifiableList(results);
+
+    /**
+     * Add a crack to the front of the list, so that it can be found by id
+     * @param result the result of the crack, in progress or complete
+     * @return the handle for the crack, for its loops to check for cancellation
+     */
+    public static CrackHandle addCrackResult(CrackResult result) {
+        CrackHandle handle = new CrackHandle(result.getId(), result);
+        if (result.getCrackState() == CrackState.CANCELLED)
+            handle.cancel();
+        handles.put(result.getId(), handle);
+        results.add(0, result);
+        ProgressSampler.start();
+        return handle;
+    }
+
+    /**
+     * Find the handle for a crack, e.g. once before a crack's loops start
+     * @param crackId the id of the crack
+     * @return the handle, or one that is never cancelled if the crack is not in the list
+     */
+    public static CrackHandle handleFor(int crackId) {
+        CrackHandle handle = handles.get(crackId);
+        return (handle == null) ? CrackHandle.NONE : handle;
+    }
 
+    // the handles of all the cracks, in no particular order, for the ProgressSampler
+    static Collection<CrackHandle> handles() {
+        return handles.values();
+    }
 
     public static void updateProgressDirectly(int crackId, String progress) {
-        CrackResult result = findCrackResult(crackId);
-        if (result != null) {
-            result.setProgress(progress);
-        }
+        handleFor(crackId).setProgress(progress);
     }
 
     // locate the id in the list of in-flight and completed items
     public static CrackResult findCrackResult(int id) {
-        for (CrackResult result : crackResults) {
-            if (result.getId() == id)
-                return result;
-        }
-        return null;
+        return handleFor(id).getResult();
     }
 
     public static boolean isCancelled(int id) {
-        CrackResult cr = findCrackResult(id);
-        return (cr != null && cr.getCrackState() == CrackState.CANCELLED);
+        return handleFor(id).isCancelled();
     }
 
     // replace the result in the list with the actual result
     private static void replaceCrackResult(CrackResult result) {
-        int pos = crackResults.indexOf(result);
-        if (pos >= 0)
-            crackResults.set(pos, result);
+        int pos = results.indexOf(result);
+        if (pos >= 0) {
+            results.set(pos, result);
+            handleFor(result.getId()).setResult(result);
+        }
     }
 
     // locate the item to be removed, and remove it
     public static void removeCrackResult(CrackResult crackResult) {
-        crackResults.remove(crackResult);
+        results.remove(crackResult);
+        handles.remove(crackResult.getId());
     }
 
-    // locate the item to be removed, and remove it
+    // remove all the items that have finished by themselves
+    public static void removeCompleted() {
+        for (CrackResult result : results) {
+            if (result.getCrackState() == CrackState.COMPLETE)
+                removeCrackResult(result);
+        }
+    }
+
+    // ask a crack to stop, its loops will see this the next time they check
     public static void cancelCrack(int crackId) {
-        CrackResult cr = findCrackResult(crackId);
-        if (cr != null)
-            cr.setCrackState(CrackState.CANCELLED);
+        CrackHandle handle = handles.get(crackId);
+        if (handle != null && handle.moveTo(CrackState.CANCELLED))
+            handle.cancel();
     }
 
-    // clear the list and replace with what has been provided (restoring state)
-    public static void setResults(List<CrackResult> results) {
-        crackResults.clear();
-        crackResults.addAll(results);
+    // replace the list with what has been provided (restoring state), only if the list was lost
+    // with the process, else the cracks still running would lose their handles, any that were
+    // queued or running when the process went have nothing left to run them, so are cancelled
+    public static void setResults(List<CrackResult> restored) {
+        if (!results.isEmpty() || restored == null)
+            return;
+        for (int pos = restored.size() - 1; pos >= 0; pos--) {
+            CrackResult result = restored.get(pos);
+            if (!result.getCrackState().isFinished())
+                result.setCrackState(CrackState.CANCELLED);
+            addCrackResult(result);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,189 @@
+package mnh.game.ciphercrack.services;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import mnh.game.ciphercrack.cipher.Cipher;
+import mnh.game.ciphercrack.util.CrackPool;
+import mnh.game.ciphercrack.util.CrackResult;
+import mnh.game.ciphercrack.util.CrackState;
+import mnh.game.ciphercrack.util.Directives;
+
+/**
+ * Runs the cracks the user asks for in the background, several at once. Cracks wait in a queue
+ * ordered by how much work they are guessed to be, see Cipher.estimateCrackWork, so a quick
+ * Caesar crack is not stuck behind a long Hill one. There is a thread per CPU, at least two,
+ * to run cracks on, and each crack that splits its work across threads is given a pool of its
+ * own, sized to its share of the CPUs when it starts, see CrackPool. That share is fixed for
+ * the life of the crack, a crack that starts while others are running keeps its smaller pool
+ * after they finish. A crack moves from QUEUED to RUNNING to COMPLETE, or to CANCELLED at any
+ * point before it completes, a crack whose parameters cannot be set fails at once
+ */
+public class CrackScheduler {
+
+    /**
+     * Told when a crack has finished, by itself or by being cancelled, on the crack's thread
+     */
+    public interface Listener {
+        void crackFinished(CrackResult result);
+    }
+
+    // how long a crack thread waits for more work before it goes
+    private static final long IDLE_SECONDS = 30;
+
+    private static final int CPUS = Runtime.getRuntime().availableProcessors();
+
+    // the threads cracks run on, created on first use, cracks are taken from the queue in order
+    private static ThreadPoolExecutor executor = null;
+
+    // submission order, to keep cracks of the same size first come first served
+    private static final AtomicLong submitted = new AtomicLong(0);
+
+    // how many cracks are running now, to share the CPUs between them
+    private static final AtomicInteger running = new AtomicInteger(0);
+
+    // no one can make an instance, the scheduler is accessed statically
+    private CrackScheduler() {
+    }
+
+    /**
+     * Queue a crack to be run in the background, it is added to CrackResults straight away
+     * @param cipher the cipher to crack, a fresh instance of it is made for the crack
+     * @param cipherText the text to crack
+     * @param dirs the directives of the crack, including CRACK_METHOD
+     * @param listener told when the crack finishes, or null
+     * @return the result of the crack, QUEUED for now, updated as the crack goes on
+     */
+    public static CrackResult submit(Cipher cipher, String cipherText, Directives dirs, Listener listener) {
+        CrackResult cr = new CrackResult(dirs.getCrackMethod(), cipher, dirs, cipherText, "Not yet complete", CrackState.QUEUED);
+        cr.setProgress("Not yet running");
+        CrackHandle handle = CrackResults.addCrackResult(cr);
+
+        // a fresh cipher, as cracks keep the key they find in the cipher
+        Cipher crackCipher = Cipher.instanceOf(cipher.getCipherName(), null);
+        if (crackCipher == null)
+            crackCipher = cipher;
+        String reason = crackCipher.canParametersBeSet(dirs);
+        if (reason != null) {
+            // the crack cannot run, so it fails straight away without being queued
+            Job job = new Job(handle, crackCipher, cipherText, dirs, 0, listener);
+            handle.moveTo(CrackState.RUNNING);
+            job.finish(cr, new CrackResult(dirs.getCrackMethod(), crackCipher, cipherText,
+                    "Fail: unable to crack: " + reason + "\n"), 0);
+            return cr;
+        }
+        long work = crackCipher.estimateCrackWork(cipherText, dirs);
+        executor().execute(new Job(handle, crackCipher, cipherText, dirs, work, listener));
+        return cr;
+    }
+
+    // the threads to run cracks on, a fixed number that go when idle for a while
+    private static synchronized ThreadPoolExecutor executor() {
+        if (executor == null) {
+            int threads = Math.max(2, CPUS);
+            executor = new ThreadPoolExecutor(threads, threads, IDLE_SECONDS, TimeUnit.SECONDS,
+                    new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+                        private final AtomicInteger count = new AtomicInteger(0);
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable, "Crack-" + count.incrementAndGet());
+                            thread.setDaemon(true);
+                            thread.setPriority(Thread.NORM_PRIORITY - 1);
+                            return thread;
+                        }
+                    });
+            executor.allowCoreThreadTimeOut(true);
+        }
+        return executor;
+    }
+
+    /**
+     * How many threads a crack starting now may split its work across: the CPUs shared
+     * between the cracks running, so a crack started alone has them all, the pool keeps this
+     * size until the crack ends
+     * @param runningCracks how many cracks are running, including the one starting
+     * @return the parallelism for the crack's pool, at least 1
+     */
+    static int parallelismBudget(int runningCracks) {
+        return Math.max(1, CPUS / Math.max(1, runningCracks));
+    }
+
+    /**
+     * One crack waiting in the queue or running, smaller cracks come first in the queue
+     */
+    static class Job implements Runnable, Comparable<Job> {
+        private final CrackHandle handle;
+        private final Cipher cipher;
+        private final String cipherText;
+        private final Directives dirs;
+        private final long work;
+        private final long order;
+        private final Listener listener;
+
+        Job(CrackHandle handle, Cipher cipher, String cipherText, Directives dirs, long work, Listener listener) {
+            this.handle = handle;
+            this.cipher = cipher;
+            this.cipherText = cipherText;
+            this.dirs = dirs;
+            this.work = work;
+            this.order = submitted.incrementAndGet();
+            this.listener = listener;
+        }
+
+        @Override
+        public int compareTo(Job other) {
+            if (work != other.work)
+                return (work < other.work) ? -1 : 1;
+            return (order < other.order) ? -1 : (order == other.order ? 0 : 1);
+        }
+
+        @Override
+        public void run() {
+            CrackResult cr = handle.getResult();
+            if (cr == null) // removed from the list before it started
+                return;
+            if (!handle.moveTo(CrackState.RUNNING)) {
+                // cancelled while queued
+                finish(cr, null, 0);
+                return;
+            }
+            handle.setProgress("Running");
+            long startTime = System.currentTimeMillis();
+            ForkJoinPool pool = new ForkJoinPool(parallelismBudget(running.incrementAndGet()));
+            CrackPool.setForThread(pool);
+            CrackResult result;
+            try {
+                result = cipher.crack(cipherText, dirs, cr.getId());
+            } catch (Throwable ex) {
+                // e.g. a deep search running out of stack, the crack must still finish
+                result = new CrackResult(dirs.getCrackMethod(), cipher, cipherText,
+                        "Fail: the crack stopped with an error: " + ex + "\n");
+            } finally {
+                CrackPool.setForThread(null);
+                pool.shutdown();
+                running.decrementAndGet();
+            }
+            finish(cr, result, System.currentTimeMillis() - startTime);
+        }
+
+        // record how the crack ended, and tell the listener
+        private void finish(CrackResult cr, CrackResult result, long millis) {
+            boolean cancelled;
+            synchronized (handle) {
+                cancelled = handle.isCancelled() || cr.getCrackState() == CrackState.CANCELLED;
+                if (result != null)
+                    cr.setFields(result);
+                cr.setCrackState(cancelled ? CrackState.CANCELLED : CrackState.COMPLETE);
+                cr.setMilliseconds(millis);
+            }
+            handle.setProgress(cancelled ? "Cancelled early" : "100% complete");
+            if (listener != null)
+                listener.crackFinished(cr);
+        }
+    }
+}
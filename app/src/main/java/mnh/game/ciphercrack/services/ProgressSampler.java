@@ -0,0 +1,146 @@
+package mnh.game.ciphercrack.services;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import mnh.game.ciphercrack.util.CrackResult;
+import mnh.game.ciphercrack.util.CrackState;
+
+/**
+ * Describes the progress of running cracks from their counters, see CrackHandle, a few times a
+ * second on a thread of its own. The cracks' loops only add to counters, and this works out how
+ * far through a stage each crack is, how fast it is going and, if the number to try is known,
+ * how long is left, then tells any screen that is showing the results
+ */
+public class ProgressSampler {
+
+    // how often the cracks are sampled
+    static final long SAMPLE_INTERVAL_MILLIS = 500;
+
+    // how much of each new rate is taken, the rest is the rate so far, to smooth it out
+    private static final double RATE_SMOOTHING = 0.5;
+
+    /**
+     * Told when the progress of any crack has been described afresh, on the sampler's thread
+     */
+    public interface Listener {
+        void progressSampled();
+    }
+
+    private static final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private static ScheduledExecutorService sampler = null;
+
+    /**
+     * Start sampling, if not started already, the thread does not keep the app alive
+     */
+    static synchronized void start() {
+        if (sampler != null)
+            return;
+        sampler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "ProgressSampler");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        sampler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                sampleAll();
+            }
+        }, SAMPLE_INTERVAL_MILLIS, SAMPLE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public static void addListener(Listener listener) { listeners.add(listener); }
+    public static void removeListener(Listener listener) { listeners.remove(listener); }
+
+    // describe each running crack that is in a counted stage
+    private static void sampleAll() {
+        boolean changed = false;
+        long now = System.currentTimeMillis();
+        for (CrackHandle handle : CrackResults.handles()) {
+            CrackResult result = handle.getResult();
+            if (result != null && result.getCrackState() == CrackState.RUNNING)
+                changed |= sample(handle, result, now);
+        }
+        if (changed) {
+            for (Listener listener : listeners)
+                listener.progressSampled();
+        }
+    }
+
+    // describe one crack, return true if the description was changed
+    private static boolean sample(CrackHandle handle, CrackResult result, long now) {
+        String stage = handle.getStage();
+        if (stage == null)
+            return false;
+        long done = handle.getDone();
+        if (done < handle.sampledDone || handle.sampledMillis == 0) {
+            // a new stage, or the first sample, there is no rate yet
+            handle.sampledRate = 0.0;
+        } else if (now > handle.sampledMillis) {
+            double rate = (done - handle.sampledDone) * 1000.0 / (now - handle.sampledMillis);
+            handle.sampledRate = (handle.sampledRate == 0.0) ? rate
+                    : RATE_SMOOTHING * rate + (1.0 - RATE_SMOOTHING) * handle.sampledRate;
+        }
+        handle.sampledDone = done;
+        handle.sampledMillis = now;
+        String progress = describe(stage, handle.getUnit(), done, handle.getTotal(), handle.getValid(),
+                handle.getMatches(), handle.getBestScore(), handle.sampledRate);
+        if (progress.equals(result.getProgress()))
+            return false;
+        result.setProgress(progress);
+        return true;
+    }
+
+    /**
+     * Describe the progress of a stage, e.g.
+     * "Dictionary crack: 2000 of 8000 words (25%), 1000 words/s, 6s left, found=1, best=-2.410"
+     * @param stage what the crack is doing
+     * @param unit what is counted
+     * @param done how many have been done
+     * @param total how many there are to do, 0 if not known
+     * @param valid how many were valid, 0 if not counted
+     * @param matches how many had all the cribs
+     * @param bestScore the best score, NaN if none
+     * @param perSecond how many are being done each second, 0 if not known yet
+     * @return the description
+     */
+    static String describe(String stage, String unit, long done, long total, long valid, long matches,
+                           double bestScore, double perSecond) {
+        StringBuilder progress = new StringBuilder(stage.length() + 80);
+        progress.append(stage).append(": ").append(done);
+        if (total > 0)
+            progress.append(" of ").append(total);
+        progress.append(' ').append(unit);
+        if (total > 0)
+            progress.append(" (").append(Math.min(100, 100 * done / total)).append("%)");
+        if (perSecond > 0.0) {
+            progress.append(", ").append(Math.round(perSecond)).append(' ').append(unit).append("/s");
+            if (total > done)
+                progress.append(", ").append(describeTime((long)Math.ceil((total - done) / perSecond))).append(" left");
+        }
+        if (valid > 0)
+            progress.append(", valid=").append(valid);
+        if (matches > 0)
+            progress.append(", found=").append(matches);
+        if (!Double.isNaN(bestScore))
+            progress.append(", best=").append(String.format(Locale.getDefault(), "%.3f", bestScore));
+        return progress.toString();
+    }
+
+    // a number of seconds as e.g. 45s, 12m 5s or 3h 20m
+    private static String describeTime(long seconds) {
+        if (seconds < 60)
+            return seconds + "s";
+        if (seconds < 3600)
+            return (seconds / 60) + "m " + (seconds % 60) + "s";
+        return (seconds / 3600) + "h " + (seconds % 3600 / 60) + "m";
+    }
+}
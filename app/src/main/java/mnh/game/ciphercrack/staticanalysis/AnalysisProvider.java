@@ -21,4 +21,5 @@ public interface AnalysisProvider {
     double[] getIOCCycles();
     String[] getTextLines();
     boolean isAllNumeric();
+    TextAnalysis getTextAnalysis();
 }
@@ -1,10 +1,10 @@
 package mnh.game.ciphercrack.staticanalysis;
 
-import android.content.Context;
+import mnh.game.ciphercrack.language.Language;
 
 public class BigramFrequencyFragment extends FrequencyFragment {
 
-    public BigramFrequencyFragment(Context context, String text, boolean aligned, int overallLayoutId, int tableLayoutId) {
-        super(context, text, 2, aligned, overallLayoutId, tableLayoutId);
+    public BigramFrequencyFragment(TextAnalysis analysis, Language language, boolean aligned, int overallLayoutId, int tableLayoutId) {
+        super(analysis, language, 2, aligned, overallLayoutId, tableLayoutId);
     }
 }
@@ -12,23 +12,17 @@ import android.widget.TextView;
 
 import org.jetbrains.annotations.NotNull;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
 
 import androidx.fragment.app.Fragment;
-import mnh.game.ciphercrack.R;
 import mnh.game.ciphercrack.language.Language;
 import mnh.game.ciphercrack.util.Settings;
 
 public class FrequencyFragment extends Fragment {
 
-    private final String text;
-    private final int gramSize;         // 1 for letter, 2 for bigram, 3 for trigram
-    private final boolean aligned;      // whether to do only aligned grams, i.e. not overlapping
     private final int overallLayoutId;  // xml file containing the main view
     private final int tableLayoutId;    // layout withing the view containing the table
 
@@ -37,17 +31,22 @@ public class FrequencyFragment extends Fragment {
     private ColumnOrder ordering;
     private List<FrequencyEntry> frequenciesOfThisGram;
 
-    FrequencyFragment(Context context, String text, int gramSize, boolean aligned, int overallLayoutId, int tableLayoutId) {
+    /**
+     * @param analysis the counts already gathered for the text
+     * @param language the language whose normal frequencies are shown alongside
+     * @param gramSize 1 for letter, 2 for bigram, 3 for trigram
+     * @param aligned whether to do only aligned grams, i.e. not overlapping
+     * @param overallLayoutId xml file containing the main view
+     * @param tableLayoutId layout within the view containing the table
+     */
+    FrequencyFragment(TextAnalysis analysis, Language language, int gramSize, boolean aligned, int overallLayoutId, int tableLayoutId) {
         super();
-        this.text = text;
-        this.gramSize = gramSize;
-        this.aligned = aligned;
         this.overallLayoutId = overallLayoutId;
         this.tableLayoutId = tableLayoutId;
         this.ordering = ColumnOrder.COUNT_HIGH_TO_LOW;
 
-        // gather frequencies for the bi-grams
-        frequenciesOfThisGram = gatherGramFrequency(context);
+        // the entries for this size of gram, from counts made when the text was analysed
+        frequenciesOfThisGram = analysis.getGramFrequency(gramSize, aligned, language);
     }
 
     @Override
@@ -60,35 +59,6 @@ public class FrequencyFragment extends Fragment {
         return view;
     }
 
-    /**
-     * In the text provided, count the number of instances of each sequence of chars of length gramSize
-     * @param context current context, used to remove spaces and punctuation
-     * @return a list of pairs of grams and their frequencies
-     */
-    private List<FrequencyEntry> gatherGramFrequency(Context context) {
-
-        Language language = Language.instanceOf(Settings.instance().getString(context, R.string.pref_language));
-
-        // find the bigrams in the condensed upper-case text, with count for each
-        Map<String, Integer> freqUpper = StaticAnalysis.collectGramFrequency(text, gramSize, aligned, context);
-
-        // work out how many grams in total there are
-        int countGrams = 0;
-        for(Map.Entry<String, Integer> entry : freqUpper.entrySet()) {
-            countGrams += entry.getValue();
-        }
-
-        // now create the list of grams with associated stats (count, %, normal %)
-        List<FrequencyEntry> grams = new ArrayList<>(freqUpper.size());
-        for (Map.Entry<String, Integer> entry : freqUpper.entrySet()) {
-            grams.add(new FrequencyEntry(entry.getKey(),
-                                        entry.getValue(),
-                                        (100.0f * entry.getValue())/countGrams,
-                                        language.frequencyOf(entry.getKey())));
-        }
-        return grams;
-    }
-
     /**
      * Put the pre-gathered frequencies in the table with the specified ordering
      * @param order the ordering needed for this display of the grams
@@ -154,7 +124,7 @@ public class FrequencyFragment extends Fragment {
 
         // show the results of the frequency analysis in the TableView
         Context context = tableLayout.getContext();
-        int maxGramsInView = Integer.valueOf(Settings.instance().getString(context, R.string.pref_limit_grams));
+        int maxGramsInView = Integer.valueOf(Settings.instance().getString(Settings.PREF_LIMIT_GRAMS));
         for (int i=0; i < Math.min(maxGramsInView, frequenciesOfThisGram.size()); i++) {
             FrequencyEntry entry = frequenciesOfThisGram.get(i);
             String gramText = entry.getGram();
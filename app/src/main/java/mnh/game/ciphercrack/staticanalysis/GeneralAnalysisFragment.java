@@ -44,7 +44,7 @@ public class GeneralAnalysisFragment extends Fragment {
 
     private String gatherGeneralStats(String text) {
         // work out which language we should use
-        String languageName = Settings.instance().getString(this.getContext(), getString(R.string.pref_language));
+        String languageName = Settings.instance().getString(Settings.PREF_LANGUAGE);
         Language language = Language.instanceOf(languageName);
 
         // we keep track of counts of letters converted to upper case
@@ -1,13 +1,12 @@
 package mnh.game.ciphercrack.staticanalysis;
 
-import android.content.Context;
-
 import mnh.game.ciphercrack.R;
+import mnh.game.ciphercrack.language.Language;
 
 public class LetterFrequencyFragment extends FrequencyFragment {
 
-    public LetterFrequencyFragment(Context context, String text) {
-        super(context, text, 1, false, R.layout.fragment_letter_frequency, R.id.freq_letter_layout);
+    public LetterFrequencyFragment(TextAnalysis analysis, Language language) {
+        super(analysis, language, 1, false, R.layout.fragment_letter_frequency, R.id.freq_letter_layout);
     }
 
 }
@@ -1,7 +1,5 @@
 package mnh.game.ciphercrack.staticanalysis;
 
-import android.content.Context;
-
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -11,8 +9,6 @@ import java.util.Set;
 import java.util.TreeSet;
 
 import mnh.game.ciphercrack.language.Language;
-import mnh.game.ciphercrack.transform.RemoveNonAlphabetic;
-import mnh.game.ciphercrack.transform.Transform;
 import mnh.game.ciphercrack.util.Settings;
 
 public class StaticAnalysis {
@@ -29,10 +25,7 @@ public class StaticAnalysis {
     private static final double TRIGRAM_FREQUENCY_SIGNIFICANCE_PERCENTAGE = 0.70;
 
     // how may cycles to analyse
-    private static final int MAX_IOC_CYCLES_TO_ANALYSE = 60;
-
-    // used during bigram and trigram analysis
-    private static final Transform removeAllButAlphabetic = new RemoveNonAlphabetic();
+    static final int MAX_IOC_CYCLES_TO_ANALYSE = 60;
 
     /**
      * Compute the frequency of letters in a string
@@ -46,29 +39,53 @@ public class StaticAnalysis {
      */
     public static Map<Character, Integer> collectFrequency(String text, boolean includeNonAlpha, boolean useUpper,
                                                            String alphabet, String paddingChars) {
-        HashMap<Character, Integer> frequency = new HashMap<>(alphabet.length());
-        if (text != null) {
-            String textToUse = useUpper ? text.toUpperCase() : text;
+        if (text == null)
+            return new HashMap<>(alphabet.length());
+
+        // count the symbols by sorting them, so we only box once per distinct symbol
+        char[] symbols = text.toCharArray();
+        Arrays.sort(symbols);
+        int[] counts = new int[symbols.length];
+        int distinct = countRuns(symbols, counts);
+        return buildFrequency(symbols, counts, distinct, includeNonAlpha, useUpper, alphabet, paddingChars);
+    }
 
-            // scan the symbols in the text to collect frequency
-            for (int i = 0; i < text.length(); i++) {
+    /**
+     * Squash sorted symbols so each distinct one appears once at the front
+     * @param sorted the sorted symbols, which are overwritten
+     * @param counts filled with how many times each of the distinct symbols occurred
+     * @return the number of distinct symbols
+     */
+    static int countRuns(char[] sorted, int[] counts) {
+        int distinct = 0;
+        for (char symbol : sorted) {
+            if (distinct > 0 && sorted[distinct - 1] == symbol) {
+                counts[distinct - 1]++;
+            } else {
+                sorted[distinct] = symbol;
+                counts[distinct++] = 1;
+            }
+        }
+        return distinct;
+    }
 
-                // check the letter is in the alphabet, if not, we don't count frequency (punctuation)
-                char letter = textToUse.charAt(i);
+    /**
+     * Build the map of counts from distinct symbols and their counts, see collectFrequency
+     */
+    static Map<Character, Integer> buildFrequency(char[] symbols, int[] counts, int distinct, boolean includeNonAlpha,
+                                                  boolean useUpper, String alphabet, String paddingChars) {
+        HashMap<Character, Integer> frequency = new HashMap<>(alphabet.length());
+        for (int i = 0; i < distinct; i++) {
+            char letter = useUpper ? Character.toUpperCase(symbols[i]) : symbols[i];
 
-                // ignore padding -- in order to include padding we can provide empty paddingChars
-                if (paddingChars.indexOf(letter) < 0) {
+            // ignore padding -- in order to include padding we can provide empty paddingChars
+            if (paddingChars.indexOf(letter) < 0) {
 
-                    // we decide here whether to include non-alpha and alphabetic based on what was asked for
-                    if (includeNonAlpha || alphabet.indexOf(Character.toUpperCase(letter)) >= 0) {
-                        // keep track of how many times the letter occurs
-                        Integer count = frequency.get(letter);
-                        if (count == null) {
-                            frequency.put(letter, Integer.valueOf(1));
-                        } else {
-                            frequency.put(letter, Integer.valueOf(count + 1));
-                        }
-                    }
+                // we decide here whether to include non-alpha and alphabetic based on what was asked for
+                if (includeNonAlpha || alphabet.indexOf(Character.toUpperCase(letter)) >= 0) {
+                    // upper and lower case of a letter are distinct symbols, but may be counted together
+                    Integer count = frequency.get(letter);
+                    frequency.put(letter, (count == null) ? counts[i] : count + counts[i]);
                 }
             }
         }
@@ -76,35 +93,20 @@ public class StaticAnalysis {
     }
 
     /**
-     * Compute the frequency of bi-grams or tri-grams
+     * Compute the frequency of letters, bi-grams or tri-grams
      * @param text the text to be analysed
-     * @param gramSize the number of chars in a gram (2 or 3)
+     * @param gramSize the number of chars in a gram (1, 2 or 3)
      * @param aligned whether to only look at aligned, i.e. non-overlapping, grams
-     * @param context the context in which we're running, used to determine punctuation
+     * @param alphabet the upper case letters to keep, everything else is ignored
      * @return a map of the count for each gram
      */
-    static HashMap<String, Integer> collectGramFrequency(String text, int gramSize, boolean aligned, Context context) {
+    static HashMap<String, Integer> collectGramFrequency(String text, int gramSize, boolean aligned, String alphabet) {
+        TextAnalysis analysis = new TextAnalysis(text, alphabet, "");
+        int[] counts = analysis.getGramCounts(gramSize, aligned);
         HashMap<String, Integer> frequency = new HashMap<>(500);
-        if (text != null) {
-
-            // just keep the alpha/numeric characters, make upper case
-            String textToUse = removeAllButAlphabetic.apply(context, text.toUpperCase());
-
-            // scan the symbols in the text to collect frequency of grams
-            int increment = (aligned ? gramSize : 1); // are we aligned or not
-            for (int i = 0; i <= textToUse.length()-gramSize; i += increment) {
-
-                // get the bi- or tri-gram
-                String gram = textToUse.substring(i, i+gramSize);
-
-                // we want to see how many times the letter occurs regardless of case
-                Integer count = frequency.get(gram);
-                if (count == null) {
-                    frequency.put(gram, 1);
-                } else {
-                    frequency.put(gram, count + 1);
-                }
-            }
+        for (int index = 0; index < counts.length; index++) {
+            if (counts[index] > 0)
+                frequency.put(analysis.gramOf(index, gramSize), counts[index]);
         }
         return frequency;
     }
@@ -137,13 +139,11 @@ public class StaticAnalysis {
     public static int countAlphabetic(String text, String alphabet) {
         int count = 0;
         if (text != null) {
-            String textToUse = text.toUpperCase();
-
             // scan the symbols in the text to collect number in the alphabet
             for (int i = 0; i < text.length(); i++) {
 
                 // check the letter is in the alphabet, if not, we don't count it (e.g. punctuation)
-                char letter = textToUse.charAt(i);
+                char letter = text.charAt(i);
                 if (alphabet.indexOf(Character.toUpperCase(letter)) >= 0) {
                     count++;
                 }
@@ -209,46 +209,117 @@ public class StaticAnalysis {
         }
     }
 
+    /**
+     * Calculate Index of Coincidence of text held as alphabet ordinals
+     * @param ordinals the text as ordinals within the alphabet
+     * @param length how many of the ordinals are used
+     * @param alphabetLength the number of letters in the alphabet
+     * @return the index of coincidence
+     */
+    public static double calculateIOC(byte[] ordinals, int length, int alphabetLength) {
+        if (length < 2) {
+            return 0.0;
+        }
+        int[] counts = new int[alphabetLength];
+        for (int i = 0; i < length; i++) {
+            counts[ordinals[i]]++;
+        }
+        long calc = 0;
+        for (int count : counts) {
+            calc += count * (count - 1);
+        }
+        return ((double) calc) / ((long)length * (length - 1));
+    }
+
     /**
      * Examine cycles in the text to see if IOC for these cycles could indicate Vigenere keyword length
      * @param text the text to be analysed
-     * @param context the context for getting padding settings
-     * @param alphabet the list of valid letters in the alphabet
-     * @param paddingChars the characters to treat as padding
+     * @param alphabet the list of valid letters in the alphabet, all other symbols are ignored
      * @return the IOC for various cycles
      */
-    public static double[] getCyclicIOC(String text, Context context, String alphabet, String paddingChars) {
-        // we need to remove all chars (punctuation, spaces, etc) leaving chars in the alphabet
-        String textJustAlpha = removeAllButAlphabetic.apply(context,text.toUpperCase());
-
-        // these will hold the cyclic strings
-        int maxCycles = Math.min(textJustAlpha.length(), MAX_IOC_CYCLES_TO_ANALYSE);
-        StringBuilder[] cycleStrings = new StringBuilder[maxCycles];
-        double[] cycleIOC = new double[maxCycles];
-        for (int pos=0; pos < maxCycles; pos++) {
-            cycleStrings[pos] = new StringBuilder();
-            cycleIOC[pos] = 0.0;
-        }
+    public static double[] getCyclicIOC(String text, String alphabet) {
+        return new TextAnalysis(text, alphabet, "").getCyclicIOC();
+    }
 
-        // check all cycles from
-        for(int cycleSize=1; cycleSize < maxCycles; cycleSize++) {
-            // clear the cyclic strings
-            for (int pos=0; pos < cycleSize; pos++) {
-                cycleStrings[pos].setLength(0);
-            }
-            // form the strings with this cycle size by scanning whole input text
-            for (int pos=0; pos < textJustAlpha.length(); pos++) {
-                cycleStrings[pos%cycleSize].append(textJustAlpha.charAt(pos));
+    /**
+     * Examine cycles in text held as alphabet ordinals, the average IOC of the columns of
+     * every cycle size, as getCyclicIOC does for a string
+     * @param ordinals the text as ordinals within the alphabet
+     * @param length how many of the ordinals are used
+     * @param alphabetLength the number of letters in the alphabet
+     * @param maxCycles one more than the largest cycle size to look at
+     * @return the IOC for each cycle size, indexed by the size, 0 is not used
+     */
+    public static double[] getCyclicIOC(byte[] ordinals, int length, int alphabetLength, int maxCycles) {
+        double[] cycleIOC = new double[Math.max(maxCycles, 1)];
+        int[][] counts = new int[maxCycles][alphabetLength];
+        for (int cycleSize = 1; cycleSize < maxCycles; cycleSize++) {
+            for (int pos = 0; pos < cycleSize; pos++)
+                Arrays.fill(counts[pos], 0);
+            for (int i = 0, pos = 0; i < length; i++) {
+                counts[pos][ordinals[i]]++;
+                if (++pos == cycleSize)
+                    pos = 0;
             }
             double overallIOC = 0.0;
-            for (int pos=0; pos < cycleSize; pos++) {
-                overallIOC += calculateIOC(cycleStrings[pos].toString(), alphabet, paddingChars);
+            for (int pos = 0; pos < cycleSize; pos++) {
+                long columnLength = length / cycleSize + ((pos < length % cycleSize) ? 1 : 0);
+                if (columnLength < 2)
+                    continue;
+                long calc = 0;
+                for (int count : counts[pos])
+                    calc += count * (count - 1);
+                overallIOC += ((double) calc) / (columnLength * (columnLength - 1));
             }
             cycleIOC[cycleSize] = overallIOC / cycleSize;
         }
         return cycleIOC;
     }
 
+    /**
+     * Kasiski examination: the gaps between repeats of the same trigram in a periodic cipher
+     * tend to be multiples of the key length, so count how many gaps each possible length divides
+     * @param ordinals the text as ordinals within the alphabet
+     * @param length how many of the ordinals are used
+     * @param alphabetLength the number of letters in the alphabet
+     * @param maxFactor the largest key length to count for
+     * @return for each key length from 2 to maxFactor, how many trigram gaps it divides
+     */
+    public static int[] getKasiskiFactorCounts(byte[] ordinals, int length, int alphabetLength, int maxFactor) {
+        int[] factorCounts = new int[Math.max(maxFactor + 1, 2)];
+        int[] lastSeen = new int[alphabetLength * alphabetLength * alphabetLength];
+        Arrays.fill(lastSeen, -1);
+        for (int i = 0; i + 2 < length; i++) {
+            int trigram = (ordinals[i] * alphabetLength + ordinals[i + 1]) * alphabetLength + ordinals[i + 2];
+            if (lastSeen[trigram] >= 0) {
+                int gap = i - lastSeen[trigram];
+                for (int factor = 2; factor <= maxFactor && factor <= gap; factor++) {
+                    if (gap % factor == 0)
+                        factorCounts[factor]++;
+                }
+            }
+            lastSeen[trigram] = i;
+        }
+        return factorCounts;
+    }
+
+    /**
+     * Friedman test: estimate the key length of a periodic cipher from how far the IOC of the
+     * whole text has fallen from that of the language towards that of random text
+     * @param ordinals the text as ordinals within the alphabet
+     * @param length how many of the ordinals are used
+     * @param alphabetLength the number of letters in the alphabet
+     * @param expectedIOC the IOC of plain text in the language
+     * @return the estimated key length, or 0.0 if the text looks random
+     */
+    public static double getFriedmanKeyLength(byte[] ordinals, int length, int alphabetLength, double expectedIOC) {
+        double randomIOC = 1.0 / alphabetLength;
+        double textIOC = calculateIOC(ordinals, length, alphabetLength);
+        if (textIOC <= randomIOC)
+            return 0.0;
+        return (expectedIOC - randomIOC) / (textIOC - randomIOC);
+    }
+
     /**
      * Determine if the only non-whitespace chars in the text are numbers
      * @param text the text to be analysed
@@ -287,6 +358,28 @@ s     */
         return Arrays.copyOf(factors, factCount);
     }
 
+    /**
+     * Find the positions of the largest and second largest counts
+     * @param counts the counts to look through, at least two
+     * @return the index of the largest count, then of the second largest
+     */
+    static int[] topTwoIndexes(int[] counts) {
+        int top = 0, second = 1;
+        if (counts[1] > counts[0]) {
+            top = 1;
+            second = 0;
+        }
+        for (int index = 2; index < counts.length; index++) {
+            if (counts[index] > counts[top]) {
+                second = top;
+                top = index;
+            } else if (counts[index] > counts[second]) {
+                second = index;
+            }
+        }
+        return new int[] { top, second };
+    }
+
     /**
      * Examine the text and suggest the cipher(s) that could be used to decode it
      * @param analysis something where analysis has been done and can make it available
@@ -298,6 +391,7 @@ s     */
 
         try {
             Map<Character, Integer> freq = analysis.getFreqAlphaUpper();
+            TextAnalysis counts = analysis.getTextAnalysis();
             int distinctSymbols = freq.size();
             if (distinctSymbols == 0) { // no alpha chars at all! could be binary
                 Map<Character, Integer> freqNonPad = analysis.getFreqNonPadding();
@@ -370,12 +464,15 @@ s     */
                                         .append(" Polybius square with different row and column headings.\n");
 
                                 // see if the first letters of aligned bigrams and second letters are distinct for col/row headings
-                                List<FrequencyEntry> bigrams = analysis.getAlignedBigramFrequency();
+                                int[] bigrams = counts.getGramCounts(2, true);
                                 TreeSet<Character> firstLetters = new TreeSet<>();
                                 TreeSet<Character> secondLetters = new TreeSet<>();
-                                for (FrequencyEntry entry : bigrams) {
-                                    firstLetters.add(entry.getGram().charAt(0));
-                                    secondLetters.add(entry.getGram().charAt(1));
+                                for (int index = 0; index < bigrams.length; index++) {
+                                    if (bigrams[index] > 0) {
+                                        String gram = counts.gramOf(index, 2);
+                                        firstLetters.add(gram.charAt(0));
+                                        secondLetters.add(gram.charAt(1));
+                                    }
                                 }
                                 StringBuilder firstLettersStrB = new StringBuilder(firstLetters.size());
                                 for (char ch : firstLetters) {
@@ -441,46 +538,25 @@ s     */
                             String infrequentLetters = language.getInfrequentLetters();
                             int lowFreqCount = 0;
                             for (int pos = 0; pos < infrequentLetters.length(); pos++) {
-                                char letter = infrequentLetters.charAt(pos);
-                                Integer letterFreq = freq.get(letter);
-                                lowFreqCount += (letterFreq == null ? 0 : letterFreq);
+                                lowFreqCount += counts.getLetterCount(infrequentLetters.charAt(pos));
                             }
                             double lowFreqPercent = lowFreqCount / (double) analysis.getCountAlphabetic();
 
                             // find top and second most frequent letters in cipher text
-                            Map.Entry<Character, Integer> top = null, second = null;
-                            for (Map.Entry<Character, Integer> entry : freq.entrySet()) {
-                                if (top == null) {
-                                    top = second = entry;
-                                } else {
-                                    if (entry.getValue() > top.getValue()) {
-                                        second = top;
-                                        top = entry;
-                                    } else {
-                                        if (entry.getValue() > second.getValue()) {
-                                            second = entry;
-                                        }
-                                    }
-                                }
-                            }
-                            char topChar = top.getKey();
-                            char secondChar = second.getKey();
+                            int[] topTwo = topTwoIndexes(counts.getLetterCounts());
+                            char topChar = counts.gramOf(topTwo[0], 1).charAt(0);
+                            char secondChar = counts.gramOf(topTwo[1], 1).charAt(0);
 
                             // get frequency of vowels and of high-frequency letters
-                            Integer countA = freq.get('A');
-                            Integer countE = freq.get('E');
-                            Integer countI = freq.get('I');
-                            Integer countN = freq.get('N');
-                            Integer countO = freq.get('O');
-                            Integer countT = freq.get('T');
-                            Integer countU = freq.get('U');
+                            int countA = counts.getLetterCount('A');
+                            int countE = counts.getLetterCount('E');
+                            int countI = counts.getLetterCount('I');
+                            int countN = counts.getLetterCount('N');
+                            int countO = counts.getLetterCount('O');
+                            int countT = counts.getLetterCount('T');
+                            int countU = counts.getLetterCount('U');
                             // for English
-                            int highFreqCounts =
-                                    (countE != null ? countE : 0)
-                                            + (countT != null ? countT : 0)
-                                            + (countA != null ? countA : 0)
-                                            + (countO != null ? countO : 0)
-                                            + (countN != null ? countN : 0);
+                            int highFreqCounts = countE + countT + countA + countO + countN;
                             double highFreqPercent = highFreqCounts / (double) analysis.getCountAlphabetic();
                             sb.append("The percentage of infrequent letters (")
                                     .append(infrequentLetters)
@@ -497,12 +573,7 @@ s     */
                                 likelyTransposition--;
                             }
 
-                            int vowelCounts =
-                                    (countA != null ? countA : 0)
-                                            + (countE != null ? countE : 0)
-                                            + (countI != null ? countI : 0)
-                                            + (countO != null ? countO : 0)
-                                            + (countU != null ? countU : 0);
+                            int vowelCounts = countA + countE + countI + countO + countU;
                             int vowelPercent = (int) (100.0f * vowelCounts / (float) analysis.getCountAlphabetic());
                             sb.append("Vowels occupy ").append(vowelPercent).append("% of the text");
                             if (vowelPercent > 35 && vowelPercent < 51) {
@@ -523,28 +594,16 @@ s     */
                             // If combined transpose and substitute, the letter analysis will indicate substitution
                             //  but we'll have an even (and low) frequency of trigrams
                             // Use the second one because first can be skewed by alpha acting as padding, or lots of Xs at the end
-                            List<FrequencyEntry> trigramFreq = analysis.getTrigramFrequency();
-                            FrequencyEntry mostCommonTrigram = null, secondCommonTrigram = null;
-                            for (FrequencyEntry entry : trigramFreq) {
-                                if (mostCommonTrigram == null) {
-                                    mostCommonTrigram = secondCommonTrigram = entry;
-                                } else {
-                                    if (entry.getCount() > mostCommonTrigram.getCount()) {
-                                        secondCommonTrigram = mostCommonTrigram;
-                                        mostCommonTrigram = entry;
-                                    } else {
-                                        if (entry.getCount() > secondCommonTrigram.getCount()) {
-                                            secondCommonTrigram = entry;
-                                        }
-                                    }
-                                }
-                            }
+                            int[] trigrams = counts.getGramCounts(3, false);
+                            int trigramTotal = counts.getGramTotal(3, false);
+                            int secondCommonTrigram = topTwoIndexes(trigrams)[1];
+                            float secondTrigramPercent = (trigramTotal == 0) ? 0.0f : (100.0f * trigrams[secondCommonTrigram]) / trigramTotal;
 
                             // Many repeating trigrams indicate a substitution, as these are masked in a transposition cipher
-                            if (secondCommonTrigram != null && secondCommonTrigram.getPercent() >= TRIGRAM_FREQUENCY_SIGNIFICANCE_PERCENTAGE) {
+                            if (trigramTotal > 0 && secondTrigramPercent >= TRIGRAM_FREQUENCY_SIGNIFICANCE_PERCENTAGE) {
                                 sb.append("The text has commonly repeating trigrams (")
-                                        .append(secondCommonTrigram.getGram())
-                                        .append(String.format(Locale.getDefault(), "=%4.2f%%", secondCommonTrigram.getPercent()))
+                                        .append(counts.gramOf(secondCommonTrigram, 3))
+                                        .append(String.format(Locale.getDefault(), "=%4.2f%%", secondTrigramPercent))
                                         .append(") which reinforces the case for a substitution cipher.\n");
                             }
 
@@ -618,26 +677,25 @@ s     */
                                 // then cipher could be Amsco
                                 Map<String, Float> bigrams = language.getBigramFrequencies();
                                 String mostFrequentBigram = Language.mostFrequentGram(bigrams);
-                                List<FrequencyEntry> digraphs = analysis.getBigramFrequency();
-                                for (FrequencyEntry entry : digraphs) {
-                                    if (mostFrequentBigram.equals(entry.getGram())) {
-                                        if (entry.getPercent() > 1.1f) {
-                                            sb.append("The cipher text has a high percentage (")
-                                                    .append(String.format(Locale.getDefault(), "%4.2f%%", entry.getPercent()))
-                                                    .append(") of most common bigram '")
-                                                    .append(mostFrequentBigram)
-                                                    .append("', which could indicate an Amsco cipher.\n");
-                                            break;
-                                        }
+                                int bigramIndex = counts.indexOf(mostFrequentBigram);
+                                int bigramTotal = counts.getGramTotal(2, false);
+                                if (bigramIndex >= 0 && bigramTotal > 0) {
+                                    float bigramPercent = (100.0f * counts.getGramCounts(2, false)[bigramIndex]) / bigramTotal;
+                                    if (bigramPercent > 1.1f) {
+                                        sb.append("The cipher text has a high percentage (")
+                                                .append(String.format(Locale.getDefault(), "%4.2f%%", bigramPercent))
+                                                .append(") of most common bigram '")
+                                                .append(mostFrequentBigram)
+                                                .append("', which could indicate an Amsco cipher.\n");
                                     }
                                 }
 
                             } else { // not transposition
 
                                 // This may look like substitution, but lack of repeating trigrams could indicate combined
-                                if (likelyTransposition < 0 && secondCommonTrigram != null && secondCommonTrigram.getPercent() < TRIGRAM_FREQUENCY_SIGNIFICANCE_PERCENTAGE) {
+                                if (likelyTransposition < 0 && trigramTotal > 0 && secondTrigramPercent < TRIGRAM_FREQUENCY_SIGNIFICANCE_PERCENTAGE) {
                                     sb.append("The text may appear to be a substitution cipher but with low incidence of repeating trigrams (")
-                                            .append(String.format(Locale.getDefault(), "%4.2f%%", secondCommonTrigram.getPercent()))
+                                            .append(String.format(Locale.getDefault(), "%4.2f%%", secondTrigramPercent))
                                             .append(") this could point to a combined substitution and transposition cipher.\n");
                                 }
 
@@ -0,0 +1,242 @@
+package mnh.game.ciphercrack.staticanalysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import mnh.game.ciphercrack.language.Language;
+
+/**
+ * The counts static analysis needs from a text, gathered once into primitive arrays.
+ * The text is converted to upper case alphabet ordinals once, then a single pass over those
+ * counts letters, bigrams and trigrams (overlapping and aligned) and the IOC of each cycle
+ * size comes from the same ordinals. Maps and lists for display are only built from the counts,
+ * so there is no boxing or substring per letter of the text
+ */
+public class TextAnalysis {
+
+    private final String alphabet;
+    private final String paddingChars;
+    private final int alphabetLength;
+    private final int textLength;
+
+    // every distinct symbol in the text, sorted, with how many times it occurs
+    private final char[] symbols;
+    private final int[] symbolCounts;
+    private final int distinctSymbols;
+
+    // the letters of the text that are in the alphabet, as ordinals of their upper case
+    private final byte[] ordinals;
+    private final int countAlphabetic;
+
+    // histograms indexed by gram ordinal, e.g. first * alphabetLength + second for a bigram
+    private final int[] letterCounts;
+    private final int[] bigramCounts;
+    private final int[] alignedBigramCounts;
+    private final int[] trigramCounts;
+    private final int[] alignedTrigramCounts;
+
+    private final double[] cyclicIOC;
+
+    /**
+     * Analyse a text
+     * @param text the text to be analysed, null is treated as empty
+     * @param alphabet the upper case letters of the alphabet
+     * @param paddingChars the characters to treat as padding
+     */
+    public TextAnalysis(String text, String alphabet, String paddingChars) {
+        this.alphabet = alphabet;
+        this.paddingChars = paddingChars;
+        this.alphabetLength = alphabet.length();
+        this.textLength = (text == null) ? 0 : text.length();
+
+        // pass over the text: convert to ordinals and count letters
+        ordinals = new byte[textLength];
+        letterCounts = new int[alphabetLength];
+        int count = 0;
+        for (int pos = 0; pos < textLength; pos++) {
+            int ordinal = alphabet.indexOf(Character.toUpperCase(text.charAt(pos)));
+            if (ordinal >= 0) {
+                ordinals[count++] = (byte)ordinal;
+                letterCounts[ordinal]++;
+            }
+        }
+        countAlphabetic = count;
+
+        // every symbol, including punctuation and padding, by sorting rather than a map
+        symbols = (text == null) ? new char[0] : text.toCharArray();
+        Arrays.sort(symbols);
+        symbolCounts = new int[textLength];
+        distinctSymbols = StaticAnalysis.countRuns(symbols, symbolCounts);
+
+        // pass over the ordinals: bigrams and trigrams, overlapping and aligned
+        int bigrams = alphabetLength * alphabetLength;
+        bigramCounts = new int[bigrams];
+        alignedBigramCounts = new int[bigrams];
+        trigramCounts = new int[bigrams * alphabetLength];
+        alignedTrigramCounts = new int[bigrams * alphabetLength];
+        for (int pos = 1; pos < countAlphabetic; pos++) {
+            int bigram = ordinals[pos - 1] * alphabetLength + ordinals[pos];
+            bigramCounts[bigram]++;
+            if (pos % 2 == 1)
+                alignedBigramCounts[bigram]++;
+            if (pos >= 2) {
+                int trigram = ordinals[pos - 2] * bigrams + bigram;
+                trigramCounts[trigram]++;
+                if (pos % 3 == 2)
+                    alignedTrigramCounts[trigram]++;
+            }
+        }
+
+        cyclicIOC = StaticAnalysis.getCyclicIOC(ordinals, countAlphabetic, alphabetLength,
+                Math.min(countAlphabetic, StaticAnalysis.MAX_IOC_CYCLES_TO_ANALYSE));
+    }
+
+    /**
+     * @return the number of characters in the text
+     */
+    public int getTextLength() { return textLength; }
+
+    /**
+     * @return the number of letters of the text that are in the alphabet, either case
+     */
+    public int getCountAlphabetic() { return countAlphabetic; }
+
+    /**
+     * @return the number of characters of the text that are not padding
+     */
+    public int getCountNonPadding() {
+        int count = 0;
+        for (int i = 0; i < distinctSymbols; i++) {
+            if (paddingChars.indexOf(symbols[i]) < 0)
+                count += symbolCounts[i];
+        }
+        return count;
+    }
+
+    /**
+     * @return the alphabetic letters of the text as ordinals, only getCountAlphabetic are used
+     */
+    public byte[] getOrdinals() { return ordinals; }
+
+    /**
+     * @return how often each letter of the alphabet occurs, indexed by ordinal
+     */
+    public int[] getLetterCounts() { return letterCounts; }
+
+    /**
+     * How often a letter occurs, in either case
+     * @param letter the upper case letter
+     * @return the count, 0 if the letter is not in the alphabet
+     */
+    public int getLetterCount(char letter) {
+        int ordinal = alphabet.indexOf(letter);
+        return (ordinal < 0) ? 0 : letterCounts[ordinal];
+    }
+
+    /**
+     * @param gramSize 1 for letters, 2 for bigrams, 3 for trigrams
+     * @param aligned whether to only count non-overlapping grams
+     * @return how often each gram occurs, indexed by the gram as a number in base alphabet length
+     */
+    public int[] getGramCounts(int gramSize, boolean aligned) {
+        switch (gramSize) {
+            case 1:
+                return letterCounts;
+            case 2:
+                return aligned ? alignedBigramCounts : bigramCounts;
+            case 3:
+                return aligned ? alignedTrigramCounts : trigramCounts;
+            default:
+                throw new IllegalArgumentException("Gram size must be 1, 2 or 3, not " + gramSize);
+        }
+    }
+
+    /**
+     * @param gramSize 1 for letters, 2 for bigrams, 3 for trigrams
+     * @param aligned whether to only count non-overlapping grams
+     * @return the number of grams counted
+     */
+    public int getGramTotal(int gramSize, boolean aligned) {
+        if (countAlphabetic < gramSize)
+            return 0;
+        return aligned ? countAlphabetic / gramSize : countAlphabetic - gramSize + 1;
+    }
+
+    /**
+     * Turn an index into the gram counts back into letters
+     * @param index the index of the gram in the counts
+     * @param gramSize the number of letters in the gram
+     * @return the gram as upper case letters
+     */
+    public String gramOf(int index, int gramSize) {
+        char[] gram = new char[gramSize];
+        for (int pos = gramSize - 1; pos >= 0; pos--) {
+            gram[pos] = alphabet.charAt(index % alphabetLength);
+            index /= alphabetLength;
+        }
+        return new String(gram);
+    }
+
+    /**
+     * Turn upper case letters into their index in the gram counts
+     * @param gram the letters of the gram
+     * @return the index of the gram in the counts, or -1 if a letter is not in the alphabet
+     */
+    public int indexOf(String gram) {
+        int index = 0;
+        for (int pos = 0; pos < gram.length(); pos++) {
+            int ordinal = alphabet.indexOf(gram.charAt(pos));
+            if (ordinal < 0)
+                return -1;
+            index = index * alphabetLength + ordinal;
+        }
+        return index;
+    }
+
+    /**
+     * Build the entries shown in the frequency tables, one for each gram that occurs
+     * @param gramSize 1 for letters, 2 for bigrams, 3 for trigrams
+     * @param aligned whether to only count non-overlapping grams
+     * @param language the language whose normal frequencies are shown alongside
+     * @return the entries, in no particular order
+     */
+    public List<FrequencyEntry> getGramFrequency(int gramSize, boolean aligned, Language language) {
+        int[] counts = getGramCounts(gramSize, aligned);
+        int total = getGramTotal(gramSize, aligned);
+        List<FrequencyEntry> grams = new ArrayList<>();
+        for (int index = 0; index < counts.length; index++) {
+            if (counts[index] > 0) {
+                String gram = gramOf(index, gramSize);
+                grams.add(new FrequencyEntry(gram, counts[index], (100.0f * counts[index]) / total,
+                        language.frequencyOf(gram)));
+            }
+        }
+        return grams;
+    }
+
+    /**
+     * Build a map of symbol counts, as StaticAnalysis.collectFrequency does
+     * @param includeNonAlpha if true then non-alphabetic (punctuation) characters are included
+     * @param useUpper if true then letters are converted to upper case before counting
+     * @param excludePadding if true then padding characters are left out
+     * @return a map of the count for each character
+     */
+    public Map<Character, Integer> getFrequency(boolean includeNonAlpha, boolean useUpper, boolean excludePadding) {
+        return StaticAnalysis.buildFrequency(symbols, symbolCounts, distinctSymbols, includeNonAlpha, useUpper,
+                alphabet, excludePadding ? paddingChars : "");
+    }
+
+    /**
+     * @return the index of coincidence of the alphabetic letters
+     */
+    public double getIOC() {
+        return StaticAnalysis.calculateIOC(ordinals, countAlphabetic, alphabetLength);
+    }
+
+    /**
+     * @return the average IOC of the columns for each cycle size, indexed by the size
+     */
+    public double[] getCyclicIOC() { return cyclicIOC; }
+}
@@ -1,12 +1,10 @@
 package mnh.game.ciphercrack.staticanalysis;
 
-import android.content.Context;
-
-import mnh.game.ciphercrack.R;
+import mnh.game.ciphercrack.language.Language;
 
 public class TrigramFrequencyFragment extends FrequencyFragment {
 
-    public TrigramFrequencyFragment(Context context, String text, boolean aligned, int overallLayoutId, int tableLayoutId) {
-        super(context, text, 3, aligned, overallLayoutId, tableLayoutId);
+    public TrigramFrequencyFragment(TextAnalysis analysis, Language language, boolean aligned, int overallLayoutId, int tableLayoutId) {
+        super(analysis, language, 3, aligned, overallLayoutId, tableLayoutId);
     }
 }
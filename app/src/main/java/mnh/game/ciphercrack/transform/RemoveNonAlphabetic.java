@@ -2,7 +2,6 @@ package mnh.game.ciphercrack.transform;
 
 import android.content.Context;
 
-import mnh.game.ciphercrack.R;
 import mnh.game.ciphercrack.util.Settings;
 
 /**
@@ -18,7 +17,7 @@ public class RemoveNonAlphabetic extends Transform {
         // what are the alphabetic characters? Context == null => unit test
         String alphabet = (context == null)
                 ? Settings.DEFAULT_ALPHABET
-                : Settings.instance().getString(context, R.string.pref_alphabet_cipher);
+                : Settings.instance().getString(Settings.PREF_ALPHABET_CIPHER);
 
         // rebuild the string with only alphabetical characters
         StringBuilder result = new StringBuilder(text.length());
@@ -2,7 +2,6 @@ package mnh.game.ciphercrack.transform;
 
 import android.content.Context;
 
-import mnh.game.ciphercrack.R;
 import mnh.game.ciphercrack.util.Settings;
 
 /**
@@ -17,7 +16,7 @@ public class RemovePadding extends Transform {
         // what are the padding characters? Context == null => unit test
         String paddingChars = (context == null)
                 ? Settings.DEFAULT_PADDING_CHARS
-                : Settings.instance().getString(context, R.string.pref_padding_chars);
+                : Settings.instance().getString(Settings.PREF_PADDING_CHARS);
 
         // rebuild the string without any padding characters
         StringBuilder result = new StringBuilder(text.length());
@@ -2,7 +2,6 @@ package mnh.game.ciphercrack.transform;
 
 import android.content.Context;
 
-import mnh.game.ciphercrack.R;
 import mnh.game.ciphercrack.util.Settings;
 
 /**
@@ -18,7 +17,7 @@ public class ReverseWords extends Transform {
         // what are the padding characters? Context == null => unit test
         String paddingChars = (context == null)
                 ? " "
-                : Settings.instance().getString(context, R.string.pref_padding_chars);
+                : Settings.instance().getString(Settings.PREF_PADDING_CHARS);
 
         // hold the overall text result
         StringBuilder result = new StringBuilder(text.length());
@@ -8,7 +8,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import mnh.game.ciphercrack.R;
 import mnh.game.ciphercrack.language.Dictionary;
 import mnh.game.ciphercrack.language.Language;
 import mnh.game.ciphercrack.util.Settings;
@@ -23,7 +22,7 @@ public class SplitByWords extends Transform {
         // which language and dictionary should we use? Context == null => unit test
         String languageName = (context == null)
                 ? Settings.DEFAULT_LANGUAGE
-                : Settings.instance().getString(context, R.string.pref_language);
+                : Settings.instance().getString(Settings.PREF_LANGUAGE);
         Language language = Language.instanceOf(languageName);
         return doTextSplit(text, language);
     }
@@ -1,14 +1,11 @@
 package mnh.game.ciphercrack.util;
 
-import android.util.Log;
-
 import java.util.Arrays;
-import java.util.Locale;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ThreadLocalRandom;
 
-import mnh.game.ciphercrack.cipher.Caesar;
 import mnh.game.ciphercrack.cipher.Cipher;
 import mnh.game.ciphercrack.language.Language;
 import mnh.game.ciphercrack.services.CrackResults;
@@ -29,6 +26,7 @@ public class Climb {
     public static final String CLIMB_NUMBER_SIZE = "climb-number-size";
     public static final String CLIMB_TEMPERATURE = "climb-temperature";
     public static final String CLIMB_CYCLES = "climb-cycles";
+    public static final String CLIMB_CHAINS = "climb-chains";
 
     // outputs
     public static final String CLIMB_ACTIVITY = "climb-activity";
@@ -36,15 +34,19 @@ public class Climb {
     public static final String CLIMB_BEST_DECODE = "climb-best-decode";
 
     /**
-     * Used for breaking Vigenere and Beaufort ciphers.
-     * Rotate each letter in a candidate key of set length
-     * checking the IOC of the decoded text and keeping the best,
-     * moving from 0.041 towards 0.0667 or more
-     * once the maximum IOC is reached perform parallel shift each position on the candidate key
-     * to find if any of the 26 keys have all the cribs
+     * Used for breaking Vigenere and Beaufort ciphers, where the key length is known.
+     * Each letter of the key decodes just one column of the text (every key-length'th letter),
+     * so the text is split into columns once and each key letter is chosen on its own, as the
+     * letter whose decode of its column has letter frequencies closest (by chi-squared) to
+     * those of the language. One pass is then made over the key trying every letter in each
+     * position, measuring by quadgrams just the parts of the text that the letter decodes, which
+     * fixes letters where the column was too short for its frequencies to be clear.
+     * The key is then checked for the cribs, in the forward and in the reversed text.
+     * The cipher must be able to decode ordinals with one table per key letter
      * @param cipherText the cipher text to be cracked
      * @param cipher the type of cipher - generally Vigenere or Beaufort
-     * @param props properties used in the cipher: alphabet, seed keyword and cribs
+     * @param props properties used in the cipher: alphabet, language, start keyword (for its
+     *              length) and cribs
      * @param crackId the identifier for the crack attempt we're doing, used to update progress
      * @return true if successful, and the properties will contain the best keyword,
      * decoded text and measure, with explanation of what has been done, otherwise false
@@ -62,170 +64,207 @@ public class Climb {
         props.remove(Climb.CLIMB_BEST_KEYWORD);
         props.remove(Climb.CLIMB_BEST_DECODE);
 
-        char[] bestKey = new char[0];
-        String bestDecode = "";
-
         // properties for doing the decode
         Directives dirs = new Directives();
         dirs.setAlphabet(alphabet);
         dirs.setLanguage(language);
         dirs.setPaddingChars(paddingChars);
+        dirs.setKeyword(startKey);
+        if (cipher.getDecodeTableCount(dirs) == 0)
+            throw new UnsupportedOperationException("doClimb needs ordinal decode for "+cipher.getCipherName());
+
+        // the decode table for each possible key letter, the same whatever its position
+        int alphabetLength = alphabet.length();
+        int[][] letterTables = new int[alphabetLength][alphabetLength];
+        int[][] oneTable = new int[1][];
+        for (int letter = 0; letter < alphabetLength; letter++) {
+            dirs.setKeyword(String.valueOf(alphabet.charAt(letter)));
+            oneTable[0] = letterTables[letter];
+            cipher.fillDecodeTables(dirs, oneTable);
+        }
 
-        double bestMeasure = -1.0;
-        boolean finished = false;
-        int iteration = 0;
-        StringBuilder activity = new StringBuilder("Perform a hill climb for ")
-                .append(cipher.getCipherName())
-                .append(" cipher with start key ")
-                .append(startKey)
-                .append(".\n");
+        // the expected share of each letter, a little for letters the language never uses
+        Map<String, Float> frequencies = language.getLetterFrequencies();
+        double[] expected = new double[alphabetLength];
+        double total = 0.0;
+        for (int ordinal = 0; ordinal < alphabetLength; ordinal++) {
+            Float freq = frequencies.get(String.valueOf(alphabet.charAt(ordinal)));
+            expected[ordinal] = (freq == null) ? 0.0 : freq;
+            total += expected[ordinal];
+        }
+        for (int ordinal = 0; ordinal < alphabetLength; ordinal++) {
+            expected[ordinal] = Math.max(expected[ordinal] / total, 0.0001);
+        }
 
-        // count how many passes we do, for reporting progress
-        int pass = 0;
+        // quadgrams are indexed by the language alphabet, only usable if they are the same
+        float[] quadgrams = language.getAlphabet().equals(alphabet)
+                ? language.getNGramLogProbabilities(Language.MAX_NGRAM) : null;
 
-        // keep going until we did a whole loop with no change being made
-        String msg = "Starting first pass of hill climb";
+        StringBuilder activity = new StringBuilder("Solve each letter of a ")
+                .append(startKey.length())
+                .append(" letter key for ")
+                .append(cipher.getCipherName())
+                .append(" cipher by chi-squared of its column against ")
+                .append(language.getName())
+                .append(" letter frequencies.\n");
+        String msg = "Solving "+startKey.length()+" key letters by column";
         CrackResults.updateProgressDirectly(crackId, msg);
-        Log.i(TAG, msg);
-        while (!finished) {
-            pass++;
-
-            char[] dynamicKey = startKey.toCharArray();
-
-            // mutate each letter in the key in turn
-            for (int pos=0; pos < dynamicKey.length; pos++) {
-
-                // try every possible char in this pos, one at a time
-                for (int ordinal=0; ordinal < alphabet.length(); ordinal++) {
-                    dynamicKey[pos] = alphabet.charAt(ordinal);
-
-                    // decode and measure fitness
-                    dirs.setKeyword(String.valueOf(dynamicKey));
-                    String plain = cipher.decode(cipherText, dirs);
-                    double measure = cipher.getFitness(plain, dirs);
-                    if (measure > bestMeasure) {
-                        activity.append("Key ")
-                                .append(String.valueOf(dynamicKey))
-                                .append(" improves measure to ")
-                                .append(String.format(Locale.getDefault(), "%7.6f", measure))
-                                .append(", text=")
-                                .append(plain.substring(0,Math.min(Cipher.CRACK_PLAIN_LENGTH, plain.length())))
-                                .append(".\n");
-                        bestKey = Arrays.copyOf(dynamicKey,dynamicKey.length);
-                        bestDecode = plain;
-                        bestMeasure = measure;
-                    }
-                    iteration++;
-                }
-                dynamicKey = Arrays.copyOf(bestKey, bestKey.length);
-            }
-
-            // see if anything changed after the above 2 loops, if not, we're done
-            finished = startKey.equals(String.valueOf(dynamicKey));
-            startKey = String.valueOf(bestKey); // prepare to go around again
+        CrackLog.i(TAG, msg);
 
+        byte[][] cribOrdinals = Cipher.getCribOrdinals(cribs, alphabet);
+        int tableCount = startKey.length();
+        int[][] tables = new int[Math.max(tableCount, 1)][];
+        String bestKey = null;
+        String bestDecode = "";
+        for (boolean reverse : new boolean[] { false, true }) {
             // drop out of the climb if we've been cancelled
             if (CrackResults.isCancelled(crackId)) {
-                props.setProperty(Climb.CLIMB_BEST_KEYWORD, String.valueOf(bestKey));
+                props.setProperty(Climb.CLIMB_BEST_KEYWORD, (bestKey == null) ? startKey : bestKey);
                 props.setProperty(Climb.CLIMB_BEST_DECODE, bestDecode);
                 props.setProperty(Climb.CLIMB_ACTIVITY, activity.toString()+"Climb was cancelled.\n");
                 return false;
             }
-
-            // Can't tell when it'll be done, but show some progress
-            msg = "Completed hill climb pass "+pass+", bestMeasure="+bestMeasure+", bestKey="+startKey;
-            CrackResults.updateProgressDirectly(crackId, msg);
-            Log.i(TAG,msg);
-        }
-
-        // report the best key/measure we found overall
-        activity.append("Found best key ")
-                .append(String.valueOf(bestKey))
-                .append(" with best measure ")
-                .append(String.format(Locale.getDefault(), "%7.6f", bestMeasure))
-                .append(" after ")
-                .append(iteration)
-                .append(" iterations.\n");
-        props.setProperty(Climb.CLIMB_BEST_KEYWORD, String.valueOf(bestKey));
-        props.setProperty(Climb.CLIMB_BEST_DECODE, bestDecode);
-
-        // now find the one with plain containing the cribs, if not use the one already found
-        CrackResults.updateProgressDirectly(crackId, "Completed hill climb passes, key with high fitness: "+String.valueOf(bestKey)+", checking for cribs.");
-
-        // this key is probably a cyclic-shift of the real one, check all for the cribs
-        Directives checkCribsDirs = new Directives();
-        checkCribsDirs.setAlphabet(alphabet);
-        checkCribsDirs.setKeyword(String.valueOf(bestKey));
-        char[] candidateKey = new char[bestKey.length];
-        // we also find the shift with least count of ZQXJK, in case cribs not found
-        String leastInfrequentLetterKey = String.valueOf(bestKey);
-        String leastInfrequentLetterDecode = cipher.decode(cipherText, checkCribsDirs);
-        int leastInfrequentLetterCount = Integer.MAX_VALUE;
-        String infrequentLettersForLanguage = language.getInfrequentLetters();
-        boolean foundAnyWithCribs = false;
-        activity.append("Looking for cribs and most likely match with equal-shift keys:\n");
-        for (int shift=0; shift < alphabet.length(); shift++) {
-            // create a key with from the base with this shift
-            for (int keyPos=0; keyPos < bestKey.length; keyPos++) {
-                candidateKey[keyPos] = Caesar.encodeChar(bestKey[keyPos], shift, alphabet);
+            String text = reverse ? reverseCipherText : cipherText;
+            byte[] cipherOrdinals = Cipher.toOrdinals(text, alphabet);
+            byte[] plainOrdinals = new byte[cipherOrdinals.length];
+            char[] key = solveColumns(cipherOrdinals, tableCount, alphabet, letterTables, expected);
+            for (int keyPos = 0; keyPos < tableCount; keyPos++)
+                tables[keyPos] = letterTables[alphabet.indexOf(key[keyPos])];
+            Cipher.decodeOrdinals(cipherOrdinals, cipherOrdinals.length, tables, tableCount, plainOrdinals);
+            activity.append(reverse ? "REVERSE text key " : "Key ")
+                    .append(String.valueOf(key))
+                    .append(" has the closest letter frequencies in each column.\n");
+            if (quadgrams != null && refineKey(cipherOrdinals, plainOrdinals, key, alphabet, letterTables, quadgrams)) {
+                activity.append("Refined by quadgrams to key ")
+                        .append(String.valueOf(key))
+                        .append(".\n");
             }
-            activity.append(String.valueOf(candidateKey)).append("\n");
 
-            // apply the decode and look for cribs
-            checkCribsDirs.setKeyword(String.valueOf(candidateKey));
-            String plain = cipher.decode(cipherText, checkCribsDirs);
-            boolean foundCribs = Cipher.containsAllCribs(plain, cribs);
-            if (foundCribs) {
-                activity.append("Shifted letters equally and found all cribs using keyword ")
-                        .append(String.valueOf(candidateKey))
-                        .append(".\n");
-                props.setProperty(Climb.CLIMB_BEST_KEYWORD, String.valueOf(candidateKey));
-                props.setProperty(Climb.CLIMB_BEST_DECODE, plain);
-                foundAnyWithCribs = true;
+            dirs.setKeyword(String.valueOf(key));
+            boolean foundCribs = Cipher.containsAllCribs(plainOrdinals, plainOrdinals.length, cribOrdinals);
+            if (foundCribs || bestKey == null) {
+                bestKey = String.valueOf(key);
+                bestDecode = cipher.decode(text, dirs);
             }
-            // try also in reverse - only works if text length is multiple of key length
-            String plainReverse = cipher.decode(reverseCipherText, checkCribsDirs);
-            foundCribs = Cipher.containsAllCribs(plainReverse, cribs);
             if (foundCribs) {
-                activity.append("Shifted letters equally and found all cribs in REVERSE text using keyword ")
-                        .append(String.valueOf(candidateKey))
+                activity.append("Found all cribs")
+                        .append(reverse ? " in REVERSE text" : "")
+                        .append(" using keyword ")
+                        .append(bestKey)
+                        .append(", text=")
+                        .append(bestDecode.substring(0, Math.min(Cipher.CRACK_PLAIN_LENGTH, bestDecode.length())))
                         .append(".\n");
-                props.setProperty(Climb.CLIMB_BEST_KEYWORD, String.valueOf(candidateKey));
-                props.setProperty(Climb.CLIMB_BEST_DECODE, plainReverse);
-                foundAnyWithCribs = true;
+                props.setProperty(Climb.CLIMB_BEST_KEYWORD, bestKey);
+                props.setProperty(Climb.CLIMB_BEST_DECODE, bestDecode);
+                props.setProperty(Climb.CLIMB_ACTIVITY, activity.toString());
+                return true;
+            }
+        }
+
+        // no cribs found either way, report the forward key
+        activity.append("Could not find all cribs; keyword ")
+                .append(bestKey)
+                .append(" deciphers to ")
+                .append(bestDecode.substring(0, Math.min(Cipher.CRACK_PLAIN_LENGTH, bestDecode.length())))
+                .append(".\n");
+        props.setProperty(Climb.CLIMB_BEST_KEYWORD, bestKey);
+        props.setProperty(Climb.CLIMB_BEST_DECODE, bestDecode);
+        props.setProperty(Climb.CLIMB_ACTIVITY, activity.toString());
+        return false;
+    }
+
+    // choose each key letter as the one decoding its column closest to the expected frequencies
+    private static char[] solveColumns(byte[] cipherOrdinals, int keyLength, String alphabet,
+                                       int[][] letterTables, double[] expected) {
+        int alphabetLength = alphabet.length();
+        int[][] columnCounts = new int[keyLength][alphabetLength];
+        for (int i = 0; i < cipherOrdinals.length; i++) {
+            columnCounts[i % keyLength][cipherOrdinals[i]]++;
+        }
+        char[] key = new char[keyLength];
+        int[] observed = new int[alphabetLength];
+        for (int keyPos = 0; keyPos < keyLength; keyPos++) {
+            int[] counts = columnCounts[keyPos];
+            int columnSize = 0;
+            for (int count : counts)
+                columnSize += count;
+            int bestLetter = 0;
+            double bestChiSquared = Double.MAX_VALUE;
+            for (int letter = 0; letter < alphabetLength; letter++) {
+                Arrays.fill(observed, 0);
+                int[] table = letterTables[letter];
+                for (int ordinal = 0; ordinal < alphabetLength; ordinal++)
+                    observed[table[ordinal]] += counts[ordinal];
+                double chiSquared = 0.0;
+                for (int ordinal = 0; ordinal < alphabetLength; ordinal++) {
+                    double expectedCount = expected[ordinal] * columnSize;
+                    double difference = observed[ordinal] - expectedCount;
+                    chiSquared += difference * difference / expectedCount;
+                }
+                if (chiSquared < bestChiSquared) {
+                    bestChiSquared = chiSquared;
+                    bestLetter = letter;
+                }
             }
+            key[keyPos] = alphabet.charAt(bestLetter);
+        }
+        return key;
+    }
 
-            // see if this plain text has the LEAST number of infrequent chars, which could help if cribs are wrong
-            int infrequentLetterCount = 0;
-            for (int i = 0; i < plain.length(); i++) {
-                if (infrequentLettersForLanguage.indexOf(plain.charAt(i)) >= 0) {
-                    infrequentLetterCount++;
+    // one pass over the key trying every letter in each position, keeping the one with the best
+    // quadgrams in the parts of the text it decodes, returns true if the key was changed
+    private static boolean refineKey(byte[] cipherOrdinals, byte[] plainOrdinals, char[] key, String alphabet,
+                                     int[][] letterTables, float[] quadgrams) {
+        int length = plainOrdinals.length;
+        int keyLength = key.length;
+        int alphabetLength = alphabet.length();
+        if (length < Language.MAX_NGRAM)
+            return false;
+        boolean changed = false;
+        for (int keyPos = 0; keyPos < keyLength && keyPos < length; keyPos++) {
+            int bestLetter = alphabet.indexOf(key[keyPos]);
+            double bestScore = columnQuadgrams(plainOrdinals, keyPos, keyLength, alphabetLength, quadgrams);
+            for (int letter = 0; letter < alphabetLength; letter++) {
+                if (letter == bestLetter)
+                    continue;
+                decodeColumn(cipherOrdinals, plainOrdinals, keyPos, keyLength, letterTables[letter]);
+                double score = columnQuadgrams(plainOrdinals, keyPos, keyLength, alphabetLength, quadgrams);
+                if (score > bestScore) {
+                    bestScore = score;
+                    bestLetter = letter;
                 }
             }
-            if (infrequentLetterCount < leastInfrequentLetterCount) {
-                leastInfrequentLetterCount = infrequentLetterCount;
-                leastInfrequentLetterKey = String.valueOf(candidateKey);
-                leastInfrequentLetterDecode = plain;
+            decodeColumn(cipherOrdinals, plainOrdinals, keyPos, keyLength, letterTables[bestLetter]);
+            if (alphabet.charAt(bestLetter) != key[keyPos]) {
+                key[keyPos] = alphabet.charAt(bestLetter);
+                changed = true;
             }
         }
-        // return to caller if we found the cribs in a shifted keyword
-        if (foundAnyWithCribs) {
-            props.setProperty(Climb.CLIMB_ACTIVITY, activity.toString());
-            return true;
-        }
+        return changed;
+    }
 
-        // still no cribs found, report the keyword that produced the least number of 'infrequent' letters
-        activity.append("Shifted letters equally but could not find all cribs; keyword ")
-                .append(leastInfrequentLetterKey)
-                .append(" has the fewest infrequent letters (")
-                .append(infrequentLettersForLanguage)
-                .append("), deciphering to ")
-                .append(leastInfrequentLetterDecode.substring(0,Math.min(Cipher.CRACK_PLAIN_LENGTH, leastInfrequentLetterDecode.length()-1)))
-                .append(".\n");
-        props.setProperty(Climb.CLIMB_BEST_KEYWORD, leastInfrequentLetterKey);
-        props.setProperty(Climb.CLIMB_BEST_DECODE, leastInfrequentLetterDecode);
-        props.setProperty(Climb.CLIMB_ACTIVITY, activity.toString());
-        return false;
+    private static void decodeColumn(byte[] cipherOrdinals, byte[] plainOrdinals, int column, int keyLength, int[] table) {
+        for (int i = column; i < cipherOrdinals.length; i += keyLength)
+            plainOrdinals[i] = (byte)table[cipherOrdinals[i]];
+    }
+
+    // the sum of the log probabilities of the quadgrams that include a letter of the column
+    private static double columnQuadgrams(byte[] plainOrdinals, int column, int keyLength,
+                                          int alphabetLength, float[] quadgrams) {
+        int n = Language.MAX_NGRAM;
+        int lastStart = plainOrdinals.length - n;
+        int nextStart = 0; // so quadgrams holding two letters of the column are counted once
+        double score = 0.0;
+        for (int i = column; i < plainOrdinals.length; i += keyLength) {
+            for (int start = Math.max(nextStart, i - n + 1); start <= Math.min(i, lastStart); start++) {
+                int index = 0;
+                for (int j = start; j < start + n; j++)
+                    index = index * alphabetLength + plainOrdinals[j];
+                score += quadgrams[index];
+            }
+            nextStart = i + 1;
+        }
+        return score;
     }
 
     /**
@@ -248,115 +287,4 @@ public class Climb {
         }
         return String.valueOf(newKey);
     }
-
-    /**
-     * Apply Simulated Anealing where we do a hill climb reducing the temperature as we go
-     * @param text the text to be analysed and decoded
-     * @param cipher the cipher being used (e.g. Keyword Substitution)
-     * @param props the properties required for this climb
-     * @param crackId the identifier for the crack attempt we're doing, used to update progress
-     * @return true if all cribs were found in the best decode we could achieve
-     */
-    public static boolean doSimulatedAnealing(String text, Cipher cipher, Properties props, int crackId) {
-        String alphabet = props.getProperty(Climb.CLIMB_ALPHABET);
-        String startKey = props.getProperty(Climb.CLIMB_START_KEYWORD);
-        String cribString = props.getProperty(Climb.CLIMB_CRIBS);
-        String languageName = props.getProperty(Climb.CLIMB_LANGUAGE);
-        int numberSize = props.getProperty(Climb.CLIMB_NUMBER_SIZE) == null
-                ? 0 : Integer.parseInt(props.getProperty(Climb.CLIMB_NUMBER_SIZE));
-        int startTemp = Integer.parseInt(props.getProperty(Climb.CLIMB_TEMPERATURE));
-        int cycles = Integer.parseInt(props.getProperty(Climb.CLIMB_CYCLES));
-        Set<String> cribs = Cipher.getCribSet(cribString);
-
-        // nothing found yet
-        props.remove(Climb.CLIMB_BEST_KEYWORD);
-        props.remove(Climb.CLIMB_BEST_DECODE);
-
-        // properties for doing the decode
-        Directives decodeDirs = new Directives();
-        decodeDirs.setAlphabet(alphabet);
-        decodeDirs.setLanguage(Language.instanceOf(languageName));
-
-        int iteration = 0;
-        String msg = "Started simulated anealing (" + startTemp + "x" + cycles + ") for "+cipher.getCipherName() + " with start key " + startKey + ".\n";
-        CrackResults.updateProgressDirectly(crackId, msg);
-        StringBuilder activity = new StringBuilder(msg);
-
-        // measure the start key's fitness - that's our starting point
-        decodeDirs.setKeyword(startKey);
-        decodeDirs.setNumberSize(numberSize);
-        String bestKey = startKey;
-        String bestDecode = cipher.decode(text, decodeDirs);
-        double bestMeasure = cipher.getFitness(bestDecode, decodeDirs);
-
-        // keep going until we did a whole loop with no change being made
-        String dynamicKey = startKey;
-        for (int temp = startTemp; temp > 0; temp--) {
-
-            // this does thousands of checks, mutating key as we go
-            for (int cycle = 0; cycle < cycles; cycle++) {
-
-                if (cycle % 100 == 0) {
-                    // drop out of the crack attempt if we've been cancelled
-                    if (CrackResults.isCancelled(crackId)) {
-                        props.setProperty(Climb.CLIMB_BEST_KEYWORD, String.valueOf(bestKey));
-                        props.setProperty(Climb.CLIMB_BEST_DECODE, bestDecode);
-                        props.setProperty(Climb.CLIMB_ACTIVITY, activity.toString()+"Simulated Anealing was cancelled.\n");
-                        return false;
-                    }
-
-                    msg = "Annealing temperature=" + temp + ", cycle=" + cycle + " of " + cycles + ", measure=" + bestMeasure + ", key=" + bestKey;
-                    CrackResults.updateProgressDirectly(crackId, msg);
-                    Log.i(TAG, msg);
-                }
-
-                String trialKey = mutateKey(dynamicKey, temp);
-
-                // decode and measure fitness
-                decodeDirs.setKeyword(trialKey);
-                String plain = cipher.decode(text, decodeDirs);
-                double measure = cipher.getFitness(plain, decodeDirs);
-                double probability = 0.0; //bestMeasure*(temp-1)*0.01;
-                if (measure > bestMeasure
-                        || (bestMeasure - measure) < probability) {
-                    activity.append("Key ")
-                            .append(trialKey)
-                            .append(" improves measure to ")
-                            .append(String.format(Locale.getDefault(), "%7.6f", measure))
-                            .append(", text=")
-                            .append(plain.substring(0, Math.min(Cipher.CRACK_PLAIN_LENGTH, plain.length())))
-                            .append(".\n");
-                    bestKey = trialKey;
-                    dynamicKey = trialKey;
-                    bestDecode = plain;
-                    bestMeasure = measure;
-                }
-                iteration++;
-            }
-        }
-
-        // report the best key/measure we found overall
-        activity.append("Found best key ")
-                .append(bestKey)
-                .append(" with best measure ")
-                .append(String.format(Locale.getDefault(), "%7.6f", bestMeasure))
-                .append(" after ")
-                .append(iteration)
-                .append(" iterations.\n");
-        Log.i(TAG,"Completed simulated anealing after "+iteration+" iterations, bestMeasure="+bestMeasure+", bestKey="+bestKey);
-
-        // now find the one with plain containing the cribs, if not use the one already found
-        props.setProperty(Climb.CLIMB_BEST_KEYWORD, bestKey);
-        props.setProperty(Climb.CLIMB_BEST_DECODE, bestDecode);
-
-        boolean foundCribs = Cipher.containsAllCribs(bestDecode, cribs);
-        if (foundCribs) {
-            activity.append("Decoded text contains all cribs.\n");
-            props.setProperty(Climb.CLIMB_ACTIVITY, activity.toString());
-            return true;
-        }
-        activity.append("Decoded text did not contain all cribs.\n");
-        props.setProperty(Climb.CLIMB_ACTIVITY, activity.toString());
-        return false;
-    }
 }
@@ -0,0 +1,50 @@
+package mnh.game.ciphercrack.util;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Logging for the crack engines, which can run in the app or on a plain JVM, e.g. a server. The
+ * app gives a Sink that writes to the Android log when it starts, elsewhere messages go to
+ * java.util.logging
+ */
+public class CrackLog {
+
+    /**
+     * Where log messages are written
+     */
+    public interface Sink {
+        void info(String tag, String message);
+        void warn(String tag, String message);
+    }
+
+    // writes to java.util.logging, with the tag as the logger name
+    private static final Sink JAVA_LOGGING = new Sink() {
+        @Override
+        public void info(String tag, String message) {
+            Logger.getLogger(tag).log(Level.INFO, message);
+        }
+
+        @Override
+        public void warn(String tag, String message) {
+            Logger.getLogger(tag).log(Level.WARNING, message);
+        }
+    };
+
+    private static volatile Sink sink = JAVA_LOGGING;
+
+    // no one can make an instance, the log is accessed statically
+    private CrackLog() {
+    }
+
+    /**
+     * Say where log messages go, done by the app when it starts
+     * @param newSink where to write messages, or null for java.util.logging
+     */
+    public static void setSink(Sink newSink) {
+        sink = (newSink == null) ? JAVA_LOGGING : newSink;
+    }
+
+    public static void i(String tag, String message) { sink.info(tag, message); }
+    public static void w(String tag, String message) { sink.warn(tag, message); }
+}
@@ -5,9 +5,12 @@ import org.jetbrains.annotations.NotNull;
 public enum CrackMethod {
     NONE,           // Used for Encoding / Decoding (not Cracking)
     IOC,            // Vigenere mutates keyword of known length and climbs to highest IOC
+    IOC_FIND_LENGTH,// Vigenere finds the likely keyword lengths and cracks them all at once
     BRUTE_FORCE,    // Affine, Caesar, Atbash, Railfence
     DICTIONARY,     // Keyword Substitution checks all words in the dictionary
     CRIB_DRAG,      // Slide a crib along the cipher text to determine the key at each point
+    COLUMN_ADJACENCY,// Permutation orders the columns by the bigrams neighbouring columns make
+    ROW_CLIMB,      // Hill climbs each row of the decode matrix from many random starts
     WORD_COUNT;     // Keyword Substitution uses Simulated Anealing
                     //   measuring fitness with how many letters match English words in the dictionary
 
@@ -19,9 +22,12 @@ public enum CrackMethod {
         switch (this) {
             case NONE:          result = "None"; break;
             case IOC:           result = "IOC Climb"; break;
+            case IOC_FIND_LENGTH: result = "IOC Climb Find Length"; break;
             case BRUTE_FORCE:   result = "Brute Force"; break;
             case DICTIONARY:    result = "Dictionary Scan"; break;
             case CRIB_DRAG:     result = "Crib Drag"; break;
+            case COLUMN_ADJACENCY: result = "Column Adjacency"; break;
+            case ROW_CLIMB:     result = "Row Climb"; break;
             case WORD_COUNT:    result = "Simulated Anealing Word Count"; break;
         }
         return result;
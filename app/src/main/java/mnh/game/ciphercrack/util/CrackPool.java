@@ -0,0 +1,55 @@
+package mnh.game.ciphercrack.util;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * The pool of worker threads shared by crack attempts that split their search across the CPUs.
+ * A crack run by the CrackScheduler is given a pool of its own, sized to its share of the CPUs,
+ * and any work it splits goes there, so one large crack cannot take every CPU from the others
+ */
+public class CrackPool {
+
+    // The singleton pool, created on first use
+    private static ForkJoinPool pool = null;
+
+    // the pool of the crack running on this thread, if it has one of its own
+    private static final ThreadLocal<ForkJoinPool> jobPool = new ThreadLocal<>();
+
+    // no one can make an instance, the pool is accessed statically
+    private CrackPool() {
+    }
+
+    /**
+     * Get the pool used to run parallel crack work: the pool the calling thread already works
+     * for, else the pool given to the crack running on this thread, else the shared pool with
+     * one thread per available processor
+     * @return the fork-join pool to use
+     */
+    public static ForkJoinPool get() {
+        Thread current = Thread.currentThread();
+        if (current instanceof ForkJoinWorkerThread)
+            return ((ForkJoinWorkerThread) current).getPool();
+        ForkJoinPool own = jobPool.get();
+        return (own != null) ? own : shared();
+    }
+
+    // the pool for work not run by the scheduler, e.g. tests calling crack directly
+    private static synchronized ForkJoinPool shared() {
+        if (pool == null) {
+            pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        }
+        return pool;
+    }
+
+    /**
+     * Give the crack about to run on this thread a pool of its own, or take it away
+     * @param own the pool for the crack's parallel work, or null to go back to the shared pool
+     */
+    public static void setForThread(ForkJoinPool own) {
+        if (own == null)
+            jobPool.remove();
+        else
+            jobPool.set(own);
+    }
+}
@@ -3,6 +3,8 @@ package mnh.game.ciphercrack.util;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import mnh.game.ciphercrack.cipher.Cipher;
 
 /**
@@ -21,11 +23,11 @@ public class CrackResult implements Parcelable {
     private String plainText = null;
     private Directives directives = null;
     private long milliseconds = 0L;
-    private String progress = "";
-    private CrackState crackState;
+    private volatile String progress = "";
+    private volatile CrackState crackState;
 
     // used to assign unique values to a crack result
-    private static int masterId = 10;
+    private static final AtomicInteger masterId = new AtomicInteger(10);
 
     // needed by Parcelable interface, to recreate the passed data
     public static final Parcelable.Creator CREATOR = new Parcelable.Creator() {
@@ -77,7 +79,7 @@ public class CrackResult implements Parcelable {
         this.isSuccess = false;
     }
 
-    // this is called when creating a brand new crack at the start of the CrackService call
+    // this is called when creating a brand new crack when it is queued by the CrackScheduler
     public CrackResult(CrackMethod crackMethod, Cipher cipher, Directives dirs, String cipherText, String explain, CrackState state) {
         this.id = getNextId();
         this.crackMethod = crackMethod;
@@ -143,8 +145,8 @@ public class CrackResult implements Parcelable {
         p.writeLong(milliseconds);
     }
 
-    private synchronized int getNextId() {
-        return masterId++;
+    private static int getNextId() {
+        return masterId.getAndIncrement();
     }
 
     public int getId() {
@@ -6,6 +6,27 @@ public enum CrackState {
     COMPLETE,      // Crack finished by itself (not cancelled)
     CANCELLED;     // Crack attempt was cancelled before completion
 
+    /**
+     * @return true if the crack has ended, by itself or by being cancelled
+     */
+    public boolean isFinished() {
+        return this == COMPLETE || this == CANCELLED;
+    }
+
+    /**
+     * A crack is queued, then runs, then completes, and can be cancelled at any point until it
+     * completes, it never goes back
+     * @param next the state the crack is to move to
+     * @return true if a crack in this state can move to the next state
+     */
+    public boolean canMoveTo(CrackState next) {
+        switch (this) {
+            case QUEUED:    return next == RUNNING || next == CANCELLED;
+            case RUNNING:   return next == COMPLETE || next == CANCELLED;
+            default:        return false;
+        }
+    }
+
     @Override
     public String toString() {
         return name().charAt(0) + name().substring(1).toLowerCase();
@@ -0,0 +1,300 @@
+package mnh.game.ciphercrack.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import mnh.game.ciphercrack.services.CrackHandle;
+import mnh.game.ciphercrack.services.CrackResults;
+
+/**
+ * Runs a dictionary crack, where each word of the dictionary is turned into one or more keys
+ * and each key is tried to see whether it decodes the cipher text to a text with all the cribs.
+ * The words are shared out, in small chunks, between several workers in the CrackPool, each
+ * with its own KeyTrier so they need not share buffers or Directives.
+ * Results are the same as trying the words one at a time in dictionary order: when stopping at
+ * the first match it is the earliest match that is returned, otherwise all matches are returned
+ * in the order they would have been found
+ * @param <K> the type of key the cipher uses, e.g. a keyword String or a matrix int[]
+ */
+public class DictionaryCrackEngine<K> {
+
+    // how many words a worker takes at a time, small enough to balance the load
+    private static final int CHUNK_SIZE = 64;
+
+    // how many words are tried between checks for cancellation
+    private static final int CANCEL_CHECK_INTERVAL = 500;
+
+    /**
+     * Turns dictionary words into keys and tries them, one of these is made for each worker so
+     * may keep working buffers and its own Directives without any locking
+     * @param <K> the type of key the cipher uses
+     */
+    public interface KeyTrier<K> {
+        /**
+         * @param word an upper-case dictionary word
+         * @return how many different keys could be made from the word, 0 to skip the word
+         */
+        int getKeyCount(String word);
+
+        /**
+         * @param word an upper-case dictionary word
+         * @param variant which of the keys to make, from 0 to getKeyCount(word)-1
+         * @return the key, or null if this variant cannot make a usable key from the word
+         */
+        K getKey(String word, int variant);
+
+        /**
+         * Try a key against the cipher text, or the reversed cipher text
+         * @param key the key to try
+         * @param reverse true if the reversed text is to be tried
+         * @return the plain text if it contains all the cribs, otherwise null
+         */
+        String tryKey(K key, boolean reverse);
+    }
+
+    /**
+     * Makes a new KeyTrier for each worker
+     * @param <K> the type of key the cipher uses
+     */
+    public interface KeyTrierFactory<K> {
+        KeyTrier<K> newKeyTrier();
+    }
+
+    /**
+     * A key that gave all the cribs
+     * @param <K> the type of key the cipher uses
+     */
+    public static class Match<K> {
+        private final String word;
+        private final K key;
+        private final boolean reverse;
+        private final String plainText;
+        private final long order; // word index, then variant, then forward before reverse
+
+        Match(String word, K key, boolean reverse, String plainText, long order) {
+            this.word = word;
+            this.key = key;
+            this.reverse = reverse;
+            this.plainText = plainText;
+            this.order = order;
+        }
+
+        public String getWord() { return word; }
+        public K getKey() { return key; }
+        public boolean isReverse() { return reverse; }
+        public String getPlainText() { return plainText; }
+    }
+
+    private final String cipherName;
+    private final CrackHandle handle;
+    private final String[] words;
+    private final KeyTrierFactory<K> factory;
+    private boolean stopAtFirst = false;
+    private boolean considerReverse = false;
+    private boolean dedupeKeys = false;
+    private int threads = 0;
+
+    // shared between the workers during a run
+    private final AtomicInteger nextChunk = new AtomicInteger();
+    private final AtomicInteger wordsTried = new AtomicInteger();
+    private final AtomicInteger wordsUsed = new AtomicInteger();
+    private final AtomicInteger matchCount = new AtomicInteger();
+    private final AtomicInteger nextCancelCheck = new AtomicInteger();
+    private final AtomicLong firstMatchOrder = new AtomicLong();
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+    private final ConcurrentHashMap<Object, Long> firstOrderOfKey = new ConcurrentHashMap<>();
+    private final List<Match<K>> matches = Collections.synchronizedList(new ArrayList<Match<K>>());
+
+    /**
+     * Create an engine for one dictionary crack
+     * @param cipherName the name of the cipher being cracked, for logging
+     * @param crackId the id of the crack, for progress and cancellation
+     * @param words the dictionary words, the order of iteration is the order words are tried
+     * @param factory makes a KeyTrier for each worker
+     */
+    public DictionaryCrackEngine(String cipherName, int crackId, Collection<String> words, KeyTrierFactory<K> factory) {
+        this.cipherName = cipherName;
+        this.handle = CrackResults.handleFor(crackId);
+        this.words = words.toArray(new String[0]);
+        this.factory = factory;
+    }
+
+    public void setStopAtFirst(boolean stopAtFirst) { this.stopAtFirst = stopAtFirst; }
+
+    public void setConsiderReverse(boolean considerReverse) { this.considerReverse = considerReverse; }
+
+    // only try each key once, keys must then have equals and hashCode, e.g. String
+    public void setDedupeKeys(boolean dedupeKeys) { this.dedupeKeys = dedupeKeys; }
+
+    // number of workers, 0 (or more than the pool has) means one per thread of the CrackPool
+    public void setThreads(int threads) { this.threads = threads; }
+
+    public boolean isCancelled() { return cancelled.get(); }
+
+    // the number of words looked at
+    public int getWordsTried() { return wordsTried.get(); }
+
+    // the number of words that made at least one key
+    public int getWordsUsed() { return wordsUsed.get(); }
+
+    public int getDictionarySize() { return words.length; }
+
+    /**
+     * Try all the words, sharing them across the workers
+     * @return the matches in dictionary order, only the first match if stopping at the first,
+     * or null if the crack was cancelled
+     */
+    public List<Match<K>> run() {
+        nextChunk.set(0);
+        wordsTried.set(0);
+        wordsUsed.set(0);
+        matchCount.set(0);
+        nextCancelCheck.set(CANCEL_CHECK_INTERVAL);
+        firstMatchOrder.set(Long.MAX_VALUE);
+        cancelled.set(false);
+        firstOrderOfKey.clear();
+        matches.clear();
+        handle.startStage(cipherName + " dictionary crack", "words", words.length);
+
+        int poolThreads = CrackPool.get().getParallelism();
+        int workerCount = (threads <= 0 || threads > poolThreads) ? poolThreads : threads;
+        final List<Worker> workers = new ArrayList<>(workerCount);
+        for (int w = 0; w < workerCount; w++) {
+            workers.add(new Worker(factory.newKeyTrier()));
+        }
+        CrackPool.get().invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(workers);
+            }
+        });
+        if (cancelled.get())
+            return null;
+
+        // put back into dictionary order, dropping keys that an earlier word also made
+        List<Match<K>> found = new ArrayList<>(matches);
+        Collections.sort(found, new Comparator<Match<K>>() {
+            @Override
+            public int compare(Match<K> m1, Match<K> m2) {
+                return Long.compare(m1.order, m2.order);
+            }
+        });
+        List<Match<K>> results = new ArrayList<>(found.size());
+        for (Match<K> match : found) {
+            if (dedupeKeys && firstOrderOfKey.get(match.key) < (match.order & ~1L))
+                continue;
+            results.add(match);
+            if (stopAtFirst)
+                break;
+        }
+        return results;
+    }
+
+    // the order of a word's key, without the forward/reverse bit
+    private static long orderOf(int wordIndex, int variant) {
+        return ((long)wordIndex << 32) | ((long)variant << 1);
+    }
+
+    // note a key was made at this order, true if no earlier word or variant made the same key
+    private boolean isFirstMakingOfKey(K key, long order) {
+        Long seen = firstOrderOfKey.putIfAbsent(key, order);
+        while (seen != null) {
+            if (seen <= order)
+                return false;
+            if (firstOrderOfKey.replace(key, seen, order))
+                return true;
+            seen = firstOrderOfKey.get(key);
+        }
+        return true;
+    }
+
+    // keep the order of the earliest match, so later words can be skipped when stopping at first
+    private void noteFirstMatch(long order) {
+        long current = firstMatchOrder.get();
+        while (order < current && !firstMatchOrder.compareAndSet(current, order)) {
+            current = firstMatchOrder.get();
+        }
+    }
+
+    // check for cancellation from whichever worker passes the next mark
+    private void checkCancelled(int tried) {
+        int mark = nextCancelCheck.get();
+        if (tried >= mark && nextCancelCheck.compareAndSet(mark, mark + CANCEL_CHECK_INTERVAL)) {
+            if (handle.isCancelled())
+                cancelled.set(true);
+        }
+    }
+
+    // takes chunks of words until there are none left, or no more are needed
+    private class Worker extends RecursiveAction {
+        private final KeyTrier<K> trier;
+
+        Worker(KeyTrier<K> trier) {
+            this.trier = trier;
+        }
+
+        @Override
+        protected void compute() {
+            while (!cancelled.get()) {
+                int start = nextChunk.getAndIncrement() * CHUNK_SIZE;
+                if (start >= words.length)
+                    return;
+                int end = Math.min(start + CHUNK_SIZE, words.length);
+                int tried = 0;
+                for (int wordIndex = start; wordIndex < end; wordIndex++) {
+                    if (stopAtFirst && orderOf(wordIndex, 0) > firstMatchOrder.get())
+                        break; // an earlier word has already matched
+                    tryWord(wordIndex);
+                    tried++;
+                }
+                handle.addDone(tried);
+                checkCancelled(wordsTried.addAndGet(tried));
+                if (stopAtFirst && orderOf(end, 0) > firstMatchOrder.get())
+                    return; // chunks are handed out in order, so all later ones can be skipped
+            }
+        }
+
+        private void tryWord(int wordIndex) {
+            String word = words[wordIndex].toUpperCase();
+            int keyCount = trier.getKeyCount(word);
+            boolean used = false;
+            for (int variant = 0; variant < keyCount; variant++) {
+                K key = trier.getKey(word, variant);
+                if (key == null)
+                    continue;
+                used = true;
+                long order = orderOf(wordIndex, variant);
+                if (dedupeKeys && !isFirstMakingOfKey(key, order))
+                    continue;
+                tryKey(word, key, false, order);
+                if (considerReverse)
+                    tryKey(word, key, true, order | 1L);
+            }
+            if (used) {
+                wordsUsed.incrementAndGet();
+                handle.addValid(1);
+            }
+        }
+
+        private void tryKey(String word, K key, boolean reverse, long order) {
+            if (stopAtFirst && order > firstMatchOrder.get())
+                return;
+            String plainText = trier.tryKey(key, reverse);
+            if (plainText != null) {
+                matchCount.incrementAndGet();
+                handle.addMatches(1);
+                matches.add(new Match<>(word, key, reverse, plainText, order));
+                if (stopAtFirst)
+                    noteFirstMatch(order);
+            }
+        }
+    }
+}
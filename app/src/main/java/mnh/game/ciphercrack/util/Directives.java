@@ -39,7 +39,7 @@ public class Directives implements Parcelable {
     private boolean stopAtFirst;        // when cracking, stop at first match
     private boolean considerReverse;    // when cracking, look at the reverse cipherText too
     private CrackMethod crackMethod;    // used only when cracking any cipher
-    // if any more, add to Parcel methods below...
+    // if any more, add to Parcel methods and copy constructor below...
 
     // needed by Parcelable interface, to recreate the passed data
     public static final Parcelable.Creator CREATOR = new Parcelable.Creator() {
@@ -59,6 +59,30 @@ public class Directives implements Parcelable {
         crackMethod = CrackMethod.NONE;
     }
 
+    // a copy of another set of directives, e.g. so each thread of a crack can have its own
+    public Directives(Directives other) {
+        language = other.language;
+        alphabet = other.alphabet;
+        cribs = other.cribs;
+        paddingChars = other.paddingChars;
+        shift = other.shift;
+        valueA = other.valueA;
+        valueB = other.valueB;
+        rails = other.rails;
+        keywordLength = other.keywordLength;
+        keyword = other.keyword;
+        digits = other.digits;
+        separator = other.separator;
+        colHeading = other.colHeading;
+        numberSize = other.numberSize;
+        permutation = other.permutation;
+        charsPerCell = other.charsPerCell;
+        readAcross = other.readAcross;
+        stopAtFirst = other.stopAtFirst;
+        considerReverse = other.considerReverse;
+        crackMethod = other.crackMethod;
+    }
+
     @Override
     public int describeContents() {
         return 0;
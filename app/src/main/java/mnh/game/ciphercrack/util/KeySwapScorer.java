@@ -0,0 +1,40 @@
+package mnh.game.ciphercrack.util;
+
+/**
+ * Measures the fitness of a decode as letters of the key are swapped, without decoding and
+ * measuring the whole text for each swap. A climb tries one or more swaps, then either commits
+ * them or rolls them back, which is cheap as most swaps are rejected.
+ * Ciphers that can do this return one from Cipher.getKeySwapScorer, one is needed per thread
+ */
+public interface KeySwapScorer {
+
+    /**
+     * Start again from a new key, anything not committed is lost
+     * @param key the key to measure
+     * @return the fitness of the decode with the key, bigger is better
+     */
+    double setKey(String key);
+
+    /**
+     * Swap two letters of the key, as Climb.mutateKey does, the swap is pending until committed
+     * @param first the position of one letter in the key
+     * @param second the position of the other letter in the key
+     * @return the fitness of the decode with the key after the swap, bigger is better
+     */
+    double trySwap(int first, int second);
+
+    /**
+     * Keep the swaps made since the last commit or setKey
+     */
+    void commit();
+
+    /**
+     * Undo the swaps made since the last commit or setKey
+     */
+    void rollback();
+
+    /**
+     * @return the key as it is now, including any pending swaps
+     */
+    String getKey();
+}
@@ -0,0 +1,435 @@
+package mnh.game.ciphercrack.util;
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import mnh.game.ciphercrack.cipher.Cipher;
+import mnh.game.ciphercrack.language.Language;
+import mnh.game.ciphercrack.services.CrackHandle;
+import mnh.game.ciphercrack.services.CrackResults;
+
+/**
+ * Simulated anealing with several independent chains run at once in the CrackPool.
+ * Each chain mutates its key and accepts a worse key with probability exp(-drop/T), where the
+ * temperature T starts at a level found by sampling the fitness of random mutations and cools
+ * geometrically, so early on a chain can leave a local optimum and later it settles down.
+ * From time to time the lagging chains move to the best key found by any chain, and all chains
+ * stop as soon as any one of them finds a decode with all the cribs. A chain's best key, when
+ * it has the cribs or the chain has cooled, is finished off with a simple climb of letter swaps.
+ * Where the cipher gives a KeySwapScorer, swaps are measured by it rather than by a full
+ * decode, and rejected swaps are rolled back in it.
+ * Takes the same properties as the other climbs in Climb, plus CLIMB_CHAINS, the number of
+ * chains to run, which if not given is one per thread of the CrackPool (but at least MIN_CHAINS)
+ */
+public class ParallelAnnealing {
+
+    private static final String TAG = "CrackClimb";
+
+    // at least this many chains are run, on fewer threads they are restarts run in turn
+    private static final int MIN_CHAINS = 4;
+
+    // how many steps a chain takes between looking at the other chains
+    private static final int MIGRATE_INTERVAL = 500;
+
+    // how many random mutations are measured to set the start temperature
+    private static final int SAMPLE_MUTATIONS = 50;
+
+    // a drop in fitness of the average size is accepted this often at the start...
+    private static final double START_ACCEPTANCE = 0.5;
+
+    // ...and the temperature falls to this fraction of the start by the end
+    private static final double END_TEMPERATURE_FRACTION = 0.01;
+
+    private final String text;
+    private final Cipher cipher;
+    private final String alphabet;
+    private final Language language;
+    private final int numberSize;
+    private final Set<String> cribs;
+    private final CrackHandle handle;
+    private final int startSwaps;
+    private final int cycles;
+
+    // shared between the chains
+    private final AtomicBoolean stop = new AtomicBoolean(false);
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+    private final AtomicInteger iterations = new AtomicInteger(0);
+    private final StringBuilder activity = new StringBuilder();
+    private double[] chainBestMeasures;
+    private String bestKey;
+    private String bestDecode = "";
+    private double bestMeasure = -Double.MAX_VALUE;
+    private String cribKey = null;
+    private String cribDecode = null;
+
+    private ParallelAnnealing(String text, Cipher cipher, Properties props, int crackId) {
+        this.text = text;
+        this.cipher = cipher;
+        this.handle = CrackResults.handleFor(crackId);
+        this.alphabet = props.getProperty(Climb.CLIMB_ALPHABET);
+        this.language = Language.instanceOf(props.getProperty(Climb.CLIMB_LANGUAGE));
+        this.numberSize = props.getProperty(Climb.CLIMB_NUMBER_SIZE) == null
+                ? 0 : Integer.parseInt(props.getProperty(Climb.CLIMB_NUMBER_SIZE));
+        this.cribs = Cipher.getCribSet(props.getProperty(Climb.CLIMB_CRIBS));
+        this.startSwaps = Integer.parseInt(props.getProperty(Climb.CLIMB_TEMPERATURE));
+        this.cycles = Integer.parseInt(props.getProperty(Climb.CLIMB_CYCLES));
+    }
+
+    /**
+     * Apply simulated anealing with several chains at once. Each chain takes CLIMB_TEMPERATURE
+     * stages of CLIMB_CYCLES steps, swapping as many letters of the key as the stage number
+     * (as Climb.mutateKey does), from CLIMB_TEMPERATURE swaps down to one
+     * @param text the text to be analysed and decoded
+     * @param cipher the cipher being used (e.g. Keyword Substitution)
+     * @param props the properties required for this climb, on return the best key and decode
+     *              found and the activity (explain) of the climb
+     * @param crackId the identifier for the crack attempt we're doing, used to update progress
+     * @return true if a decode with all cribs was found, this is then the best key and decode
+     */
+    public static boolean doAnnealing(String text, Cipher cipher, Properties props, int crackId) {
+        props.remove(Climb.CLIMB_BEST_KEYWORD);
+        props.remove(Climb.CLIMB_BEST_DECODE);
+        ParallelAnnealing annealing = new ParallelAnnealing(text, cipher, props, crackId);
+        int chains = Math.max(MIN_CHAINS, CrackPool.get().getParallelism());
+        if (props.getProperty(Climb.CLIMB_CHAINS) != null)
+            chains = Math.max(1, Integer.parseInt(props.getProperty(Climb.CLIMB_CHAINS)));
+        return annealing.run(props.getProperty(Climb.CLIMB_START_KEYWORD), chains, props);
+    }
+
+    private boolean run(String startKey, int chainCount, Properties props) {
+        String msg = "Started simulated anealing with " + chainCount + " chains of ("
+                + startSwaps + "x" + cycles + ") for " + cipher.getCipherName() + " with start key " + startKey + ".\n";
+        handle.startStage("Annealing " + chainCount + " chains for " + cipher.getCipherName(), "steps",
+                (long)chainCount * startSwaps * cycles);
+        activity.append(msg);
+
+        // the first chain starts at the given key, the others are spread around it
+        final List<Chain> chains = new ArrayList<>(chainCount);
+        chainBestMeasures = new double[chainCount];
+        Arrays.fill(chainBestMeasures, -Double.MAX_VALUE);
+        bestKey = startKey;
+        for (int c = 0; c < chainCount; c++) {
+            String chainKey = (c == 0) ? startKey : Climb.mutateKey(startKey, Math.max(startSwaps, startKey.length() / 4));
+            chains.add(new Chain(c, chainKey));
+        }
+        CrackPool.get().invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(chains);
+            }
+        });
+
+        // report the best key/measure we found overall
+        if (cancelled.get()) {
+            activity.append("Simulated Anealing was cancelled.\n");
+        } else {
+            activity.append("Found best key ")
+                    .append(bestKey)
+                    .append(" with best measure ")
+                    .append(String.format(Locale.getDefault(), "%7.6f", bestMeasure))
+                    .append(" after ")
+                    .append(iterations.get())
+                    .append(" iterations.\n");
+        }
+        CrackLog.i(TAG, "Completed parallel anealing after " + iterations.get() + " iterations, bestMeasure=" + bestMeasure + ", bestKey=" + bestKey);
+
+        // a decode with the cribs wins, even if another chain has a fitter one
+        boolean foundCribs = (cribDecode != null);
+        props.setProperty(Climb.CLIMB_BEST_KEYWORD, foundCribs ? cribKey : bestKey);
+        props.setProperty(Climb.CLIMB_BEST_DECODE, foundCribs ? cribDecode : bestDecode);
+        activity.append(foundCribs ? "Decoded text contains all cribs.\n" : "Decoded text did not contain all cribs.\n");
+        props.setProperty(Climb.CLIMB_ACTIVITY, activity.toString());
+        return foundCribs && !cancelled.get();
+    }
+
+    // a chain has a new best of its own, see if it is the best overall or has all the cribs
+    private synchronized void reportBest(int chain, String key, double measure, String decode) {
+        chainBestMeasures[chain] = measure;
+        handle.offerScore(measure);
+        if (measure > bestMeasure) {
+            bestKey = key;
+            bestMeasure = measure;
+            bestDecode = decode;
+            activity.append("Chain ")
+                    .append(chain)
+                    .append(" key ")
+                    .append(key)
+                    .append(" improves measure to ")
+                    .append(String.format(Locale.getDefault(), "%7.6f", measure))
+                    .append(", text=")
+                    .append(decode.substring(0, Math.min(Cipher.CRACK_PLAIN_LENGTH, decode.length())))
+                    .append(".\n");
+        }
+        if (cribDecode == null && Cipher.containsAllCribs(decode, cribs)) {
+            cribKey = key;
+            cribDecode = decode;
+            activity.append("Chain ")
+                    .append(chain)
+                    .append(" found all cribs with key ")
+                    .append(key)
+                    .append(".\n");
+            stop.set(true);
+        }
+    }
+
+    // the best key overall if this chain's best is in the lower half of all the chains, else null
+    private synchronized String migrate(int chain) {
+        double[] sorted = Arrays.copyOf(chainBestMeasures, chainBestMeasures.length);
+        Arrays.sort(sorted);
+        double median = sorted[sorted.length / 2];
+        if (chainBestMeasures[chain] < median && chainBestMeasures[chain] < bestMeasure) {
+            chainBestMeasures[chain] = bestMeasure;
+            return bestKey;
+        }
+        return null;
+    }
+
+    // one chain of the anealing, with its own directives and decode buffers
+    private class Chain extends RecursiveAction {
+        private final int chain;
+        private final Directives decodeDirs = new Directives();
+        private final boolean useOrdinals;
+        private final byte[] cipherOrdinals;
+        private final byte[] plainOrdinals;
+        private final KeySwapScorer scorer;
+        private int[][] tables = null;
+        private final int keyLength;
+        private String key;
+        private String trialKey;
+
+        Chain(int chain, String startKey) {
+            this.chain = chain;
+            this.key = startKey;
+            this.keyLength = startKey.length();
+            decodeDirs.setAlphabet(alphabet);
+            decodeDirs.setLanguage(language);
+            decodeDirs.setNumberSize(numberSize);
+            decodeDirs.setKeyword(startKey);
+
+            // ciphers that can score a swap without a full decode do so, others that can decode
+            // ordinals are decoded into one buffer, only the improving decodes are made into
+            // strings, the rest need a string decode each time
+            scorer = cipher.getKeySwapScorer(text, decodeDirs);
+            useOrdinals = scorer == null && cipher.getDecodeTableCount(decodeDirs) > 0;
+            cipherOrdinals = useOrdinals ? Cipher.toOrdinals(text, alphabet) : null;
+            plainOrdinals = useOrdinals ? new byte[cipherOrdinals.length] : null;
+        }
+
+        // decode with the key and measure the fitness of the decode
+        private double measure(String measureKey) {
+            decodeDirs.setKeyword(measureKey);
+            if (useOrdinals) {
+                int tableCount = cipher.getDecodeTableCount(decodeDirs);
+                tables = Cipher.ensureDecodeTables(tables, tableCount, alphabet.length());
+                cipher.fillDecodeTables(decodeDirs, tables);
+                Cipher.decodeOrdinals(cipherOrdinals, cipherOrdinals.length, tables, tableCount, plainOrdinals);
+                return cipher.getFitness(plainOrdinals, plainOrdinals.length, decodeDirs);
+            } else if (scorer != null) {
+                return scorer.setKey(measureKey);
+            } else {
+                return cipher.getFitness(cipher.decode(text, decodeDirs), decodeDirs);
+            }
+        }
+
+        private String decode(String decodeKey) {
+            decodeDirs.setKeyword(decodeKey);
+            return cipher.decode(text, decodeDirs);
+        }
+
+        // move to a key, making it the one that is mutated
+        private double moveTo(String newKey) {
+            key = newKey;
+            return measure(newKey);
+        }
+
+        // swap random letters of the current key and measure it, pending accept or reject
+        private double mutate(int swaps) {
+            if (scorer == null) {
+                trialKey = Climb.mutateKey(key, swaps);
+                return measure(trialKey);
+            }
+            ThreadLocalRandom rand = ThreadLocalRandom.current();
+            double trialMeasure = 0.0;
+            for (int i = 0; i < swaps; i++) {
+                int first = rand.nextInt(0, keyLength);
+                int second;
+                do {
+                    second = rand.nextInt(0, keyLength);
+                } while (first == second);
+                trialMeasure = scorer.trySwap(first, second);
+            }
+            return trialMeasure;
+        }
+
+        private void accept() {
+            if (scorer == null) {
+                key = trialKey;
+            } else {
+                scorer.commit();
+                key = null; // the scorer holds the key, only made into a string when needed
+            }
+        }
+
+        private void reject() {
+            if (scorer != null)
+                scorer.rollback();
+        }
+
+        private String getKey() {
+            if (key == null)
+                key = scorer.getKey();
+            return key;
+        }
+
+        // the temperature at which a typical drop in fitness from one mutation is accepted
+        // with the start acceptance, found by measuring some random mutations of the start key
+        private double startTemperature(double startMeasure) {
+            double totalDrop = 0.0;
+            int drops = 0;
+            for (int i = 0; i < SAMPLE_MUTATIONS; i++) {
+                double drop = startMeasure - mutate(1);
+                reject();
+                if (drop > 0.0) {
+                    totalDrop += drop;
+                    drops++;
+                }
+            }
+            if (drops == 0)
+                return 1.0;
+            return -(totalDrop / drops) / Math.log(START_ACCEPTANCE);
+        }
+
+        @Override
+        protected void compute() {
+            int steps = 0;
+            try {
+                steps = anneal();
+            } finally {
+                iterations.addAndGet(steps);
+            }
+        }
+
+        // run the chain through its stages, returning the number of steps taken
+        private int anneal() {
+            ThreadLocalRandom rand = ThreadLocalRandom.current();
+            double measure = moveTo(key);
+            String chainBestKey = key;
+            double chainBestMeasure = measure;
+            reportBest(chain, key, measure, decode(key));
+
+            int totalSteps = startSwaps * cycles;
+            double temperature = startTemperature(measure);
+            double cooling = Math.pow(END_TEMPERATURE_FRACTION, 1.0 / Math.max(1, totalSteps));
+            int step = 0;
+            for (int swaps = startSwaps; swaps > 0; swaps--) {
+                for (int cycle = 0; cycle < cycles; cycle++, step++) {
+                    if (stop.get())
+                        return step;
+                    if (step % 100 == 0) {
+                        // drop out of the crack attempt if we've been cancelled
+                        if (handle.isCancelled()) {
+                            cancelled.set(true);
+                            stop.set(true);
+                            return step;
+                        }
+                        if (step > 0)
+                            handle.addDone(100);
+                    }
+                    if (step % MIGRATE_INTERVAL == MIGRATE_INTERVAL - 1) {
+                        String migrant = migrate(chain);
+                        if (migrant != null) {
+                            measure = moveTo(migrant);
+                        }
+                    }
+
+                    // metropolis: always take a fitter key, take a less fit one now and again
+                    double trialMeasure = mutate(swaps);
+                    if (trialMeasure >= measure
+                            || rand.nextDouble() < Math.exp((trialMeasure - measure) / temperature)) {
+                        accept();
+                        measure = trialMeasure;
+                        if (measure > chainBestMeasure) {
+                            chainBestKey = getKey();
+                            chainBestMeasure = measure;
+                            String decode = decode(chainBestKey);
+                            if (Cipher.containsAllCribs(decode, cribs)) {
+                                // the cribs are there, make sure the rest of the key is right too
+                                String current = getKey();
+                                chainBestKey = polish(chainBestKey);
+                                chainBestMeasure = measure(chainBestKey);
+                                decode = decode(chainBestKey);
+                                measure = moveTo(current);
+                            }
+                            reportBest(chain, chainBestKey, chainBestMeasure, decode);
+                        }
+                    } else {
+                        reject();
+                    }
+                    temperature *= cooling;
+                }
+            }
+
+            // the chain has cooled, finish with a climb of the best key it found
+            chainBestKey = polish(chainBestKey);
+            reportBest(chain, chainBestKey, measure(chainBestKey), decode(chainBestKey));
+            return step;
+        }
+
+        // hill climb by swapping each pair of letters in the key, keeping any that improve
+        // the fitness, until no swap improves it
+        private String polish(String startKey) {
+            if (scorer != null)
+                return polishWithScorer(startKey);
+            char[] polishKey = startKey.toCharArray();
+            double measure = measure(startKey);
+            boolean improved = true;
+            while (improved && !cancelled.get()) {
+                improved = false;
+                for (int first = 0; first < polishKey.length - 1; first++) {
+                    for (int second = first + 1; second < polishKey.length; second++) {
+                        char swap = polishKey[first]; polishKey[first] = polishKey[second]; polishKey[second] = swap;
+                        double trialMeasure = measure(String.valueOf(polishKey));
+                        if (trialMeasure > measure) {
+                            measure = trialMeasure;
+                            improved = true;
+                        } else {
+                            swap = polishKey[first]; polishKey[first] = polishKey[second]; polishKey[second] = swap;
+                        }
+                    }
+                }
+            }
+            return String.valueOf(polishKey);
+        }
+
+        // as polish, but each swap is measured by the scorer
+        private String polishWithScorer(String startKey) {
+            double measure = scorer.setKey(startKey);
+            boolean improved = true;
+            while (improved && !cancelled.get()) {
+                improved = false;
+                for (int first = 0; first < startKey.length() - 1; first++) {
+                    for (int second = first + 1; second < startKey.length(); second++) {
+                        double trialMeasure = scorer.trySwap(first, second);
+                        if (trialMeasure > measure) {
+                            scorer.commit();
+                            measure = trialMeasure;
+                            improved = true;
+                        } else {
+                            scorer.rollback();
+                        }
+                    }
+                }
+            }
+            return scorer.getKey();
+        }
+    }
+}
@@ -1,37 +1,69 @@
 package mnh.game.ciphercrack.util;
 
-import android.content.Context;
-import android.content.SharedPreferences;
-import android.preference.PreferenceManager;
-
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * The user's settings, read by name. Where they are kept is up to the platform: the app gives a
+ * Source that reads the Android preferences when it starts, elsewhere, e.g. in unit tests or on
+ * a server, there is no Source and the defaults are used
+ */
 public class Settings {
 
+    /**
+     * Where the settings are kept
+     */
+    public interface Source {
+        /**
+         * @param prefName the name of the setting, e.g. pref_cribs
+         * @param defaultString the value to use if the setting is not there
+         * @return the value of the setting
+         */
+        String getString(String prefName, String defaultString);
+    }
+
     // The singleton instance
     private static Settings instance = null;
 
+    // the names of the settings, the same as the preference keys in the app's resources
+    public static final String PREF_CRIBS = "pref_cribs";
+    public static final String PREF_ALPHABET_PLAIN = "pref_alphabet_plain";
+    public static final String PREF_ALPHABET_CIPHER = "pref_alphabet_cipher";
+    public static final String PREF_LANGUAGE = "pref_language";
+    public static final String PREF_PADDING_CHARS = "pref_padding_chars";
+    public static final String PREF_LIMIT_GRAMS = "pref_limit_grams";
+    public static final String PREF_LIMIT_PERM_BRUTE_FORCE_COLS = "pref_limit_perm_brute_force_cols";
+    public static final String PREF_LIMIT_RAILFENCE_RAILS = "pref_limit_railfence_rails";
+    public static final String PREF_LIMIT_AMSCO_COLS = "pref_limit_amsco_cols";
+    public static final String PREF_LIMIT_CRACK_THREADS = "pref_limit_crack_threads";
+
     public static final String DEFAULT_ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
     public static final String DEFAULT_LANGUAGE = "English";
     public static final String DEFAULT_PADDING_CHARS = " \t\n";
     public static final String DEFAULT_LIMIT_GRAMS = "40";
-    public static final String DEFAULT_LIMIT_PERM_COLS = "9";
+    public static final String DEFAULT_LIMIT_PERM_COLS = "12";
     public static final String DEFAULT_LIMIT_RAILFENCE_RAILS = "20";
+    public static final String DEFAULT_LIMIT_AMSCO_COLS = "9";
+    public static final String DEFAULT_LIMIT_CRACK_THREADS = "0";
     private static final String DEFAULT_CRIBS = "the,and,have";
     private static final Map<String, String> defaultSettings = new HashMap<>();
 
     static {
-        defaultSettings.put("pref_cribs", DEFAULT_CRIBS);
-        defaultSettings.put("pref_alphabet_plain", DEFAULT_ALPHABET);
-        defaultSettings.put("pref_alphabet_cipher", DEFAULT_ALPHABET);
-        defaultSettings.put("pref_language", DEFAULT_LANGUAGE);
-        defaultSettings.put("pref_padding_chars", DEFAULT_PADDING_CHARS);
-        defaultSettings.put("pref_limit_grams", DEFAULT_LIMIT_GRAMS);
-        defaultSettings.put("pref_limit_perm_brute_force_cols", DEFAULT_LIMIT_PERM_COLS);
-        defaultSettings.put("pref_limit_railfence_rails", DEFAULT_LIMIT_RAILFENCE_RAILS);
+        defaultSettings.put(PREF_CRIBS, DEFAULT_CRIBS);
+        defaultSettings.put(PREF_ALPHABET_PLAIN, DEFAULT_ALPHABET);
+        defaultSettings.put(PREF_ALPHABET_CIPHER, DEFAULT_ALPHABET);
+        defaultSettings.put(PREF_LANGUAGE, DEFAULT_LANGUAGE);
+        defaultSettings.put(PREF_PADDING_CHARS, DEFAULT_PADDING_CHARS);
+        defaultSettings.put(PREF_LIMIT_GRAMS, DEFAULT_LIMIT_GRAMS);
+        defaultSettings.put(PREF_LIMIT_PERM_BRUTE_FORCE_COLS, DEFAULT_LIMIT_PERM_COLS);
+        defaultSettings.put(PREF_LIMIT_RAILFENCE_RAILS, DEFAULT_LIMIT_RAILFENCE_RAILS);
+        defaultSettings.put(PREF_LIMIT_AMSCO_COLS, DEFAULT_LIMIT_AMSCO_COLS);
+        defaultSettings.put(PREF_LIMIT_CRACK_THREADS, DEFAULT_LIMIT_CRACK_THREADS);
     }
 
+    // where the settings are kept, null if only the defaults are to be used
+    private volatile Source source = null;
+
     // no one can make an instance but me, and I only want one instance
     private Settings() {
     }
@@ -43,38 +75,21 @@ public class Settings {
         return instance;
     }
 
-    public String getString(Context context, String prefName, String defaultString) {
-        if (context != null) { // could be in unit tests
-            SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
-            return prefs.getString(prefName, defaultString);
-        } else {
-            return defaultString;
-        }
+    /**
+     * Say where the settings are kept, done by the app when it starts
+     * @param source where to read the settings, or null to use only the defaults
+     */
+    public void setSource(Source source) {
+        this.source = source;
     }
 
-    public String getString(Context context, String prefName) {
-        String defaultString = defaultSettings.get(prefName);
-        if (context != null) { // could be in unit tests
-            SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
-            return prefs.getString(prefName, (defaultString != null) ? defaultString : "");
-        } else {
-            return (defaultString != null) ? defaultString : "";
-        }
-    }
-
-    public String getString(Context context, int prefId) {
-        if (context != null) {
-            return getString(context, context.getString(prefId));
-        } else {
-            return "";
-        }
+    public String getString(String prefName, String defaultString) {
+        Source current = source;
+        return (current == null) ? defaultString : current.getString(prefName, defaultString);
     }
 
-    public String getString(Context context, int prefId, String defaultString) {
-        if (context != null) {
-            return getString(context, context.getString(prefId), defaultString);
-        } else {
-            return defaultString;
-        }
+    public String getString(String prefName) {
+        String defaultString = defaultSettings.get(prefName);
+        return getString(prefName, (defaultString != null) ? defaultString : "");
     }
 }
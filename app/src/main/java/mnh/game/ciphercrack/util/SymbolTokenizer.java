@@ -0,0 +1,224 @@
+package mnh.game.ciphercrack.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Split a cipher text of symbols into tokens in a single pass, for ciphers like Binary, Morse
+ * and Polybius where a group of symbols stands for one plain letter. A token ends at a
+ * separator, when it has a fixed number of symbols, or (with neither) at a character that is not
+ * a symbol. The text is read one character at a time, from a CharSequence or a Reader, and
+ * nothing is copied except the token being built, so the time taken is linear in the length of
+ * the text and the memory needed is that of the longest token.
+ * Each token is given to a Listener as the ordinals of its symbols, the symbols may differ for
+ * each position in the token, e.g. row then column headings. Symbols and separators are matched
+ * ignoring case.
+ */
+public class SymbolTokenizer {
+
+    /**
+     * What to do with a character that is not a symbol, a separator or skipped
+     */
+    public enum Others {
+        IN_TOKEN,   // it is part of the token, with ordinal -1
+        SKIPPED,    // it is ignored
+        PASSED      // it is given to the listener, and ends a token that has no fixed width
+    }
+
+    /**
+     * Receives the tokens, and anything else asked for, in the order they are in the text
+     */
+    public interface Listener {
+        /**
+         * A token, the last token of the text may be shorter than the width
+         * @param ordinals the ordinal of each symbol in the symbols for its position, -1 if not
+         *                 a symbol, only valid until this returns
+         * @param chars the characters of the token as they were in the text, only valid until
+         *              this returns
+         * @param length the number of symbols in the token
+         */
+        void token(byte[] ordinals, char[] chars, int length) throws IOException;
+
+        /**
+         * A separator at the start of the text or straight after another separator
+         */
+        void emptyToken() throws IOException;
+
+        /**
+         * A character that is passed through, see Others.PASSED
+         * @param c the character as it was in the text
+         */
+        void other(char c) throws IOException;
+    }
+
+    /**
+     * The usual characters to skip, whitespace from spacing and line breaks
+     */
+    public static final String WHITESPACE = " \t\n\r";
+
+    private static final int READ_BUFFER_SIZE = 4096;
+
+    private final String[] symbols;
+    private final String separator;
+    private final int width;
+    private final String skipped;
+    private final Others others;
+
+    // state during a tokenize: the token so far, and characters that may be part of a separator
+    private Listener listener;
+    private byte[] ordinals = new byte[16];
+    private char[] chars = new char[16];
+    private int length;
+    private final char[] pending;
+    private int pendingLength;
+
+    /**
+     * Set up a tokenizer
+     * @param symbols the symbols allowed at each position of a token, in order of ordinal, used
+     *                in turn, e.g. { "01" } for binary or { "ABCDE", "VWXYZ" } for a grid
+     * @param separator the text between tokens, or empty if there is none
+     * @param width the number of symbols in each token, or 0 if a token ends at a separator, or
+     *              at another character with Others.PASSED
+     * @param skipped characters that are ignored, unless in the separator, e.g. whitespace
+     * @param others what to do with any other character
+     */
+    public SymbolTokenizer(String[] symbols, String separator, int width, String skipped, Others others) {
+        this.symbols = new String[symbols.length];
+        for (int i = 0; i < symbols.length; i++)
+            this.symbols[i] = symbols[i].toUpperCase();
+        this.separator = (separator == null) ? "" : separator.toUpperCase();
+        this.width = width;
+        StringBuilder skip = new StringBuilder(skipped.length());
+        for (int i = 0; i < skipped.length(); i++) {
+            if (this.separator.indexOf(Character.toUpperCase(skipped.charAt(i))) < 0)
+                skip.append(skipped.charAt(i));
+        }
+        this.skipped = skip.toString();
+        this.others = others;
+        this.pending = new char[this.separator.length()];
+    }
+
+    /**
+     * Split a text into tokens
+     * @param text the text to be split
+     * @param listener given the tokens in turn
+     */
+    public void tokenize(CharSequence text, Listener listener) throws IOException {
+        start(listener);
+        for (int pos = 0; pos < text.length(); pos++)
+            accept(text.charAt(pos));
+        finish();
+    }
+
+    /**
+     * Split a text into tokens as it is read
+     * @param text the text to be split, read to the end but not closed
+     * @param listener given the tokens in turn
+     */
+    public void tokenize(Reader text, Listener listener) throws IOException {
+        start(listener);
+        char[] buffer = new char[READ_BUFFER_SIZE];
+        int read;
+        while ((read = text.read(buffer)) >= 0) {
+            for (int pos = 0; pos < read; pos++)
+                accept(buffer[pos]);
+        }
+        finish();
+    }
+
+    private void start(Listener listener) {
+        this.listener = listener;
+        length = 0;
+        pendingLength = 0;
+    }
+
+    // look at the next character, holding back any that may be the start of a separator
+    private void accept(char c) throws IOException {
+        char upper = Character.toUpperCase(c);
+        if (skipped.indexOf(c) >= 0)
+            return;
+        if (others == Others.SKIPPED && separator.indexOf(upper) < 0 && !isSymbol(upper))
+            return;
+        if (pending.length == 0) {
+            take(c, upper);
+            return;
+        }
+        pending[pendingLength++] = c;
+        while (pendingLength > 0) {
+            if (isSeparatorStart()) {
+                if (pendingLength == pending.length) {
+                    pendingLength = 0;
+                    separated();
+                }
+                return;
+            }
+            // not a separator after all, the first character held back is taken as it is
+            char first = pending[0];
+            System.arraycopy(pending, 1, pending, 0, --pendingLength);
+            take(first, Character.toUpperCase(first));
+        }
+    }
+
+    private boolean isSeparatorStart() {
+        for (int i = 0; i < pendingLength; i++) {
+            if (Character.toUpperCase(pending[i]) != separator.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    private boolean isSymbol(char upper) {
+        for (String allowed : symbols) {
+            if (allowed.indexOf(upper) >= 0)
+                return true;
+        }
+        return false;
+    }
+
+    // a character that is not part of a separator
+    private void take(char c, char upper) throws IOException {
+        int ordinal = symbols[length % symbols.length].indexOf(upper);
+        if (ordinal < 0) {
+            if (others == Others.SKIPPED)
+                return;
+            if (others == Others.PASSED) {
+                if (width == 0 && length > 0)
+                    endToken();
+                listener.other(c);
+                return;
+            }
+        }
+        if (length == ordinals.length) {
+            ordinals = Arrays.copyOf(ordinals, length * 2);
+            chars = Arrays.copyOf(chars, length * 2);
+        }
+        ordinals[length] = (byte)ordinal;
+        chars[length++] = c;
+        if (length == width)
+            endToken();
+    }
+
+    private void separated() throws IOException {
+        if (length > 0)
+            endToken();
+        else
+            listener.emptyToken();
+    }
+
+    private void endToken() throws IOException {
+        int tokenLength = length;
+        length = 0;
+        listener.token(ordinals, chars, tokenLength);
+    }
+
+    // anything held back is not a separator, and the last token may be short
+    private void finish() throws IOException {
+        for (int i = 0; i < pendingLength; i++)
+            take(pending[i], Character.toUpperCase(pending[i]));
+        pendingLength = 0;
+        if (length > 0)
+            endToken();
+        listener = null;
+    }
+}
@@ -0,0 +1,294 @@
+package mnh.game.ciphercrack.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The transposition ciphers only move letters about, so decoding a text of a given length with
+ * given parameters always takes the letter at the same place in the cipher text for each place in
+ * the plain text. A plan holds those places, worked out once, so that decoding is one pass over
+ * the text. A place may instead hold a character to put in the plain text, e.g. the padding that
+ * Permutation adds to fill the last row, stored as -(character+1).
+ * The most recently used plans are kept in a cache shared by all the ciphers, so a brute force
+ * crack over rails or cycle lengths, or a user decoding the same text again, builds each one once
+ */
+public final class TranspositionPlan {
+
+    // how many plans are kept, the least recently used is dropped when a new one is added
+    static final int CACHE_SIZE = 64;
+
+    private static final Map<String, TranspositionPlan> CACHE =
+            new LinkedHashMap<String, TranspositionPlan>(CACHE_SIZE * 2, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, TranspositionPlan> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private final int[] source;     // where in the cipher text each plain text character comes from
+
+    private TranspositionPlan(int[] source) {
+        this.source = source;
+    }
+
+    /**
+     * Decode a text with this plan
+     * @param text the cipher text, the same length as the plan was made for
+     * @return the plain text
+     */
+    public String apply(CharSequence text) {
+        char[] result = new char[source.length];
+        for (int pos = 0; pos < source.length; pos++) {
+            int from = source[pos];
+            result[pos] = (from >= 0) ? text.charAt(from) : (char)(-from - 1);
+        }
+        return String.valueOf(result);
+    }
+
+    /**
+     * @return the number of characters in the text this plan decodes to
+     */
+    public int length() {
+        return source.length;
+    }
+
+    // the plan made earlier for these parameters, or null if none or it has been dropped
+    private static TranspositionPlan lookup(String key) {
+        synchronized (CACHE) {
+            return CACHE.get(key);
+        }
+    }
+
+    private static TranspositionPlan store(String key, int[] source) {
+        TranspositionPlan plan = new TranspositionPlan(source);
+        synchronized (CACHE) {
+            CACHE.put(key, plan);
+        }
+        return plan;
+    }
+
+    // the place a character is to be put in the plain text as is, rather than taken from the text
+    private static int fill(char c) {
+        return -c - 1;
+    }
+
+    /**
+     * Plan for decoding Railfence: the text is read along each rail in turn, and the plain text
+     * is read in a zig-zag down and up the rails
+     * @param rails the number of rails
+     * @param length the length of the cipher text
+     * @return the plan, from the cache if made before
+     */
+    public static TranspositionPlan railfence(int rails, int length) {
+        String key = "R" + rails + "/" + length;
+        TranspositionPlan plan = lookup(key);
+        if (plan != null)
+            return plan;
+
+        // the rail of each place in the zig-zag and how many places each rail has
+        int[] railOf = new int[length];
+        int[] railLength = new int[Math.max(1, rails)];
+        for (int pos = 0, rail = 0, direction = -1; pos < length; pos++) {
+            railOf[pos] = rail;
+            railLength[rail]++;
+            if (rails < 2)
+                continue;
+            if (rail == 0 || rail == rails - 1)
+                direction = -direction;
+            rail += direction;
+        }
+        // the rails follow each other in the cipher text, then the zig-zag takes from each in turn
+        int[] next = new int[railLength.length];
+        for (int rail = 1; rail < railLength.length; rail++)
+            next[rail] = next[rail - 1] + railLength[rail - 1];
+        int[] source = new int[length];
+        for (int pos = 0; pos < length; pos++)
+            source[pos] = next[railOf[pos]]++;
+        return store(key, source);
+    }
+
+    /**
+     * Plan for decoding Skytale: every cycleLength'th letter from the first, then from the
+     * second, and so on
+     * @param cycleLength the number of letters in a turn of the staff
+     * @param length the length of the cipher text
+     * @return the plan, from the cache if made before
+     */
+    public static TranspositionPlan skytale(int cycleLength, int length) {
+        String key = "S" + cycleLength + "/" + length;
+        TranspositionPlan plan = lookup(key);
+        if (plan != null)
+            return plan;
+
+        int[] source = new int[length];
+        int pos = 0;
+        for (int start = 0; start < cycleLength; start++) {
+            for (int from = start; from < length; from += cycleLength)
+                source[pos++] = from;
+        }
+        return store(key, source);
+    }
+
+    /**
+     * Plan for decoding Permutation: read across, each row of the text is put back into its
+     * original column order, the last row padded with X. Read down, the text is the columns one
+     * after the other, each put back in its place in the rows, any letters beyond whole rows are
+     * left as NUL characters.
+     * @param permutation the order the columns were read in by the encode
+     * @param readAcross whether the encode read across the rows rather than down the columns
+     * @param length the length of the cipher text
+     * @return the plan, from the cache if made before
+     */
+    public static TranspositionPlan permutation(int[] permutation, boolean readAcross, int length) {
+        StringBuilder keyBuilder = new StringBuilder(permutation.length * 3 + 8);
+        keyBuilder.append(readAcross ? "PA" : "PD");
+        for (int column : permutation)
+            keyBuilder.append(column).append(',');
+        String key = keyBuilder.append('/').append(length).toString();
+        TranspositionPlan plan = lookup(key);
+        if (plan != null)
+            return plan;
+
+        int columns = permutation.length;
+        int[] inverse = new int[columns];
+        for (int c = 0; c < columns; c++)
+            inverse[permutation[c]] = c;
+        int[] source;
+        if (readAcross) {
+            int padded = ((length + columns - 1) / columns) * columns;
+            source = new int[padded];
+            for (int rowStart = 0; rowStart < padded; rowStart += columns) {
+                for (int c = 0; c < columns; c++) {
+                    int from = rowStart + inverse[c];
+                    source[rowStart + c] = (from < length) ? from : fill('X');
+                }
+            }
+        } else {
+            source = new int[length];
+            int rows = length / columns;
+            for (int row = 0; row < rows; row++) {
+                for (int c = 0; c < columns; c++)
+                    source[row * columns + c] = inverse[c] * rows + row;
+            }
+            for (int pos = rows * columns; pos < length; pos++)
+                source[pos] = fill('\0');
+        }
+        return store(key, source);
+    }
+
+    /**
+     * Plan for decoding Amsco: the cells of the grid hold 1 or more letters in turn, as given
+     * by the chars per cell, the text is read down the columns in the order of the permutation
+     * and the plain text is read across the rows
+     * @param permutation the order the columns were read in by the encode
+     * @param charsPerCell the number of letters in each cell in turn, e.g. 1,2
+     * @param length the length of the cipher text, without any spaces or punctuation
+     * @return the plan, from the cache if made before
+     */
+    public static TranspositionPlan amsco(int[] permutation, int[] charsPerCell, int length) {
+        StringBuilder keyBuilder = new StringBuilder(permutation.length * 3 + 16);
+        keyBuilder.append('A');
+        for (int column : permutation)
+            keyBuilder.append(column).append(',');
+        keyBuilder.append(':');
+        for (int chars : charsPerCell)
+            keyBuilder.append(chars).append(',');
+        String key = keyBuilder.append('/').append(length).toString();
+        TranspositionPlan plan = lookup(key);
+        if (plan != null)
+            return plan;
+
+        int columns = permutation.length;
+        int[][] cellLength = amscoCellLengths(columns, charsPerCell, length);
+        int rows = cellLength.length;
+        // where each cell starts in the cipher text, read down the columns in permutation order
+        int[][] cellStart = new int[rows][columns];
+        int pos = 0;
+        for (int col : permutation) {
+            for (int row = 0; row < rows; row++) {
+                cellStart[row][col] = pos;
+                pos += cellLength[row][col];
+            }
+        }
+        int[] source = new int[length];
+        int place = 0;
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < columns; col++) {
+                for (int c = 0; c < cellLength[row][col]; c++)
+                    source[place++] = cellStart[row][col] + c;
+            }
+        }
+        return store(key, source);
+    }
+
+    /**
+     * How many letters each cell of an Amsco grid holds, the chars per cell starting one further
+     * on each row, the cells after the end of the text hold none
+     * @param columns the number of columns
+     * @param charsPerCell the number of letters in each cell in turn, e.g. 1,2
+     * @param length the length of the text, without any spaces or punctuation
+     * @return the letters in each cell, by row then column
+     */
+    public static int[][] amscoCellLengths(int columns, int[] charsPerCell, int length) {
+        int rows = 0;
+        for (int pos = 0; pos < length; rows++) {
+            for (int col = 0; col < columns; col++)
+                pos += Math.min(charsPerCell[(rows + col) % charsPerCell.length], length - pos);
+        }
+        int[][] cellLength = new int[rows][columns];
+        for (int row = 0, pos = 0; row < rows; row++) {
+            for (int col = 0; col < columns; col++) {
+                int chars = Math.min(charsPerCell[(row + col) % charsPerCell.length], length - pos);
+                cellLength[row][col] = chars;
+                pos += chars;
+            }
+        }
+        return cellLength;
+    }
+
+    /**
+     * Plan for swapping the rows and columns of a text of lines: each line of the result holds
+     * the next letter of every line of the text, a space if that line has run out. The plan
+     * depends on the lengths of the lines, a line being ended by a newline
+     * @param text the text whose rows and columns are to be swapped
+     * @return the plan, from the cache if made before
+     */
+    public static TranspositionPlan swapRowsAndCols(CharSequence text) {
+        // the lines are found from the newlines, the last line need not have one
+        int lineCount = 0;
+        for (int pos = 0; pos < text.length(); pos++) {
+            if (text.charAt(pos) == '\n')
+                lineCount++;
+        }
+        boolean residual = text.length() > 0 && text.charAt(text.length() - 1) != '\n';
+        if (residual)
+            lineCount++;
+        int[] lineStart = new int[lineCount];
+        int[] lineLength = new int[lineCount];
+        StringBuilder keyBuilder = new StringBuilder(lineCount * 3 + 2).append('W');
+        int longest = 0;
+        for (int pos = 0, line = 0, start = 0; pos <= text.length() && line < lineCount; pos++) {
+            if (pos == text.length() || text.charAt(pos) == '\n') {
+                lineStart[line] = start;
+                lineLength[line] = pos - start;
+                longest = Math.max(longest, pos - start);
+                keyBuilder.append(pos - start).append(',');
+                line++;
+                start = pos + 1;
+            }
+        }
+        String key = keyBuilder.toString();
+        TranspositionPlan plan = lookup(key);
+        if (plan != null)
+            return plan;
+
+        int[] source = new int[longest * (lineCount + 1)];
+        int place = 0;
+        for (int col = 0; col < longest; col++) {
+            for (int line = 0; line < lineCount; line++)
+                source[place++] = (col < lineLength[line]) ? lineStart[line] + col : fill(' ');
+            source[place++] = fill('\n');
+        }
+        return store(key, source);
+    }
+}
@@ -189,13 +189,13 @@ public class AmscoTest {
     }
 
     @Test
-    @Ignore("Not yet implemented Crack")
     public void testCrackBruteSuccess() {
-        // attempt Brute Force crack of Permutation cipher looking for cribs in all permutations (up to 9)
+        // attempt Brute Force crack of Amsco cipher looking for cribs in all permutations (up to 9)
         int[] perm = new int[] { 0, 2, 4, 3, 1 };
         String plainText = "Call me Ishmael. Some years ago — never mind how long precisely — having little or no money in my purse, and nothing particular to interest me on shore, I thought I would sail about a little and see the watery part of the world. It is a way I have of driving off the spleen, and regulating the circulation. Whenever I find myself growing grim about the mouth; whenever it is a damp, drizzly November in my soul; whenever I find myself involuntarily pausing before coffin warehouses, and bringing up the rear of every funeral I meet; and especially whenever my hypos get such an upper hand of me, that it requires a strong moral principle to prevent me from deliberately stepping into the street, and methodically knocking people’s hats off — then, I account it high time to get to sea as soon as I can. This is my substitute for pistol and ball. With a philosophical flourish Cato throws himself upon his sword; I quietly take to the ship. There is nothing surprising in this. If they but knew it, almost all men in their degree, some time or other, cherish very nearly the same feelings towards the ocean with me.X".replaceAll("\\W","");
         Directives p = new Directives();
         p.setPermutation(perm);
+        p.setCharsPerCell(new int[] {1,2});
         p.setCrackMethod(CrackMethod.NONE);
         String reason = cipher.canParametersBeSet(p);
         assertNull("Crack Success: encode param okay", reason);
@@ -204,8 +204,10 @@ public class AmscoTest {
 
         // now attempt the crack of the text via brute force
         p.setPermutation(null);
+        p.setCharsPerCell(null);
         p.setCribs("ishmael,ocean");
         p.setCrackMethod(CrackMethod.BRUTE_FORCE);
+        p.setStopAtFirst(true);
         reason = cipher.canParametersBeSet(p);
         assertNull("Crack Success: crack param okay", reason);
 
@@ -220,17 +222,17 @@ public class AmscoTest {
         assertEquals("Crack Text", plainText, result.getPlainText());
         assertEquals("Crack Permutation", "0,2,4,3,1", decodeKeyword);
         assertNotNull("Crack Explain", explain);
-        assertEquals("Crack cipher name", "Permutation cipher (0,2,4,3,1:down)", result.getCipher().getInstanceDescription());
+        assertEquals("Crack cipher name", "Amsco cipher (0,2,4,3,1:1,2)", result.getCipher().getInstanceDescription());
     }
 
     @Test
-    @Ignore("Not yet implemented Crack")
     public void testCrackBruteReverseSuccess() {
-        // attempt Brute Force crack of Permutation cipher looking for cribs in all permutations (up to 9)
+        // attempt Brute Force crack of reversed Amsco cipher text with 2,1 chars per cell
         int[] perm = new int[] { 0, 2, 4, 3, 1 };
         String plainText = "Call me Ishmael. Some years ago — never mind how long precisely — having little or no money in my purse, and nothing particular to interest me on shore, I thought I would sail about a little and see the watery part of the world. It is a way I have of driving off the spleen, and regulating the circulation. Whenever I find myself growing grim about the mouth; whenever it is a damp, drizzly November in my soul; whenever I find myself involuntarily pausing before coffin warehouses, and bringing up the rear of every funeral I meet; and especially whenever my hypos get such an upper hand of me, that it requires a strong moral principle to prevent me from deliberately stepping into the street, and methodically knocking people’s hats off — then, I account it high time to get to sea as soon as I can. This is my substitute for pistol and ball. With a philosophical flourish Cato throws himself upon his sword; I quietly take to the ship. There is nothing surprising in this. If they but knew it, almost all men in their degree, some time or other, cherish very nearly the same feelings towards the ocean with me.X".replaceAll("\\W","");
         Directives p = new Directives();
         p.setPermutation(perm);
+        p.setCharsPerCell(new int[] {2,1});
         p.setCrackMethod(CrackMethod.NONE);
         String reason = cipher.canParametersBeSet(p);
         assertNull("Crack Success: encode param okay", reason);
@@ -239,9 +241,11 @@ public class AmscoTest {
 
         // now attempt the crack of the text via brute force
         p.setPermutation(null);
+        p.setCharsPerCell(null);
         p.setCribs("ishmael,ocean");
         p.setCrackMethod(CrackMethod.BRUTE_FORCE);
         p.setConsiderReverse(true);
+        p.setStopAtFirst(true);
         reason = cipher.canParametersBeSet(p);
         assertNull("Crack Success: crack param okay", reason);
 
@@ -259,19 +263,18 @@ public class AmscoTest {
         assertEquals("Crack Permutation", "0,2,4,3,1", decodeKeyword);
         assertNotNull("Crack Explain", explain);
         assertTrue("Crack Explain", explain.contains("REVERSE"));
-        assertEquals("Crack cipher name", "Permutation cipher (0,2,4,3,1:down)", result.getCipher().getInstanceDescription());
+        assertEquals("Crack cipher name", "Amsco cipher (0,2,4,3,1:2,1)", result.getCipher().getInstanceDescription());
     }
 
-    // this one takes around 32 seconds with max column permutations = 9
     @Test
-    @Ignore("Not yet implemented Crack")
     public void testCrackBruteFail() {
-        // attempt Brute Force crack of Permutation cipher looking for cribs in all permutations (up to 9)
+        // attempt Brute Force crack of Amsco cipher looking for cribs in all permutations (up to 9)
         // but fails as cribs are wrong
         int[] permutation = new int[] {4,2,3,1,0};
         String plainText = "Call me Ishmael. Some years ago — never mind how long precisely — having little or no money in my purse, and nothing particular to interest me on shore, I thought I would sail about a little and see the watery part of the world. It is a way I have of driving off the spleen, and regulating the circulation. Whenever I find myself growing grim about the mouth; whenever it is a damp, drizzly November in my soul; whenever I find myself involuntarily pausing before coffin warehouses, and bringing up the rear of every funeral I meet; and especially whenever my hypos get such an upper hand of me, that it requires a strong moral principle to prevent me from deliberately stepping into the street, and methodically knocking people’s hats off — then, I account it high time to get to sea as soon as I can.";
         Directives p = new Directives();
         p.setPermutation(permutation);
+        p.setCharsPerCell(new int[] {1,2});
         String reason = cipher.canParametersBeSet(p);
         assertNull("CrackFail: encode param okay", reason);
         String cipherText = cipher.encode(plainText, p);
@@ -279,6 +282,7 @@ public class AmscoTest {
 
         // now attempt the crack of the text via Brute Force, will fail die to bad cribs
         p.setPermutation(null);
+        p.setCharsPerCell(null);
         p.setCribs("banana,plantation");
         p.setCrackMethod(CrackMethod.BRUTE_FORCE);
         reason = cipher.canParametersBeSet(p);
@@ -293,7 +297,7 @@ public class AmscoTest {
         assertNull("CrackFail Text", result.getPlainText());
         assertNull("CrackFail Permutation", result.getDirectives());
         assertNotNull("CrackFail Explain", explain);
-        assertEquals("CrackFail cipher name", "Permutation cipher (n/a)", result.getCipher().getInstanceDescription());
+        assertEquals("CrackFail cipher name", "Amsco cipher (n/a:n/a)", result.getCipher().getInstanceDescription());
     }
 
     @Test
@@ -4,6 +4,9 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import java.io.IOException;
+import java.io.StringReader;
+
 import mnh.game.ciphercrack.util.CrackMethod;
 import mnh.game.ciphercrack.util.CrackResult;
 import mnh.game.ciphercrack.util.Directives;
@@ -184,6 +187,63 @@ public class BinaryTest {
         assertEquals("Decoding short Alphabet", "ABCXYZ", decoded);
     }
 
+    @Test
+    public void testDecodeReader() throws IOException {
+        Directives p = new Directives();
+        p.setDigits("AB");
+        p.setSeparator("/");
+        p.setNumberSize(0);
+        StringBuilder cipherText = new StringBuilder();
+        for (int i = 0; i < 10000; i++)
+            cipherText.append("BAAB/BAAAA/");
+        StringBuilder plainText = new StringBuilder();
+        binary.decode(new StringReader(cipherText.toString()), plainText, p);
+        assertEquals("Decode reader length", 20000, plainText.length());
+        assertTrue("Decode reader text", plainText.toString().startsWith("JQJQJQ"));
+        assertEquals("Decode reader same as string", binary.decode(cipherText.toString(), p), plainText.toString());
+    }
+
+    @Test
+    public void testCrackSeparatorSuccess() {
+        Directives p = new Directives();
+        p.setDigits("xy");
+        p.setSeparator(" ");
+        p.setNumberSize(0);
+        String cipherText = binary.encode("The truth is rarely pure and never simple", p);
+
+        p = new Directives();
+        p.setCribs("truth,simple");
+        p.setCrackMethod(CrackMethod.BRUTE_FORCE);
+        String reason = binary.canParametersBeSet(p);
+        assertNull("Crack separator reason", reason);
+        CrackResult result = binary.crack(cipherText, p, 0);
+        assertTrue("Crack separator success", result.isSuccess());
+        assertEquals("Crack separator text", "THETRUTHISRARELYPUREANDNEVERSIMPLE", result.getPlainText());
+        assertEquals("Crack separator description", "Binary cipher ([XY],sep= )", result.getCipher().getInstanceDescription());
+        assertTrue("Crack separator explain", result.getExplain().startsWith("Success:"));
+    }
+
+    @Test
+    public void testCrackFixedSizeSuccess() {
+        Directives p = new Directives();
+        p.setDigits("01");
+        p.setSeparator("");
+        p.setNumberSize(5);
+        String cipherText = binary.encode("The truth is rarely pure and never simple", p);
+        // five digits per line, as a challenge may be set out
+        cipherText = cipherText.replaceAll("(.{5})", "$1\n");
+
+        p = new Directives();
+        p.setCribs("truth,simple");
+        p.setCrackMethod(CrackMethod.BRUTE_FORCE);
+        CrackResult result = binary.crack(cipherText, p, 0);
+        assertTrue("Crack fixed success", result.isSuccess());
+        assertEquals("Crack fixed text", "THETRUTHISRARELYPUREANDNEVERSIMPLE", result.getPlainText());
+        assertEquals("Crack fixed description", "Binary cipher ([01],size=5)", result.getCipher().getInstanceDescription());
+        assertEquals("Crack fixed digits", "01", result.getDirectives().getDigits());
+        assertEquals("Crack fixed size", 5, result.getDirectives().getNumberSize());
+    }
+
     @Test
     public void testCrackFail() {
         String cipherText = "10102120121110\n";
@@ -11,7 +11,11 @@ import org.junit.runners.JUnit4;
 
 import java.util.Set;
 
+import mnh.game.ciphercrack.util.Directives;
+import mnh.game.ciphercrack.util.Settings;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
@@ -28,6 +32,46 @@ public class CipherTest {
         assertTrue("Cribset Second", cribs.contains("THE"));
         boolean present = Cipher.containsAllCribs(text, cribs);
         assertTrue("Contains all cribs with case/spaces", present);
+        present = Cipher.containsAllCribs("How I have the best", cribs);
+        assertTrue("Contains all cribs with one in another", present);
+        present = Cipher.containsAllCribs("I have t h e best of all", cribs);
+        assertFalse("Contains not all cribs", present);
+        cribs.add("BEST");
+        present = Cipher.containsAllCribs(text, cribs);
+        assertTrue("Contains all cribs after adding", present);
+        cribs.add("WORST");
+        present = Cipher.containsAllCribs(text, cribs);
+        assertFalse("Contains not all cribs after adding", present);
+    }
+
+    @Test
+    public void testOrdinalDecodeMatchesStringDecode() {
+        String alphabet = Settings.DEFAULT_ALPHABET;
+        String plainText = "Anyone who has never made a mistake, has never tried anything new.";
+        Cipher[] ciphers = new Cipher[] { new Caesar(null), new Vigenere(null), new Beaufort(null) };
+        Directives dirs = new Directives();
+        dirs.setShift(7);
+        dirs.setKeyword("EINSTEIN");
+        for (Cipher cipher : ciphers) {
+            String cipherText = cipher.encode(plainText, dirs);
+            byte[] cipherOrdinals = Cipher.toOrdinals(cipherText, alphabet);
+            assertEquals("Ordinal length "+cipher.getCipherName(), 53, cipherOrdinals.length);
+            int tableCount = cipher.getDecodeTableCount(dirs);
+            int[][] tables = Cipher.ensureDecodeTables(null, tableCount, alphabet.length());
+            cipher.fillDecodeTables(dirs, tables);
+            byte[] plainOrdinals = new byte[cipherOrdinals.length];
+            Cipher.decodeOrdinals(cipherOrdinals, cipherOrdinals.length, tables, tableCount, plainOrdinals);
+            assertEquals("Ordinal decode "+cipher.getCipherName(),
+                    plainText.replaceAll("\\W", "").toUpperCase(),
+                    Cipher.ordinalsToString(plainOrdinals, plainOrdinals.length, alphabet));
+
+            byte[][] cribs = Cipher.getCribOrdinals(Cipher.getCribSet("mistake,never"), alphabet);
+            assertTrue("Ordinal cribs "+cipher.getCipherName(),
+                    Cipher.containsAllCribs(plainOrdinals, plainOrdinals.length, cribs));
+            cribs = Cipher.getCribOrdinals(Cipher.getCribSet("mistake,relativity"), alphabet);
+            assertFalse("Ordinal cribs missing "+cipher.getCipherName(),
+                    Cipher.containsAllCribs(plainOrdinals, plainOrdinals.length, cribs));
+        }
     }
 
     /*
@@ -70,6 +70,33 @@ public class HillTest {
         }
     }
 
+    @Test
+    public void testMatrixTable() {
+        HillMatrixTable table = HillMatrixTable.forModulus(26);
+        // 26^4 matrices, of which those with determinant co-prime with 26 are usable
+        assertEquals("Matrix Table size", 157248, table.size());
+        assertTrue("Matrix Table shared", table == HillMatrixTable.forModulus(26));
+
+        // the table gives the same inverse as inverting the matrix directly
+        int[][] matrices = new int[][] { {3, 3, 2, 5}, {21, 9, 2, 17}, {7, 8, 11, 11}, {1, 0, 0, 1} };
+        for (int[] m : matrices) {
+            int[] expected = new int[4], result = new int[4];
+            assertTrue("Matrix Table invertible "+Hill.matrixToString(m), table.isInvertible(m));
+            assertTrue("Matrix Table invert "+Hill.matrixToString(m), table.invert(m, result));
+            Hill.invertMatrix(m, 26, expected, true);
+            assertEquals("Matrix Table inverse "+Hill.matrixToString(m), Hill.matrixToString(expected), Hill.matrixToString(result));
+        }
+
+        // determinant 0, 2 and 13 cannot be inverted
+        int[][] unusable = new int[][] { {2, 4, 1, 2}, {2, 0, 0, 1}, {13, 0, 0, 1} };
+        for (int[] m : unusable) {
+            int[] result = new int[] { -1, -1, -1, -1 };
+            assertFalse("Matrix Table not invertible "+Hill.matrixToString(m), table.isInvertible(m));
+            assertFalse("Matrix Table no inverse "+Hill.matrixToString(m), table.invert(m, result));
+            assertEquals("Matrix Table unchanged "+Hill.matrixToString(m), -1, result[0]);
+        }
+    }
+
     @Test
     public void testConvertKeywordToMatrixGood() {
         String keyword = "BETA";
@@ -213,9 +240,9 @@ public class HillTest {
         assertEquals("BadParam: empty matrix", "Matrix is not valid", reason);
         p.setMatrix(new int[] {0,2,1,2,9}); // matrix not square
         reason = cipher.canParametersBeSet(p);
-        p.setMatrix(new int[] {0,2,1,2,9,8,3,1,12,23,1,0,5,8,19,15}); // can't deal with 4x4 or bigger yet
+        p.setMatrix(new int[] {0,2,1,2,9,8,3,1,12,23,1,0,5,8,19,15}); // 4x4 but can't be inverted
         reason = cipher.canParametersBeSet(p);
-        assertEquals("BadParam: extra entry", "Cannot invert 4x4 or higher matrices yet", reason);
+        assertEquals("BadParam: 4x4 not co-prime", "Matrix determinant is 24, cannot decode uniquely", reason);
         p.setMatrix(new int[] {3,1,-2,24});  // negative number
         reason = cipher.canParametersBeSet(p);
         assertEquals("BadParam: too big #1", "Matrix element -2 is negative", reason);
@@ -276,6 +303,15 @@ public class HillTest {
         p.setCrackMethod(CrackMethod.DICTIONARY);
         reason = cipher.canParametersBeSet(p);
         assertNull("BadParam: crack dict okay", reason);
+        p.setCrackMethod(CrackMethod.ROW_CLIMB);
+        reason = cipher.canParametersBeSet(p);
+        assertNull("BadParam: crack row climb okay", reason);
+        p.setNumberSize(66);
+        reason = cipher.canParametersBeSet(p);
+        assertEquals("BadParam: row climb too big", "Invalid Rows and Cols: 66", reason);
+        p.setNumberSize(45);
+        reason = cipher.canParametersBeSet(p);
+        assertEquals("BadParam: row climb not square", "Invalid Rows and Cols: 45", reason);
     }
 
     // this one can take around 1 min 16 secs to find 7,8,11,11
@@ -349,7 +385,7 @@ public class HillTest {
     }
 
     @Test
-    @Ignore("Takes ages to run, and does not find the solution")
+    @Ignore("Text is too short for the matrix rows to be found by letter frequency")
     public void testCrackBruteForce3x3Success() {
         // attempt dictionary crack of Hill cipher and succeeds with good cribs
         int[] matrixToUse = new int [] {3,10,20,20,9,17,9,4,17};
@@ -390,6 +426,96 @@ public class HillTest {
         assertEquals("CrackBrute cipher name", "Hill cipher (3,10,20,20,9,17,9,4,17)", result.getCipher().getInstanceDescription());
     }
 
+    @Test
+    public void testCrackBruteForce3x3LongSuccess() {
+        // attempt brute force crack of 3x3 Hill cipher, long enough text to score rows by frequency
+        int[] matrixToUse = new int [] {3,10,20,20,9,17,9,4,17};
+        String plainText = "We have been persuaded by some that are careful of our safety to take heed how we commit ourselves to armed multitudes, for fear of treachery. But I assure you, I do not desire to live to distrust my faithful and loving people.\n" +
+                "Let tyrants fear. I have always so behaved myself that, under God, I have placed my chiefest strength and safeguard in the loyal hearts and good-will of my subjects; and therefore I am come amongst you, as you see, at this time, not for my recreation and disport, but being resolved, in the midst and heat of the battle, to live and die amongst you all.";
+        Directives p = new Directives();
+        p.setMatrix(matrixToUse);
+        String reason = cipher.canParametersBeSet(p);
+        assertNull("CrackBrute3x3Long: encode param okay", reason);
+        String cipherText = cipher.encode(plainText, p);
+        assertNotNull("CrackBrute3x3Long: Encoding", cipherText);
+
+        p.setMatrix(null);
+        p.setNumberSize(33);
+        p.setLanguage(Language.instanceOf("English"));
+        p.setCribs("treachery,loyal,hearts");
+        p.setCrackMethod(CrackMethod.BRUTE_FORCE);
+        reason = cipher.canParametersBeSet(p);
+        assertNull("CrackBrute3x3Long: crack param okay", reason);
+
+        CrackResult result = cipher.crack(cipherText, p, 0);
+        String explain = result.getExplain();
+        System.out.println("Explain "+explain);
+        int[] decodeMatrix = result.getDirectives().getMatrix();
+        assertTrue("CrackBrute3x3Long success", result.isSuccess());
+        assertEquals("CrackBrute3x3Long Cipher", cipherText, result.getCipherText());
+        assertEquals("CrackBrute3x3Long Text", plainText.replaceAll("\\W","").toUpperCase()+"XX", result.getPlainText());
+        assertEquals("CrackBrute3x3Long Matrix", Hill.matrixToString(matrixToUse), Hill.matrixToString(decodeMatrix));
+        assertTrue("CrackBrute3x3Long Explain start", explain.startsWith("Success"));
+        assertEquals("CrackBrute3x3Long cipher name", "Hill cipher (3,10,20,20,9,17,9,4,17)", result.getCipher().getInstanceDescription());
+    }
+
+    @Test
+    public void testCrackRowClimb4x4Success() {
+        // attempt row climb crack of 4x4 Hill cipher, too many rows to score them all
+        int[] matrixToUse = new int [] {8,6,9,5,6,9,5,10,5,10,7,2,6,1,1,19};
+        String plainText = "We have been persuaded by some that are careful of our safety to take heed how we commit ourselves to armed multitudes, for fear of treachery. But I assure you, I do not desire to live to distrust my faithful and loving people.\n" +
+                "Let tyrants fear. I have always so behaved myself that, under God, I have placed my chiefest strength and safeguard in the loyal hearts and good-will of my subjects; and therefore I am come amongst you, as you see, at this time, not for my recreation and disport, but being resolved, in the midst and heat of the battle, to live and die amongst you all.";
+        Directives p = new Directives();
+        p.setMatrix(matrixToUse);
+        String reason = cipher.canParametersBeSet(p);
+        assertNull("CrackRowClimb4x4: encode param okay", reason);
+        String cipherText = cipher.encode(plainText, p);
+        assertNotNull("CrackRowClimb4x4: Encoding", cipherText);
+
+        p.setMatrix(null);
+        p.setNumberSize(44);
+        p.setLanguage(Language.instanceOf("English"));
+        p.setCribs("treachery,loyal,hearts");
+        p.setCrackMethod(CrackMethod.ROW_CLIMB);
+        reason = cipher.canParametersBeSet(p);
+        assertNull("CrackRowClimb4x4: crack param okay", reason);
+
+        CrackResult result = cipher.crack(cipherText, p, 0);
+        String explain = result.getExplain();
+        System.out.println("Explain "+explain);
+        int[] decodeMatrix = result.getDirectives().getMatrix();
+        assertTrue("CrackRowClimb4x4 success", result.isSuccess());
+        assertEquals("CrackRowClimb4x4 Cipher", cipherText, result.getCipherText());
+        assertEquals("CrackRowClimb4x4 Text", plainText.replaceAll("\\W","").toUpperCase()+"XXX", result.getPlainText());
+        assertEquals("CrackRowClimb4x4 Matrix", Hill.matrixToString(matrixToUse), Hill.matrixToString(decodeMatrix));
+        assertTrue("CrackRowClimb4x4 Explain start", explain.startsWith("Success"));
+        assertEquals("CrackRowClimb4x4 cipher name", "Hill cipher (8,6,9,5,6,9,5,10,5,10,7,2,6,1,1,19)", result.getCipher().getInstanceDescription());
+    }
+
+    @Test
+    public void testCrackRowClimbFail() {
+        // the cribs are not in the text, so the fittest decode is given instead
+        String plainText = "We have been persuaded by some that are careful of our safety to take heed how we commit ourselves to armed multitudes, for fear of treachery. But I assure you, I do not desire to live to distrust my faithful and loving people.";
+        Directives p = new Directives();
+        p.setMatrix(new int[] {3,10,20,20,9,17,9,4,17});
+        String cipherText = cipher.encode(plainText, p);
+
+        p.setMatrix(null);
+        p.setNumberSize(33);
+        p.setLanguage(Language.instanceOf("English"));
+        p.setCribs("spaceship,rocket");
+        p.setCrackMethod(CrackMethod.ROW_CLIMB);
+        String reason = cipher.canParametersBeSet(p);
+        assertNull("CrackRowClimbFail: crack param okay", reason);
+
+        CrackResult result = cipher.crack(cipherText, p, 0);
+        String explain = result.getExplain();
+        assertFalse("CrackRowClimbFail success", result.isSuccess());
+        assertNull("CrackRowClimbFail Directives", result.getDirectives());
+        assertTrue("CrackRowClimbFail Explain start", explain.startsWith("Fail"));
+        assertEquals("CrackRowClimbFail cipher name", "Hill cipher (n/a)", result.getCipher().getInstanceDescription());
+    }
+
     @Test
     public void testCrackCribDrag2x2Success() {
         // attempt crib drag crack of Hill cipher and succeeds with good cribs
@@ -622,6 +748,58 @@ public class HillTest {
         assertEquals("Invert 3x3 8", 20, inverse[8]);
     }
 
+    @Test
+    public void testInvertMatrix4x4() {
+        int[] matrix = new int[] {8,6,9,5,6,9,5,10,5,10,7,2,6,1,1,19};
+        int[] inverse = new int[16];
+        boolean canInvert = Hill.invertMatrix(matrix, 26, inverse, true);
+        assertTrue("Invert Matrix 4x4 success", canInvert);
+        assertEquals("Invert 4x4", "15,3,11,7,7,20,24,7,13,21,2,25,12,1,2,3", Hill.matrixToString(inverse));
+
+        // and the inverse undoes the matrix
+        Directives p = new Directives();
+        p.setMatrix(matrix);
+        String reason = cipher.canParametersBeSet(p);
+        assertNull("Invert 4x4 param okay", reason);
+        String cipherText = cipher.encode("Let tyrants fear", p);
+        assertEquals("Invert 4x4 decode", "LETTYRANTSFEARXX", cipher.decode(cipherText, p));
+    }
+
+    @Test
+    public void testInvertMatrix5x5() {
+        // determinant 276681, which is 15 modulus 26, found by expanding along the top row
+        int[] matrix = new int[] {9,10,6,17,21, 20,6,5,22,6, 12,9,0,11,13, 5,4,8,2,10, 9,19,18,0,19};
+        assertEquals("Determinant 5x5", 15, Hill.getDeterminant(matrix, 26));
+        int[] inverse = new int[25];
+        boolean canInvert = Hill.invertMatrix(matrix, 26, inverse, true);
+        assertTrue("Invert Matrix 5x5 success", canInvert);
+        assertEquals("Invert 5x5", "10,2,22,19,18,13,18,3,13,8,8,5,0,20,16,8,2,15,23,1,13,16,3,22,19", Hill.matrixToString(inverse));
+
+        // the matrix times its inverse is the identity
+        int[] identity = new int[25];
+        Hill.multiply(matrix, inverse, 26, identity);
+        assertEquals("Identity 5x5", "1,0,0,0,0,0,1,0,0,0,0,0,1,0,0,0,0,0,1,0,0,0,0,0,1", Hill.matrixToString(identity));
+
+        // with two rows the same the determinant is 0 and there is no inverse
+        int[] singular = matrix.clone();
+        System.arraycopy(singular, 0, singular, 20, 5);
+        assertEquals("Determinant singular 5x5", 0, Hill.getDeterminant(singular, 26));
+        assertFalse("Invert singular 5x5", Hill.invertMatrix(singular, 26, inverse, true));
+    }
+
+    @Test
+    public void testEncodeDecode5x5() {
+        int[] matrix = new int[] {9,10,6,17,21, 20,6,5,22,6, 12,9,0,11,13, 5,4,8,2,10, 9,19,18,0,19};
+        Directives p = new Directives();
+        p.setMatrix(matrix);
+        String reason = cipher.canParametersBeSet(p);
+        assertNull("Encode: 5x5 params okay", reason);
+        String encoded = cipher.encode("The quick brown fox jumps over the lazy dogs", p);
+        assertEquals("Encoding 5x5", "VEZXCGIIOPXVFWEAGIRJVLJYLKIWVMPPUVRAJNSU", encoded);
+        String decoded = cipher.decode(encoded, p);
+        assertEquals("Decoding 5x5", "THEQUICKBROWNFOXJUMPSOVERTHELAZYDOGSXXXX", decoded);
+    }
+
     @Test
     public void testDescription() {
         String desc = cipher.getCipherDescription();
@@ -4,6 +4,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import mnh.game.ciphercrack.language.Language;
 import mnh.game.ciphercrack.util.CrackMethod;
 import mnh.game.ciphercrack.util.CrackResult;
 import mnh.game.ciphercrack.util.Directives;
@@ -119,7 +120,96 @@ public class MorseTest {
         assertEquals("Decoding default sep! size 0", "BORN2DRINKMILD", decoded);
     }
 
-    // TODO test for Binary Crack success when we have it working
+    @Test
+    public void testSepsWithRegexCharacters() {
+        // separators and symbols are taken as they are, not as a regular expression
+        Directives p = new Directives();
+        p.setDigits("^]");
+        p.setSeparator("|");
+        String reason = morse.canParametersBeSet(p);
+        assertNull("Encoding regex symbols", reason);
+        String encoded = morse.encode("Sos", p);
+        assertEquals("Encoding regex symbols", "^^^|]]]|^^^", encoded);
+        String decoded = morse.decode(encoded+"||", p);
+        assertEquals("Decoding regex symbols", "SOS", decoded);
+        decoded = morse.decode("^^^||]]]", p);
+        assertEquals("Decoding word gap", "S O", decoded);
+    }
+
+    @Test
+    public void testDecodeUnseparated() {
+        // with no separators the runs are split into letters, which must give the same code back
+        Directives p = new Directives();
+        p.setDigits(".-");
+        p.setSeparator("");
+        String encoded = morse.encode("Call me Ishmael. Some years ago never mind how long precisely", p);
+        String decoded = morse.decode(encoded, p);
+        assertEquals("Decoding unseparated letters only", decoded.replaceAll("[^A-Z]", ""), decoded);
+        assertEquals("Decoding unseparated same code", encoded, morse.encode(decoded, p));
+        assertEquals("Decoding unseparated one letter", "E", morse.decode(".", p));
+    }
+
+    @Test
+    public void testCrackSeparatedSuccess() {
+        String plainText = "Mr. and Mrs. Dursley, of number four, Privet Drive, were proud to say that they were perfectly normal, thank you very much.";
+        Directives p = new Directives();
+        p.setDigits("01");
+        p.setSeparator("/");
+        String cipherText = morse.encode(plainText, p);
+
+        p = new Directives();
+        p.setLanguage(Language.instanceOf("English"));
+        p.setCribs("privet,drive");
+        p.setCrackMethod(CrackMethod.BRUTE_FORCE);
+        String reason = morse.canParametersBeSet(p);
+        assertNull("Crack morse reason", reason);
+        CrackResult result = morse.crack(cipherText, p, 0);
+        System.out.println("Explain "+result.getExplain());
+        assertTrue("Crack morse success", result.isSuccess());
+        assertEquals("Crack morse text", plainText.replaceAll("[^A-Za-z]", "").toUpperCase(), result.getPlainText());
+        assertEquals("Crack morse symbols", "01", result.getDirectives().getDigits());
+        assertEquals("Crack morse separator", "/", result.getDirectives().getSeparator());
+        assertEquals("Crack morse cipher name", "Morse cipher ([01],sep=/)", result.getCipher().getInstanceDescription());
+    }
+
+    @Test
+    public void testCrackSpacedSuccess() {
+        // dashes more frequent than dots, and words split by a slash between spaces
+        String cipherText = "-- -.-- / -. .- -- . / .. ... / -... --- -. -..";
+        Directives p = new Directives();
+        p.setLanguage(Language.instanceOf("English"));
+        p.setCribs("name,bond");
+        p.setCrackMethod(CrackMethod.BRUTE_FORCE);
+        CrackResult result = morse.crack(cipherText, p, 0);
+        System.out.println("Explain "+result.getExplain());
+        assertTrue("Crack spaced success", result.isSuccess());
+        assertEquals("Crack spaced text", "MY NAME IS BOND", result.getPlainText());
+        assertEquals("Crack spaced symbols", ".-", result.getDirectives().getDigits());
+        assertEquals("Crack spaced separator", " ", result.getDirectives().getSeparator());
+    }
+
+    @Test
+    public void testCrackUnseparatedSuccess() {
+        // without separators the letters are only the most likely, but the cribs here survive
+        String plainText = "Call me Ishmael. Some years ago never mind how long precisely having little or no money in my purse, and nothing particular to interest me on shore, I thought I would sail about a little and see the watery part of the world.";
+        Directives p = new Directives();
+        p.setDigits("AB");
+        p.setSeparator("");
+        String cipherText = morse.encode(plainText, p);
+
+        p = new Directives();
+        p.setLanguage(Language.instanceOf("English"));
+        p.setCribs("call,world");
+        p.setCrackMethod(CrackMethod.BRUTE_FORCE);
+        CrackResult result = morse.crack(cipherText, p, 0);
+        System.out.println("Decoded "+result.getPlainText());
+        System.out.println("Explain "+result.getExplain());
+        assertTrue("Crack unseparated success", result.isSuccess());
+        assertTrue("Crack unseparated text", result.getPlainText().startsWith("CALL"));
+        assertEquals("Crack unseparated symbols", "AB", result.getDirectives().getDigits());
+        assertEquals("Crack unseparated separator", "", result.getDirectives().getSeparator());
+        assertTrue("Crack unseparated explain", result.getExplain().contains("no separator"));
+    }
 
     @Test
     public void testCrackFail() {
@@ -132,11 +222,11 @@ public class MorseTest {
 
         CrackResult result = morse.crack(cipherText, p, 0);
         assertFalse("Crack morse fail", result.isSuccess());
-        assertNull("Crack morse fail text", result.getPlainText());
+        assertNotNull("Crack morse fail best decode", result.getPlainText());
         assertEquals("Crack morse fail cipher text", cipherText, result.getCipherText());
         assertNull("Crack morse fail digits", result.getDirectives());
         assertNotNull("Crack morse fail explain", result.getExplain());
-        assertTrue("Crack morse fail start", result.getExplain().startsWith("No crack"));
+        assertTrue("Crack morse fail start", result.getExplain().startsWith("Fail"));
         // depends on prior run: assertEquals("Crack morse fail cipher name", "Morse cipher ([], size=n/a)", result.getCipher().getInstanceDescription());
         assertEquals("Crack morse crack method", CrackMethod.BRUTE_FORCE, result.getCrackMethod());
     }
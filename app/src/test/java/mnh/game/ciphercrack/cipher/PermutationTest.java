@@ -4,6 +4,8 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import java.util.List;
+
 import mnh.game.ciphercrack.language.Language;
 import mnh.game.ciphercrack.util.CrackMethod;
 import mnh.game.ciphercrack.util.CrackResult;
@@ -177,6 +179,9 @@ public class PermutationTest {
         p.setCrackMethod(CrackMethod.DICTIONARY);
         reason = cipher.canParametersBeSet(p);
         assertNull("BadParam: crack dict okay", reason);
+        p.setCrackMethod(CrackMethod.COLUMN_ADJACENCY);
+        reason = cipher.canParametersBeSet(p);
+        assertNull("BadParam: crack adjacency okay", reason);
     }
 
     @Test
@@ -251,6 +256,115 @@ public class PermutationTest {
         assertEquals("Crack cipher name", "Permutation cipher (0,2,4,3,1:down)", result.getCipher().getInstanceDescription());
     }
 
+    @Test
+    public void testSearchStopAtFirstEarliest() {
+        // the first and last columns of "CATSC DOGSD" are the same, so swapping them gives the
+        // cribs too, the text is read down the columns in the order 0,1,2,3,4
+        String cipherText = "CDAOTGSSCD";
+        PermutationSearch allSearch = new PermutationSearch(cipherText, Cipher.getCribSet("cat,dog"), null, 0, false, false);
+        List<PermutationSearch.Found> all = allSearch.search(5);
+        assertNotNull("All found", all);
+        assertTrue("More than one match", all.size() > 1);
+        assertEquals("Earliest permutation", "0,1,2,3,4", Permutation.permutationToString(all.get(0).getPermutation()));
+
+        // however the threads run, stopping at first gives the earliest match
+        for (int run = 0; run < 50; run++) {
+            PermutationSearch search = new PermutationSearch(cipherText, Cipher.getCribSet("cat,dog"), null, 0, true, false);
+            List<PermutationSearch.Found> first = search.search(5);
+            assertNotNull("First found " + run, first);
+            assertEquals("One match " + run, 1, first.size());
+            assertEquals("First permutation " + run, "0,1,2,3,4", Permutation.permutationToString(first.get(0).getPermutation()));
+            assertFalse("First read down " + run, first.get(0).isReadAcross());
+        }
+    }
+
+    @Test
+    public void testCrackBruteTwelveColumnsSuccess() {
+        // attempt Brute Force crack with 12 columns, too many to try every permutation, so this
+        // relies on dropping partial permutations with unlikely bigrams
+        int[] perm = new int[] { 6, 2, 8, 10, 0, 7, 3, 11, 4, 5, 1, 9 };
+        String plainText = "Call me Ishmael. Some years ago — never mind how long precisely — having little or no money in my purse, and nothing particular to interest me on shore, I thought I would sail about a little and see the watery part of the world. It is a way I have of driving off the spleen, and regulating the circulation. Whenever I find myself growing grim about the mouth; whenever it is a damp, drizzly November in my soul; whenever I find myself involuntarily pausing before coffin warehouses, and bringing up the rear of every funeral I meet.".replaceAll("\\W","");
+        Directives p = new Directives();
+        p.setPermutation(perm);
+        p.setReadAcross(true);
+        String reason = cipher.canParametersBeSet(p);
+        assertNull("Crack 12 Success: encode param okay", reason);
+        String cipherText = cipher.encode(plainText, p);
+        assertNotNull("Crack 12 Encoding", cipherText);
+
+        // now attempt the crack of the text via brute force
+        p.setPermutation(null);
+        p.setCribs("ishmael,little");
+        p.setCrackMethod(CrackMethod.BRUTE_FORCE);
+        reason = cipher.canParametersBeSet(p);
+        assertNull("Crack 12 Success: crack param okay", reason);
+
+        CrackResult result = cipher.crack(cipherText, p, 0);
+        String explain = result.getExplain();
+        System.out.println("Explain "+explain);
+        assertTrue("Crack 12 Success", result.isSuccess());
+        assertTrue("Crack 12 Text", result.getPlainText().startsWith(plainText));
+        assertEquals("Crack 12 Permutation", "6,2,8,10,0,7,3,11,4,5,1,9",
+                Permutation.permutationToString(result.getDirectives().getPermutation()));
+        assertTrue("Crack 12 Across", result.getDirectives().isReadAcross());
+    }
+
+    @Test
+    public void testCrackColumnAdjacencySuccess() {
+        // attempt Column Adjacency crack with 20 columns, far too many for brute force
+        int[] perm = new int[] { 13, 4, 17, 0, 9, 19, 2, 11, 6, 15, 1, 18, 7, 12, 3, 16, 10, 5, 14, 8 };
+        String plainText = "Call me Ishmael. Some years ago — never mind how long precisely — having little or no money in my purse, and nothing particular to interest me on shore, I thought I would sail about a little and see the watery part of the world. It is a way I have of driving off the spleen, and regulating the circulation. Whenever I find myself growing grim about the mouth; whenever it is a damp, drizzly November in my soul; whenever I find myself involuntarily pausing before coffin warehouses, and bringing up the rear of every funeral I meet; and especially whenever my hypos get such an upper hand of me, that it requires a strong moral principle to prevent me from deliberately stepping into the street, and methodically knocking people’s hats off — then, I account it high time to get to sea as soon as I can.";
+        Directives p = new Directives();
+        p.setPermutation(perm);
+        p.setReadAcross(false);
+        String reason = cipher.canParametersBeSet(p);
+        assertNull("Crack Adjacency: encode param okay", reason);
+        String cipherText = cipher.encode(plainText, p);
+        assertNotNull("Crack Adjacency Encoding", cipherText);
+
+        // now attempt the crack of the text by ordering columns
+        p.setPermutation(null);
+        p.setCribs("ishmael,little");
+        p.setCrackMethod(CrackMethod.COLUMN_ADJACENCY);
+        reason = cipher.canParametersBeSet(p);
+        assertNull("Crack Adjacency: crack param okay", reason);
+
+        CrackResult result = cipher.crack(cipherText, p, 0);
+        String explain = result.getExplain();
+        System.out.println("Explain "+explain);
+        assertTrue("Crack Adjacency Success", result.isSuccess());
+        assertTrue("Crack Adjacency Text", result.getPlainText().startsWith(plainText));
+        assertEquals("Crack Adjacency Permutation", "13,4,17,0,9,19,2,11,6,15,1,18,7,12,3,16,10,5,14,8",
+                Permutation.permutationToString(result.getDirectives().getPermutation()));
+        assertFalse("Crack Adjacency Across", result.getDirectives().isReadAcross());
+        assertEquals("Crack Adjacency Method", CrackMethod.COLUMN_ADJACENCY, result.getCrackMethod());
+    }
+
+    @Test
+    public void testCrackColumnAdjacencyFail() {
+        // attempt Column Adjacency crack but fails as cribs are wrong
+        int[] perm = new int[] { 3, 0, 5, 1, 4, 2 };
+        String plainText = "Call me Ishmael. Some years ago — never mind how long precisely — having little or no money in my purse, and nothing particular to interest me on shore, I thought I would sail about a little and see the watery part of the world.";
+        Directives p = new Directives();
+        p.setPermutation(perm);
+        String reason = cipher.canParametersBeSet(p);
+        assertNull("Crack Adjacency Fail: encode param okay", reason);
+        String cipherText = cipher.encode(plainText, p);
+
+        p.setPermutation(null);
+        p.setCribs("banana,plantation");
+        p.setCrackMethod(CrackMethod.COLUMN_ADJACENCY);
+        reason = cipher.canParametersBeSet(p);
+        assertNull("Crack Adjacency Fail: crack param okay", reason);
+
+        CrackResult result = cipher.crack(cipherText, p, 0);
+        String explain = result.getExplain();
+        System.out.println("Explain "+explain);
+        assertFalse("Crack Adjacency Fail Success", result.isSuccess());
+        assertNull("Crack Adjacency Fail Text", result.getPlainText());
+        assertTrue("Crack Adjacency Fail Explain", explain.contains("Best scoring order"));
+    }
+
     // this one takes around 32 seconds with max column permutations = 9
     @Test
     public void testCrackBruteFail() {
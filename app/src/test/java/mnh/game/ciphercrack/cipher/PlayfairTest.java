@@ -1,6 +1,5 @@
 package mnh.game.ciphercrack.cipher;
 
-import org.junit.Ignore;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -165,9 +164,8 @@ public class PlayfairTest {
         assertEquals("CrackFail crack method", CrackMethod.DICTIONARY, result.getCrackMethod());
     }
 
-    // takes up to 2 minutes 10 secs, sometimes works, sometimes not
+    // takes around 10 seconds on one core, each anneal finds the square about a third of the time
     @Test
-    @Ignore("Takes a long time to run and sometimes fails")
     public void testCrackWordCountSuccess() {
         String plainText = "Thirty years ago, Marseilles lay burning in the sun, one day. A blazing sun upon a fierce August day was no greater rarity in southern France then, than at any other time, before or since. Everything in Marseilles, and about Marseilles, had stared at the fervid sky, and been stared at in return, until a staring habit had become universal there. Strangers were stared out of countenance by staring white houses, staring white walls, staring white streets, staring tracts of arid road, staring hills from which verdure was burnt away. The only things to be seen not fixedly staring and glaring were the vines drooping under their load of grapes. These did occasionally wink a little, as the hot air barely moved their faint leaves.";
         // BRAMLEY APPLES -- not in the dictionary
@@ -210,6 +208,37 @@ public class PlayfairTest {
         assertEquals("CrackFail crack method", CrackMethod.WORD_COUNT, result.getCrackMethod());
     }
 
+    @Test
+    public void testAlignKey() {
+        // the same square with its rows and columns shifted round encodes the same way
+        String fullKey = "BRAMLEYPSCDFGHIKNOQTUVWXZ";
+        String shifted = "OQTKNWXZUVAMLBRPSCEYGHIDF";
+        assertEquals("Align shifted key", fullKey, PlayfairAnnealing.alignKey(shifted, 5, 5));
+        assertEquals("Align aligned key", fullKey, PlayfairAnnealing.alignKey(fullKey, 5, 5));
+    }
+
+    @Test
+    public void testDecodeDigraphs() {
+        // a compiled key decodes the same as the string decode
+        String squareLetters = "ABCDEFGHIKLMNOPQRSTUVWXYZ";
+        String key = "BRAMLEYPSCDFGHIKNOQTUVWXZ";
+        Directives dirs = new Directives();
+        dirs.setKeyword(key);
+        dirs.setNumberSize(55);
+        String cipherText = playfair.encode("Meet me by the old oak tree at dawn, bring the map", dirs);
+        String expected = playfair.decode(cipherText, dirs).toUpperCase();
+
+        int[] digraphs = Playfair.toDigraphs(cipherText, squareLetters);
+        byte[] table = new byte[2 * squareLetters.length() * squareLetters.length()];
+        Playfair.fillDigraphTable(key, 5, 5, squareLetters, table);
+        byte[] plain = new byte[2 * digraphs.length];
+        Playfair.decodeDigraphs(digraphs, table, plain);
+        StringBuilder decoded = new StringBuilder();
+        for (byte ordinal : plain)
+            decoded.append(squareLetters.charAt(ordinal));
+        assertEquals("Compiled decode", expected, decoded.toString());
+    }
+
     @Test
     public void testDropLetter() {
         // encode and then decode 5x5 example found on the web
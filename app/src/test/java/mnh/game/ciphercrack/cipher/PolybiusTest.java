@@ -73,6 +73,30 @@ public class PolybiusTest {
 //        assertTrue("Decoding Example", decoded.contains("the"));
     }
 
+    @Test
+    public void testDecodeCells() {
+        // a compiled key decodes the same as the string decode, passed through symbols are -1
+        String alphabet = "ABCDEFGHIKLMNOPQRSTUVWXYZ";
+        String keyword = "NIOBEFGHKLMPQRSTUVWXYZACD";
+        String cipherText = "FBGAI AGCFE, KEFEK CIAGC! FCGAF CIBHD";
+        Directives dirs = new Directives();
+        dirs.setColHeading("ABCDE");
+        dirs.setRowHeading("FGHIK");
+        dirs.setKeyword(keyword);
+        String expected = polybius.decode(cipherText, dirs).toUpperCase()
+                .replaceAll("\\s", "").replaceAll("[^A-Z]", "?");
+
+        int[] cells = Polybius.toCells(cipherText, "FGHIK", "ABCDE");
+        byte[] table = new byte[5 * 5 + 1];
+        Polybius.fillCellTable(keyword, alphabet, table);
+        byte[] plain = new byte[cells.length];
+        Polybius.decodeCells(cells, table, plain);
+        StringBuilder decoded = new StringBuilder();
+        for (byte ordinal : plain)
+            decoded.append(ordinal < 0 ? '?' : alphabet.charAt(ordinal));
+        assertEquals("Compiled decode", expected, decoded.toString());
+    }
+
     @Test
     public void testDropLetter() {
         // encode and then decode 5x5 example found on the web
@@ -443,6 +467,136 @@ public class PolybiusTest {
         assertEquals("CrackDict Fail crack method", CrackMethod.DICTIONARY, result.getCrackMethod());
     }
 
+    @Test
+    public void testCrackAnnealSuccess() {
+        // anneal a randomly mixed 5x5 grid, the headings being found from the cipher text
+        String keyword = "QHWZEMUCKTAXGNYRLVBOSPIFD";
+        String plainText = "Thirty years ago, Marseilles lay burning in the sun, one day. A blazing sun upon a fierce August day was no greater rarity in southern France then, than at any other time, before or since. Everything in Marseilles, and about Marseilles, had stared at the fervid sky, and been stared at in return, until a staring habit had become universal there. Strangers were stared out of countenance by staring white houses, staring white walls, staring white streets, staring tracts of arid road, staring hills from which verdure was burnt away. The only things to be seen not fixedly staring and glaring were the vines drooping under their load of grapes. These did occasionally wink a little, as the hot air barely moved their faint leaves.";
+        Directives p = new Directives();
+        p.setKeyword(keyword);
+        p.setColHeading("VWXYZ");
+        p.setRowHeading("ABCDE");
+        String reason = polybius.canParametersBeSet(p);
+        assertNull("CrackAnneal: encode param okay", reason);
+        String cipherText = polybius.encode(plainText, p);
+
+        p.setKeyword(null);
+        p.setHeadings("");
+        p.setCribs("marseilles,burning");
+        p.setLanguage(Language.instanceOf("English"));
+        p.setCrackMethod(CrackMethod.WORD_COUNT);
+        reason = polybius.canParametersBeSet(p);
+        assertNull("CrackAnneal: crack param okay", reason);
+
+        CrackResult result = polybius.crack(cipherText, p, 0);
+        System.out.println("Decoded "+result.getPlainText());
+        System.out.println("Explain "+result.getExplain());
+        assertTrue("CrackAnneal success", result.isSuccess());
+        // z and k are only seen once or twice, the whole words sky and wink place them
+        assertEquals("CrackAnneal Text", plainText.toLowerCase(), result.getPlainText());
+        // q is in no word, but is the only letter left for the one cell not in the text
+        assertEquals("CrackAnneal Grid", keyword, result.getDirectives().getKeyword());
+        assertEquals("CrackAnneal Row Heading", "ABCDE", result.getDirectives().getRowHeading());
+        assertEquals("CrackAnneal Col Heading", "VWXYZ", result.getDirectives().getColHeading());
+        assertEquals("CrackAnneal crack method", CrackMethod.WORD_COUNT, result.getCrackMethod());
+    }
+
+    @Test
+    public void testCrackAnnealGroupedSuccess() {
+        // the same text, its cells in blocks of 5 and then in pairs, the spaces are not between
+        // words so the letters in words found anywhere must not move the rare letters wrongly
+        String keyword = "QHWZEMUCKTAXGNYRLVBOSPIFD";
+        String plainText = "Thirty years ago, Marseilles lay burning in the sun, one day. A blazing sun upon a fierce August day was no greater rarity in southern France then, than at any other time, before or since. Everything in Marseilles, and about Marseilles, had stared at the fervid sky, and been stared at in return, until a staring habit had become universal there. Strangers were stared out of countenance by staring white houses, staring white walls, staring white streets, staring tracts of arid road, staring hills from which verdure was burnt away. The only things to be seen not fixedly staring and glaring were the vines drooping under their load of grapes. These did occasionally wink a little, as the hot air barely moved their faint leaves.";
+        Directives p = new Directives();
+        p.setKeyword(keyword);
+        p.setColHeading("VWXYZ");
+        p.setRowHeading("ABCDE");
+        String reason = polybius.canParametersBeSet(p);
+        assertNull("CrackAnnealGrouped: encode param okay", reason);
+        String cells = polybius.encode(plainText, p).replaceAll("[^A-Z]", "");
+        String plainLetters = plainText.toLowerCase().replaceAll("[^a-z]", "");
+
+        for (int groupSize : new int[] { 10, 2 }) {
+            StringBuilder cipherText = new StringBuilder(cells.length() * 2);
+            for (int i = 0; i < cells.length(); i++) {
+                if (i > 0 && i % groupSize == 0)
+                    cipherText.append(' ');
+                cipherText.append(cells.charAt(i));
+            }
+            p.setKeyword(null);
+            p.setHeadings("");
+            p.setCribs("marseilles,burning");
+            p.setLanguage(Language.instanceOf("English"));
+            p.setCrackMethod(CrackMethod.WORD_COUNT);
+            reason = polybius.canParametersBeSet(p);
+            assertNull("CrackAnnealGrouped: crack param okay", reason);
+
+            CrackResult result = polybius.crack(cipherText.toString(), p, 0);
+            System.out.println("Decoded "+result.getPlainText());
+            System.out.println("Explain "+result.getExplain());
+            assertTrue("CrackAnnealGrouped success " + groupSize, result.isSuccess());
+            assertEquals("CrackAnnealGrouped Text " + groupSize, plainLetters, result.getPlainText().replaceAll("\\s", ""));
+            assertEquals("CrackAnnealGrouped Grid " + groupSize, keyword, result.getDirectives().getKeyword());
+        }
+    }
+
+    @Test
+    public void testSpacedByWords() {
+        // cells of "at cats sat", then in blocks of 2 with a short last block, then one run
+        boolean[] words = { false, false, true, false, false, false, true, false, false };
+        assertTrue("Words", Polybius.spacedByWords(words, words.length));
+        boolean[] blocks = { false, false, true, false, true, false, true, false, true };
+        assertFalse("Blocks", Polybius.spacedByWords(blocks, blocks.length));
+        boolean[] none = new boolean[9];
+        assertFalse("No spaces", Polybius.spacedByWords(none, none.length));
+    }
+
+    @Test
+    public void testCrackAnneal6x6Success() {
+        // anneal a randomly mixed 6x6 grid of letters and digits with the headings given
+        String keyword = "K3QHW7ZEMU0CTAX9GN1YRL5VBO2SPI8FD4J6";
+        String plainText = "Thirty years ago, Marseilles lay burning in the sun, one day. A blazing sun upon a fierce August day was no greater rarity in southern France then, than at any other time, before or since. Everything in Marseilles, and about Marseilles, had stared at the fervid sky, and been stared at in return, until a staring habit had become universal there. Strangers were stared out of countenance by staring white houses, staring white walls, staring white streets, staring tracts of arid road, staring hills from which verdure was burnt away. The only things to be seen not fixedly staring and glaring were the vines drooping under their load of grapes. These did occasionally wink a little, as the hot air barely moved their faint leaves.";
+        Directives p = new Directives();
+        p.setAlphabet("ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789");
+        p.setKeyword(keyword);
+        p.setHeadings("ADFGVX");
+        String reason = polybius.canParametersBeSet(p);
+        assertNull("CrackAnneal6x6: encode param okay", reason);
+        String cipherText = polybius.encode(plainText, p);
+
+        p.setKeyword(null);
+        p.setCribs("marseilles,burning");
+        p.setLanguage(Language.instanceOf("English"));
+        p.setCrackMethod(CrackMethod.WORD_COUNT);
+        reason = polybius.canParametersBeSet(p);
+        assertNull("CrackAnneal6x6: crack param okay", reason);
+
+        CrackResult result = polybius.crack(cipherText, p, 0);
+        System.out.println("Decoded "+result.getPlainText());
+        System.out.println("Explain "+result.getExplain());
+        assertTrue("CrackAnneal6x6 success", result.isSuccess());
+        assertEquals("CrackAnneal6x6 Text", plainText.toLowerCase(), result.getPlainText());
+        // the cells of j, q and the digits are not in the text, so only the others are known
+        String grid = result.getDirectives().getKeyword();
+        assertEquals("CrackAnneal6x6 Grid size", keyword.length(), grid.length());
+        String textLetters = plainText.toUpperCase();
+        for (int cell = 0; cell < keyword.length(); cell++) {
+            char letter = keyword.charAt(cell);
+            if (textLetters.indexOf(letter) >= 0)
+                assertEquals("CrackAnneal6x6 Grid cell " + cell, letter, grid.charAt(cell));
+        }
+    }
+
+    @Test
+    public void testFindHeadings() {
+        String[] headings = Polybius.findHeadings("DA EC, BB AD");
+        assertEquals("Row heading", "ABDE0", headings[0]);
+        assertEquals("Col heading", "ABCDZ", headings[1]);
+        headings = Polybius.findHeadings("11 26 63 45 54 31");
+        assertEquals("Row heading 6x6", "123456", headings[0]);
+        assertEquals("Col heading 6x6", "13456Z", headings[1]);
+    }
+
     @Test
     public void testDescription() {
         String desc = polybius.getCipherDescription();
@@ -133,6 +133,39 @@ public class VigenereTest {
         assertEquals("Crack crack method", CrackMethod.IOC, result.getCrackMethod());
     }
 
+    @Test
+    public void testCrackIOCFindLength() {
+        // attempt IOC crack of Vigenere cipher without giving the keyword length
+        String keyword = "MOBYDICK";
+        String plainText = "Call me Ishmael. Some years ago — never mind how long precisely — having little or no money in my purse, and nothing particular to interest me on shore, I thought I would sail about a little and see the watery part of the world. It is a way I have of driving off the spleen, and regulating the circulation. Whenever I find myself growing grim about the mouth; whenever it is a damp, drizzly November in my soul; whenever I find myself involuntarily pausing before coffin warehouses, and bringing up the rear of every funeral I meet; and especially whenever my hypos get such an upper hand of me, that it requires a strong moral principle to prevent me from deliberately stepping into the street, and methodically knocking people’s hats off — then, I account it high time to get to sea as soon as I can. This is my substitute for pistol and ball. With a philosophical flourish Cato throws himself upon his sword; I quietly take to the ship. There is nothing surprising in this. If they but knew it, almost all men in their degree, some time or other, cherish very nearly the same feelings towards the ocean with me.";
+        Directives p = new Directives();
+        p.setKeyword(keyword);
+        String cipherText = vigenere.encode(plainText, p);
+
+        // the length is found, a repeat of the keyword would also find the cribs
+        p.setKeyword(null);
+        p.setKeywordLength(-1);
+        p.setCribs("ishmael,ocean");
+        p.setCrackMethod(CrackMethod.IOC_FIND_LENGTH);
+        String reason = vigenere.canParametersBeSet(p);
+        assertNull("CrackIOCFindLength: crack param okay", reason);
+
+        CrackResult result = vigenere.crack(cipherText, p, 0);
+        String explain = result.getExplain();
+        System.out.println("Explain "+explain);
+        assertTrue("CrackFindLength Success", result.isSuccess());
+        assertEquals("CrackFindLength Text", plainText, result.getPlainText());
+        assertEquals("CrackFindLength Keyword", keyword, result.getDirectives().getKeyword());
+        assertEquals("CrackFindLength Keyword length", keyword.length(), result.getDirectives().getKeywordLength());
+        assertEquals("CrackFindLength crack method", CrackMethod.IOC_FIND_LENGTH, result.getCrackMethod());
+
+        // wrong cribs, the best decode is still given
+        p.setCribs("banana,plantation");
+        result = vigenere.crack(cipherText, p, 0);
+        assertFalse("CrackFindLength Fail", result.isSuccess());
+        assertEquals("CrackFindLength Fail best text", plainText.toUpperCase(), result.getPlainText().toUpperCase());
+    }
+
     @Test
     public void testCrackIOCFail() {
         // attempt IOC crack of Vigenere cipher but fails as cribs wrong
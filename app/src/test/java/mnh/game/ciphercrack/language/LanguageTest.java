@@ -4,10 +4,13 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -85,4 +88,117 @@ public class LanguageTest {
         freq = english.frequencyOf("UAT");
         assertEquals("FreqOf UAT in English", 0.00f, freq, 1e-3f);
     }
+
+    @Test
+    public void testNGramLogProbabilities() {
+        Language english = Language.instanceOf("English");
+        float[] quadgrams = english.getNGramLogProbabilities(4);
+        assertEquals("Quadgram table size", 26*26*26*26, quadgrams.length);
+        assertTrue("Quadgram table reused", quadgrams == english.getNGramLogProbabilities(4));
+        int tion = (('T'-'A')*26 + ('I'-'A'))*26*26 + ('O'-'A')*26 + ('N'-'A');
+        int qzxj = (('Q'-'A')*26 + ('Z'-'A'))*26*26 + ('X'-'A')*26 + ('J'-'A');
+        assertTrue("Quadgram TION more likely than QZXJ", quadgrams[tion] > quadgrams[qzxj]);
+        for (float logProbability : quadgrams) {
+            assertTrue("Quadgram log probability negative", logProbability < 0.0f);
+        }
+    }
+
+    @Test
+    public void testQuadgramFitness() {
+        Language english = Language.instanceOf("English");
+        String alphabet = english.getAlphabet();
+        NGramFitness fitness = english.getQuadgramFitness();
+        byte[] plain = toOrdinals("ITWASTHEBESTOFTIMESITWASTHEWORSTOFTIMES", alphabet);
+        byte[] scrambled = toOrdinals("QXZJVKWQPLMXZGHJKQWXYZVBNMQPZKXJWQVZXQK", alphabet);
+        assertTrue("Quadgram fitness prefers English",
+                fitness.score(plain, plain.length) > fitness.score(scrambled, scrambled.length));
+    }
+
+    @Test
+    public void testIncrementalNGramFitness() {
+        Language english = Language.instanceOf("English");
+        String alphabet = english.getAlphabet();
+        NGramFitness fitness = english.getQuadgramFitness();
+        byte[] cipher = toOrdinals("ITWASTHEBESTOFTIMESITWASTHEWORSTOFTIMES", alphabet);
+        IncrementalNGramFitness incremental = new IncrementalNGramFitness(english, 4, cipher, cipher.length);
+        int[] table = new int[alphabet.length()];
+        for (int i = 0; i < table.length; i++)
+            table[i] = i;
+        assertEquals("Identity score", fitness.score(cipher, cipher.length), incremental.setDecodeTable(table), 1e-4);
+
+        // swap what pairs of letters decode to, keeping some swaps and rolling others back
+        Random random = new Random(42);
+        int[] committed = Arrays.copyOf(table, table.length);
+        for (int trial = 0; trial < 200; trial++) {
+            int a = random.nextInt(table.length), b = random.nextInt(table.length);
+            int swap = table[a]; table[a] = table[b]; table[b] = swap;
+            double score = incremental.changeDecodes(a, table[a], b, table[b]);
+            assertEquals("Score after swap " + trial, fitness.score(decode(cipher, table), cipher.length), score, 1e-4);
+            if (trial % 3 == 0) {
+                incremental.rollback();
+                System.arraycopy(committed, 0, table, 0, table.length);
+            } else if (trial % 3 == 1) {
+                incremental.commit();
+                System.arraycopy(table, 0, committed, 0, table.length);
+            }
+            assertEquals("Score after commit/rollback " + trial,
+                    fitness.score(decode(cipher, table), cipher.length), incremental.getScore(), 1e-4);
+        }
+
+        byte[] tooShort = toOrdinals("THE", alphabet);
+        IncrementalNGramFitness shortFitness = new IncrementalNGramFitness(english, 4, tooShort, tooShort.length);
+        assertEquals("Too short", -Double.MAX_VALUE, shortFitness.setDecodeTable(table), 0.0);
+    }
+
+    @Test
+    public void testWordAutomaton() {
+        Dictionary dict = Language.instanceOf("English").getDictionary();
+        WordAutomaton automaton = dict.getWordAutomaton();
+        assertTrue("Word automaton reused", automaton == dict.getWordAutomaton());
+        String[] texts = { "It was the best of times, it was the worst of times",
+                "ITWAS THEBE STOFT IMESI TWAST HEWOR STOFT IMES", "QXZJV KWQPL", "", "aaaa" };
+        for (String text : texts) {
+            assertEquals("Word letters in '" + text + "'",
+                    countWordLettersByIndexOf(text, dict), automaton.countWordLetters(text));
+        }
+
+        // overlapping occurrences of one word only count once, different words may overlap
+        WordAutomaton small = new WordAutomaton(Arrays.asList("AA", "ABA", "BAB"));
+        assertEquals("Non-overlapping AA", 4, small.countWordLetters("aaaaa"));
+        assertEquals("Overlapping ABA and BAB", 6, small.countWordLetters("ab aba b"));
+        assertTrue("Contains all", small.containsAllWords("xx aa bab zz"));
+        assertFalse("Contains not all", small.containsAllWords("xx aa ab b"));
+    }
+
+    // the word count the long way, a search of the whole text for each word
+    private static int countWordLettersByIndexOf(String text, Dictionary dict) {
+        int lettersFound = 0;
+        text = text.toUpperCase().replaceAll("\\s", "");
+        for (String word : dict) {
+            if (word.length() > 1) {
+                int pos = 0;
+                while ((pos = text.indexOf(word, pos)) >= 0) {
+                    pos += word.length();
+                    lettersFound += word.length();
+                }
+            }
+        }
+        return lettersFound;
+    }
+
+    private static byte[] decode(byte[] cipher, int[] table) {
+        byte[] plain = new byte[cipher.length];
+        for (int i = 0; i < cipher.length; i++) {
+            plain[i] = (byte)table[cipher[i]];
+        }
+        return plain;
+    }
+
+    private static byte[] toOrdinals(String text, String alphabet) {
+        byte[] ordinals = new byte[text.length()];
+        for (int i = 0; i < text.length(); i++) {
+            ordinals[i] = (byte)alphabet.indexOf(text.charAt(i));
+        }
+        return ordinals;
+    }
 }
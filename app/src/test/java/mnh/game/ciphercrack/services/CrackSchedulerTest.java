@@ -0,0 +1,143 @@
+package mnh.game.ciphercrack.services;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import mnh.game.ciphercrack.cipher.Cipher;
+import mnh.game.ciphercrack.util.CrackMethod;
+import mnh.game.ciphercrack.util.CrackResult;
+import mnh.game.ciphercrack.util.CrackState;
+import mnh.game.ciphercrack.util.Directives;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnit4.class)
+public class CrackSchedulerTest {
+
+    // "the cat sat on the mat" with a Caesar shift of 3
+    private static final String CAESAR_TEXT = "WKH FDW VDW RQ WKH PDW";
+
+    private static Directives caesarDirectives() {
+        Directives dirs = new Directives();
+        dirs.setShift(-1);
+        dirs.setCribs("cat,mat");
+        dirs.setCrackMethod(CrackMethod.BRUTE_FORCE);
+        return dirs;
+    }
+
+    @Test
+    public void testStateLifecycle() {
+        assertTrue("Queued to running", CrackState.QUEUED.canMoveTo(CrackState.RUNNING));
+        assertTrue("Queued to cancelled", CrackState.QUEUED.canMoveTo(CrackState.CANCELLED));
+        assertFalse("Queued to complete", CrackState.QUEUED.canMoveTo(CrackState.COMPLETE));
+        assertTrue("Running to complete", CrackState.RUNNING.canMoveTo(CrackState.COMPLETE));
+        assertTrue("Running to cancelled", CrackState.RUNNING.canMoveTo(CrackState.CANCELLED));
+        assertFalse("Running to queued", CrackState.RUNNING.canMoveTo(CrackState.QUEUED));
+        assertFalse("Complete to cancelled", CrackState.COMPLETE.canMoveTo(CrackState.CANCELLED));
+        assertFalse("Cancelled to running", CrackState.CANCELLED.canMoveTo(CrackState.RUNNING));
+        assertTrue("Complete finished", CrackState.COMPLETE.isFinished());
+        assertFalse("Running not finished", CrackState.RUNNING.isFinished());
+    }
+
+    @Test
+    public void testJobOrder() {
+        CrackHandle handle = new CrackHandle(99, null);
+        CrackScheduler.Job large = new CrackScheduler.Job(handle, null, "", null, 1000000, null);
+        CrackScheduler.Job smallFirst = new CrackScheduler.Job(handle, null, "", null, 26, null);
+        CrackScheduler.Job smallSecond = new CrackScheduler.Job(handle, null, "", null, 26, null);
+        List<CrackScheduler.Job> jobs = new ArrayList<>();
+        jobs.add(large);
+        jobs.add(smallSecond);
+        jobs.add(smallFirst);
+        Collections.sort(jobs);
+        assertTrue("Smallest first", jobs.get(0) == smallFirst);
+        assertTrue("Same size in order", jobs.get(1) == smallSecond);
+        assertTrue("Largest last", jobs.get(2) == large);
+    }
+
+    @Test
+    public void testParallelismBudget() {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        assertEquals("Alone", cpus, CrackScheduler.parallelismBudget(1));
+        assertEquals("Shared", Math.max(1, cpus / 2), CrackScheduler.parallelismBudget(2));
+        assertEquals("Always one", 1, CrackScheduler.parallelismBudget(cpus * 4));
+    }
+
+    @Test
+    public void testSubmitCompletes() throws InterruptedException {
+        Cipher caesar = Cipher.instanceOf("Caesar", null);
+        assertNotNull("Caesar", caesar);
+        final CountDownLatch finished = new CountDownLatch(1);
+        CrackResult queued = CrackScheduler.submit(caesar, CAESAR_TEXT, caesarDirectives(), new CrackScheduler.Listener() {
+            @Override
+            public void crackFinished(CrackResult result) {
+                finished.countDown();
+            }
+        });
+        assertTrue("Listed", CrackResults.findCrackResult(queued.getId()) == queued);
+        assertTrue("Finished in time", finished.await(30, TimeUnit.SECONDS));
+        assertEquals("Complete", CrackState.COMPLETE, queued.getCrackState());
+        assertTrue("Success", queued.isSuccess());
+        assertEquals("Plain text", "THE CAT SAT ON THE MAT", queued.getPlainText());
+        CrackResults.removeCrackResult(queued);
+    }
+
+    @Test
+    public void testSubmitBadParameters() {
+        Cipher caesar = Cipher.instanceOf("Caesar", null);
+        assertNotNull("Caesar", caesar);
+        Directives dirs = caesarDirectives();
+        dirs.setCribs("");
+        final CrackResult[] told = new CrackResult[1];
+        CrackResult failed = CrackScheduler.submit(caesar, CAESAR_TEXT, dirs, new CrackScheduler.Listener() {
+            @Override
+            public void crackFinished(CrackResult result) {
+                told[0] = result;
+            }
+        });
+
+        // fails at once, on the caller's thread, without being queued
+        assertTrue("Listener told", told[0] == failed);
+        assertEquals("Complete", CrackState.COMPLETE, failed.getCrackState());
+        assertFalse("Not cracked", failed.isSuccess());
+        assertTrue("Reason given", failed.getExplain().contains("Some cribs must be provided"));
+        CrackResults.removeCrackResult(failed);
+    }
+
+    @Test
+    public void testCancelBeforeRunning() {
+        Cipher caesar = Cipher.instanceOf("Caesar", null);
+        assertNotNull("Caesar", caesar);
+        CrackResult queued = new CrackResult(CrackMethod.BRUTE_FORCE, caesar, caesarDirectives(),
+                CAESAR_TEXT, "Not yet complete", CrackState.QUEUED);
+        CrackHandle handle = CrackResults.addCrackResult(queued);
+        CrackResults.cancelCrack(queued.getId());
+        assertTrue("Cancelled flag", handle.isCancelled());
+        assertEquals("Cancelled state", CrackState.CANCELLED, queued.getCrackState());
+
+        // the job finds it cancelled when it comes off the queue, so never runs the crack
+        new CrackScheduler.Job(handle, caesar, CAESAR_TEXT, caesarDirectives(), 26, null).run();
+        assertEquals("Still cancelled", CrackState.CANCELLED, queued.getCrackState());
+        assertFalse("Not cracked", queued.isSuccess());
+
+        // a finished crack cannot be cancelled
+        CrackResult complete = new CrackResult(CrackMethod.BRUTE_FORCE, caesar, caesarDirectives(),
+                CAESAR_TEXT, "Done", CrackState.COMPLETE);
+        CrackHandle completeHandle = CrackResults.addCrackResult(complete);
+        CrackResults.cancelCrack(complete.getId());
+        assertFalse("Complete not cancelled", completeHandle.isCancelled());
+        assertEquals("Still complete", CrackState.COMPLETE, complete.getCrackState());
+        CrackResults.removeCrackResult(queued);
+        CrackResults.removeCrackResult(complete);
+    }
+}
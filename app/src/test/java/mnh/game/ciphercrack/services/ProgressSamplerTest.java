@@ -0,0 +1,62 @@
+package mnh.game.ciphercrack.services;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnit4.class)
+public class ProgressSamplerTest {
+
+    @Test
+    public void testDescribeFull() {
+        String progress = ProgressSampler.describe("Dictionary crack", "words", 2000, 8000, 0, 1, -2.41, 1000.0);
+        assertEquals("Progress full", "Dictionary crack: 2000 of 8000 words (25%), 1000 words/s, 6s left, found=1, best=-2.410", progress);
+    }
+
+    @Test
+    public void testDescribeNoTotal() {
+        String progress = ProgressSampler.describe("Annealing", "steps", 500, 0, 0, 0, Double.NaN, 0.0);
+        assertEquals("Progress no total", "Annealing: 500 steps", progress);
+    }
+
+    @Test
+    public void testDescribeLongTime() {
+        String progress = ProgressSampler.describe("Climbing", "tries", 0, 400000, 12, 0, Double.NaN, 100.0);
+        assertEquals("Progress minutes", "Climbing: 0 of 400000 tries (0%), 100 tries/s, 1h 6m left, valid=12", progress);
+        progress = ProgressSampler.describe("Climbing", "tries", 0, 900, 0, 0, Double.NaN, 10.0);
+        assertEquals("Progress hours", "Climbing: 0 of 900 tries (0%), 10 tries/s, 1m 30s left", progress);
+    }
+
+    @Test
+    public void testHandleCounters() {
+        CrackHandle handle = new CrackHandle(99, null);
+        assertNull("No stage", handle.getStage());
+        assertTrue("No score", Double.isNaN(handle.getBestScore()));
+        handle.startStage("Scoring", "rows", 100);
+        handle.addDone(10);
+        handle.addDone(15);
+        handle.offerScore(-3.0);
+        handle.offerScore(-1.5);
+        handle.offerScore(-2.0);
+        handle.addMatches(1);
+        assertEquals("Stage", "Scoring", handle.getStage());
+        assertEquals("Done", 25, handle.getDone());
+        assertEquals("Total", 100, handle.getTotal());
+        assertEquals("Matches", 1, handle.getMatches());
+        assertEquals("Best score", -1.5, handle.getBestScore(), 0.0);
+
+        // a new stage starts the counts again
+        handle.startStage("Climbing", "tries", 0);
+        assertEquals("Done reset", 0, handle.getDone());
+        assertEquals("Matches reset", 0, handle.getMatches());
+        assertTrue("Score reset", Double.isNaN(handle.getBestScore()));
+
+        // a plain progress message ends the stage
+        handle.setProgress("Finishing");
+        assertNull("Stage ended", handle.getStage());
+    }
+}
@@ -198,14 +198,38 @@ public class StaticAnalysisTest {
     @Test
     public void testGetCyclicIOC() {
         String text = "AHHDIOWPLKQJJSUPOQJKKKQJAIOAIWFSXWWVWPWPWKWLNMXMZBCTDHYWFEWVEJDIUDHEWKIDUEENEGDPQNMNOZGQOGAZCCXRFQPWUEHRNCOMDHGETYEHJEPOPQWVXPGSURJQ";
-        double[] ioc = StaticAnalysis.getCyclicIOC(text, null, defaultAlphabet, defaultPadding);
+        double[] ioc = StaticAnalysis.getCyclicIOC(text, defaultAlphabet);
         assertEquals("CyclicIOC Size ", 60, ioc.length);
     }
 
+    @Test
+    public void testKeyLengthEstimates() {
+        // shift each letter by a 6 letter key, as Vigenere would
+        String plainText = "ITWASTHEBESTOFTIMESITWASTHEWORSTOFTIMESITWASTHEAGEOFWISDOMITWASTHEAGEOFFOOLISHNESS"
+                + "ITWASTHEEPOCHOFBELIEFITWASTHEEPOCHOFINCREDULITYITWASTHESEASONOFLIGHTITWASTHESEASONOFDARKNESS"
+                + "ITWASTHESPRINGOFHOPEITWASTHEWINTEROFDESPAIRWEHADEVERYTHINGBEFOREUSWEHADNOTHINGBEFOREUS";
+        int[] key = { 11, 4, 12, 14, 13, 18 };
+        byte[] ordinals = new byte[plainText.length()];
+        for (int i = 0; i < plainText.length(); i++) {
+            ordinals[i] = (byte)((defaultAlphabet.indexOf(plainText.charAt(i)) + key[i % key.length]) % 26);
+        }
+        double expectedIOC = Language.instanceOf("English").getExpectedIOC();
+
+        double[] ioc = StaticAnalysis.getCyclicIOC(ordinals, ordinals.length, 26, 13);
+        assertEquals("CyclicIOC ordinals size", 13, ioc.length);
+        assertTrue("CyclicIOC key length higher", ioc[6] > ioc[5] && ioc[6] > ioc[7]);
+
+        int[] kasiski = StaticAnalysis.getKasiskiFactorCounts(ordinals, ordinals.length, 26, 12);
+        assertTrue("Kasiski key length divides more gaps", kasiski[6] > kasiski[5] && kasiski[6] > kasiski[7]);
+
+        double friedman = StaticAnalysis.getFriedmanKeyLength(ordinals, ordinals.length, 26, expectedIOC);
+        assertTrue("Friedman estimate "+friedman, friedman > 2.0 && friedman < 12.0);
+    }
+
     @Test
     public void testCollectGramFrequency() {
         String text = "ABC DE FGA";
-        Map<String, Integer> grams = StaticAnalysis.collectGramFrequency(text, 1, false, null);
+        Map<String, Integer> grams = StaticAnalysis.collectGramFrequency(text, 1, false, defaultAlphabet);
         assertEquals("Collect Gram Freq ", 7, grams.size()); // A is twice
         assertEquals("Collect Gram A", Integer.valueOf(2), grams.get("A"));
         assertEquals("Collect Gram B", Integer.valueOf(1), grams.get("B"));
@@ -213,7 +237,7 @@ public class StaticAnalysisTest {
         assertNull("Collect Gram B", grams.get("Z"));
 
         text = "AB AB FA";
-        grams = StaticAnalysis.collectGramFrequency(text, 2, false, null);
+        grams = StaticAnalysis.collectGramFrequency(text, 2, false, defaultAlphabet);
         assertEquals("Collect Gram Freq ", 4, grams.size()); // A is twice
         assertEquals("Collect Gram AB", Integer.valueOf(2), grams.get("AB"));
         assertEquals("Collect Gram BA", Integer.valueOf(1), grams.get("BA"));
@@ -221,4 +245,44 @@ public class StaticAnalysisTest {
         assertEquals("Collect Gram FA", Integer.valueOf(1), grams.get("FA"));
         assertNull("Collect Gram FB", grams.get("FB"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testTextAnalysis() {
+        String text = "Ab%cd!Abc. ABa AB AB FA";
+        TextAnalysis analysis = new TextAnalysis(text, defaultAlphabet, defaultPadding);
+        assertEquals("TextAnalysis alphabetic", StaticAnalysis.countAlphabetic(text, defaultAlphabet), analysis.getCountAlphabetic());
+        assertEquals("TextAnalysis non padding", StaticAnalysis.countNonPadding(text, defaultPadding), analysis.getCountNonPadding());
+        assertEquals("TextAnalysis all", StaticAnalysis.collectFrequency(text, true, false, defaultAlphabet, ""), analysis.getFrequency(true, false, false));
+        assertEquals("TextAnalysis as is", StaticAnalysis.collectFrequency(text, false, false, defaultAlphabet, defaultPadding), analysis.getFrequency(false, false, true));
+        assertEquals("TextAnalysis upper", StaticAnalysis.collectFrequency(text, false, true, defaultAlphabet, defaultPadding), analysis.getFrequency(false, true, true));
+        assertEquals("TextAnalysis IOC", StaticAnalysis.calculateIOC(text, defaultAlphabet, defaultPadding), analysis.getIOC(), 0.0000001);
+        assertEquals("TextAnalysis letter A", 7, analysis.getLetterCount('A'));
+        assertEquals("TextAnalysis letter Z", 0, analysis.getLetterCount('Z'));
+
+        // letters are ABCDABCABAABABFA
+        int[] bigrams = analysis.getGramCounts(2, false);
+        assertEquals("TextAnalysis bigram total", 15, analysis.getGramTotal(2, false));
+        assertEquals("TextAnalysis bigram AB", 5, bigrams[analysis.indexOf("AB")]);
+        assertEquals("TextAnalysis bigram BA", 2, bigrams[analysis.indexOf("BA")]);
+        assertEquals("TextAnalysis bigram gram", "FA", analysis.gramOf(analysis.indexOf("FA"), 2));
+        int[] alignedBigrams = analysis.getGramCounts(2, true);
+        assertEquals("TextAnalysis aligned bigram total", 8, analysis.getGramTotal(2, true));
+        assertEquals("TextAnalysis aligned bigram AB", 4, alignedBigrams[analysis.indexOf("AB")]);
+        assertEquals("TextAnalysis aligned bigram BC", 0, alignedBigrams[analysis.indexOf("BC")]);
+        int[] trigrams = analysis.getGramCounts(3, false);
+        assertEquals("TextAnalysis trigram ABC", 2, trigrams[analysis.indexOf("ABC")]);
+        int[] alignedTrigrams = analysis.getGramCounts(3, true);
+        assertEquals("TextAnalysis aligned trigram total", 5, analysis.getGramTotal(3, true));
+        assertEquals("TextAnalysis aligned trigram ABC", 1, alignedTrigrams[analysis.indexOf("ABC")]);
+        assertEquals("TextAnalysis aligned trigram BCA", 0, alignedTrigrams[analysis.indexOf("BCA")]);
+
+        // the cyclic IOC is the same whether from the text or ordinals
+        String cyclicText = "AHHDIOWPLKQJJSUPOQJKKKQJAIOAIWFSXWWVWPWPWKWLNMXMZBCTDHYWFEWVEJDIUDHEWKIDUEENEGDPQNMNOZGQOGAZCCXRFQPWUEHRNCOMDHGETYEHJEPOPQWVXPGSURJQ";
+        analysis = new TextAnalysis(cyclicText, defaultAlphabet, defaultPadding);
+        double[] ioc = analysis.getCyclicIOC();
+        double[] ordinalIOC = StaticAnalysis.getCyclicIOC(analysis.getOrdinals(), cyclicText.length(), 26, 60);
+        assertEquals("TextAnalysis cyclic size", 60, ioc.length);
+        for (int cycle = 1; cycle < ioc.length; cycle++)
+            assertEquals("TextAnalysis cyclic "+cycle, ordinalIOC[cycle], ioc[cycle], 0.0000001);
+    }
+}
@@ -70,6 +70,30 @@ public class ClimbTest {
         assertEquals("Climb Cracked text", expected, bestDecode.toLowerCase());
     }
 
+    @Test
+    public void testClimbReverse() {
+        // Moby Dick, encoded with Vigenere and then reversed
+        String plainText = "CALLMEISHMAELSOMEYEARSAGONEVERMINDHOWLONGPRECISELYHAVINGLITTLEORNOMONEYINMYPURSE"
+                + "ANDNOTHINGPARTICULARTOINTERESTMEONSHOREITHOUGHTIWOULDSAILABOUTALITTLEANDSEETHEWATERY"
+                + "PARTOFTHEWORLDITISAWAYIHAVEOFDRIVINGOFFTHESPLEENANDREGULATINGTHECIRCULATION";
+        Cipher vigenere = Cipher.instanceOf("Vigenere", null);
+        Directives dirs = new Directives();
+        dirs.setAlphabet(defaultAlphabet);
+        dirs.setKeyword("WHALE");
+        String text = new StringBuilder(vigenere.encode(plainText, dirs)).reverse().toString();
+
+        Properties props = new Properties();
+        props.setProperty(Climb.CLIMB_START_KEYWORD, "AAAAA");
+        props.setProperty(Climb.CLIMB_ALPHABET, defaultAlphabet);
+        props.setProperty(Climb.CLIMB_CRIBS, "ishmael,spleen");
+        props.setProperty(Climb.CLIMB_PADDING_CHARS, defaultPaddingChars);
+
+        boolean success = Climb.doClimb(text, vigenere, props, 0);
+        assertTrue("Climb Reverse Success", success);
+        assertEquals("Climb Reverse text", plainText, props.getProperty(Climb.CLIMB_BEST_DECODE));
+        assertTrue("Climb Reverse activity", props.getProperty(Climb.CLIMB_ACTIVITY).contains("REVERSE"));
+    }
+
     @Test
     public void testMutateKey() {
         String startKey = "ABCDEFG";
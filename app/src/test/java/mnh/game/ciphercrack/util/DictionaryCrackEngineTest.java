@@ -0,0 +1,122 @@
+package mnh.game.ciphercrack.util;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnit4.class)
+public class DictionaryCrackEngineTest {
+
+    // words are W0..W9999, each gives keys of its number and its number mod 100,
+    // keys that are multiples of 7 'decode' to text with cribs, reversed if a multiple of 11
+    private static final int WORDS = 10000;
+
+    private static List<String> makeWords() {
+        List<String> words = new ArrayList<>(WORDS);
+        for (int i = 0; i < WORDS; i++) {
+            words.add("W" + i);
+        }
+        return words;
+    }
+
+    private static DictionaryCrackEngine<Integer> makeEngine(List<String> words) {
+        return new DictionaryCrackEngine<>("Test", -1, words,
+                new DictionaryCrackEngine.KeyTrierFactory<Integer>() {
+            @Override
+            public DictionaryCrackEngine.KeyTrier<Integer> newKeyTrier() {
+                return new DictionaryCrackEngine.KeyTrier<Integer>() {
+                    @Override
+                    public int getKeyCount(String word) {
+                        return 2;
+                    }
+
+                    @Override
+                    public Integer getKey(String word, int variant) {
+                        int number = Integer.parseInt(word.substring(1));
+                        return (variant == 0) ? number : number % 100;
+                    }
+
+                    @Override
+                    public String tryKey(Integer key, boolean reverse) {
+                        boolean matches = key > 0 && key % 7 == 0 && (reverse == (key % 11 == 0));
+                        return matches ? "TEXT" + key : null;
+                    }
+                };
+            }
+        });
+    }
+
+    @Test
+    public void testAllMatchesInOrder() {
+        List<String> words = makeWords();
+        for (int threads : new int[] { 1, 4 }) {
+            DictionaryCrackEngine<Integer> engine = makeEngine(words);
+            engine.setThreads(threads);
+            engine.setConsiderReverse(true);
+            List<DictionaryCrackEngine.Match<Integer>> matches = engine.run();
+            assertNotNull("Matches", matches);
+            assertFalse("Not cancelled", engine.isCancelled());
+            assertEquals("Words tried", WORDS, engine.getWordsTried());
+            // each multiple of 7 from its number, plus the 14 multiples below 100 from each hundred
+            int expected = (WORDS - 1) / 7 + WORDS / 100 * 14;
+            assertEquals("Match count with threads " + threads, expected, matches.size());
+            int previous = 0;
+            for (DictionaryCrackEngine.Match<Integer> match : matches) {
+                int number = Integer.parseInt(match.getWord().substring(1));
+                assertTrue("Matches in word order", number >= previous);
+                assertEquals("Reverse when multiple of 11", match.getKey() % 11 == 0, match.isReverse());
+                assertEquals("Plain text", "TEXT" + match.getKey(), match.getPlainText());
+                previous = number;
+            }
+        }
+    }
+
+    @Test
+    public void testStopAtFirstIsEarliest() {
+        List<String> words = makeWords();
+        for (int threads : new int[] { 1, 4 }) {
+            DictionaryCrackEngine<Integer> engine = makeEngine(words);
+            engine.setThreads(threads);
+            engine.setStopAtFirst(true);
+            List<DictionaryCrackEngine.Match<Integer>> matches = engine.run();
+            assertNotNull("Matches", matches);
+            assertEquals("One match", 1, matches.size());
+            assertEquals("Earliest word", "W7", matches.get(0).getWord());
+            assertEquals("Earliest key", 7, (int)matches.get(0).getKey());
+            // only the words up to the match are tried, not the rest of its chunk
+            if (threads == 1)
+                assertEquals("Words tried alone", 8, engine.getWordsTried());
+            assertTrue("Words tried", engine.getWordsTried() < WORDS);
+        }
+    }
+
+    @Test
+    public void testDedupeKeys() {
+        List<String> words = makeWords();
+        for (int threads : new int[] { 1, 4 }) {
+            DictionaryCrackEngine<Integer> engine = makeEngine(words);
+            engine.setThreads(threads);
+            engine.setDedupeKeys(true);
+            List<DictionaryCrackEngine.Match<Integer>> matches = engine.run();
+            assertNotNull("Matches", matches);
+            // each forward key (multiple of 7 but not 11) is found once, from the earliest word
+            int expected = 0;
+            for (int key = 1; key < WORDS; key++) {
+                if (key % 7 == 0 && key % 11 != 0)
+                    expected++;
+            }
+            assertEquals("Match count with threads " + threads, expected, matches.size());
+            for (DictionaryCrackEngine.Match<Integer> match : matches) {
+                assertEquals("Key from earliest word", "W" + match.getKey(), match.getWord());
+            }
+        }
+    }
+}
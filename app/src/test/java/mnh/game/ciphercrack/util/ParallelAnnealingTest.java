@@ -0,0 +1,47 @@
+package mnh.game.ciphercrack.util;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Properties;
+
+import mnh.game.ciphercrack.cipher.Cipher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnit4.class)
+public class ParallelAnnealingTest {
+
+    private static final String defaultAlphabet = Settings.DEFAULT_ALPHABET;
+
+    @Test
+    public void testAnnealSubstitution() {
+        String plainText = "philthisisthelastofsarahsdiaryentriesanditisatoughonetodecryptihaventhadtodecryptavigenereforawhileandialmostdidntgetthisoneatleastittellsusthatshegotawaybutbeyondthatiamnotsurewhathappenedwheredidshegodidthepaintinggowithherandifitdidhowcomeitisnowbackinthelouvrediddanielorthessofficerfollowherwhowashedidhefindherthetrailisgoingcoldandweneedanewideaiwaswonderingiftheremightbesomethinginthessanglethoseguyswerenothingifnotthoroughdoyouhaveaccesstoanysspapersfromthatpartofparisinthewar";
+        String keyword = "ALFREDOSTUVWXYZBCGHIJKMNPQ";
+        Cipher cipher = Cipher.instanceOf("Substitution", null);
+        assertNotNull("Cipher", cipher);
+        Directives dirs = new Directives();
+        dirs.setKeyword(keyword);
+        String cipherText = cipher.encode(plainText, dirs);
+
+        // start from the plain alphabet, a long way from the key
+        Properties props = new Properties();
+        props.setProperty(Climb.CLIMB_START_KEYWORD, defaultAlphabet);
+        props.setProperty(Climb.CLIMB_ALPHABET, defaultAlphabet);
+        props.setProperty(Climb.CLIMB_LANGUAGE, Settings.DEFAULT_LANGUAGE);
+        props.setProperty(Climb.CLIMB_CRIBS, "paris,painting");
+        props.setProperty(Climb.CLIMB_TEMPERATURE, "1");
+        props.setProperty(Climb.CLIMB_CYCLES, "5000");
+        props.setProperty(Climb.CLIMB_CHAINS, "4");
+
+        boolean success = ParallelAnnealing.doAnnealing(cipherText, cipher, props, 0);
+        String activity = props.getProperty(Climb.CLIMB_ACTIVITY);
+        assertNotNull("Anneal activity", activity);
+        assertTrue("Anneal success", success);
+        assertTrue("Anneal activity cribs", activity.contains("Decoded text contains all cribs."));
+        assertEquals("Anneal decode", plainText, props.getProperty(Climb.CLIMB_BEST_DECODE).toLowerCase());
+    }
+}
@@ -0,0 +1,48 @@
+package mnh.game.ciphercrack.util;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(JUnit4.class)
+public class SettingsTest {
+
+    @After
+    public void tearDown() {
+        Settings.instance().setSource(null);
+    }
+
+    @Test
+    public void testDefaultsWithoutSource() {
+        Settings settings = Settings.instance();
+        assertEquals("Alphabet", Settings.DEFAULT_ALPHABET, settings.getString(Settings.PREF_ALPHABET_PLAIN));
+        assertEquals("Language", Settings.DEFAULT_LANGUAGE, settings.getString(Settings.PREF_LANGUAGE));
+        assertEquals("Cribs", "the,and,have", settings.getString(Settings.PREF_CRIBS));
+        assertEquals("Unknown", "", settings.getString("pref_unknown"));
+        assertEquals("Given default", "7", settings.getString(Settings.PREF_LIMIT_AMSCO_COLS, "7"));
+    }
+
+    @Test
+    public void testSource() {
+        final Map<String, String> stored = new HashMap<>();
+        stored.put(Settings.PREF_CRIBS, "secret,agent");
+        Settings settings = Settings.instance();
+        settings.setSource(new Settings.Source() {
+            @Override
+            public String getString(String prefName, String defaultString) {
+                String value = stored.get(prefName);
+                return (value == null) ? defaultString : value;
+            }
+        });
+        assertEquals("Stored", "secret,agent", settings.getString(Settings.PREF_CRIBS));
+        assertEquals("Not stored", Settings.DEFAULT_ALPHABET, settings.getString(Settings.PREF_ALPHABET_PLAIN));
+        assertEquals("Not stored, given default", Settings.DEFAULT_LIMIT_PERM_COLS,
+                settings.getString(Settings.PREF_LIMIT_PERM_BRUTE_FORCE_COLS, Settings.DEFAULT_LIMIT_PERM_COLS));
+    }
+}
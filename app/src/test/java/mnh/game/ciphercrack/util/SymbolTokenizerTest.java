@@ -0,0 +1,88 @@
+package mnh.game.ciphercrack.util;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(JUnit4.class)
+public class SymbolTokenizerTest {
+
+    // writes each token as its ordinals in brackets, an empty token as [], others as they are
+    private static class Recorder implements SymbolTokenizer.Listener {
+        private final StringBuilder record = new StringBuilder();
+
+        @Override
+        public void token(byte[] ordinals, char[] chars, int length) {
+            record.append('[');
+            for (int pos = 0; pos < length; pos++)
+                record.append(ordinals[pos] < 0 ? "?" : String.valueOf(ordinals[pos]));
+            record.append(']');
+        }
+
+        @Override
+        public void emptyToken() { record.append("[]"); }
+
+        @Override
+        public void other(char c) { record.append(c); }
+
+        @Override
+        public String toString() { return record.toString(); }
+    }
+
+    private static String tokens(SymbolTokenizer tokenizer, String text) throws IOException {
+        Recorder recorder = new Recorder();
+        tokenizer.tokenize(text, recorder);
+        return recorder.toString();
+    }
+
+    @Test
+    public void testFixedWidth() throws IOException {
+        SymbolTokenizer tokenizer = new SymbolTokenizer(new String[] { "ab" }, "", 3, SymbolTokenizer.WHITESPACE, SymbolTokenizer.Others.IN_TOKEN);
+        assertEquals("Fixed width", "[010][1?1][0]", tokens(tokenizer, "ABA b C b\nA"));
+        assertEquals("Fixed width empty", "", tokens(tokenizer, ""));
+    }
+
+    @Test
+    public void testSeparator() throws IOException {
+        SymbolTokenizer tokenizer = new SymbolTokenizer(new String[] { ".-" }, "//", 0, "", SymbolTokenizer.Others.SKIPPED);
+        assertEquals("Separator", "[][01][][1][0]", tokens(tokenizer, "//.-////-/ /x."));
+        // a single '/' is not the separator, and is skipped, the last tokens have none after
+        assertEquals("Separator partial", "[01][1]", tokens(tokenizer, "./-//-/"));
+    }
+
+    @Test
+    public void testSeparatorIsWhitespace() throws IOException {
+        SymbolTokenizer tokenizer = new SymbolTokenizer(new String[] { "01" }, " ", 0, SymbolTokenizer.WHITESPACE, SymbolTokenizer.Others.IN_TOKEN);
+        assertEquals("Space separator", "[10][1][][0]", tokens(tokenizer, "10\n 1  0"));
+    }
+
+    @Test
+    public void testPassed() throws IOException {
+        // pairs of row then column headings, a lone character at the end is a short token
+        SymbolTokenizer pairs = new SymbolTokenizer(new String[] { "ABC", "XYZ" }, "", 2, "", SymbolTokenizer.Others.PASSED);
+        assertEquals("Pairs", "[00] [11], z-[2]", tokens(pairs, "ax bY, z-C"));
+        // runs end at anything else, apart from skipped line breaks
+        SymbolTokenizer runs = new SymbolTokenizer(new String[] { ".-" }, "", 0, "\n", SymbolTokenizer.Others.PASSED);
+        assertEquals("Runs", "[0110] [1]", tokens(runs, ".-\n-. -"));
+    }
+
+    @Test
+    public void testReader() throws IOException {
+        SymbolTokenizer tokenizer = new SymbolTokenizer(new String[] { "01" }, "/", 0, SymbolTokenizer.WHITESPACE, SymbolTokenizer.Others.IN_TOKEN);
+        StringBuilder text = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            text.append(i % 2 == 0 ? "101/" : "0/");
+            expected.append(i % 2 == 0 ? "[101]" : "[0]");
+        }
+        Recorder recorder = new Recorder();
+        tokenizer.tokenize(new StringReader(text.toString()), recorder);
+        assertEquals("Reader", expected.toString(), recorder.toString());
+        assertEquals("Reader same as text", tokens(tokenizer, text.toString()), recorder.toString());
+    }
+}
@@ -0,0 +1,70 @@
+package mnh.game.ciphercrack.util;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+
+@RunWith(JUnit4.class)
+public class TranspositionPlanTest {
+
+    @Test
+    public void testRailfence() {
+        String cipherText = "WECRLTEERDSOEEFEAOCAIVDEN";
+        TranspositionPlan plan = TranspositionPlan.railfence(3, cipherText.length());
+        assertEquals("Railfence length", cipherText.length(), plan.length());
+        assertEquals("Railfence 3 rails", "WEAREDISCOVEREDFLEEATONCE", plan.apply(cipherText));
+        assertEquals("Railfence short", "A", TranspositionPlan.railfence(4, 1).apply("A"));
+    }
+
+    @Test
+    public void testSkytale() {
+        String cipherText = "WoeevaaetrroeenddciFesl ce ";
+        TranspositionPlan plan = TranspositionPlan.skytale(3, cipherText.length());
+        assertEquals("Skytale 3 cycle", "WearediscoveredFleeatonce  ", plan.apply(cipherText));
+    }
+
+    @Test
+    public void testPermutation() {
+        // 3,0,1,2 read down, the last column of DEFENDTHEEASTWALLOFTHECASTLE moved to the front
+        String cipherText = "EHSLTAEDNETLHSEDEWOETFTAAFCL";
+        TranspositionPlan plan = TranspositionPlan.permutation(new int[]{3, 0, 1, 2}, false, cipherText.length());
+        assertEquals("Permutation down", "DEFENDTHEEASTWALLOFTHECASTLE", plan.apply(cipherText));
+
+        // read across, each row is re-ordered, the short last row is padded
+        plan = TranspositionPlan.permutation(new int[]{1, 2, 0}, true, 7);
+        assertEquals("Permutation across length", 9, plan.length());
+        assertEquals("Permutation across", "CABFDEXGX", plan.apply("ABCDEFG"));
+    }
+
+    @Test
+    public void testAmsco() {
+        // the cells hold 2,1 letters in turn, read down columns 1,3,2,0,4
+        String plainText = "Incompletecolumnarwithalternatingsinglelettersanddigraphs";
+        String cipherText = "cecrteglenphplutnanteiomowirsitddsIntnalinesaalemhatglrgr";
+        TranspositionPlan plan = TranspositionPlan.amsco(new int[]{1, 3, 2, 0, 4}, new int[]{2, 1}, cipherText.length());
+        assertEquals("Amsco 2,1", plainText, plan.apply(cipherText));
+    }
+
+    @Test
+    public void testSwapRowsAndCols() {
+        String text = "ABCD\nFGHIJ\nKLM\n";
+        assertEquals("Swap uneven", "AFK\nBGL\nCHM\nDI \n J \n", TranspositionPlan.swapRowsAndCols(text).apply(text));
+        assertEquals("Swap no newline", "A\nB\n", TranspositionPlan.swapRowsAndCols("AB").apply("AB"));
+        assertEquals("Swap empty", "", TranspositionPlan.swapRowsAndCols("").apply(""));
+    }
+
+    @Test
+    public void testCache() {
+        // the same parameters give the same plan until it is the least recently used of too many
+        TranspositionPlan plan = TranspositionPlan.skytale(7, 1000);
+        assertSame("Cached", plan, TranspositionPlan.skytale(7, 1000));
+        for (int length = 0; length < TranspositionPlan.CACHE_SIZE; length++) {
+            TranspositionPlan.railfence(5, length);
+        }
+        assertNotEquals("Dropped", plan, TranspositionPlan.skytale(7, 1000));
+    }
+}